@@ -8,11 +8,15 @@
 
 package beaver;
 
+import java.io.Serializable;
+
 /**
  * Represents a symbol of a grammar.
  */
-public class Symbol
+public class Symbol implements Serializable
 {
+	static private final long serialVersionUID = 1L;
+
 	static private final int COLUMN_FIELD_BITS = 12;
 	static private final int COLUMN_FIELD_MASK = (1 << COLUMN_FIELD_BITS) - 1; 
 	
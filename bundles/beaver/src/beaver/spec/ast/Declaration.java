@@ -15,8 +15,12 @@ import beaver.Symbol;
  */
 public abstract class Declaration extends Node
 {
+	static private final long serialVersionUID = 1L;
+
 	static public abstract class NameContainer extends Declaration
 	{
+		static private final long serialVersionUID = 1L;
+
 		public final Symbol name;
 		
 		protected NameContainer(Symbol name)
@@ -32,6 +36,8 @@ public abstract class Declaration extends Node
 	
 	static public abstract class CodeContainer extends Declaration
 	{
+		static private final long serialVersionUID = 1L;
+
 		public final Symbol code;
 		
 		protected CodeContainer(Symbol code)
@@ -47,6 +53,8 @@ public abstract class Declaration extends Node
 	
 	static public abstract class SymbolsContainer extends Declaration
 	{
+		static private final long serialVersionUID = 1L;
+
 		public final Symbol[] symbols;
 		
 		protected SymbolsContainer(Symbol[] symbols)
@@ -57,6 +65,8 @@ public abstract class Declaration extends Node
 	
 	static public class Error extends Declaration
 	{
+		static private final long serialVersionUID = 1L;
+
 		public void accept(TreeWalker walker)
 		{
 			walker.visit(this);
@@ -65,6 +75,8 @@ public abstract class Declaration extends Node
 	
 	static public class Goal extends NameContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public Goal(Symbol name)
 		{
 			super(name);
@@ -78,6 +90,8 @@ public abstract class Declaration extends Node
 	
 	static public class ListType extends NameContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public ListType(Symbol name)
 		{
 			super(name);
@@ -91,6 +105,8 @@ public abstract class Declaration extends Node
 
 	static public class Header extends CodeContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public Header(Symbol code)
 		{
 			super(code);
@@ -104,6 +120,8 @@ public abstract class Declaration extends Node
 
 	static public class PackageName extends NameContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public PackageName(Symbol name)
 		{
 			super(name);
@@ -117,6 +135,8 @@ public abstract class Declaration extends Node
 
 	static public class Implements extends SymbolsContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public Implements(Symbol[] names)
 		{
 			super(names);
@@ -130,6 +150,8 @@ public abstract class Declaration extends Node
 	
 	static public class Imports extends SymbolsContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public Imports(Symbol[] symbols)
 		{
 			super(symbols);
@@ -143,6 +165,8 @@ public abstract class Declaration extends Node
 	
 	static public class ClassName extends NameContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public ClassName(Symbol name)
 		{
 			super(name);
@@ -156,6 +180,8 @@ public abstract class Declaration extends Node
 
 	static public class ClassCode extends CodeContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public ClassCode(Symbol code)
 		{
 			super(code);
@@ -169,6 +195,8 @@ public abstract class Declaration extends Node
 	
 	static public class ConstructorCode extends CodeContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public ConstructorCode(Symbol code)
 		{
 			super(code);
@@ -182,6 +210,8 @@ public abstract class Declaration extends Node
 	
 	static public class LeftAssoc extends SymbolsContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public LeftAssoc(Symbol[] symbols)
 		{
 			super(symbols);
@@ -195,6 +225,8 @@ public abstract class Declaration extends Node
 	
 	static public class RightAssoc extends SymbolsContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public RightAssoc(Symbol[] symbols)
 		{
 			super(symbols);
@@ -208,6 +240,8 @@ public abstract class Declaration extends Node
 	
 	static public class NonAssoc extends SymbolsContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public NonAssoc(Symbol[] symbols)
 		{
 			super(symbols);
@@ -221,6 +255,8 @@ public abstract class Declaration extends Node
 	
 	static public class Terminals extends SymbolsContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public Terminals(Symbol[] tokens)
 		{
 			super(tokens);
@@ -234,6 +270,8 @@ public abstract class Declaration extends Node
 	
 	static public class TypeOf extends SymbolsContainer
 	{
+		static private final long serialVersionUID = 1L;
+
 		public final Symbol type;
 
 		public TypeOf(Symbol[] symbols, Symbol type)
@@ -12,10 +12,16 @@ import beaver.Symbol;
 
 public class Rule extends Node
 {
+	static private final long serialVersionUID = 1L;
+
 	static public class Definition extends Node
 	{
+		static private final long serialVersionUID = 1L;
+
 		static public class Element extends Node
 		{
+			static private final long serialVersionUID = 1L;
+
 			public final Symbol sym_name;
 			public final Symbol alias;
 			public final Symbol ebnf_sym;
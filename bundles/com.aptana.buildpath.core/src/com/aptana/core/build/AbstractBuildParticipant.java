@@ -12,10 +12,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -40,6 +38,7 @@ import org.osgi.service.prefs.BackingStoreException;
 
 import com.aptana.buildpath.core.BuildPathCorePlugin;
 import com.aptana.core.internal.build.BuildParticipantWorkingCopy;
+import com.aptana.core.internal.build.MessageFilter;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.resources.TaskTag;
 import com.aptana.core.util.CollectionsUtil;
@@ -81,9 +80,16 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 	private Set<String> projectNatures;
 
 	/**
-	 * We lazily compile the filters into {@link Pattern}s as we try to match them.
+	 * The filters as last read from the preferences (and the preference value they were split from), so they're only
+	 * split again when the preference changes.
 	 */
-	private Map<String, Pattern> compiledFilters;
+	private volatile String fRawFilters;
+	private volatile List<String> fFilters;
+
+	/**
+	 * The filters compiled by {@link #isIgnored(String, List)}, built again when asked about other filters.
+	 */
+	private volatile MessageFilter fMessageFilter;
 	protected IDocument fDocument;
 
 	public int getPriority()
@@ -164,7 +170,14 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 		{
 			return Collections.emptyList();
 		}
-		return Arrays.asList(filterSplitter.split(rawFilters));
+		List<String> filters = fFilters;
+		if (filters == null || !rawFilters.equals(fRawFilters))
+		{
+			filters = Collections.unmodifiableList(Arrays.asList(filterSplitter.split(rawFilters)));
+			fFilters = filters;
+			fRawFilters = rawFilters;
+		}
+		return filters;
 	}
 
 	private String getFiltersPreferenceKey()
@@ -437,33 +450,24 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 		return false;
 	}
 
-	protected synchronized boolean isIgnored(String message, List<String> expressions)
+	/**
+	 * @return true if any of the expressions matches the whole message. Expressions are compiled the first time they're
+	 *         used (and again only when used with a different list).
+	 */
+	protected boolean isIgnored(String message, List<String> expressions)
 	{
 		if (CollectionsUtil.isEmpty(expressions))
 		{
 			return false;
 		}
 
-		if (compiledFilters == null)
-		{
-			compiledFilters = new HashMap<String, Pattern>(expressions.size());
-		}
-		for (String expression : expressions)
+		MessageFilter filter = fMessageFilter;
+		if (filter == null || !filter.isFor(expressions))
 		{
-			// Lazily compile the filter expressions into Patterns
-			Pattern p = compiledFilters.get(expression);
-			if (p == null)
-			{
-				p = Pattern.compile(expression);
-				compiledFilters.put(expression, p);
-			}
-			if (p.matcher(message).matches())
-			{
-				return true;
-			}
+			filter = new MessageFilter(expressions);
+			fMessageFilter = filter;
 		}
-
-		return false;
+		return filter.matches(message);
 	}
 
 	/**
@@ -19,22 +19,19 @@ import java.util.Set;
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.resources.IResourceVisitor;
-import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRoot;
-import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
-import org.eclipse.core.runtime.jobs.ISchedulingRule;
 
 import com.aptana.buildpath.core.BuildPathCorePlugin;
 import com.aptana.buildpath.core.BuildPathManager;
@@ -44,6 +41,7 @@ import com.aptana.core.IDebugScopes;
 import com.aptana.core.IFilter;
 import com.aptana.core.IMap;
 import com.aptana.core.build.IBuildParticipant.BuildType;
+import com.aptana.core.internal.build.MarkerReconciler;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.resources.IMarkerConstants;
 import com.aptana.core.util.ArrayUtil;
@@ -51,10 +49,12 @@ import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.ResourceUtil;
 import com.aptana.index.core.FileStoreBuildContext;
 import com.aptana.index.core.IIndexFileContributor;
+import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexContainerJob;
 import com.aptana.index.core.IndexFileJob;
 import com.aptana.index.core.IndexManager;
 import com.aptana.index.core.IndexPlugin;
+import com.aptana.index.core.IndexWorkerPool;
 import com.aptana.index.core.build.BuildContext;
 import com.aptana.index.core.filter.IIndexFilterParticipant;
 import com.aptana.parsing.ParserPoolFactory;
@@ -63,8 +63,19 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 {
 
 	public static final String ID = "com.aptana.ide.core.unifiedBuilder"; //$NON-NLS-1$
+
+	/**
+	 * The number of files whose markers are updated in the same workspace operation.
+	 */
+	private static final int MARKER_BATCH_SIZE = 50;
+
 	private boolean traceParticipantsEnabled = false;
 
+	/**
+	 * Updates the markers of the files built, while building.
+	 */
+	private MarkerReconciler markerReconciler;
+
 	public UnifiedBuilder()
 	{
 	}
@@ -169,34 +180,51 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		participants = filterToEnabled(participants, project);
 		buildStarting(participants, kind, sub.newChild(10));
 
-		if (kind == IncrementalProjectBuilder.FULL_BUILD)
-		{
-			if (logTraceEnabled)
-			{
-				logTrace(MessageFormat.format(Messages.UnifiedBuilder_PerformingFullBuld, projectName));
-			}
-			fullBuild(participants, sub.newChild(80));
-		}
-		else
+		markerReconciler = new MarkerReconciler(MARKER_BATCH_SIZE);
+		try
 		{
-			IResourceDelta delta = getResourceDelta();
-			if (delta == null)
+			if (kind == IncrementalProjectBuilder.FULL_BUILD)
 			{
 				if (logTraceEnabled)
 				{
-					logTrace(MessageFormat.format(Messages.UnifiedBuilder_PerformingFullBuildNullDelta, projectName));
+					logTrace(MessageFormat.format(Messages.UnifiedBuilder_PerformingFullBuld, projectName));
 				}
-				fullBuild(participants, sub.newChild(80));
+				fullBuild(participants, sub.newChild(75));
 			}
 			else
 			{
-				if (logTraceEnabled)
+				IResourceDelta delta = getResourceDelta();
+				if (delta == null)
+				{
+					if (logTraceEnabled)
+					{
+						logTrace(MessageFormat.format(Messages.UnifiedBuilder_PerformingFullBuildNullDelta,
+								projectName));
+					}
+					fullBuild(participants, sub.newChild(75));
+				}
+				else
 				{
-					logTrace(MessageFormat.format(Messages.UnifiedBuilder_PerformingIncrementalBuild, projectName));
+					if (logTraceEnabled)
+					{
+						logTrace(MessageFormat.format(Messages.UnifiedBuilder_PerformingIncrementalBuild, projectName));
+					}
+					incrementalBuild(participants, delta, sub.newChild(75));
 				}
-				incrementalBuild(participants, delta, sub.newChild(80));
 			}
 		}
+		finally
+		{
+			// update the markers of the last batch of files
+			markerReconciler.flush(sub.newChild(5));
+			if (logTraceEnabled)
+			{
+				logTrace(MessageFormat.format("Markers of project ''{0}'': {1} added, {2} removed, {3} kept", //$NON-NLS-1$
+						projectName, markerReconciler.getAddedCount(), markerReconciler.getRemovedCount(),
+						markerReconciler.getKeptCount()));
+			}
+			markerReconciler = null;
+		}
 
 		buildEnding(participants, sub.newChild(10));
 
@@ -507,6 +535,13 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			return;
 		}
 
+		int workerCount = Math.min(IndexWorkerPool.getWorkerCount(), files.size());
+		if (workerCount > 1)
+		{
+			doBuildFiles(participants, files, workerCount, monitor);
+			return;
+		}
+
 		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
 		for (IFile file : files)
 		{
@@ -533,6 +568,94 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		sub.done();
 	}
 
+	/**
+	 * Run the participants over the files on a pool of worker threads. Index changes for each file are collected in a
+	 * delta on the worker and applied to the project index once the file is done. Markers are still updated here, on
+	 * the build thread, since that's the thread holding the workspace lock.
+	 * 
+	 * @param participants
+	 * @param files
+	 * @param workerCount
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	private void doBuildFiles(final List<IBuildParticipant> participants, Collection<IFile> files, int workerCount,
+			IProgressMonitor monitor) throws CoreException
+	{
+		final IBuildParticipantManager manager = getBuildParticipantManager();
+		if (manager == null)
+		{
+			return;
+		}
+		IndexManager indexManager = getIndexManager();
+		final Index index = (indexManager == null) ? null : indexManager.getIndex(getProjectHandle()
+				.getLocationURI());
+
+		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
+		IndexWorkerPool<IFile, BuildContext> pool = new IndexWorkerPool<IFile, BuildContext>(getProjectHandle()
+				.getName(), workerCount, new IMap<IFile, BuildContext>()
+		{
+			public BuildContext map(IFile file)
+			{
+				BuildContext context = new BuildContext(file);
+				List<IBuildParticipant> filteredParticipants;
+				try
+				{
+					filteredParticipants = manager.filterParticipants(participants, context.getContentType());
+				}
+				catch (CoreException e)
+				{
+					IdeLog.logError(BuildPathCorePlugin.getDefault(), e);
+					return null;
+				}
+
+				if (index != null)
+				{
+					index.beginDelta();
+				}
+				try
+				{
+					runParticipants(context, filteredParticipants, new NullProgressMonitor());
+				}
+				finally
+				{
+					if (index != null)
+					{
+						index.commitDelta();
+					}
+				}
+				return context;
+			}
+		});
+
+		try
+		{
+			pool.start(files);
+
+			while (pool.hasNext())
+			{
+				BuildContext context = pool.next();
+				sub.worked(3);
+
+				if (context != null)
+				{
+					updateMarkers(context, sub.newChild(12));
+				}
+
+				// stop handing out files if canceled, but finish the ones already started
+				if (sub.isCanceled())
+				{
+					pool.cancel();
+				}
+			}
+		}
+		finally
+		{
+			pool.dispose();
+			sub.done();
+		}
+	}
+
 	/**
 	 * FIXME This is a holy hell of a mess! We map from IFiles to IFileStores, then filter on that, then map back! Can't
 	 * we make the IIndexFilterParticipants also operate on IFiles? It seems like the only impl does anyways.
@@ -608,6 +731,19 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		}
 
 		SubMonitor sub = SubMonitor.convert(monitor, 2 * participants.size());
+		runParticipants(context, participants, sub.newChild(participants.size()));
+		updateMarkers(context, sub.newChild(participants.size()));
+		sub.done();
+	}
+
+	private void runParticipants(BuildContext context, List<IBuildParticipant> participants, IProgressMonitor monitor)
+	{
+		if (CollectionsUtil.isEmpty(participants))
+		{
+			return;
+		}
+
+		SubMonitor sub = SubMonitor.convert(monitor, participants.size());
 		for (IBuildParticipant participant : participants)
 		{
 			long startTime = System.nanoTime();
@@ -627,98 +763,15 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 				break;
 			}
 		}
-		updateMarkers(context, sub.newChild(participants.size()));
 		sub.done();
 	}
 
 	private void updateMarkers(BuildContext context, IProgressMonitor monitor)
 	{
-		final IFile file = context.getFile();
-		final Map<String, Collection<IProblem>> itemsByType = context.getProblems();
-		if (CollectionsUtil.isEmpty(itemsByType))
-		{
-			return;
-		}
-		// Performance fix: schedules the error handling as a single workspace update so that we don't trigger a
-		// bunch of resource updated events while problem markers are being added to the file.
-		IWorkspaceRunnable runnable = new IWorkspaceRunnable()
-		{
-			public void run(IProgressMonitor monitor)
-			{
-				updateMarkers(file, itemsByType, monitor);
-			}
-		};
-
-		try
-		{
-			ResourcesPlugin.getWorkspace().run(runnable, getMarkerRule(file), IWorkspace.AVOID_UPDATE, monitor);
-		}
-		catch (CoreException e)
-		{
-			IdeLog.logError(BuildPathCorePlugin.getDefault(), "Error updating markers", e); //$NON-NLS-1$
-		}
-	}
-
-	/**
-	 * @param resource
-	 * @return
-	 */
-	private static ISchedulingRule getMarkerRule(Object resource)
-	{
-		if (resource instanceof IResource)
-		{
-			return ResourcesPlugin.getWorkspace().getRuleFactory().markerRule((IResource) resource);
-		}
-		return null;
-	}
-
-	private synchronized void updateMarkers(IFile file, Map<String, Collection<IProblem>> itemsByType,
-			IProgressMonitor monitor)
-	{
-		if (!file.exists())
+		if (markerReconciler != null)
 		{
-			// no need to update the marker when the resource no longer exists
-			return;
+			markerReconciler.add(context.getFile(), context.getProblems(), monitor);
 		}
-		SubMonitor sub = SubMonitor.convert(monitor, itemsByType.size() * 10);
-
-		// FIXME Do a diff like we do in ValidationManager!
-		for (String markerType : itemsByType.keySet())
-		{
-			try
-			{
-				Collection<IProblem> newItems = itemsByType.get(markerType);
-				// deletes the old markers
-				file.deleteMarkers(markerType, false, IResource.DEPTH_INFINITE);
-				sub.worked(1);
-
-				// adds the new ones
-				addMarkers(newItems, markerType, file, sub.newChild(9));
-			}
-			catch (CoreException e)
-			{
-				IdeLog.logError(BuildPathCorePlugin.getDefault(), e);
-			}
-		}
-		sub.done();
-	}
-
-	private void addMarkers(Collection<IProblem> items, String markerType, IFile file, IProgressMonitor monitor)
-			throws CoreException
-	{
-		if (CollectionsUtil.isEmpty(items))
-		{
-			return;
-		}
-		SubMonitor sub = SubMonitor.convert(monitor, items.size() * 2);
-		for (IProblem item : items)
-		{
-			IMarker marker = file.createMarker(markerType);
-			sub.worked(1);
-			marker.setAttributes(item.createMarkerAttributes());
-			sub.worked(1);
-		}
-		sub.done();
 	}
 
 	/**
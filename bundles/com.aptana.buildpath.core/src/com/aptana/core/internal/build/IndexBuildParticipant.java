@@ -13,6 +13,8 @@ import java.text.MessageFormat;
 import java.util.List;
 import java.util.Set;
 
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -31,6 +33,7 @@ import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexManager;
 import com.aptana.index.core.IndexPlugin;
 import com.aptana.index.core.build.BuildContext;
+import com.aptana.internal.index.core.FingerprintTable.Fingerprint;
 
 public class IndexBuildParticipant extends RequiredBuildParticipant
 {
@@ -113,9 +116,23 @@ public class IndexBuildParticipant extends RequiredBuildParticipant
 				return;
 			}
 
+			// fingerprint the file's content before it's indexed. Reconciles index the editor's content, which may not
+			// match the file
+			IFileStore store = null;
+			Fingerprint fingerprint = null;
+			if (!context.isReconcile())
+			{
+				store = getFileStore(context);
+				if (store != null)
+				{
+					fingerprint = fIndex.getFingerprint(store);
+				}
+			}
+
 			// wipe the index for the file first
 			deleteFile(context, sub.newChild(10));
 
+			boolean succeeded = true;
 			List<IFileStoreIndexingParticipant> indexers = getIndexParticipants(context);
 			if (!CollectionsUtil.isEmpty(indexers))
 			{
@@ -144,6 +161,7 @@ public class IndexBuildParticipant extends RequiredBuildParticipant
 						IdeLog.logError(BuildPathCorePlugin.getDefault(), MessageFormat.format(
 								"Failed to index file {0} with indexer {1}", context.getURI(), indexer.getClass() //$NON-NLS-1$
 										.getName()), e);
+						succeeded = false;
 					}
 
 					// stop indexing if it has been canceled
@@ -162,6 +180,12 @@ public class IndexBuildParticipant extends RequiredBuildParticipant
 							MessageFormat.format("No indexers available for file ''{0}''", context.getURI()), IDebugScopes.BUILDER_ADVANCED); //$NON-NLS-1$
 				}
 			}
+
+			// remember what was indexed, so reopening the workspace doesn't index the file again
+			if (succeeded && store != null && !sub.isCanceled())
+			{
+				fIndex.updateFingerprint(store, fingerprint);
+			}
 		}
 		finally
 		{
@@ -205,6 +229,24 @@ public class IndexBuildParticipant extends RequiredBuildParticipant
 		return project.getRawLocationURI();
 	}
 
+	protected IFileStore getFileStore(BuildContext context)
+	{
+		URI uri = context.getURI();
+		if (uri == null)
+		{
+			return null;
+		}
+		try
+		{
+			return EFS.getStore(uri);
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(BuildPathCorePlugin.getDefault(), e);
+			return null;
+		}
+	}
+
 	protected Index getIndex(IProject project)
 	{
 		if (project == null)
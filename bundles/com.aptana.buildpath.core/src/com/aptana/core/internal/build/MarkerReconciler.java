@@ -0,0 +1,263 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.internal.build;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
+
+import com.aptana.buildpath.core.BuildPathCorePlugin;
+import com.aptana.core.build.IProblem;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.CollectionsUtil;
+import com.aptana.core.util.ObjectUtil;
+
+/**
+ * Brings the markers of files in line with the problems found when building them. The problems of a type are matched
+ * against the existing markers of that type by offset, length, message and severity: matching markers are kept (their
+ * other attributes being updated if they changed), only the problems without a match get new markers and only the
+ * markers without a match are deleted.
+ * <p>
+ * Files are queued and their markers updated a batch of files at a time, in a single workspace operation, so that
+ * resource change listeners are notified once per batch rather than once per file.
+ */
+public class MarkerReconciler
+{
+	/**
+	 * The problems of each file waiting to be applied, by marker type.
+	 */
+	private final Map<IFile, Map<String, Collection<IProblem>>> fPending;
+	private final int fBatchSize;
+
+	private int fAdded;
+	private int fRemoved;
+	private int fKept;
+
+	/**
+	 * The attributes identifying a marker.
+	 */
+	private static class Key
+	{
+		private final Object start;
+		private final Object end;
+		private final Object message;
+		private final Object severity;
+
+		Key(Map<String, Object> attributes)
+		{
+			start = attributes.get(IMarker.CHAR_START);
+			end = attributes.get(IMarker.CHAR_END);
+			message = attributes.get(IMarker.MESSAGE);
+			severity = attributes.get(IMarker.SEVERITY);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key) obj;
+			return ObjectUtil.areEqual(start, other.start) && ObjectUtil.areEqual(end, other.end)
+					&& ObjectUtil.areEqual(message, other.message) && ObjectUtil.areEqual(severity, other.severity);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int hash = (start == null) ? 0 : start.hashCode();
+			hash = hash * 31 + ((end == null) ? 0 : end.hashCode());
+			hash = hash * 31 + ((message == null) ? 0 : message.hashCode());
+			return hash * 31 + ((severity == null) ? 0 : severity.hashCode());
+		}
+	}
+
+	/**
+	 * @param batchSize
+	 *            the number of files whose markers are updated together.
+	 */
+	public MarkerReconciler(int batchSize)
+	{
+		fPending = new LinkedHashMap<IFile, Map<String, Collection<IProblem>>>();
+		fBatchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Queues the problems of a file, updating the markers of the queued files if the batch is full. Marker types
+	 * without problems have their markers removed.
+	 * 
+	 * @param problemsByType
+	 *            the problems of the file by marker type.
+	 */
+	public synchronized void add(IFile file, Map<String, Collection<IProblem>> problemsByType,
+			IProgressMonitor monitor)
+	{
+		if (file == null || CollectionsUtil.isEmpty(problemsByType))
+		{
+			return;
+		}
+		fPending.put(file, problemsByType);
+		if (fPending.size() >= fBatchSize)
+		{
+			flush(monitor);
+		}
+	}
+
+	/**
+	 * Updates the markers of all the queued files.
+	 */
+	public synchronized void flush(IProgressMonitor monitor)
+	{
+		if (fPending.isEmpty())
+		{
+			return;
+		}
+		final Map<IFile, Map<String, Collection<IProblem>>> files;
+		files = new LinkedHashMap<IFile, Map<String, Collection<IProblem>>>(fPending);
+		fPending.clear();
+
+		ISchedulingRule rule = null;
+		for (IFile file : files.keySet())
+		{
+			rule = MultiRule.combine(rule, ResourcesPlugin.getWorkspace().getRuleFactory().markerRule(file));
+		}
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable()
+		{
+			public void run(IProgressMonitor monitor)
+			{
+				SubMonitor sub = SubMonitor.convert(monitor, files.size());
+				for (Map.Entry<IFile, Map<String, Collection<IProblem>>> entry : files.entrySet())
+				{
+					reconcile(entry.getKey(), entry.getValue());
+					sub.worked(1);
+				}
+				sub.done();
+			}
+		};
+
+		try
+		{
+			ResourcesPlugin.getWorkspace().run(runnable, rule, IWorkspace.AVOID_UPDATE, monitor);
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(BuildPathCorePlugin.getDefault(), Messages.MarkerReconciler_ErrorUpdatingMarkers, e);
+		}
+	}
+
+	private void reconcile(IFile file, Map<String, Collection<IProblem>> problemsByType)
+	{
+		if (!file.exists())
+		{
+			// no need to update the marker when the resource no longer exists
+			return;
+		}
+		for (Map.Entry<String, Collection<IProblem>> entry : problemsByType.entrySet())
+		{
+			try
+			{
+				reconcile(file, entry.getKey(), entry.getValue());
+			}
+			catch (CoreException e)
+			{
+				IdeLog.logError(BuildPathCorePlugin.getDefault(), e);
+			}
+		}
+	}
+
+	private void reconcile(IFile file, String markerType, Collection<IProblem> problems) throws CoreException
+	{
+		IMarker[] markers = file.findMarkers(markerType, false, IResource.DEPTH_INFINITE);
+		Map<Key, List<IMarker>> existing = new HashMap<Key, List<IMarker>>(markers.length * 2);
+		for (IMarker marker : markers)
+		{
+			Key key = new Key(marker.getAttributes());
+			List<IMarker> sameKey = existing.get(key);
+			if (sameKey == null)
+			{
+				sameKey = new ArrayList<IMarker>(1);
+				existing.put(key, sameKey);
+			}
+			sameKey.add(marker);
+		}
+
+		if (problems != null)
+		{
+			for (IProblem problem : problems)
+			{
+				Map<String, Object> attributes = problem.createMarkerAttributes();
+				List<IMarker> sameKey = existing.get(new Key(attributes));
+				if (CollectionsUtil.isEmpty(sameKey))
+				{
+					file.createMarker(markerType).setAttributes(attributes);
+					fAdded++;
+					continue;
+				}
+
+				IMarker marker = sameKey.remove(sameKey.size() - 1);
+				if (!attributes.equals(marker.getAttributes()))
+				{
+					marker.setAttributes(attributes);
+				}
+				fKept++;
+			}
+		}
+
+		// whatever wasn't matched is gone
+		List<IMarker> removed = new ArrayList<IMarker>();
+		for (List<IMarker> sameKey : existing.values())
+		{
+			removed.addAll(sameKey);
+		}
+		if (!removed.isEmpty())
+		{
+			ResourcesPlugin.getWorkspace().deleteMarkers(removed.toArray(new IMarker[removed.size()]));
+			fRemoved += removed.size();
+		}
+	}
+
+	/**
+	 * @return the number of markers created so far.
+	 */
+	public synchronized int getAddedCount()
+	{
+		return fAdded;
+	}
+
+	/**
+	 * @return the number of markers deleted so far.
+	 */
+	public synchronized int getRemovedCount()
+	{
+		return fRemoved;
+	}
+
+	/**
+	 * @return the number of existing markers which matched a problem so far.
+	 */
+	public synchronized int getKeptCount()
+	{
+		return fKept;
+	}
+}
@@ -0,0 +1,298 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.internal.build;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.aptana.buildpath.core.BuildPathCorePlugin;
+import com.aptana.core.logging.IdeLog;
+
+/**
+ * Matches problem messages against the filter expressions of a build participant (a message is filtered if any of the
+ * expressions matches all of it). Built once for a list of expressions and then safe to use from many threads without
+ * locking:
+ * <ul>
+ * <li>expressions which are really a literal (i.e.: ".*text.*", "text.*" or a quoted string) are checked with plain
+ * string comparisons</li>
+ * <li>the others are joined into a single pattern, so a message is matched once rather than once per expression</li>
+ * <li>the result for each message is remembered, as validators tend to report the same messages over and over</li>
+ * </ul>
+ * Invalid expressions are logged and ignored.
+ */
+public class MessageFilter
+{
+	/**
+	 * The number of messages remembered. The memo is emptied when it grows past this.
+	 */
+	private static final int MAX_MEMO_SIZE = 2048;
+
+	private static final String ANY = ".*"; //$NON-NLS-1$
+	private static final String QUOTE_START = "\\Q"; //$NON-NLS-1$
+	private static final String QUOTE_END = "\\E"; //$NON-NLS-1$
+	private static final String META_CHARACTERS = "\\^$.|?*+()[]{}"; //$NON-NLS-1$
+
+	/**
+	 * Expressions which can't be put in a group along with others: back references (whose group numbers would change),
+	 * unterminated quotes and comments (which would swallow the rest of the pattern).
+	 */
+	private static final Pattern UNSAFE_TO_JOIN = Pattern.compile("\\\\[0-9]|\\\\k<|\\\\Q|\\(\\?[a-zA-Z-]*x"); //$NON-NLS-1$
+
+	private final List<String> fExpressions;
+
+	private final Set<String> fEquals = new HashSet<String>();
+	private final List<String> fPrefixes = new ArrayList<String>();
+	private final List<String> fSuffixes = new ArrayList<String>();
+	private final List<String> fContains = new ArrayList<String>();
+
+	/**
+	 * The expressions which aren't literals.
+	 */
+	private final List<Pattern> fPatterns = new ArrayList<Pattern>();
+
+	/**
+	 * All the expressions, for messages spanning more than one line (in which case ".*" doesn't match everything, so
+	 * the literal checks can't be used).
+	 */
+	private final List<Pattern> fAllPatterns = new ArrayList<Pattern>();
+
+	private final Map<String, Boolean> fMemo = new ConcurrentHashMap<String, Boolean>();
+
+	public MessageFilter(List<String> expressions)
+	{
+		fExpressions = new ArrayList<String>(expressions);
+
+		List<String> joinable = new ArrayList<String>();
+		List<String> allJoinable = new ArrayList<String>();
+		for (String expression : fExpressions)
+		{
+			Pattern pattern;
+			try
+			{
+				pattern = Pattern.compile(expression);
+			}
+			catch (PatternSyntaxException e)
+			{
+				IdeLog.logError(BuildPathCorePlugin.getDefault(),
+						MessageFormat.format("Ignoring invalid filter expression ''{0}''", expression), e); //$NON-NLS-1$
+				continue;
+			}
+
+			boolean canJoin = !UNSAFE_TO_JOIN.matcher(expression).find();
+			if (canJoin)
+			{
+				allJoinable.add(expression);
+			}
+			else
+			{
+				fAllPatterns.add(pattern);
+			}
+
+			if (!addLiteral(expression))
+			{
+				if (canJoin)
+				{
+					joinable.add(expression);
+				}
+				else
+				{
+					fPatterns.add(pattern);
+				}
+			}
+		}
+		addJoined(joinable, fPatterns);
+		addJoined(allJoinable, fAllPatterns);
+	}
+
+	/**
+	 * @return true if the filter was built for those expressions.
+	 */
+	public boolean isFor(List<String> expressions)
+	{
+		return fExpressions.equals(expressions);
+	}
+
+	/**
+	 * @return true if any of the expressions matches the whole message.
+	 */
+	public boolean matches(String message)
+	{
+		if (message == null)
+		{
+			return false;
+		}
+		Boolean result = fMemo.get(message);
+		if (result == null)
+		{
+			result = doMatch(message);
+			if (fMemo.size() >= MAX_MEMO_SIZE)
+			{
+				fMemo.clear();
+			}
+			fMemo.put(message, result);
+		}
+		return result;
+	}
+
+	private boolean doMatch(String message)
+	{
+		if (isSingleLine(message))
+		{
+			if (fEquals.contains(message))
+			{
+				return true;
+			}
+			for (String prefix : fPrefixes)
+			{
+				if (message.startsWith(prefix))
+				{
+					return true;
+				}
+			}
+			for (String suffix : fSuffixes)
+			{
+				if (message.endsWith(suffix))
+				{
+					return true;
+				}
+			}
+			for (String text : fContains)
+			{
+				if (message.indexOf(text) != -1)
+				{
+					return true;
+				}
+			}
+			return matchesAny(fPatterns, message);
+		}
+		return matchesAny(fAllPatterns, message);
+	}
+
+	private static boolean matchesAny(List<Pattern> patterns, String message)
+	{
+		for (Pattern pattern : patterns)
+		{
+			if (pattern.matcher(message).matches())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Records the expression as a literal check if it's one.
+	 * 
+	 * @return false if the expression isn't a literal.
+	 */
+	private boolean addLiteral(String expression)
+	{
+		// a quoted string (i.e.: Pattern.quote)
+		if (expression.startsWith(QUOTE_START) && expression.endsWith(QUOTE_END)
+				&& expression.indexOf(QUOTE_END) == expression.length() - QUOTE_END.length())
+		{
+			fEquals.add(expression.substring(QUOTE_START.length(), expression.length() - QUOTE_END.length()));
+			return true;
+		}
+
+		boolean anyStart = expression.startsWith(ANY);
+		String text = anyStart ? expression.substring(ANY.length()) : expression;
+		boolean anyEnd = text.endsWith(ANY);
+		if (anyEnd)
+		{
+			text = text.substring(0, text.length() - ANY.length());
+		}
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (META_CHARACTERS.indexOf(text.charAt(i)) != -1)
+			{
+				return false;
+			}
+		}
+
+		if (anyStart && anyEnd)
+		{
+			fContains.add(text);
+		}
+		else if (anyStart)
+		{
+			fSuffixes.add(text);
+		}
+		else if (anyEnd)
+		{
+			fPrefixes.add(text);
+		}
+		else
+		{
+			fEquals.add(text);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a single pattern matching any of the expressions (or one per expression if they can't be joined).
+	 */
+	private static void addJoined(List<String> expressions, List<Pattern> patterns)
+	{
+		if (expressions.isEmpty())
+		{
+			return;
+		}
+		if (expressions.size() > 1)
+		{
+			StringBuilder joined = new StringBuilder();
+			for (String expression : expressions)
+			{
+				if (joined.length() > 0)
+				{
+					joined.append('|');
+				}
+				joined.append("(?:").append(expression).append(')'); //$NON-NLS-1$
+			}
+			try
+			{
+				patterns.add(Pattern.compile(joined.toString()));
+				return;
+			}
+			catch (PatternSyntaxException e)
+			{
+				// i.e.: the same named group in two of them
+			}
+		}
+		for (String expression : expressions)
+		{
+			patterns.add(Pattern.compile(expression));
+		}
+	}
+
+	private static boolean isSingleLine(String message)
+	{
+		for (int i = 0; i < message.length(); i++)
+		{
+			switch (message.charAt(i))
+			{
+				case '\n':
+				case '\r':
+				case '\u0085':
+				case '\u2028':
+				case '\u2029':
+					return false;
+				default:
+					break;
+			}
+		}
+		return true;
+	}
+}
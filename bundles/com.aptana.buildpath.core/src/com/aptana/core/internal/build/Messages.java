@@ -0,0 +1,27 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.internal.build;
+
+import org.eclipse.osgi.util.NLS;
+
+public class Messages extends NLS
+{
+	private static final String BUNDLE_NAME = "com.aptana.core.internal.build.messages"; //$NON-NLS-1$
+
+	public static String MarkerReconciler_ErrorUpdatingMarkers;
+
+	static
+	{
+		// initialize resource bundle
+		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
+	}
+
+	private Messages()
+	{
+	}
+}
@@ -7,6 +7,7 @@
  */
 package com.aptana.core.build;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -14,8 +15,9 @@ import org.eclipse.core.resources.IMarker;
 
 import com.aptana.core.util.ObjectUtil;
 
-public class Problem implements IProblem
+public class Problem implements IProblem, Serializable
 {
+	private static final long serialVersionUID = 1L;
 
 	private final int severity;
 	private final String message;
@@ -148,8 +148,27 @@ public abstract class ReapingObjectPool<T> implements IObjectPool<T>
 	 * @return
 	 */
 	public synchronized T checkOut()
+	{
+		return checkOut(null);
+	}
+
+	/**
+	 * Like {@link #checkOut()}, but hands out the given instance if it's available (i.e.: to give a caller the same
+	 * instance it had before).
+	 * 
+	 * @param preferred
+	 *            the instance to return if it's unlocked (may be null)
+	 * @return
+	 */
+	protected synchronized T checkOut(T preferred)
 	{
 		long now = System.currentTimeMillis();
+		if (preferred != null && unlocked.remove(preferred) != null)
+		{
+			locked.put(preferred, now);
+			return preferred;
+		}
+
 		for (T c : unlocked.keySet())
 		{
 			unlocked.remove(c);
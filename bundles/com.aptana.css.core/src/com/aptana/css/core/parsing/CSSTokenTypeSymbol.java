@@ -15,6 +15,7 @@ import beaver.Symbol;
  */
 public class CSSTokenTypeSymbol extends Symbol
 {
+	private static final long serialVersionUID = 1L;
 
 	public final CSSTokenType token;
 
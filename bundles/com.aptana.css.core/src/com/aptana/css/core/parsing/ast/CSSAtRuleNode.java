@@ -11,6 +11,8 @@ import com.aptana.core.util.StringUtil;
 
 public class CSSAtRuleNode extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private String fName;
 	private String fId;
 	private String fText;
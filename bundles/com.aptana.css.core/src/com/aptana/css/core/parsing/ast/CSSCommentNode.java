@@ -9,6 +9,8 @@ package com.aptana.css.core.parsing.ast;
 
 public class CSSCommentNode extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private String fText;
 
 	/**
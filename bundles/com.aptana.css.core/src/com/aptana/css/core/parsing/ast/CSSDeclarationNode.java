@@ -14,6 +14,8 @@ import com.aptana.parsing.lexer.Range;
 
 public class CSSDeclarationNode extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private final String fIdentifier;
 	private final String fStatus;
 	// Memory-optimization: only store start/end and create Range when needed.
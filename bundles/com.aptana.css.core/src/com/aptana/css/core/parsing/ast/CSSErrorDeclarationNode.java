@@ -9,6 +9,8 @@ package com.aptana.css.core.parsing.ast;
 
 public class CSSErrorDeclarationNode extends CSSDeclarationNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * CSSErrorDeclarationNode
 	 */
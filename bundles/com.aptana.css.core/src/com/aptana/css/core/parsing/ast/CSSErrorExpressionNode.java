@@ -10,6 +10,8 @@ package com.aptana.css.core.parsing.ast;
 
 public class CSSErrorExpressionNode extends CSSExpressionNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * CSSErrorExpressionNode
 	 */
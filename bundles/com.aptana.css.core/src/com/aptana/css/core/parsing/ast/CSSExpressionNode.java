@@ -10,6 +10,8 @@ package com.aptana.css.core.parsing.ast;
 
 public abstract class CSSExpressionNode extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * CSSExpressionNode
 	 */
@@ -11,6 +11,8 @@ import java.util.Arrays;
 
 public class CSSImportNode extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private String fUriStr;
 	private CSSTextNode[] fMediaList;
 
@@ -14,6 +14,8 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class CSSMediaNode extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private static final String MEDIA = "@media"; //$NON-NLS-1$
 
 	private CSSTextNode[] fMedias;
@@ -15,6 +15,8 @@ import java.util.List;
 // TODO Fix the grammar rule to only accept declarations of width and height
 public class CSSMsViewPort extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private static final String MS_VIEWPORT = "@-ms-viewport "; //$NON-NLS-1$
 	private static final CSSDeclarationNode[] NO_DECLARATIONS = new CSSDeclarationNode[0];
 
@@ -10,6 +10,8 @@ package com.aptana.css.core.parsing.ast;
 
 public class CSSNamespaceNode extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private String fPrefix;
 	private String fUriStr;
 
@@ -14,6 +14,7 @@ import com.aptana.parsing.ast.ParseRootNode;
 
 public abstract class CSSNode extends ParseNode
 {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * CSSNode
@@ -14,6 +14,7 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class CSSPageNode extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private static final String PAGE = "@page"; //$NON-NLS-1$
 
@@ -14,6 +14,8 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class CSSRuleNode extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private static final CSSDeclarationNode[] NO_DECLARATIONS = new CSSDeclarationNode[0];
 
 	private CSSSelectorNode[] fSelectors;
@@ -14,6 +14,7 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class CSSSimpleSelectorNode extends CSSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private static final CSSAttributeSelectorNode[] NO_ATTRIBUTE_SELECTORS = new CSSAttributeSelectorNode[0];
 
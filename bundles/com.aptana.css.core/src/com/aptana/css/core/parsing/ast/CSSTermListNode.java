@@ -9,6 +9,8 @@ package com.aptana.css.core.parsing.ast;
 
 public class CSSTermListNode extends CSSExpressionNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private String fSeparator;
 
 	/**
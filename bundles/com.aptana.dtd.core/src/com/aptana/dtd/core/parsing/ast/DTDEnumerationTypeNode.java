@@ -9,6 +9,8 @@ package com.aptana.dtd.core.parsing.ast;
 
 public class DTDEnumerationTypeNode extends DTDNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * DTDEnumerationTypeNode
 	 */
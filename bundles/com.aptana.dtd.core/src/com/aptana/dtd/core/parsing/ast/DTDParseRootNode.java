@@ -14,6 +14,8 @@ import com.aptana.parsing.ast.ParseRootNode;
 
 public class DTDParseRootNode extends ParseRootNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * DTDParseRootNode
 	 */
@@ -41,6 +41,7 @@ import org.eclipse.ui.texteditor.IDocumentProvider;
 
 import com.aptana.core.util.StringUtil;
 import com.aptana.editor.common.preferences.IPreferenceConstants;
+import com.aptana.editor.common.text.WordOccurrenceIndex;
 
 /**
  * CommonOccurrenceUpdater
@@ -121,67 +122,28 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 
 	private class FindOccurrencesJob extends Job {
 		private IDocument document;
-		private ITextSelection selection;
+		private String word;
+		private WordOccurrenceIndex index;
 		private IAnnotationModel model;
 
-		public FindOccurrencesJob(IDocument document, ITextSelection selection, IAnnotationModel model) {
-			super(Messages.CommonOccurrencesUpdater_Mark_Word_Occurrences);
-
-			this.document = document;
-			this.selection = selection;
-			this.model = model;
-		}
-
 		/**
-		 * getWord
+		 * FindOccurrencesJob
 		 * 
-		 * @return
+		 * @param document
+		 * @param word
+		 *            the word to mark, null if there's none
+		 * @param index
+		 *            the index to look the occurrences of the word up in, null if the document has to be searched for
+		 *            them
+		 * @param model
 		 */
-		protected String getWord() {
-			String result = null;
-
-			try {
-				int offset = selection.getOffset();
-				int length = document.getLength();
-				int start = offset;
-
-				// find starting character, if we're on a valid character already
-				if (Character.isUnicodeIdentifierPart(document.getChar(offset))) {
-					while (offset >= 0) {
-						char c = document.getChar(offset);
-
-						if (Character.isUnicodeIdentifierPart(c)) {
-							start = offset;
-							offset--;
-						} else {
-							break;
-						}
-					}
-				}
-
-				// find ending character, if we're on a valid character already
-				offset = selection.getOffset() + selection.getLength();
-
-				if (Character.isUnicodeIdentifierPart(document.getChar(offset - 1))) {
-					while (offset < length) {
-						char c = document.getChar(offset);
-
-						if (Character.isUnicodeIdentifierPart(c)) {
-							offset++;
-						} else {
-							break;
-						}
-					}
-				}
-
-				// grab result, as long as it is on one line only
-				if (document.getLineOfOffset(start) == document.getLineOfOffset(offset)) {
-					result = document.get(start, offset - start);
-				}
-			} catch (BadLocationException e) {
-			}
+		public FindOccurrencesJob(IDocument document, String word, WordOccurrenceIndex index, IAnnotationModel model) {
+			super(Messages.CommonOccurrencesUpdater_Mark_Word_Occurrences);
 
-			return (result != null) ? result.trim() : result;
+			this.document = document;
+			this.word = word;
+			this.index = index;
+			this.model = model;
 		}
 
 		/*
@@ -195,11 +157,27 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			// start with an empty map in case we need to delete existing markers later
 			Map<Annotation, Position> annotationMap = new HashMap<Annotation, Position>();
 
-			if (editor.isMarkingOccurrences()) {
-				// find a "word" to search using the current selection
-				String word = getWord();
+			if (word != null && word.length() > 0) {
+				if (index != null) {
+					// built on the first lookup, and brought up to date with the edits made since the last one
+					int[] offsets = index.getOccurrences(document, word);
+					if (offsets == null) {
+						// the document is being changed, which cancels this job anyway
+						return Status.CANCEL_STATUS;
+					}
+					int length = word.length();
+
+					for (int start : offsets) {
+						if (monitor.isCanceled()) {
+							status = Status.CANCEL_STATUS;
+							break;
+						}
 
-				if (word != null && word.length() > 0) {
+						// @formatter:off
+						annotationMap.put(new Annotation(ANNOTION_ID, false, ANNOTION_DESCRIPTION), new Position(start, length));
+						// @formatter:on
+					}
+				} else {
 					String source = document.get();
 					Pattern wordPattern = createWordPattern(word);
 					Matcher matcher = wordPattern.matcher(source);
@@ -387,6 +365,60 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		return editor.getISourceViewer();
 	}
 
+	/**
+	 * getWord
+	 * 
+	 * @param document
+	 * @param selection
+	 * @return
+	 */
+	protected String getWord(IDocument document, ITextSelection selection) {
+		String result = null;
+
+		try {
+			int offset = selection.getOffset();
+			int length = document.getLength();
+			int start = offset;
+
+			// find starting character, if we're on a valid character already
+			if (Character.isUnicodeIdentifierPart(document.getChar(offset))) {
+				while (offset >= 0) {
+					char c = document.getChar(offset);
+
+					if (Character.isUnicodeIdentifierPart(c)) {
+						start = offset;
+						offset--;
+					} else {
+						break;
+					}
+				}
+			}
+
+			// find ending character, if we're on a valid character already
+			offset = selection.getOffset() + selection.getLength();
+
+			if (Character.isUnicodeIdentifierPart(document.getChar(offset - 1))) {
+				while (offset < length) {
+					char c = document.getChar(offset);
+
+					if (Character.isUnicodeIdentifierPart(c)) {
+						offset++;
+					} else {
+						break;
+					}
+				}
+			}
+
+			// grab result, as long as it is on one line only
+			if (document.getLineOfOffset(start) == document.getLineOfOffset(offset)) {
+				result = document.get(start, offset - start);
+			}
+		} catch (BadLocationException e) {
+		}
+
+		return (result != null) ? result.trim() : result;
+	}
+
 	/**
 	 * initialize
 	 * 
@@ -490,7 +522,21 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			IAnnotationModel annotationModel = getAnnotationModel();
 
 			if (document != null && annotationModel != null) {
-				findOccurrencesJob = new FindOccurrencesJob(document, textSelection, annotationModel);
+				String word = null;
+				WordOccurrenceIndex index = null;
+
+				if (editor.isMarkingOccurrences()) {
+					// find a "word" to search using the current selection
+					word = getWord(document, textSelection);
+
+					// single words are looked up in the index of the document (by the job). The index follows the
+					// changes of the document, so it's registered here, on the UI thread
+					if (WordOccurrenceIndex.isWord(word)) {
+						index = WordOccurrenceIndex.getIndex(document);
+					}
+				}
+
+				findOccurrencesJob = new FindOccurrencesJob(document, word, index, annotationModel);
 				findOccurrencesJob.schedule();
 			}
 		}
@@ -21,6 +21,8 @@ public interface ICommonConstants
 	/**
 	 * The position category used to manage positions for scopes. We sadd/remove TypedPositions under this category to
 	 * query and update the scopes in the file.
+	 * 
+	 * @deprecated The scopes are now kept in a {@link com.aptana.editor.common.text.rules.ScopeRunMap}.
 	 */
 	public String SCOPE_CATEGORY = "scopes"; //$NON-NLS-1$
 
@@ -124,7 +124,7 @@ public abstract class AbstractFlexTokenScanner implements ITokenScanner
 				symbol = fLookAheadQueue.poll();
 				if (symbol == null)
 				{
-					symbol = fScanner.nextToken();
+					symbol = nextSymbol();
 				}
 				// Emulate whitespace token creation.
 				if (symbol.getStart() > fLastSymbol.getEnd() + 1)
@@ -157,6 +157,15 @@ public abstract class AbstractFlexTokenScanner implements ITokenScanner
 		}
 	}
 
+	/**
+	 * @return the next symbol of the range (subclasses may override to take the symbols from somewhere else than the
+	 *         scanner).
+	 */
+	protected Symbol nextSymbol() throws IOException, beaver.Scanner.Exception
+	{
+		return fScanner.nextToken();
+	}
+
 	/**
 	 * @return the whitespace token to be used (i.e.: css may change it to use the proper context).
 	 */
@@ -194,7 +203,7 @@ public abstract class AbstractFlexTokenScanner implements ITokenScanner
 		Symbol nextToken;
 		if (tempQueue == null)
 		{
-			nextToken = fScanner.nextToken();
+			nextToken = nextSymbol();
 			fLookAheadQueue.add(nextToken);
 			return nextToken;
 		}
@@ -204,7 +213,7 @@ public abstract class AbstractFlexTokenScanner implements ITokenScanner
 		{
 			return nextToken;
 		}
-		nextToken = fScanner.nextToken();
+		nextToken = nextSymbol();
 		fLookAheadQueue.add(nextToken);
 		return nextToken;
 	}
@@ -0,0 +1,456 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.text;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+
+/**
+ * The offsets of all the words (runs of unicode identifier characters) of a document, by word, so that marking the
+ * occurrences of the word under the caret doesn't have to search the whole document each time the caret moves.
+ * <p>
+ * The index is built the first time it's looked up and edits are applied lazily: the range modified since the last
+ * lookup (extended to the words it touches) is scanned again, and recorded as an edit which drops the occurrences in
+ * it and moves the ones after it. The edits are only applied to the occurrences of a word when it's looked up or found
+ * again, so a lookup after an edit doesn't go through all the words of the document (a short log of the edits is kept,
+ * which is applied to all the words once in a while).
+ * <p>
+ * Edits are only recorded on the thread changing the document, so lookups are meant to be done in the background
+ * (i.e.: by a job) while the index is registered on the thread changing the document (see
+ * {@link #getIndex(IDocument)}). The thread changing the document only takes a lock guarding the range modified, never
+ * the one held while the words are scanned or updated. The text is only read while the document isn't being changed,
+ * and a lookup made while the document is being changed returns null rather than waiting for it.
+ */
+public class WordOccurrenceIndex implements IDocumentListener
+{
+	// @formatter:off
+	private static final Map<IDocument, WordOccurrenceIndex> INDEXES =
+		new WeakHashMap<IDocument, WordOccurrenceIndex>();
+	// @formatter:on
+	private static final int[] NO_OCCURRENCES = new int[0];
+
+	/**
+	 * The number of edits kept in the log before they're applied to all the words.
+	 */
+	private static final int MAX_EDITS = 32;
+
+	/**
+	 * A range scanned again: the occurrences starting in it are dropped and the ones after it are moved.
+	 */
+	private static class Edit
+	{
+		final int start;
+		final int oldEnd;
+		final int shift;
+
+		Edit(int start, int oldEnd, int shift)
+		{
+			this.start = start;
+			this.oldEnd = oldEnd;
+			this.shift = shift;
+		}
+	}
+
+	/**
+	 * The sorted start offsets of a word, as of a given number of edits.
+	 */
+	private static class Occurrences
+	{
+		int[] starts = new int[4];
+		int count;
+
+		/**
+		 * The number of edits applied to the offsets.
+		 */
+		int edits;
+
+		Occurrences(int edits)
+		{
+			this.edits = edits;
+		}
+
+		void add(int start)
+		{
+			if (count == starts.length)
+			{
+				int[] newStarts = new int[count * 2];
+				System.arraycopy(starts, 0, newStarts, 0, count);
+				starts = newStarts;
+			}
+
+			// words are mostly added in order
+			int index = count;
+			if (count > 0 && starts[count - 1] > start)
+			{
+				index = indexOf(start);
+				System.arraycopy(starts, index, starts, index + 1, count - index);
+			}
+			starts[index] = start;
+			count++;
+		}
+
+		void apply(Edit edit)
+		{
+			int i = indexOf(edit.start);
+			int newCount = i;
+			for (; i < count; i++)
+			{
+				if (starts[i] >= edit.oldEnd)
+				{
+					starts[newCount++] = starts[i] + edit.shift;
+				}
+			}
+			count = newCount;
+		}
+
+		/**
+		 * @return the index of the first offset which isn't before the given one.
+		 */
+		private int indexOf(int start)
+		{
+			int low = 0;
+			int high = count;
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if (starts[middle] < start)
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * Guards the words and the edits. Only taken by lookups.
+	 */
+	private final Object fWordsLock = new Object();
+
+	/**
+	 * The occurrences of each word, null until the index is built.
+	 */
+	private Map<String, Occurrences> fWords;
+
+	/**
+	 * The edits not applied to all the words yet, the first one being edit number fFirstEdit.
+	 */
+	private final List<Edit> fEdits = new ArrayList<Edit>();
+	private int fFirstEdit;
+
+	/**
+	 * True once the index is built, or being built, so that the changes of the document are recorded. Access should be
+	 * synchronized on this (as for all the fields below).
+	 */
+	private boolean fTracking;
+
+	/**
+	 * True between the notifications before and after a change of the document, while its text can't be read.
+	 */
+	private boolean fChanging;
+
+	/**
+	 * The range modified since the last lookup (in current offsets). The text before fDirtyStart didn't change and the
+	 * text after fDirtyEnd is the old text after (fDirtyEnd - fShift).
+	 */
+	private boolean fDirty;
+	private int fDirtyStart;
+	private int fDirtyEnd;
+	private int fShift;
+
+	WordOccurrenceIndex()
+	{
+	}
+
+	/**
+	 * Returns the index of a document, creating it (and registering it to follow the changes of the document) the
+	 * first time it's asked for. Cheap: the index is only built on its first lookup. Should be called on the thread
+	 * changing the document, so that no change is half seen.
+	 */
+	public static WordOccurrenceIndex getIndex(IDocument document)
+	{
+		synchronized (INDEXES)
+		{
+			WordOccurrenceIndex index = INDEXES.get(document);
+			if (index == null)
+			{
+				index = new WordOccurrenceIndex();
+				document.addDocumentListener(index);
+				INDEXES.put(document, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * @return true if the text is a single word, as kept in the index.
+	 */
+	public static boolean isWord(String text)
+	{
+		if (text == null || text.length() == 0)
+		{
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (!Character.isUnicodeIdentifierPart(text.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the sorted start offsets of the occurrences of the word in the document, or null if the document is being
+	 *         changed, in which case another lookup should be made once it's done.
+	 */
+	public int[] getOccurrences(IDocument document, String word)
+	{
+		synchronized (fWordsLock)
+		{
+			if (!build(document) || !update(document))
+			{
+				return null;
+			}
+
+			Occurrences occurrences = getUpdatedOccurrences(word, false);
+			if (occurrences == null)
+			{
+				return NO_OCCURRENCES;
+			}
+			int[] result = new int[occurrences.count];
+			System.arraycopy(occurrences.starts, 0, result, 0, occurrences.count);
+			return result;
+		}
+	}
+
+	/**
+	 * Builds the index if it doesn't exist yet. The text is scanned without holding the lock the thread changing the
+	 * document needs. Must be called with the lock on fWordsLock.
+	 * 
+	 * @return false if the index couldn't be built now.
+	 */
+	private boolean build(IDocument document)
+	{
+		if (fWords != null)
+		{
+			return true;
+		}
+
+		String text;
+		synchronized (this)
+		{
+			if (fChanging)
+			{
+				return false;
+			}
+			text = document.get();
+			fTracking = true;
+			fDirty = false;
+		}
+
+		// the edits made meanwhile are recorded, and applied on the update following
+		fWords = new HashMap<String, Occurrences>();
+		fEdits.clear();
+		fFirstEdit = 0;
+		addWords(text, 0);
+		return true;
+	}
+
+	/**
+	 * Brings the index up to date with the document, recording the range modified since the last lookup as an edit
+	 * and scanning it again. Must be called with the lock on fWordsLock.
+	 * 
+	 * @return false if the document is being changed (or the index couldn't be updated).
+	 */
+	private boolean update(IDocument document)
+	{
+		Edit edit;
+		String text;
+		synchronized (this)
+		{
+			if (fChanging)
+			{
+				return false;
+			}
+			if (!fDirty)
+			{
+				return true;
+			}
+			fDirty = false;
+
+			// extend the range to the words touching it (as the text around it may have been joined to them)
+			try
+			{
+				int start = fDirtyStart;
+				while (start > 0 && Character.isUnicodeIdentifierPart(document.getChar(start - 1)))
+				{
+					start--;
+				}
+				int end = fDirtyEnd;
+				int length = document.getLength();
+				while (end < length && Character.isUnicodeIdentifierPart(document.getChar(end)))
+				{
+					end++;
+				}
+				text = document.get(start, end - start);
+				edit = new Edit(start, end - fShift, fShift);
+			}
+			catch (BadLocationException e)
+			{
+				// out of sync with the document, build the whole index again on the next lookup
+				fWords = null;
+				return false;
+			}
+		}
+
+		if (fEdits.size() == MAX_EDITS)
+		{
+			applyEdits();
+		}
+		fEdits.add(edit);
+		addWords(text, edit.start);
+		return true;
+	}
+
+	/**
+	 * Applies the edits of the log to all the words, and clears it.
+	 */
+	private void applyEdits()
+	{
+		Iterator<Map.Entry<String, Occurrences>> iterator = fWords.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Occurrences occurrences = iterator.next().getValue();
+			applyEdits(occurrences);
+			if (occurrences.count == 0)
+			{
+				iterator.remove();
+			}
+		}
+		fFirstEdit += fEdits.size();
+		fEdits.clear();
+	}
+
+	private void applyEdits(Occurrences occurrences)
+	{
+		int edits = fFirstEdit + fEdits.size();
+		for (int i = occurrences.edits; i < edits; i++)
+		{
+			occurrences.apply(fEdits.get(i - fFirstEdit));
+		}
+		occurrences.edits = edits;
+	}
+
+	/**
+	 * @return the occurrences of the word with all the edits applied, null if there's none and they're not to be
+	 *         created.
+	 */
+	private Occurrences getUpdatedOccurrences(String word, boolean create)
+	{
+		Occurrences occurrences = fWords.get(word);
+		if (occurrences == null)
+		{
+			if (create)
+			{
+				occurrences = new Occurrences(fFirstEdit + fEdits.size());
+				fWords.put(word, occurrences);
+			}
+			return occurrences;
+		}
+		applyEdits(occurrences);
+		return occurrences;
+	}
+
+	private void addWords(String text, int offset)
+	{
+		int length = text.length();
+		int i = 0;
+		while (i < length)
+		{
+			if (!Character.isUnicodeIdentifierPart(text.charAt(i)))
+			{
+				i++;
+				continue;
+			}
+			int start = i;
+			while (i < length && Character.isUnicodeIdentifierPart(text.charAt(i)))
+			{
+				i++;
+			}
+			getUpdatedOccurrences(text.substring(start, i), true).add(offset + start);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentAboutToBeChanged(DocumentEvent event)
+	{
+		fChanging = true;
+		if (!fTracking)
+		{
+			return;
+		}
+
+		int offset = event.getOffset();
+		int removed = event.getLength();
+		int inserted = (event.getText() == null) ? 0 : event.getText().length();
+		if (!fDirty)
+		{
+			fDirty = true;
+			fDirtyStart = offset;
+			fDirtyEnd = offset + inserted;
+			fShift = inserted - removed;
+			return;
+		}
+
+		// merge with the previous edits
+		int dirtyEnd;
+		if (fDirtyEnd <= offset)
+		{
+			dirtyEnd = fDirtyEnd;
+		}
+		else if (fDirtyEnd >= offset + removed)
+		{
+			dirtyEnd = fDirtyEnd + inserted - removed;
+		}
+		else
+		{
+			dirtyEnd = offset + inserted;
+		}
+		fDirtyStart = Math.min(fDirtyStart, offset);
+		fDirtyEnd = Math.max(dirtyEnd, offset + inserted);
+		fShift += inserted - removed;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentChanged(DocumentEvent event)
+	{
+		// the edit was recorded before the change, it's applied when the index is looked up
+		fChanging = false;
+	}
+}
@@ -0,0 +1,269 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.text.rules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IPositionUpdater;
+
+/**
+ * The token level scopes of a document, as found when coloring it. Scopes are kept as runs (start, end and an id for
+ * the scope string, shared by all the documents) in a single int array sorted by offset, so that finding the scope at
+ * an offset is a binary search. The runs are moved along with the text as the document changes (as the document does
+ * with its positions) until the repairers color the modified range again.
+ */
+public class ScopeRunMap implements IPositionUpdater
+{
+	private static final Map<IDocument, ScopeRunMap> MAPS = new WeakHashMap<IDocument, ScopeRunMap>();
+
+	/**
+	 * The interned scopes (the id of a scope is its index). Access should be synchronized on SCOPE_IDS.
+	 */
+	private static final Map<String, Integer> SCOPE_IDS = new HashMap<String, Integer>();
+	private static final List<String> SCOPES = new ArrayList<String>();
+
+	/**
+	 * The number of ints used for each run: start, end (exclusive) and scope id.
+	 */
+	static final int RUN_SIZE = 3;
+
+	private int[] fRuns = new int[RUN_SIZE * 16];
+	private int fCount;
+
+	ScopeRunMap()
+	{
+	}
+
+	/**
+	 * Returns the scope map of a document, creating it (and registering it to be updated along with the document) the
+	 * first time it's asked for.
+	 */
+	public static ScopeRunMap getScopeMap(IDocument document)
+	{
+		synchronized (MAPS)
+		{
+			ScopeRunMap map = MAPS.get(document);
+			if (map == null)
+			{
+				map = new ScopeRunMap();
+				document.addPositionUpdater(map);
+				MAPS.put(document, map);
+			}
+			return map;
+		}
+	}
+
+	/**
+	 * @return the token level scope at the offset of the document or null if there's none (i.e.: the document wasn't
+	 *         colored).
+	 */
+	public static String getScope(IDocument document, int offset)
+	{
+		ScopeRunMap map;
+		synchronized (MAPS)
+		{
+			map = MAPS.get(document);
+		}
+		return (map == null) ? null : map.getScope(offset);
+	}
+
+	/**
+	 * @return the id used for the scope in the runs.
+	 */
+	static int getScopeId(String scope)
+	{
+		synchronized (SCOPE_IDS)
+		{
+			Integer id = SCOPE_IDS.get(scope);
+			if (id == null)
+			{
+				id = SCOPES.size();
+				SCOPES.add(scope);
+				SCOPE_IDS.put(scope, id);
+			}
+			return id;
+		}
+	}
+
+	private static String getScopeFromId(int id)
+	{
+		synchronized (SCOPE_IDS)
+		{
+			return SCOPES.get(id);
+		}
+	}
+
+	/**
+	 * @return the scope of the run containing the offset or null if there's none.
+	 */
+	public synchronized String getScope(int offset)
+	{
+		int index = getRunIndex(offset);
+		if (index < fCount && fRuns[index * RUN_SIZE] <= offset)
+		{
+			return getScopeFromId(fRuns[index * RUN_SIZE + 2]);
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of runs (for testing purposes).
+	 */
+	synchronized int getRunCount()
+	{
+		return fCount;
+	}
+
+	/**
+	 * Replaces the runs in the given range with new ones (runs crossing the bounds of the range are cut there).
+	 * 
+	 * @param runs
+	 *            the new runs: start, end (exclusive) and scope id (see {@link #getScopeId(String)}) of each one,
+	 *            sorted by offset and inside the range.
+	 * @param runCount
+	 *            the number of runs in the array.
+	 */
+	public synchronized void replace(int offset, int length, int[] runs, int runCount)
+	{
+		int end = offset + length;
+		int first = getRunIndex(offset);
+		int last = first;
+		while (last < fCount && fRuns[last * RUN_SIZE] < end)
+		{
+			last++;
+		}
+
+		// keep the parts of the runs crossing the bounds
+		boolean keepHead = first < last && fRuns[first * RUN_SIZE] < offset;
+		boolean keepTail = first < last && fRuns[(last - 1) * RUN_SIZE + 1] > end;
+		int headStart = keepHead ? fRuns[first * RUN_SIZE] : 0;
+		int headScope = keepHead ? fRuns[first * RUN_SIZE + 2] : 0;
+		int tailEnd = keepTail ? fRuns[(last - 1) * RUN_SIZE + 1] : 0;
+		int tailScope = keepTail ? fRuns[(last - 1) * RUN_SIZE + 2] : 0;
+
+		int newCount = runCount + (keepHead ? 1 : 0) + (keepTail ? 1 : 0);
+		int count = fCount - (last - first) + newCount;
+		int[] result = fRuns;
+		if (count * RUN_SIZE > result.length)
+		{
+			result = new int[Math.max(count, fCount * 3 / 2) * RUN_SIZE];
+			System.arraycopy(fRuns, 0, result, 0, first * RUN_SIZE);
+		}
+		System.arraycopy(fRuns, last * RUN_SIZE, result, (first + newCount) * RUN_SIZE, (fCount - last) * RUN_SIZE);
+
+		int index = first * RUN_SIZE;
+		if (keepHead)
+		{
+			result[index++] = headStart;
+			result[index++] = offset;
+			result[index++] = headScope;
+		}
+		System.arraycopy(runs, 0, result, index, runCount * RUN_SIZE);
+		index += runCount * RUN_SIZE;
+		if (keepTail)
+		{
+			result[index++] = end;
+			result[index++] = tailEnd;
+			result[index++] = tailScope;
+		}
+		fRuns = result;
+		fCount = count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IPositionUpdater#update(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void update(DocumentEvent event)
+	{
+		int offset = event.getOffset();
+		int removedEnd = offset + event.getLength();
+		int inserted = (event.getText() == null) ? 0 : event.getText().length();
+		int delta = inserted - event.getLength();
+
+		// Runs before the change stay as they are, the ones after it are moved. Runs around it grow or shrink with the
+		// text (but text inserted at the start of a run isn't added to it)
+		int first = getRunIndex(offset);
+		int removed = 0;
+		for (int i = first; i < fCount; i++)
+		{
+			int index = i * RUN_SIZE;
+			int start = fRuns[index];
+			int end = fRuns[index + 1];
+			if (start >= removedEnd)
+			{
+				start += delta;
+			}
+			else if (start >= offset)
+			{
+				start = offset + inserted;
+			}
+			if (end > removedEnd)
+			{
+				end += delta;
+			}
+			else if (end > offset)
+			{
+				end = offset;
+			}
+
+			if (start < end)
+			{
+				fRuns[index] = start;
+				fRuns[index + 1] = end;
+			}
+			else
+			{
+				// the whole run was removed
+				fRuns[index] = -1;
+				removed++;
+			}
+		}
+		if (removed > 0)
+		{
+			int target = first;
+			for (int i = target; i < fCount; i++)
+			{
+				if (fRuns[i * RUN_SIZE] != -1)
+				{
+					System.arraycopy(fRuns, i * RUN_SIZE, fRuns, target * RUN_SIZE, RUN_SIZE);
+					target++;
+				}
+			}
+			fCount = target;
+		}
+	}
+
+	/**
+	 * @return the index of the first run ending after the offset.
+	 */
+	private int getRunIndex(int offset)
+	{
+		int low = 0;
+		int high = fCount;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (fRuns[middle * RUN_SIZE + 1] <= offset)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
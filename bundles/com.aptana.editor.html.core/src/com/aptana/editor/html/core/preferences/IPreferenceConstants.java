@@ -48,4 +48,15 @@ public interface IPreferenceConstants
 	 * Default value for {@link #HTML_REMOTE_HREF_PROPOSALS}
 	 */
 	boolean DEFAULT_REMOTE_HREF_PROPOSALS_VALUE = true;
+
+	/**
+	 * The preference key used to set whether the script and style blocks (and attributes) of a page are parsed in
+	 * parallel while the HTML is scanned.
+	 */
+	String HTML_PARALLEL_EMBEDDED_PARSING = "HTML_PARALLEL_EMBEDDED_PARSING"; //$NON-NLS-1$
+
+	/**
+	 * Default value for {@link #HTML_PARALLEL_EMBEDDED_PARSING}
+	 */
+	boolean DEFAULT_PARALLEL_EMBEDDED_PARSING_VALUE = true;
 }
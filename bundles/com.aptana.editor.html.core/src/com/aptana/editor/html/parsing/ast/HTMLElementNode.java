@@ -30,6 +30,7 @@ import com.aptana.parsing.lexer.IRange;
 
 public class HTMLElementNode extends HTMLNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private static final String ID = "id"; //$NON-NLS-1$
 	private static final String CLASS = "class"; //$NON-NLS-1$
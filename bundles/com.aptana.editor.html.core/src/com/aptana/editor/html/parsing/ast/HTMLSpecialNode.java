@@ -13,6 +13,7 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class HTMLSpecialNode extends HTMLElementNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public HTMLSpecialNode(Symbol tag, IParseNode[] children, int start, int end)
 	{
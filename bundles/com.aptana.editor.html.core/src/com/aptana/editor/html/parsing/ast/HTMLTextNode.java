@@ -9,6 +9,7 @@ package com.aptana.editor.html.parsing.ast;
 
 public class HTMLTextNode extends HTMLNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private String fText;
 
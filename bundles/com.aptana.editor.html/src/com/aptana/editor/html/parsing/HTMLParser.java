@@ -15,10 +15,20 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.jface.text.rules.ITokenScanner;
 
 import beaver.Scanner.Exception;
@@ -28,7 +38,9 @@ import com.aptana.core.util.StringUtil;
 import com.aptana.css.core.ICSSConstants;
 import com.aptana.css.core.parsing.ast.CSSDeclarationNode;
 import com.aptana.css.core.parsing.ast.CSSRuleNode;
+import com.aptana.editor.html.HTMLPlugin;
 import com.aptana.editor.html.core.IHTMLConstants;
+import com.aptana.editor.html.core.preferences.IPreferenceConstants;
 import com.aptana.editor.html.parsing.ast.HTMLCommentNode;
 import com.aptana.editor.html.parsing.ast.HTMLElementNode;
 import com.aptana.editor.html.parsing.ast.HTMLNode;
@@ -79,6 +91,62 @@ public class HTMLParser extends AbstractParser
 	private boolean previousSymbolSkipped;
 	private WorkingParseResult fWorkingParseResult;
 
+	/**
+	 * Runs the embedded parses when parsing them in parallel. Idle threads go away after a while, and the parses which
+	 * find no free thread are run by the HTML parser itself once it's done with the scan.
+	 */
+	private static final ExecutorService EMBEDDED_PARSER_POOL = new ThreadPoolExecutor(0, Runtime.getRuntime()
+			.availableProcessors(), 30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory()
+	{
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "HTML Embedded Parser " + count.incrementAndGet()); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}, new ThreadPoolExecutor.DiscardPolicy());
+
+	/**
+	 * Whether to parse the embedded languages in parallel (null to follow the preference).
+	 */
+	private Boolean fParallelEmbeddedParsing;
+
+	/**
+	 * The embedded parses still running, in the order they were found (null when parsing them sequentially).
+	 */
+	private List<EmbeddedParse> fEmbeddedParses;
+
+	/**
+	 * The parse of a region in another language (a script or style block, or a style or event attribute). When parsing
+	 * sequentially it's run and attached right away; otherwise it runs on {@link #EMBEDDED_PARSER_POOL} while the HTML
+	 * scan goes on, and its result is attached once the scan is done, so that the tree is the same either way.
+	 */
+	private static abstract class EmbeddedParse extends FutureTask<ParseResult>
+	{
+		/**
+		 * Where the errors of this parse go in the list of errors (the number of errors found before it).
+		 */
+		private int fErrorIndex;
+
+		EmbeddedParse(final String language, final IParseState parseState)
+		{
+			super(new Callable<ParseResult>()
+			{
+				public ParseResult call() throws java.lang.Exception
+				{
+					return ParserPoolFactory.parse(language, parseState);
+				}
+			});
+		}
+
+		/**
+		 * Adds the result of the parse to the tree, and its errors (if any) to the given list.
+		 */
+		abstract void attach(ParseResult result, List<IParseError> errors);
+	}
+
 	/**
 	 * parse
 	 */
@@ -89,6 +157,7 @@ public class HTMLParser extends AbstractParser
 		fElementStack = new Stack<IParseNode>();
 		fCommentNodes = new ArrayList<IParseNode>();
 		fWorkingParseResult = working;
+		fEmbeddedParses = isParallelEmbeddedParsing() ? new ArrayList<EmbeddedParse>() : null;
 
 		String source = parseState.getSource();
 		if (parseState instanceof HTMLParseState)
@@ -110,10 +179,20 @@ public class HTMLParser extends AbstractParser
 			fCurrentElement = root;
 
 			parseAll(source);
+			attachEmbeddedParses();
 			root.setCommentNodes(fCommentNodes.toArray(new IParseNode[fCommentNodes.size()]));
 		}
 		finally
 		{
+			if (fEmbeddedParses != null)
+			{
+				// only left over if the scan failed
+				for (EmbeddedParse embeddedParse : fEmbeddedParses)
+				{
+					embeddedParse.cancel(false);
+				}
+				fEmbeddedParses = null;
+			}
 			// clear for garbage collection
 			fWorkingParseResult = null;
 			fMonitor = null;
@@ -180,11 +259,16 @@ public class HTMLParser extends AbstractParser
 			((HTMLTokenScanner) tokenScanner).setInsideSpecialTag(false);
 		}
 
-		IParseNode[] nested = getParseResult(language, start, end);
+		HTMLSpecialNode node = null;
 		if (fCurrentElement != null)
 		{
-			HTMLSpecialNode node = new HTMLSpecialNode(startTag, nested, startTag.getStart(), fCurrentSymbol.getEnd());
+			node = new HTMLSpecialNode(startTag, HTMLParserConstants.NO_PARSE_NODES, startTag.getStart(),
+					fCurrentSymbol.getEnd());
 			node.setEndNode(fCurrentSymbol.getStart(), fCurrentSymbol.getEnd());
+		}
+		parseNested(language, start, end, node);
+		if (node != null)
+		{
 			parseAttribute(node, startTag);
 			fCurrentElement.addChild(node);
 		}
@@ -269,35 +353,143 @@ public class HTMLParser extends AbstractParser
 		return false;
 	}
 
-	private IParseNode[] getParseResult(String language, int start, int end)
+	/**
+	 * Parses the given region in the given language, setting the result as the children of the given node (if not
+	 * null).
+	 */
+	private void parseNested(final String language, final int start, final int end, final HTMLSpecialNode node)
 	{
-		if (start <= end)
+		if (start <= end && !fMonitor.isCanceled())
 		{
+			final String text;
 			try
 			{
-				String text = fScanner.getSource().get(start, end - start + 1);
-
-				ParseState subParseState = new ParseState(text,start);
-				// FIXME We need to propagate options down to sub-languages, i.e. JS's attach/collect comments
-				ParseResult subParseResult = ParserPoolFactory.parse(language, subParseState);
-				IParseNode node = subParseResult.getRootNode();
-				for (IParseError subError : subParseResult.getErrors())
-				{
-					// Shift the line/offsets based on the starting offset/line of the sub-language!
-					fWorkingParseResult.addError(new ParseError(language, start + subError.getOffset(), subError
-							.getLength(), subError.getMessage(), subError.getSeverity()));
-				}
-				if (node == null)
-				{
-					node = new HTMLTextNode(text, start, end);
-				}
-				return new IParseNode[] { node };
+				text = fScanner.getSource().get(start, end - start + 1);
 			}
 			catch (java.lang.Exception e)
 			{
+				return;
 			}
+
+			ParseState subParseState = new ParseState(text, start);
+			// Let the sub-language parser stop early too if the parse is cancelled
+			subParseState.setProgressMonitor(fMonitor);
+			// FIXME We need to propagate options down to sub-languages, i.e. JS's attach/collect comments
+			parseEmbedded(new EmbeddedParse(language, subParseState)
+			{
+				@Override
+				void attach(ParseResult subParseResult, List<IParseError> errors)
+				{
+					IParseNode subRoot = subParseResult.getRootNode();
+					for (IParseError subError : subParseResult.getErrors())
+					{
+						// Shift the line/offsets based on the starting offset/line of the sub-language!
+						errors.add(new ParseError(language, start + subError.getOffset(), subError.getLength(),
+								subError.getMessage(), subError.getSeverity()));
+					}
+					if (subRoot == null)
+					{
+						subRoot = new HTMLTextNode(text, start, end);
+					}
+					if (node != null)
+					{
+						node.setChildren(new IParseNode[] { subRoot });
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Runs the given parse right away, or starts it in the background when parsing the embedded languages in parallel
+	 * (see {@link #attachEmbeddedParses()}).
+	 */
+	private void parseEmbedded(EmbeddedParse embeddedParse)
+	{
+		if (fEmbeddedParses == null)
+		{
+			embeddedParse.run();
+			attachResult(embeddedParse, fWorkingParseResult.getErrors(), fWorkingParseResult.getErrors().size());
+			return;
+		}
+
+		embeddedParse.fErrorIndex = fWorkingParseResult.getErrors().size();
+		fEmbeddedParses.add(embeddedParse);
+		EMBEDDED_PARSER_POOL.execute(embeddedParse);
+	}
+
+	/**
+	 * Waits for the parses started in the background and attaches their results in the order they were found, which
+	 * gives the same tree (and errors) as parsing them sequentially.
+	 */
+	private void attachEmbeddedParses()
+	{
+		if (fEmbeddedParses == null)
+		{
+			return;
 		}
-		return HTMLParserConstants.NO_PARSE_NODES;
+
+		List<IParseError> errors = fWorkingParseResult.getErrors();
+		int addedErrors = 0;
+		for (EmbeddedParse embeddedParse : fEmbeddedParses)
+		{
+			// runs it in this thread if it didn't start yet (i.e.: no worker was free), does nothing otherwise
+			embeddedParse.run();
+			addedErrors += attachResult(embeddedParse, errors, embeddedParse.fErrorIndex + addedErrors);
+		}
+		fEmbeddedParses.clear();
+	}
+
+	/**
+	 * Attaches the result of a parse (if it succeeded), inserting its errors at the given index.
+	 * 
+	 * @return the number of errors inserted
+	 */
+	private int attachResult(EmbeddedParse embeddedParse, List<IParseError> errors, int errorIndex)
+	{
+		ParseResult result;
+		try
+		{
+			result = embeddedParse.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return 0;
+		}
+		catch (ExecutionException e)
+		{
+			return 0;
+		}
+
+		List<IParseError> subErrors = new ArrayList<IParseError>();
+		embeddedParse.attach(result, subErrors);
+		errors.addAll(errorIndex, subErrors);
+		return subErrors.size();
+	}
+
+	/**
+	 * @return true if the embedded languages should be parsed in parallel with the HTML scan.
+	 */
+	private boolean isParallelEmbeddedParsing()
+	{
+		if (fParallelEmbeddedParsing != null)
+		{
+			return fParallelEmbeddedParsing;
+		}
+		return HTMLPlugin.getDefault() != null
+				&& Platform.getPreferencesService().getBoolean(HTMLPlugin.PLUGIN_ID,
+						IPreferenceConstants.HTML_PARALLEL_EMBEDDED_PARSING,
+						IPreferenceConstants.DEFAULT_PARALLEL_EMBEDDED_PARSING_VALUE, null);
+	}
+
+	/**
+	 * Sets whether to parse the embedded languages in parallel, instead of following the preference (for testing
+	 * purposes).
+	 */
+	void setParallelEmbeddedParsing(boolean parallel)
+	{
+		fParallelEmbeddedParsing = parallel;
 	}
 
 	private void processComment()
@@ -461,7 +653,7 @@ public class HTMLParser extends AbstractParser
 		processLanguage(language, HTMLTokens.SCRIPT_END);
 	}
 
-	private void parseAttribute(HTMLElementNode element, Symbol tagSymbol)
+	private void parseAttribute(final HTMLElementNode element, Symbol tagSymbol)
 	{
 		String tag = tagSymbol.value.toString();
 
@@ -494,48 +686,50 @@ public class HTMLParser extends AbstractParser
 				if (HTMLUtils.isCSSAttribute(name))
 				{
 					String text = tagName + " {" + value + "}"; //$NON-NLS-1$ //$NON-NLS-2$
-					try
+					int startingOffset = absoluteOffset - (tagName.length() + 1);
+					parseEmbedded(new EmbeddedParse(ICSSConstants.CONTENT_TYPE_CSS, new ParseState(text,
+							startingOffset))
 					{
-
-						int startingOffset = absoluteOffset - (tagName.length() + 1);
-						IParseNode node = ParserPoolFactory.parse(ICSSConstants.CONTENT_TYPE_CSS, text, startingOffset)
-								.getRootNode();
-
-						// should always have a rule node
-						if (node.hasChildren())
+						@Override
+						void attach(ParseResult result, List<IParseError> errors)
 						{
-							IParseNode rule = node.getChild(0);
-							if (rule instanceof CSSRuleNode)
+							IParseNode node = result.getRootNode();
+
+							// should always have a rule node
+							if (node != null && node.hasChildren())
 							{
-								CSSDeclarationNode[] declarations = ((CSSRuleNode) rule).getDeclarations();
-								for (CSSDeclarationNode declaration : declarations)
+								IParseNode rule = node.getChild(0);
+								if (rule instanceof CSSRuleNode)
 								{
-									element.addCSSStyleNode(declaration);
+									CSSDeclarationNode[] declarations = ((CSSRuleNode) rule).getDeclarations();
+									for (CSSDeclarationNode declaration : declarations)
+									{
+										element.addCSSStyleNode(declaration);
+									}
 								}
 							}
 						}
-					}
-					catch (java.lang.Exception e)
-					{
-					}
+					});
 				}
 				// checks if we need to process the value as JS
 				else if (HTMLUtils.isJSAttribute(tagName, name))
 				{
-					try
+					int startingOffset = absoluteOffset + 1;
+					parseEmbedded(new EmbeddedParse(IJSConstants.CONTENT_TYPE_JS, new ParseState(value, startingOffset))
 					{
-						int startingOffset = absoluteOffset + 1;
-						IParseNode node = ParserPoolFactory.parse(IJSConstants.CONTENT_TYPE_JS, value, startingOffset)
-								.getRootNode();
-
-						for (IParseNode child : node)
+						@Override
+						void attach(ParseResult result, List<IParseError> errors)
 						{
-							element.addJSAttributeNode(child);
+							IParseNode node = result.getRootNode();
+							if (node != null)
+							{
+								for (IParseNode child : node)
+								{
+									element.addJSAttributeNode(child);
+								}
+							}
 						}
-					}
-					catch (java.lang.Exception e)
-					{
-					}
+					});
 				}
 			}
 		}
@@ -25,7 +25,6 @@ import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
-import org.jaxen.JaxenException;
 import org.osgi.service.prefs.BackingStoreException;
 
 import com.aptana.buildpath.core.BuildPathCorePlugin;
@@ -60,8 +59,7 @@ import com.aptana.parsing.ast.IParseNodeAttribute;
 import com.aptana.parsing.ast.IParseRootNode;
 import com.aptana.parsing.lexer.IRange;
 import com.aptana.parsing.util.ParseUtil;
-import com.aptana.parsing.xpath.ParseNodeNavigator;
-import com.aptana.parsing.xpath.ParseNodeXPath;
+import com.aptana.parsing.xpath.ParseNodeQuery;
 
 /**
  * Custom replacement for JTidy. Allows us to re-use the AST we already generate, which gives us speed gains of about 4x
@@ -85,12 +83,13 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 	private static final Pattern ENTITY_PATTERN = Pattern.compile("&(\\S+)?"); //$NON-NLS-1$
 
 	/**
-	 * XPath expressions we use to jump to lists of nodes.
+	 * Path expressions we use to jump to lists of nodes.
 	 */
-	private static ParseNodeXPath FRAMESET_TAG;
-	private static ParseNodeXPath BODY_TAG;
-	private static ParseNodeXPath NOFRAMES_TAG;
-	private static ParseNodeXPath HTML_CHILDREN;
+	private static final ParseNodeQuery FRAMESET_TAG = ParseNodeQuery.compile("/html/frameset", true); //$NON-NLS-1$
+	private static final ParseNodeQuery BODY_TAG = ParseNodeQuery.compile("/html/body", true); //$NON-NLS-1$
+	private static final ParseNodeQuery NOFRAMES_TAG = ParseNodeQuery
+			.compile("/html/frameset/noframes", true); //$NON-NLS-1$
+	private static final ParseNodeQuery HTML_CHILDREN = ParseNodeQuery.compile("/html/*", true); //$NON-NLS-1$
 
 	public enum ProblemCategory
 	{
@@ -173,22 +172,6 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 		}
 	}
 
-	static
-	{
-		try
-		{
-			ParseNodeNavigator caseInsensitive = new ParseNodeNavigator(true);
-			BODY_TAG = new ParseNodeXPath("/html/body", caseInsensitive); //$NON-NLS-1$
-			FRAMESET_TAG = new ParseNodeXPath("/html/frameset", caseInsensitive); //$NON-NLS-1$
-			NOFRAMES_TAG = new ParseNodeXPath("/html/frameset/noframes", caseInsensitive); //$NON-NLS-1$
-			HTML_CHILDREN = new ParseNodeXPath("/html/*", caseInsensitive); //$NON-NLS-1$
-		}
-		catch (JaxenException e)
-		{
-			IdeLog.logError(HTMLPlugin.getDefault(), e);
-		}
-	}
-
 	private HTMLIndexQueryHelper fQueryHelper;
 
 	/**
@@ -337,14 +320,13 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 		return Collections.emptyList();
 	}
 
-	@SuppressWarnings("unchecked")
 	private Collection<IProblem> validateFrames(IParseRootNode ast)
 	{
 		Collection<IProblem> problems = new ArrayList<IProblem>();
 
 		try
 		{
-			List<HTMLElementNode> framesetNodes = (List<HTMLElementNode>) FRAMESET_TAG.evaluate(ast);
+			List<HTMLElementNode> framesetNodes = FRAMESET_TAG.select(ast, HTMLElementNode.class);
 			if (!CollectionsUtil.isEmpty(framesetNodes))
 			{
 				// verify only one FRAMESET child of HTML
@@ -364,7 +346,7 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 				}
 
 				// Check NOFRAMES
-				List<HTMLElementNode> noFramesNodes = (List<HTMLElementNode>) NOFRAMES_TAG.evaluate(ast);
+				List<HTMLElementNode> noFramesNodes = NOFRAMES_TAG.select(ast, HTMLElementNode.class);
 				HTMLElementNode noFrames = null;
 				if (!CollectionsUtil.isEmpty(noFramesNodes))
 				{
@@ -373,7 +355,7 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 				if (noFrames == null)
 				{
 					// If there's an html/body, add warning to insert implicit noFrames
-					List<HTMLElementNode> bodyNode = (List<HTMLElementNode>) BODY_TAG.evaluate(ast);
+					List<HTMLElementNode> bodyNode = BODY_TAG.select(ast, HTMLElementNode.class);
 					if (!CollectionsUtil.isEmpty(bodyNode))
 					{
 						IRange range = bodyNode.iterator().next().getNameNode().getNameRange();
@@ -420,34 +402,21 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 	 * @param ast
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
 	private HTMLElementNode invalidContentNode(IParseRootNode ast)
 	{
-		try
+		List<HTMLElementNode> htmlChildren = HTML_CHILDREN.select(ast, HTMLElementNode.class);
+		if (!CollectionsUtil.isEmpty(htmlChildren))
 		{
-			List<HTMLNode> htmlChildren = (List<HTMLNode>) HTML_CHILDREN.evaluate(ast);
-			if (!CollectionsUtil.isEmpty(htmlChildren))
+			Set<String> validTags = CollectionsUtil.newSet("body", "head", "frameset"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			for (HTMLElementNode element : htmlChildren)
 			{
-				Set<String> validTags = CollectionsUtil.newSet("body", "head", "frameset"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-				for (HTMLNode htmlChild : htmlChildren)
+				String tagName = element.getElementName().toLowerCase();
+				if (!validTags.contains(tagName))
 				{
-					if (!(htmlChild instanceof HTMLElementNode))
-					{
-						continue;
-					}
-					HTMLElementNode element = (HTMLElementNode) htmlChild;
-					String tagName = element.getElementName().toLowerCase();
-					if (!validTags.contains(tagName))
-					{
-						return element;
-					}
+					return element;
 				}
 			}
 		}
-		catch (JaxenException e)
-		{
-			IdeLog.logError(HTMLPlugin.getDefault(), e);
-		}
 		return null;
 	}
 
@@ -13,6 +13,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.help.IContext;
 import org.eclipse.help.IContext2;
 import org.eclipse.help.IContextProvider;
@@ -25,6 +26,7 @@ import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.jface.viewers.ILabelProvider;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.internal.editors.text.EditorsPlugin;
 import org.eclipse.ui.texteditor.ChainedPreferenceStore;
 
@@ -46,6 +48,9 @@ import com.aptana.editor.js.outline.JSOutlineLabelProvider;
 import com.aptana.js.core.IJSConstants;
 import com.aptana.js.core.model.PropertyElement;
 import com.aptana.js.core.model.SinceElement;
+import com.aptana.js.core.parsing.JSIncrementalParser;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ast.INameNode;
 import com.aptana.parsing.ast.IParseNode;
 import com.aptana.parsing.ast.IParseRootNode;
@@ -53,6 +58,11 @@ import com.aptana.parsing.ast.IParseRootNode;
 @SuppressWarnings("restriction")
 public class JSSourceEditor extends AbstractThemeableEditor
 {
+	/**
+	 * Keeps the AST of the document so that edits inside a function body only reparse that body.
+	 */
+	private final JSIncrementalParser fIncrementalParser = new JSIncrementalParser();
+
 	private static final class JSContextProvider implements IContextProvider
 	{
 		@SuppressWarnings("nls")
@@ -282,6 +292,44 @@ public class JSSourceEditor extends AbstractThemeableEditor
 		setDocumentProvider(JSPlugin.getDefault().getJSDocumentProvider());
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.AbstractThemeableEditor#doGetAST(org.eclipse.jface.text.IDocument)
+	 */
+	@Override
+	protected ParseResult doGetAST(IDocument document) throws Exception
+	{
+		return fIncrementalParser.parse(new ParseState(document.get(), 0));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.AbstractThemeableEditor#doSetInput(org.eclipse.ui.IEditorInput)
+	 */
+	@Override
+	protected void doSetInput(IEditorInput input) throws CoreException
+	{
+		fIncrementalParser.reset();
+		super.doSetInput(input);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.AbstractThemeableEditor#dispose()
+	 */
+	@Override
+	public void dispose()
+	{
+		try
+		{
+			fIncrementalParser.reset();
+		}
+		finally
+		{
+			super.dispose();
+		}
+	}
+
 	public JSSourceViewerConfiguration getJSSourceViewerConfiguration()
 	{
 		return (JSSourceViewerConfiguration) super.getSourceViewerConfiguration();
@@ -9,9 +9,12 @@ package com.aptana.editor.js.text;
 
 import java.io.IOException;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.rules.IToken;
 import org.eclipse.jface.text.rules.Token;
 
@@ -86,11 +89,50 @@ public class JSCodeScanner extends AbstractFlexTokenScanner
 	 */
 	private State fCurrentState = State.DEFAULT;
 
+	/**
+	 * The symbols of the range when taken from the token stream of the document (null when scanning the range).
+	 */
+	private List<Symbol> fStreamSymbols;
+	private int fStreamIndex;
+
 	public JSCodeScanner()
 	{
 		super(new JSFlexScanner());
 	}
 
+	@Override
+	public void setRange(IDocument document, int offset, int length)
+	{
+		super.setRange(document, offset, length);
+
+		fStreamSymbols = null;
+		fStreamIndex = 0;
+		JSTokenStream stream = JSTokenStream.getTokenStream(document);
+		if (stream != null)
+		{
+			try
+			{
+				fStreamSymbols = stream.getTokens(document, offset, length);
+			}
+			catch (BadLocationException e)
+			{
+				// just scan the range
+				IdeLog.logError(JSPlugin.getDefault(), e);
+			}
+		}
+	}
+
+	@Override
+	protected Symbol nextSymbol() throws IOException, beaver.Scanner.Exception
+	{
+		if (fStreamSymbols == null)
+		{
+			return super.nextSymbol();
+		}
+		// the last one is EOF
+		return fStreamSymbols.get(Math.min(fStreamIndex++, fStreamSymbols.size() - 1));
+	}
+
 	protected void setSource(String string)
 	{
 		// It shouldn't really collect comments anyways as we're just processing the default partition,
@@ -7,13 +7,17 @@
  */
 package com.aptana.editor.js.text;
 
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 
 import beaver.Scanner;
+import beaver.Symbol;
 
 import com.aptana.editor.common.contentassist.FlexLexemeProvider;
 import com.aptana.js.core.parsing.JSFlexScanner;
 import com.aptana.js.core.parsing.JSTokenType;
+import com.aptana.js.core.parsing.Terminals;
+import com.aptana.parsing.lexer.Lexeme;
 import com.aptana.parsing.lexer.IRange;
 
 /**
@@ -58,6 +62,38 @@ public class JSFlexLexemeProvider extends FlexLexemeProvider<JSTokenType>
 		super(document, range, scanner);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.contentassist.FlexLexemeProvider#createLexemeList(org.eclipse.jface.text.IDocument,
+	 * int, int, beaver.Scanner)
+	 */
+	@Override
+	protected void createLexemeList(IDocument document, int offset, int length, Scanner scanner)
+	{
+		// Take the tokens already scanned for JS documents
+		JSTokenStream stream = JSTokenStream.getTokenStream(document);
+		if (stream == null)
+		{
+			super.createLexemeList(document, offset, length, scanner);
+			return;
+		}
+		try
+		{
+			for (Symbol token : stream.getTokens(document, offset, length))
+			{
+				if (token.getId() == Terminals.EOF)
+				{
+					break;
+				}
+				addLexeme(new Lexeme<JSTokenType>(getTypeFromId(token.getId()), token.getStart() + offset,
+						token.getEnd() + offset, token.value.toString()));
+			}
+		}
+		catch (BadLocationException e)
+		{
+		}
+	}
+
 	@Override
 	protected JSTokenType getTypeFromId(short id)
 	{
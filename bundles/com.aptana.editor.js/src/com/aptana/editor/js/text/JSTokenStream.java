@@ -0,0 +1,463 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+
+import beaver.Symbol;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.editor.js.JSPlugin;
+import com.aptana.editor.js.JSSourceConfiguration;
+import com.aptana.js.core.parsing.JSFlexScanner;
+import com.aptana.js.core.parsing.JSTokenType;
+import com.aptana.js.core.parsing.Terminals;
+
+/**
+ * The tokens of a JS document as returned by {@link JSFlexScanner}, kept up to date as the document changes so that the
+ * code scanner and content assist don't have to scan the text again each time they look at a range of it. Tokens are
+ * kept as ints (start, end and id of each one) and their text is only taken from the document when asked for.
+ * <p>
+ * Edits are applied lazily: the tokens are scanned again from a bit before the line where the first edit started until
+ * they match the old ones again (after the last edit). Scanning starts again after the last token which ends before
+ * that line and after which a new scanner would be in the same state, so an edit inside a construct spanning many
+ * lines is scanned again from before it: comments aren't kept as tokens, tokens running over the start of the line
+ * (i.e.: templates) aren't kept, and neither are the tokens of the expressions of a template.
+ * <p>
+ * Only documents holding nothing but JS are tracked (see {@link #getTokenStream(IDocument)}); JS embedded in other
+ * languages is still scanned a range at a time.
+ */
+public class JSTokenStream implements IDocumentListener
+{
+	private static final Map<IDocument, JSTokenStream> STREAMS = new WeakHashMap<IDocument, JSTokenStream>();
+
+	/**
+	 * The number of ints used for each token: start, end and id (the id may have the IN_TEMPLATE flag set).
+	 */
+	private static final int TOKEN_SIZE = 3;
+	private static final int ID_MASK = 0xffff;
+
+	/**
+	 * Set on the tokens after which the scanner is still inside a template (i.e.: scanning the expression of ${...}).
+	 */
+	private static final int IN_TEMPLATE = 1 << 16;
+
+	private int[] fTokens = new int[0];
+	private int fCount;
+
+	/**
+	 * Whether the whole document must be scanned again.
+	 */
+	private boolean fRescanAll = true;
+
+	/**
+	 * The range modified since the last update (in current offsets). The text before fDirtyStart didn't change and the
+	 * text after fDirtyEnd is the old text after (fDirtyEnd - fShift).
+	 */
+	private boolean fDirty;
+	private int fDirtyStart;
+	private int fDirtyEnd;
+	private int fShift;
+
+	/**
+	 * The number of tokens scanned by the last update (for testing purposes).
+	 */
+	private int fScannedCount;
+
+	JSTokenStream()
+	{
+	}
+
+	/**
+	 * Returns the token stream of a document, creating it the first time it's asked for.
+	 * 
+	 * @return the stream or null if the document isn't a JS document (i.e.: an HTML document with embedded JS).
+	 */
+	public static JSTokenStream getTokenStream(IDocument document)
+	{
+		if (document == null)
+		{
+			return null;
+		}
+		synchronized (STREAMS)
+		{
+			JSTokenStream stream = STREAMS.get(document);
+			if (stream == null && isJSDocument(document))
+			{
+				stream = new JSTokenStream();
+				document.addDocumentListener(stream);
+				STREAMS.put(document, stream);
+			}
+			return stream;
+		}
+	}
+
+	/**
+	 * @return true if all the partitions of the document are JS partitions.
+	 */
+	private static boolean isJSDocument(IDocument document)
+	{
+		String[] contentTypes = document.getLegalContentTypes();
+		if (contentTypes == null || contentTypes.length == 0)
+		{
+			return false;
+		}
+		for (String contentType : contentTypes)
+		{
+			if (!contentType.startsWith(JSSourceConfiguration.PREFIX))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the tokens starting in the given range as the scanner would (tokens running past the end of the range
+	 * are cut there), followed by an EOF token. The offsets of the returned symbols are relative to the start of the
+	 * range. Unexpected characters are skipped.
+	 */
+	public synchronized List<Symbol> getTokens(IDocument document, int offset, int length)
+			throws BadLocationException
+	{
+		update(document);
+
+		String source = document.get(offset, length);
+		int end = offset + length;
+		List<Symbol> result = new ArrayList<Symbol>();
+		for (int i = getTokenIndex(offset); i < fCount; i++)
+		{
+			int index = i * TOKEN_SIZE;
+			int start = fTokens[index];
+			if (start >= end)
+			{
+				break;
+			}
+			short id = (short) (fTokens[index + 2] & ID_MASK);
+			if (id == Terminals.EOF)
+			{
+				// something the scanner didn't expect
+				continue;
+			}
+			int tokenEnd = Math.min(fTokens[index + 1], end - 1);
+			result.add(new Symbol(id, start - offset, tokenEnd - offset, getValue(id, source, start - offset, tokenEnd
+					- offset)));
+		}
+		result.add(new Symbol(Terminals.EOF, length, length - 1, JSTokenType.EOF.getName()));
+		return result;
+	}
+
+	/**
+	 * @return the value the scanner gives to the token: its text for identifiers and literals, the name of its type
+	 *         otherwise.
+	 */
+	private static Object getValue(short id, String source, int start, int end)
+	{
+		switch (id)
+		{
+			case Terminals.IDENTIFIER:
+			case Terminals.NUMBER:
+			case Terminals.STRING:
+			case Terminals.REGEX:
+			case Terminals.TEMPLATE_HEAD:
+			case Terminals.NO_SUB_TEMPLATE:
+			case Terminals.TEMPLATE_MIDDLE:
+			case Terminals.TEMPLATE_TAIL:
+				return source.substring(start, end + 1);
+
+			default:
+				return JSTokenType.get(id).getName();
+		}
+	}
+
+	/**
+	 * @return the number of tokens scanned when the stream was last updated (for testing purposes).
+	 */
+	synchronized int getScannedCount()
+	{
+		return fScannedCount;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentAboutToBeChanged(DocumentEvent event)
+	{
+		if (fRescanAll)
+		{
+			return;
+		}
+
+		int offset = event.getOffset();
+		int removed = event.getLength();
+		int inserted = (event.getText() == null) ? 0 : event.getText().length();
+		if (!fDirty)
+		{
+			fDirty = true;
+			fDirtyStart = offset;
+			fDirtyEnd = offset + inserted;
+			fShift = inserted - removed;
+			return;
+		}
+
+		// merge with the previous edits
+		int dirtyEnd;
+		if (fDirtyEnd <= offset)
+		{
+			dirtyEnd = fDirtyEnd;
+		}
+		else if (fDirtyEnd >= offset + removed)
+		{
+			dirtyEnd = fDirtyEnd + inserted - removed;
+		}
+		else
+		{
+			dirtyEnd = offset + inserted;
+		}
+		fDirtyStart = Math.min(fDirtyStart, offset);
+		fDirtyEnd = Math.max(dirtyEnd, offset + inserted);
+		fShift += inserted - removed;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public void documentChanged(DocumentEvent event)
+	{
+		// the edit was recorded before the change, it's applied when the tokens are asked for
+	}
+
+	private void update(IDocument document)
+	{
+		if (fRescanAll)
+		{
+			fRescanAll = false;
+			fDirty = false;
+			scan(document, 0, 0, false);
+			return;
+		}
+		if (!fDirty)
+		{
+			return;
+		}
+		fDirty = false;
+
+		try
+		{
+			// Keep the tokens before the line of the edit (or before the lines it continues), up to the last one after
+			// which a new scanner would be in the same state. As comments aren't tokens, that's before any comment the
+			// edit is in.
+			int line = document.getLineOfOffset(fDirtyStart);
+			while (line > 0)
+			{
+				IRegion previous = document.getLineInformation(line - 1);
+				if (previous.getLength() == 0
+						|| document.getChar(previous.getOffset() + previous.getLength() - 1) != '\\')
+				{
+					break;
+				}
+				line--;
+			}
+			int lineStart = document.getLineOffset(line);
+			int keep = getTokenIndex(lineStart);
+			while (keep > 0 && fTokens[(keep - 1) * TOKEN_SIZE + 1] >= lineStart)
+			{
+				keep--;
+			}
+			while (keep > 0 && !isRestartPoint(fTokens[(keep - 1) * TOKEN_SIZE + 2]))
+			{
+				keep--;
+			}
+			scan(document, (keep == 0) ? 0 : fTokens[(keep - 1) * TOKEN_SIZE + 1] + 1, keep, true);
+		}
+		catch (BadLocationException e)
+		{
+			scan(document, 0, 0, false);
+		}
+	}
+
+	/**
+	 * Scans the document from the given offset, replacing the tokens from the given index.
+	 * 
+	 * @param resync
+	 *            whether to stop as soon as the tokens match the old ones after the modified range.
+	 */
+	private void scan(IDocument document, int offset, int index, boolean resync)
+	{
+		int[] tokens = new int[Math.max(64, (resync ? 64 : fCount + 64) * TOKEN_SIZE)];
+		int count = 0;
+		int oldIndex = index;
+		boolean inTemplate = false;
+		fScannedCount = 0;
+
+		JSFlexScanner scanner = new JSFlexScanner();
+		scanner.setCollectComments(false);
+		try
+		{
+			scanner.setSource(document.get(offset, document.getLength() - offset));
+			while (true)
+			{
+				Symbol symbol = scanner.nextToken();
+				short id = symbol.getId();
+				if (id == Terminals.EOF && symbol.getEnd() < symbol.getStart())
+				{
+					break;
+				}
+				fScannedCount++;
+
+				int start = offset + symbol.getStart();
+				int end = offset + symbol.getEnd();
+				switch (id)
+				{
+					case Terminals.TEMPLATE_HEAD:
+					case Terminals.TEMPLATE_MIDDLE:
+						inTemplate = true;
+						break;
+
+					case Terminals.TEMPLATE_TAIL:
+					case Terminals.EOF:
+						inTemplate = false;
+						break;
+
+					default:
+						break;
+				}
+				int flaggedId = inTemplate ? id | IN_TEMPLATE : id;
+
+				if (resync && start >= fDirtyEnd)
+				{
+					int oldStart = start - fShift;
+					while (oldIndex < fCount && fTokens[oldIndex * TOKEN_SIZE] < oldStart)
+					{
+						oldIndex++;
+					}
+					if (oldIndex < fCount && fTokens[oldIndex * TOKEN_SIZE] == oldStart
+							&& fTokens[oldIndex * TOKEN_SIZE + 1] == end - fShift
+							&& fTokens[oldIndex * TOKEN_SIZE + 2] == flaggedId)
+					{
+						// Same token in the same state: the rest is the same as before
+						splice(index, tokens, count, oldIndex);
+						return;
+					}
+				}
+
+				if ((count + 1) * TOKEN_SIZE > tokens.length)
+				{
+					int[] newTokens = new int[tokens.length * 3 / 2 + TOKEN_SIZE];
+					System.arraycopy(tokens, 0, newTokens, 0, count * TOKEN_SIZE);
+					tokens = newTokens;
+				}
+				tokens[count * TOKEN_SIZE] = start;
+				tokens[count * TOKEN_SIZE + 1] = end;
+				tokens[count * TOKEN_SIZE + 2] = flaggedId;
+				count++;
+			}
+		}
+		catch (Exception e)
+		{
+			IdeLog.logError(JSPlugin.getDefault(), e);
+		}
+		splice(index, tokens, count, fCount);
+	}
+
+	/**
+	 * Replaces the tokens from the given index with the new ones, followed by the old ones from oldIndex (shifted to
+	 * their new offsets).
+	 */
+	private void splice(int index, int[] newTokens, int newCount, int oldIndex)
+	{
+		int tailCount = fCount - oldIndex;
+		int count = index + newCount + tailCount;
+		int[] tokens = fTokens;
+		if (count * TOKEN_SIZE > tokens.length)
+		{
+			tokens = new int[count * TOKEN_SIZE];
+			System.arraycopy(fTokens, 0, tokens, 0, index * TOKEN_SIZE);
+		}
+		System.arraycopy(fTokens, oldIndex * TOKEN_SIZE, tokens, (index + newCount) * TOKEN_SIZE, tailCount
+				* TOKEN_SIZE);
+		System.arraycopy(newTokens, 0, tokens, index * TOKEN_SIZE, newCount * TOKEN_SIZE);
+		if (tailCount > 0 && fShift != 0)
+		{
+			for (int i = index + newCount; i < count; i++)
+			{
+				tokens[i * TOKEN_SIZE] += fShift;
+				tokens[i * TOKEN_SIZE + 1] += fShift;
+			}
+		}
+		fTokens = tokens;
+		fCount = count;
+		fShift = 0;
+	}
+
+	/**
+	 * @return the index of the first token starting at or after the offset.
+	 */
+	private int getTokenIndex(int offset)
+	{
+		int low = 0;
+		int high = fCount;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (fTokens[middle * TOKEN_SIZE] < offset)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return true if a new scanner started right after a token with the given (flagged) id would scan the text after
+	 *         it as the current one does.
+	 */
+	private static boolean isRestartPoint(int flaggedId)
+	{
+		if ((flaggedId & IN_TEMPLATE) != 0)
+		{
+			return false;
+		}
+		// A new scanner takes '/' as the start of a regex
+		switch (flaggedId)
+		{
+			case Terminals.IDENTIFIER:
+			case Terminals.NUMBER:
+			case Terminals.REGEX:
+			case Terminals.STRING:
+			case Terminals.RPAREN:
+			case Terminals.PLUS_PLUS:
+			case Terminals.MINUS_MINUS:
+			case Terminals.RBRACKET:
+			case Terminals.RCURLY:
+			case Terminals.FALSE:
+			case Terminals.NULL:
+			case Terminals.THIS:
+			case Terminals.TRUE:
+				return false;
+
+			default:
+				return true;
+		}
+	}
+}
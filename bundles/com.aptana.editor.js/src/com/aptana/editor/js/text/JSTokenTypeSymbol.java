@@ -13,6 +13,7 @@ import com.aptana.js.core.parsing.JSTokenType;
 
 public class JSTokenTypeSymbol extends Symbol
 {
+	private static final long serialVersionUID = 1L;
 
 	public final JSTokenType token;
 
@@ -0,0 +1,43 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+/**
+ * Notified of the changes made to an index, as they are applied. This lets tables derived from the entries of an index
+ * be kept up to date without reading the index again after each write.
+ * <p>
+ * Listeners are called while the index holds its write lock, so they must be quick and must not query the index.
+ */
+public interface IIndexChangeListener
+{
+	/**
+	 * An entry was added for a document. The entry may already have been in the index
+	 *
+	 * @param index
+	 * @param category
+	 * @param key
+	 * @param documentName
+	 */
+	void entryAdded(Index index, String category, String key, String documentName);
+
+	/**
+	 * All the entries of a document were removed
+	 *
+	 * @param index
+	 * @param documentName
+	 */
+	void documentRemoved(Index index, String documentName);
+
+	/**
+	 * Entries were removed wholesale (categories were dropped or the index was reset), so anything derived from the
+	 * index needs to be read again
+	 *
+	 * @param index
+	 */
+	void indexReset(Index index);
+}
@@ -13,4 +13,32 @@ public interface IPreferenceConstants
 {
 	public static final String FILTERED_INDEX_URIS = "FILTERED_INDEX_URIS"; //$NON-NLS-1$
 	public static final String NO_ITEMS = StringUtil.EMPTY;
+
+	/**
+	 * Read disk indexes through a shared memory-mapped view of the index file rather than re-opening the file for every
+	 * lookup
+	 */
+	public static final String USE_MEMORY_MAPPED_INDEX = "USE_MEMORY_MAPPED_INDEX"; //$NON-NLS-1$
+	public static final boolean DEFAULT_USE_MEMORY_MAPPED_INDEX = true;
+
+	/**
+	 * Save index changes as small append-only segment files that are compacted in the background, rather than
+	 * rewriting the whole index file on every save
+	 */
+	public static final String USE_SEGMENTED_INDEX = "USE_SEGMENTED_INDEX"; //$NON-NLS-1$
+	public static final boolean DEFAULT_USE_SEGMENTED_INDEX = true;
+
+	/**
+	 * The number of threads used to parse and index files during builds. The default of one indexes files serially on
+	 * the build thread, and zero uses one thread per available processor
+	 */
+	public static final String INDEX_WORKER_COUNT = "INDEX_WORKER_COUNT"; //$NON-NLS-1$
+	public static final int DEFAULT_INDEX_WORKER_COUNT = 1;
+
+	/**
+	 * The number of distinct queries whose results each index keeps cached until the index next changes. Zero turns
+	 * the cache off
+	 */
+	public static final String QUERY_CACHE_SIZE = "QUERY_CACHE_SIZE"; //$NON-NLS-1$
+	public static final int DEFAULT_QUERY_CACHE_SIZE = 500;
 }
@@ -9,6 +9,7 @@ package com.aptana.index.core;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -17,17 +18,31 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import java.util.zip.CRC32;
 
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import com.aptana.core.logging.IdeLog;
-import com.aptana.internal.index.core.DiskIndex;
+import com.aptana.internal.index.core.FingerprintTable;
+import com.aptana.internal.index.core.FingerprintTable.Fingerprint;
+import com.aptana.internal.index.core.IndexDelta;
 import com.aptana.internal.index.core.MemoryIndex;
+import com.aptana.internal.index.core.QueryCache;
+import com.aptana.internal.index.core.SegmentedIndex;
 
 public class Index
 {
@@ -301,9 +316,16 @@ public class Index
 	}
 
 	private MemoryIndex memoryIndex;
-	private DiskIndex diskIndex;
+	private SegmentedIndex diskIndex;
+	private FingerprintTable fingerprints;
+	private QueryCache queryCache;
+	private Job compactionJob;
 	ReadWriteLock monitor;
 	private URI containerURI;
+	private volatile long modificationStamp;
+	private final ThreadLocal<IndexDelta> deltas = new ThreadLocal<IndexDelta>();
+	private final CopyOnWriteArrayList<IIndexChangeListener> listeners =
+			new CopyOnWriteArrayList<IIndexChangeListener>();
 
 	/**
 	 * Index
@@ -319,6 +341,13 @@ public class Index
 		this.memoryIndex = new MemoryIndex();
 		this.monitor = new ReentrantReadWriteLock();
 
+		int queryCacheSize = Platform.getPreferencesService().getInt(IndexPlugin.PLUGIN_ID,
+				IPreferenceConstants.QUERY_CACHE_SIZE, 0, null);
+		if (queryCacheSize > 0)
+		{
+			this.queryCache = new QueryCache(queryCacheSize);
+		}
+
 		// Convert to a filename we can use for the actual index on disk
 		IPath diskIndexPath = computeIndexLocation(containerURI);
 		if (diskIndexPath == null)
@@ -330,8 +359,21 @@ public class Index
 		this.enterWrite();
 		try
 		{
-			this.diskIndex = new DiskIndex(diskIndexPathString);
+			this.diskIndex = new SegmentedIndex(diskIndexPathString,
+					getBooleanPreference(IPreferenceConstants.USE_MEMORY_MAPPED_INDEX,
+							IPreferenceConstants.DEFAULT_USE_MEMORY_MAPPED_INDEX),
+					getBooleanPreference(IPreferenceConstants.USE_SEGMENTED_INDEX,
+							IPreferenceConstants.DEFAULT_USE_SEGMENTED_INDEX));
 			this.diskIndex.initialize(reuseExistingFile);
+			this.fingerprints = new FingerprintTable(this.diskIndex.getIndexFile());
+			if (reuseExistingFile)
+			{
+				this.fingerprints.load();
+			}
+			else
+			{
+				this.fingerprints.clear();
+			}
 		}
 		finally
 		{
@@ -339,6 +381,40 @@ public class Index
 		}
 	}
 
+	/**
+	 * Add a listener to be notified of the changes made to this index. Adding a listener twice has no effect
+	 * 
+	 * @param listener
+	 */
+	public void addChangeListener(IIndexChangeListener listener)
+	{
+		if (listener != null)
+		{
+			this.listeners.addIfAbsent(listener);
+		}
+	}
+
+	/**
+	 * Remove a listener added with {@link #addChangeListener(IIndexChangeListener)}
+	 * 
+	 * @param listener
+	 */
+	public void removeChangeListener(IIndexChangeListener listener)
+	{
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * fireIndexReset
+	 */
+	private void fireIndexReset()
+	{
+		for (IIndexChangeListener listener : this.listeners)
+		{
+			listener.indexReset(this);
+		}
+	}
+
 	/**
 	 * addEntry
 	 * 
@@ -348,10 +424,76 @@ public class Index
 	 */
 	public void addEntry(String category, String key, URI containerRelativeURI)
 	{
+		IndexDelta delta = this.deltas.get();
+
+		if (delta != null)
+		{
+			delta.addEntry(category, key, containerRelativeURI.toString());
+			return;
+		}
+
+		this.enterWrite();
+		try
+		{
+			String documentName = containerRelativeURI.toString();
+
+			this.memoryIndex.addEntry(category, key, documentName);
+			this.modificationStamp++;
+
+			for (IIndexChangeListener listener : this.listeners)
+			{
+				listener.entryAdded(this, category, key, documentName);
+			}
+		}
+		finally
+		{
+			this.exitWrite();
+		}
+	}
+
+	/**
+	 * Start collecting the changes made by the current thread in a private delta rather than applying them to the
+	 * index one by one. This lets several threads index files at the same time without contending for the index lock
+	 * on every entry. The changes are applied when {@link #commitDelta()} is called on the same thread.
+	 */
+	public void beginDelta()
+	{
+		if (this.deltas.get() == null)
+		{
+			this.deltas.set(new IndexDelta());
+		}
+	}
+
+	/**
+	 * Apply the changes collected since {@link #beginDelta()} was called on the current thread, under the index write
+	 * lock, and return the thread to making changes directly against the index.
+	 */
+	public void commitDelta()
+	{
+		IndexDelta delta = this.deltas.get();
+
+		if (delta == null)
+		{
+			return;
+		}
+
+		this.deltas.remove();
+
+		if (delta.isEmpty())
+		{
+			return;
+		}
+
 		this.enterWrite();
 		try
 		{
-			this.memoryIndex.addEntry(category, key, containerRelativeURI.toString());
+			delta.applyTo(this.memoryIndex);
+			this.modificationStamp++;
+
+			for (IIndexChangeListener listener : this.listeners)
+			{
+				delta.reportTo(this, listener);
+			}
 		}
 		finally
 		{
@@ -371,13 +513,32 @@ public class Index
 
 		// TODO Enter write?
 
-		File indexFile = this.getIndexFile();
-		if (indexFile != null && indexFile.exists())
+		if (this.diskIndex != null)
 		{
-			indexFile.delete();
+			this.diskIndex.deleteFiles();
+			this.fingerprints.clear();
 		}
 	}
 
+	/**
+	 * Look up one of the disk format preferences of the index plugin, or its default when the plugin isn't running
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 *            the default from {@link IPreferenceConstants}
+	 * @return
+	 */
+	private static boolean getBooleanPreference(String key, boolean defaultValue)
+	{
+		// not running as a plugin (i.e.: plain unit tests)
+		if (IndexPlugin.getDefault() == null)
+		{
+			return defaultValue;
+		}
+
+		return Platform.getPreferencesService().getBoolean(IndexPlugin.PLUGIN_ID, key, defaultValue, null);
+	}
+
 	protected static void logTrace(String msg)
 	{
 		IdeLog.logTrace(IndexPlugin.getDefault(), msg, IDebugScopes.INDEXER);
@@ -477,6 +638,179 @@ public class Index
 		return new ArrayList<String>(categories);
 	}
 
+	/**
+	 * Returns a counter that changes every time entries are added to or removed from this index. Callers that cache
+	 * data derived from query results can compare stamps to tell whether that data is stale.
+	 * 
+	 * @return
+	 */
+	public long getModificationStamp()
+	{
+		return this.modificationStamp;
+	}
+
+	/**
+	 * Returns true if a fingerprint was recorded for the file when it was last indexed
+	 * 
+	 * @param file
+	 * @return
+	 */
+	public boolean hasFingerprint(IFileStore file)
+	{
+		return this.fingerprints != null && this.fingerprints.get(file.toURI().toString()) != null;
+	}
+
+	/**
+	 * Returns true if the file's content is the same as when it was last indexed. The size and timestamp are compared
+	 * first; the content is only hashed when the sizes match but the timestamps don't. Files without a recorded
+	 * fingerprint are never considered up to date.
+	 * 
+	 * @param file
+	 * @return
+	 */
+	public boolean isUpToDate(IFileStore file)
+	{
+		if (this.fingerprints == null)
+		{
+			return false;
+		}
+
+		String documentName = file.toURI().toString();
+		Fingerprint fingerprint = this.fingerprints.get(documentName);
+		if (fingerprint == null)
+		{
+			return false;
+		}
+
+		IFileInfo info = file.fetchInfo();
+		if (!info.exists() || info.getLength() != fingerprint.size)
+		{
+			return false;
+		}
+		if (info.getLastModified() == fingerprint.lastModified)
+		{
+			return true;
+		}
+
+		try
+		{
+			if (hash(file) != fingerprint.hash)
+			{
+				return false;
+			}
+		}
+		catch (CoreException e)
+		{
+			return false;
+		}
+
+		// same content, new timestamp. Remember it so the next check doesn't need to hash again
+		this.fingerprints.put(documentName, new Fingerprint(fingerprint.size, info.getLastModified(),
+				fingerprint.hash));
+		return true;
+	}
+
+	/**
+	 * Take a fingerprint of the file's current size, timestamp and content hash. Take it before the file is indexed
+	 * and record it with {@link #updateFingerprint(IFileStore, Fingerprint)} once indexing succeeded, so a file that
+	 * is edited while being indexed is still out of date afterwards.
+	 * 
+	 * @param file
+	 * @return the fingerprint, or null if the file doesn't exist or can't be read
+	 */
+	public Fingerprint getFingerprint(IFileStore file)
+	{
+		if (this.fingerprints == null)
+		{
+			return null;
+		}
+
+		IFileInfo info = file.fetchInfo();
+		if (!info.exists())
+		{
+			return null;
+		}
+
+		try
+		{
+			return new Fingerprint(info.getLength(), info.getLastModified(), hash(file));
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(IndexPlugin.getDefault(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Record the fingerprint taken before the file was indexed. Only call this once all the indexers succeeded, files
+	 * without a fingerprint are indexed again.
+	 * 
+	 * @param file
+	 * @param fingerprint
+	 *            The fingerprint returned by {@link #getFingerprint(IFileStore)}. Null is ignored
+	 */
+	public void updateFingerprint(IFileStore file, Fingerprint fingerprint)
+	{
+		if (this.fingerprints == null || fingerprint == null)
+		{
+			return;
+		}
+		this.fingerprints.put(file.toURI().toString(), fingerprint);
+	}
+
+	/**
+	 * Hash the content of the file
+	 * 
+	 * @param file
+	 * @return
+	 * @throws CoreException
+	 */
+	private static long hash(IFileStore file) throws CoreException
+	{
+		InputStream stream = file.openInputStream(EFS.NONE, null);
+		try
+		{
+			return FingerprintTable.hash(stream);
+		}
+		catch (IOException e)
+		{
+			throw new CoreException(new Status(IStatus.ERROR, IndexPlugin.PLUGIN_ID, e.getMessage(), e));
+		}
+		finally
+		{
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e)
+			{
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * The number of queries answered from the query cache. This and {@link #getQueryCacheMisses()} are meant for sizing
+	 * the cache through {@link IPreferenceConstants#QUERY_CACHE_SIZE}
+	 * 
+	 * @return
+	 */
+	public long getQueryCacheHits()
+	{
+		return (this.queryCache == null) ? 0 : this.queryCache.getHits();
+	}
+
+	/**
+	 * The number of queries that had to be run against the index because their results weren't cached
+	 * 
+	 * @return
+	 */
+	public long getQueryCacheMisses()
+	{
+		return (this.queryCache == null) ? 0 : this.queryCache.getMisses();
+	}
+
 	/**
 	 * getIndexFile
 	 * 
@@ -484,7 +818,7 @@ public class Index
 	 */
 	public File getIndexFile()
 	{
-		return this.diskIndex == null ? null : this.diskIndex.indexFile;
+		return this.diskIndex == null ? null : this.diskIndex.getIndexFile();
 	}
 
 	/**
@@ -542,6 +876,22 @@ public class Index
 			// We're in read mode for monitor here now matter what...
 			int rule = matchRule & MATCH_RULE_INDEX_MASK;
 
+			// results that include the current thread's uncommitted delta are private to it, so they bypass the cache.
+			// The stamp can't change while we hold the read lock
+			IndexDelta delta = this.deltas.get();
+			long generation = this.modificationStamp;
+			boolean useCache = this.queryCache != null && delta == null;
+
+			if (useCache)
+			{
+				List<QueryResult> cached = this.queryCache.get(categories, key, rule, generation);
+
+				if (cached != QueryCache.NOT_CACHED)
+				{
+					return (cached == null) ? null : new ArrayList<QueryResult>(cached);
+				}
+			}
+
 			if (this.memoryIndex.hasChanged())
 			{
 				results = this.diskIndex.addQueryResults(categories, key, rule, this.memoryIndex);
@@ -551,6 +901,19 @@ public class Index
 			{
 				results = this.diskIndex.addQueryResults(categories, key, rule, null);
 			}
+
+			// include what the current thread has added but not committed yet. Note that entries of documents the
+			// delta has removed are still reported until it is committed
+			if (delta != null)
+			{
+				results = delta.addQueryResults(categories, key, rule, results);
+			}
+
+			if (useCache)
+			{
+				this.queryCache.put(categories, key, rule, generation,
+						(results == null) ? null : new ArrayList<QueryResult>(results.values()));
+			}
 		}
 		catch (IOException e)
 		{
@@ -606,6 +969,20 @@ public class Index
 	{
 		String documentName = containerRelativeURI.toString();
 
+		// the entries no longer reflect the recorded content
+		if (this.fingerprints != null)
+		{
+			this.fingerprints.remove(documentName);
+		}
+
+		IndexDelta delta = this.deltas.get();
+
+		if (delta != null)
+		{
+			delta.remove(documentName);
+			return;
+		}
+
 		this.enterRead();
 		try
 		{
@@ -626,6 +1003,12 @@ public class Index
 		try
 		{
 			this.memoryIndex.remove(documentName);
+			this.modificationStamp++;
+
+			for (IIndexChangeListener listener : this.listeners)
+			{
+				listener.documentRemoved(this, documentName);
+			}
 		}
 		finally
 		{
@@ -644,7 +1027,12 @@ public class Index
 		try
 		{
 			this.memoryIndex.removeCategories(categoryNames);
-			this.diskIndex = this.diskIndex.removeCategories(categoryNames, this.memoryIndex);
+			this.modificationStamp++;
+			fireIndexReset();
+			this.diskIndex.removeCategories(categoryNames, this.memoryIndex);
+
+			// every document lost entries, so all of them need reindexing
+			this.fingerprints.clear();
 		}
 		catch (IOException e)
 		{
@@ -691,17 +1079,26 @@ public class Index
 			// no need to do anything if the memory index hasn't changed
 			if (!hasChanged())
 			{
+				saveFingerprints();
 				return;
 			}
 
 			int numberOfChanges = this.memoryIndex.numberOfChanges();
-			this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
+			this.diskIndex.flush(this.memoryIndex);
 			this.memoryIndex = new MemoryIndex();
 
 			if (numberOfChanges > 1000)
 			{
 				System.gc(); // reclaim space if the MemoryIndex was very BIG
 			}
+
+			// only written once the entries they describe are on disk
+			saveFingerprints();
+
+			if (this.diskIndex.needsCompaction())
+			{
+				scheduleCompaction();
+			}
 		}
 		catch (Exception e)
 		{
@@ -716,6 +1113,58 @@ public class Index
 		}
 	}
 
+	/**
+	 * saveFingerprints
+	 * 
+	 * @throws IOException
+	 */
+	private void saveFingerprints() throws IOException
+	{
+		if (this.fingerprints != null)
+		{
+			this.fingerprints.save();
+		}
+	}
+
+	/**
+	 * Fold the accumulated disk segments back into the main index file in the background
+	 */
+	private synchronized void scheduleCompaction()
+	{
+		if (this.compactionJob == null)
+		{
+			this.compactionJob = new Job(MessageFormat.format(Messages.Index_Compacting, this.containerURI))
+			{
+				protected IStatus run(IProgressMonitor monitor)
+				{
+					enterWrite();
+					try
+					{
+						diskIndex.compact();
+					}
+					catch (IOException e)
+					{
+						IdeLog.logError(IndexPlugin.getDefault(), e);
+					}
+					finally
+					{
+						exitWrite();
+					}
+
+					return Status.OK_STATUS;
+				}
+			};
+			this.compactionJob.setSystem(true);
+			this.compactionJob.setPriority(Job.DECORATE);
+		}
+
+		// a pending run will pick up the latest segments, so there's no need to queue another
+		if (this.compactionJob.getState() != Job.WAITING)
+		{
+			this.compactionJob.schedule();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#toString()
@@ -737,8 +1186,15 @@ public class Index
 	 */
 	public void reset() throws IOException
 	{
+		SegmentedIndex oldIndex = this.diskIndex;
+
+		oldIndex.close();
 		this.memoryIndex = new MemoryIndex();
-		this.diskIndex = new DiskIndex(this.diskIndex.indexFile.getCanonicalPath());
+		this.modificationStamp++;
+		fireIndexReset();
+		this.diskIndex = new SegmentedIndex(oldIndex.getIndexFile().getCanonicalPath(), oldIndex.isMemoryMapped(),
+				oldIndex.isSegmented());
 		this.diskIndex.initialize(false/* do not reuse the index file */);
+		this.fingerprints.clear();
 	}
 }
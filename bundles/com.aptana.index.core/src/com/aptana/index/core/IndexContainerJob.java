@@ -30,7 +30,9 @@ import com.aptana.core.util.CollectionsUtil;
 /**
  * This class takes the URI of a container. It collects all the files underneath the container recursively, and then
  * attempts to index the diff since our last index. this involves wiping entries for files/documents that no longer
- * exist, and re-indexing files that have been modified since the last time we modified our index file.
+ * exist, and re-indexing files whose content has changed since they were last indexed (see
+ * {@link Index#isUpToDate(IFileStore)}). Files without a recorded fingerprint are re-indexed if they have been modified
+ * since the last time we modified our index file.
  * 
  * @author cwilliams
  */
@@ -107,7 +109,7 @@ public class IndexContainerJob extends IndexRequestJob
 			{
 				return Status.CANCEL_STATUS;
 			}
-			files = filterFilesByTimestamp(timestamp, files);
+			files = filterUnchangedFiles(index, timestamp, files);
 			sub.worked(50);
 
 			if (!CollectionsUtil.isEmpty(files))
@@ -176,6 +178,34 @@ public class IndexContainerJob extends IndexRequestJob
 		sub.done();
 	}
 
+	/**
+	 * Filters the set of {@link IFileStore}s to those that need to be re-indexed. Files with a fingerprint in the index
+	 * are kept if their content changed, the rest are filtered by {@link #filterFilesByTimestamp(long, Set)}.
+	 * 
+	 * @param index
+	 * @param indexLastModified
+	 * @param files
+	 * @return
+	 */
+	protected Set<IFileStore> filterUnchangedFiles(Index index, long indexLastModified, Set<IFileStore> files)
+	{
+		Set<IFileStore> filtered = new HashSet<IFileStore>(files.size());
+		Set<IFileStore> unknown = new HashSet<IFileStore>();
+		for (IFileStore file : files)
+		{
+			if (!index.hasFingerprint(file))
+			{
+				unknown.add(file);
+			}
+			else if (!index.isUpToDate(file))
+			{
+				filtered.add(file);
+			}
+		}
+		filtered.addAll(filterFilesByTimestamp(indexLastModified, unknown));
+		return filtered;
+	}
+
 	/**
 	 * Filters the set of {@link IFileStore}s to those whose lastMod is at or after the passed in mod timestamp.
 	 * 
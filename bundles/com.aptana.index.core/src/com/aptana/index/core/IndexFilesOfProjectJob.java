@@ -25,8 +25,10 @@ import org.eclipse.core.runtime.SubMonitor;
 import com.aptana.core.logging.IdeLog;
 
 /**
- * This job updates/re-indexes the Set of IFiles passed in for a given IProject. This does _not_ filter the file set in
- * any way based on timestamps, it will force a re-index of each file!
+ * This job updates/re-indexes the Set of IFiles passed in for a given IProject. This does _not_ filter the file set
+ * based on timestamps. The only files skipped are those whose fingerprint shows their content is unchanged since they
+ * were last indexed (see {@link Index#isUpToDate(IFileStore)}). Removing a file's entries drops its fingerprint, so
+ * files removed from the index beforehand are always re-indexed.
  * 
  * @author cwilliams
  */
@@ -67,7 +69,7 @@ public class IndexFilesOfProjectJob extends IndexRequestJob
 		}
 		try
 		{
-			Set<IFileStore> fileStores = toFileStores(sub.newChild(files.size()));
+			Set<IFileStore> fileStores = toFileStores(index, sub.newChild(files.size()));
 			if (sub.isCanceled())
 			{
 				return Status.CANCEL_STATUS;
@@ -93,7 +95,7 @@ public class IndexFilesOfProjectJob extends IndexRequestJob
 		return Status.OK_STATUS;
 	}
 
-	protected Set<IFileStore> toFileStores(IProgressMonitor monitor)
+	protected Set<IFileStore> toFileStores(Index index, IProgressMonitor monitor)
 	{
 		SubMonitor sub = SubMonitor.convert(monitor, files.size());
 		Set<IFileStore> fileStores = new HashSet<IFileStore>(files.size());
@@ -102,7 +104,7 @@ public class IndexFilesOfProjectJob extends IndexRequestJob
 			try
 			{
 				IFileStore store = EFS.getStore(file.getLocationURI());
-				if (store == null)
+				if (store == null || index.isUpToDate(store))
 				{
 					continue;
 				}
@@ -17,6 +17,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.eclipse.core.runtime.CoreException;
@@ -33,6 +39,11 @@ import com.aptana.core.util.IConfigurationElementProcessor;
 import com.aptana.core.util.StringUtil;
 import com.aptana.index.core.filter.IIndexFilterParticipant;
 
+/**
+ * Keeps track of the index for each container and of the participants contributed through extension points. Indexes
+ * are opened lazily, at most once per URI, and other URIs are never blocked while one is opened, reset or recreated.
+ * Extension point contributions are read once and published as immutable lists.
+ */
 public class IndexManager
 {
 	/**
@@ -48,10 +59,13 @@ public class IndexManager
 	private static final String FILE_CONTRIBUTORS_ID = "fileContributors"; //$NON-NLS-1$
 	private static final String ELEMENT_CONTRIBUTOR = "contributor"; //$NON-NLS-1$
 
-	private Map<URI, Index> indexes;
+	private final ConcurrentMap<URI, Future<Index>> indexes;
+	private final ConcurrentMap<URI, Object> indexLocks;
 
-	private ArrayList<IIndexFileContributor> fileContributors;
-	private ArrayList<IIndexFilterParticipant> filterParticipants;
+	private final Object extensionLock = new Object();
+	private volatile Map<IConfigurationElement, Set<IContentType>> indexingParticipants;
+	private volatile List<IIndexFileContributor> fileContributors;
+	private volatile List<IIndexFilterParticipant> filterParticipants;
 
 	static final ISchedulingRule MUTEX_RULE = new ISchedulingRule()
 	{
@@ -71,7 +85,8 @@ public class IndexManager
 	 */
 	IndexManager()
 	{
-		this.indexes = new HashMap<URI, Index>();
+		this.indexes = new ConcurrentHashMap<URI, Future<Index>>();
+		this.indexLocks = new ConcurrentHashMap<URI, Object>();
 	}
 
 	/**
@@ -80,38 +95,127 @@ public class IndexManager
 	 * @param path
 	 * @return
 	 */
-	public synchronized Index getIndex(URI path)
+	public Index getIndex(final URI path)
 	{
-		Index index = this.indexes.get(path);
+		if (path == null)
+		{
+			return null;
+		}
+
+		Future<Index> future = this.indexes.get(path);
+
+		if (future == null)
+		{
+			FutureTask<Index> task = new FutureTask<Index>(new Callable<Index>()
+			{
+				public Index call() throws Exception
+				{
+					return openIndex(path);
+				}
+			});
+
+			// only the thread that registers the task opens the index, everyone else waits for its result
+			future = this.indexes.putIfAbsent(path, task);
+			if (future == null)
+			{
+				future = task;
+				task.run();
+			}
+		}
+
+		Index index = getIndex(future);
 
 		if (index == null)
+		{
+			// let the next caller try again
+			this.indexes.remove(path, future);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Wait for the index of a future. Returns null if opening the index failed
+	 * 
+	 * @param future
+	 * @return
+	 */
+	private Index getIndex(Future<Index> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			IdeLog.logError(IndexPlugin.getDefault(), e.getCause());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Open the index for a path, falling back to an empty index that is rebuilt in the background if the existing
+	 * index file can't be used
+	 * 
+	 * @param path
+	 * @return
+	 */
+	private Index openIndex(URI path)
+	{
+		try
+		{
+			// First try to re-use an existing file if possible
+			return new Index(path, true);
+		}
+		catch (IOException e)
 		{
 			try
 			{
-				// First try to re-use an existing file if possible
-				index = new Index(path, true);
-				indexes.put(path, index);
+				// We failed. Most likely disk index signature changed or got corrupted.
+				// Don't re-use the file (create an empty index file)
+				Index index = new Index(path, false);
+
+				// force a rebuild of the index.
+				new RebuildIndexJob(path).schedule();
+
+				return index;
 			}
-			catch (IOException e)
+			catch (IOException e1)
 			{
-				try
-				{
-					// We failed. Most likely disk index signature changed or got corrupted.
-					// Don't re-use the file (create an empty index file)
-					index = new Index(path, false);
-					this.indexes.put(path, index);
+				IdeLog.logError(IndexPlugin.getDefault(), "An error occurred while trying to access an index", e1); //$NON-NLS-1$
+			}
+		}
 
-					// force a rebuild of the index.
-					new RebuildIndexJob(path).schedule();
-				}
-				catch (IOException e1)
-				{
-					IdeLog.logError(IndexPlugin.getDefault(), "An error occurred while trying to access an index", e1); //$NON-NLS-1$
-				}
+		return null;
+	}
+
+	/**
+	 * Return the lock used to serialize removing, resetting and recreating the index for a path
+	 * 
+	 * @param path
+	 * @return
+	 */
+	private Object getIndexLock(URI path)
+	{
+		Object lock = this.indexLocks.get(path);
+
+		if (lock == null)
+		{
+			Object newLock = new Object();
+
+			lock = this.indexLocks.putIfAbsent(path, newLock);
+			if (lock == null)
+			{
+				lock = newLock;
 			}
 		}
 
-		return index;
+		return lock;
 	}
 
 	/**
@@ -119,7 +223,7 @@ public class IndexManager
 	 * 
 	 * @return
 	 */
-	public synchronized List<URI> getIndexPaths()
+	public List<URI> getIndexPaths()
 	{
 		return new ArrayList<URI>(indexes.keySet());
 	}
@@ -129,16 +233,19 @@ public class IndexManager
 	 * RE-INDEXING THE CONTENTS! IT WILL BREAK ANY CURRENT REFS TO THIS INDEX. USE {@link #resetIndex(URI)}! This method
 	 * is used to remove indices entirely when we do not plan re-use them (i.e. the project it represented was deleted)
 	 */
-	public synchronized void removeIndex(URI path)
+	public void removeIndex(URI path)
 	{
-		Index index = getIndex(path);
-
-		if (index != null)
+		synchronized (getIndexLock(path))
 		{
-			index.deleteIndexFile();
-		}
+			Index index = getIndex(path);
 
-		this.indexes.remove(path);
+			if (index != null)
+			{
+				index.deleteIndexFile();
+			}
+
+			this.indexes.remove(path);
+		}
 	}
 
 	/**
@@ -147,6 +254,31 @@ public class IndexManager
 	 * @return
 	 */
 	private Map<IConfigurationElement, Set<IContentType>> getFileIndexingParticipants()
+	{
+		Map<IConfigurationElement, Set<IContentType>> result = indexingParticipants;
+
+		if (result == null)
+		{
+			synchronized (extensionLock)
+			{
+				result = indexingParticipants;
+				if (result == null)
+				{
+					result = Collections.unmodifiableMap(loadFileIndexingParticipants());
+					indexingParticipants = result;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Read the file indexing participant extensions
+	 * 
+	 * @return
+	 */
+	private Map<IConfigurationElement, Set<IContentType>> loadFileIndexingParticipants()
 	{
 		final Map<IConfigurationElement, Set<IContentType>> map = new HashMap<IConfigurationElement, Set<IContentType>>();
 		final IContentTypeManager manager = Platform.getContentTypeManager();
@@ -268,38 +400,60 @@ public class IndexManager
 	 * 
 	 * @return
 	 */
-	public synchronized List<IIndexFileContributor> getFileContributors()
+	public List<IIndexFileContributor> getFileContributors()
 	{
-		if (fileContributors == null)
+		List<IIndexFileContributor> result = fileContributors;
+
+		if (result == null)
 		{
-			fileContributors = new ArrayList<IIndexFileContributor>();
-			EclipseUtil.processConfigurationElements(IndexPlugin.PLUGIN_ID, FILE_CONTRIBUTORS_ID,
-					new IConfigurationElementProcessor()
-					{
+			synchronized (extensionLock)
+			{
+				result = fileContributors;
+				if (result == null)
+				{
+					result = Collections.unmodifiableList(loadFileContributors());
+					fileContributors = result;
+				}
+			}
+		}
 
-						public void processElement(IConfigurationElement element)
+		return result;
+	}
+
+	/**
+	 * Read the file contributor extensions
+	 * 
+	 * @return
+	 */
+	private List<IIndexFileContributor> loadFileContributors()
+	{
+		final ArrayList<IIndexFileContributor> result = new ArrayList<IIndexFileContributor>();
+		EclipseUtil.processConfigurationElements(IndexPlugin.PLUGIN_ID, FILE_CONTRIBUTORS_ID,
+				new IConfigurationElementProcessor()
+				{
+
+					public void processElement(IConfigurationElement element)
+					{
+						try
 						{
-							try
-							{
-								IIndexFileContributor participant = (IIndexFileContributor) element
-										.createExecutableExtension(ATTR_CLASS);
-								fileContributors.add(participant);
-							}
-							catch (CoreException e)
-							{
-								IdeLog.logError(IndexPlugin.getDefault(), e);
-							}
+							IIndexFileContributor participant = (IIndexFileContributor) element
+									.createExecutableExtension(ATTR_CLASS);
+							result.add(participant);
 						}
-
-						public Set<String> getSupportElementNames()
+						catch (CoreException e)
 						{
-							return CollectionsUtil.newSet(ELEMENT_CONTRIBUTOR);
+							IdeLog.logError(IndexPlugin.getDefault(), e);
 						}
-					});
-			fileContributors.trimToSize();
-		}
+					}
 
-		return fileContributors;
+					public Set<String> getSupportElementNames()
+					{
+						return CollectionsUtil.newSet(ELEMENT_CONTRIBUTOR);
+					}
+				});
+		result.trimToSize();
+
+		return result;
 	}
 
 	/**
@@ -307,63 +461,87 @@ public class IndexManager
 	 * 
 	 * @return
 	 */
-	public synchronized List<IIndexFilterParticipant> getFilterParticipants()
+	public List<IIndexFilterParticipant> getFilterParticipants()
 	{
-		if (filterParticipants == null)
+		List<IIndexFilterParticipant> result = filterParticipants;
+
+		if (result == null)
 		{
-			filterParticipants = new ArrayList<IIndexFilterParticipant>();
-			EclipseUtil.processConfigurationElements(IndexPlugin.PLUGIN_ID, INDEX_FILTER_PARTICIPANTS_ID,
-					new IConfigurationElementProcessor()
-					{
+			synchronized (extensionLock)
+			{
+				result = filterParticipants;
+				if (result == null)
+				{
+					result = Collections.unmodifiableList(loadFilterParticipants());
+					filterParticipants = result;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Read the index filter participant extensions
+	 * 
+	 * @return
+	 */
+	private List<IIndexFilterParticipant> loadFilterParticipants()
+	{
+		final ArrayList<IIndexFilterParticipant> result = new ArrayList<IIndexFilterParticipant>();
+		EclipseUtil.processConfigurationElements(IndexPlugin.PLUGIN_ID, INDEX_FILTER_PARTICIPANTS_ID,
+				new IConfigurationElementProcessor()
+				{
 
-						public void processElement(IConfigurationElement element)
+					public void processElement(IConfigurationElement element)
+					{
+						try
 						{
-							try
-							{
-								IIndexFilterParticipant participant = (IIndexFilterParticipant) element
-										.createExecutableExtension(ATTR_CLASS);
-								filterParticipants.add(participant);
-							}
-							catch (CoreException e)
-							{
-								IdeLog.logError(IndexPlugin.getDefault(), e);
-							}
+							IIndexFilterParticipant participant = (IIndexFilterParticipant) element
+									.createExecutableExtension(ATTR_CLASS);
+							result.add(participant);
 						}
-
-						public Set<String> getSupportElementNames()
+						catch (CoreException e)
 						{
-							return CollectionsUtil.newSet(ELEMENT_FILTER);
+							IdeLog.logError(IndexPlugin.getDefault(), e);
 						}
-					});
-			filterParticipants.trimToSize();
-		}
+					}
+
+					public Set<String> getSupportElementNames()
+					{
+						return CollectionsUtil.newSet(ELEMENT_FILTER);
+					}
+				});
+		result.trimToSize();
 
-		return filterParticipants;
+		return result;
 	}
 
 	/**
 	 * Resets the index for a given path. Returns true if the index was reset, false otherwise.
 	 */
-	public synchronized boolean resetIndex(URI path)
+	public boolean resetIndex(URI path)
 	{
-
-		try
+		synchronized (getIndexLock(path))
 		{
-			Index index = getIndex(path);
+			try
+			{
+				Index index = getIndex(path);
 
-			if (index != null)
+				if (index != null)
+				{
+					index.reset();
+					return true;
+				}
+
+				return recreateIndex(path) != null;
+			}
+			catch (IOException e)
 			{
-				index.reset();
-				return true;
+				// The file could not be created. Possible reason: the project has been deleted.
+				IdeLog.logError(IndexPlugin.getDefault(), e);
+				return false;
 			}
-
-			return recreateIndex(path) != null;
-		}
-		catch (IOException e)
-		{
-			// The file could not be created. Possible reason: the project has been deleted.
-			IdeLog.logError(IndexPlugin.getDefault(), e);
-			return false;
 		}
 	}
 
@@ -371,30 +549,58 @@ public class IndexManager
 	 * Recreates the index for a given path, keeping the same read-write monitor. Returns the new empty index or null if
 	 * it didn't exist before. Warning: Does not check whether index is consistent (not being used)
 	 */
-	public synchronized Index recreateIndex(URI path)
+	public Index recreateIndex(URI path)
 	{
-		try
+		synchronized (getIndexLock(path))
 		{
-			// Path is already canonical
-			Index index = getIndex(path);
+			try
+			{
+				// Path is already canonical
+				Index index = getIndex(path);
 
-			ReadWriteLock monitor = index == null ? null : index.monitor;
+				ReadWriteLock monitor = index == null ? null : index.monitor;
 
-			index = new Index(path, false);
-			indexes.put(path, index);
-			index.monitor = monitor;
-			return index;
-		}
-		catch (IOException e)
-		{
-			// The file could not be created. Possible reason: the project has been deleted.
-			IdeLog.logError(IndexPlugin.getDefault(), e);
-			return null;
+				index = new Index(path, false);
+				if (monitor != null)
+				{
+					index.monitor = monitor;
+				}
+
+				FutureTask<Index> task = new FutureTask<Index>(new Runnable()
+				{
+					public void run()
+					{
+						// the index is already open
+					}
+				}, index);
+				task.run();
+				indexes.put(path, task);
+
+				return index;
+			}
+			catch (IOException e)
+			{
+				// The file could not be created. Possible reason: the project has been deleted.
+				IdeLog.logError(IndexPlugin.getDefault(), e);
+				return null;
+			}
 		}
 	}
 
 	public String toString()
 	{
-		return "[" + StringUtil.join(", ", indexes.values()) + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		List<Index> openIndexes = new ArrayList<Index>();
+		for (Future<Index> future : indexes.values())
+		{
+			if (future.isDone())
+			{
+				Index index = getIndex(future);
+				if (index != null)
+				{
+					openIndexes.add(index);
+				}
+			}
+		}
+		return "[" + StringUtil.join(", ", openIndexes) + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 	}
 }
@@ -17,14 +17,17 @@ import java.util.Set;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 
+import com.aptana.core.IMap;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.index.core.build.BuildContext;
 import com.aptana.index.core.filter.IIndexFilterParticipant;
+import com.aptana.internal.index.core.FingerprintTable.Fingerprint;
 
 abstract class IndexRequestJob extends Job
 {
@@ -174,6 +177,13 @@ abstract class IndexRequestJob extends Job
 			return;
 		}
 
+		int workerCount = Math.min(IndexWorkerPool.getWorkerCount(), fileStores.size());
+		if (workerCount > 1)
+		{
+			indexFileStores(index, fileStores, workerCount, monitor);
+			return;
+		}
+
 		int remaining = fileStores.size();
 		SubMonitor sub = SubMonitor.convert(monitor, remaining * 11);
 		try
@@ -184,11 +194,13 @@ abstract class IndexRequestJob extends Job
 				{
 					throw new CoreException(Status.CANCEL_STATUS);
 				}
-				// First cleanup old index entries for file
+				// Fingerprint the content we're about to index, then cleanup old index entries for file
+				Fingerprint fingerprint = index.getFingerprint(file);
 				index.remove(file.toURI());
 				sub.worked(1);
 
 				// Now run indexers on file
+				boolean succeeded = true;
 				List<IFileStoreIndexingParticipant> indexers = getIndexParticipants(file);
 				if (!CollectionsUtil.isEmpty(indexers))
 				{
@@ -207,9 +219,15 @@ abstract class IndexRequestJob extends Job
 						catch (CoreException e)
 						{
 							IdeLog.logError(IndexPlugin.getDefault(), e);
+							succeeded = false;
 						}
 					}
 				}
+				if (succeeded)
+				{
+					index.updateFingerprint(file, fingerprint);
+				}
+
 				// Update remaining units
 				remaining--;
 				sub.setWorkRemaining(remaining * 11);
@@ -221,6 +239,102 @@ abstract class IndexRequestJob extends Job
 		}
 	}
 
+	/**
+	 * Index the file stores on a pool of worker threads. Each worker collects the changes for a file in its own index
+	 * delta, which is applied to the index once the file is done.
+	 * 
+	 * @param index
+	 * @param fileStores
+	 * @param workerCount
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	private void indexFileStores(final Index index, Set<IFileStore> fileStores, int workerCount,
+			IProgressMonitor monitor) throws CoreException
+	{
+		SubMonitor sub = SubMonitor.convert(monitor, fileStores.size());
+		IndexWorkerPool<IFileStore, IFileStore> pool = new IndexWorkerPool<IFileStore, IFileStore>(getName(),
+				workerCount, new IMap<IFileStore, IFileStore>()
+				{
+					public IFileStore map(IFileStore file)
+					{
+						indexFileStore(index, file);
+						return file;
+					}
+				});
+
+		try
+		{
+			pool.start(fileStores);
+
+			while (pool.hasNext())
+			{
+				pool.next();
+				sub.worked(1);
+
+				if (sub.isCanceled())
+				{
+					pool.cancel();
+				}
+			}
+		}
+		finally
+		{
+			pool.dispose();
+			sub.done();
+		}
+
+		if (sub.isCanceled())
+		{
+			throw new CoreException(Status.CANCEL_STATUS);
+		}
+	}
+
+	/**
+	 * Replace the index entries of a single file. This is called on the worker threads
+	 * 
+	 * @param index
+	 * @param file
+	 */
+	private void indexFileStore(Index index, IFileStore file)
+	{
+		Fingerprint fingerprint = index.getFingerprint(file);
+		boolean succeeded = true;
+		index.beginDelta();
+		try
+		{
+			// First cleanup old index entries for file
+			index.remove(file.toURI());
+
+			// Now run indexers on file
+			List<IFileStoreIndexingParticipant> indexers = getIndexParticipants(file);
+			if (!CollectionsUtil.isEmpty(indexers))
+			{
+				BuildContext context = new FileStoreBuildContext(file);
+				for (IFileStoreIndexingParticipant indexer : indexers)
+				{
+					try
+					{
+						indexer.index(context, index, new NullProgressMonitor());
+					}
+					catch (CoreException e)
+					{
+						IdeLog.logError(IndexPlugin.getDefault(), e);
+						succeeded = false;
+					}
+				}
+			}
+		}
+		finally
+		{
+			index.commitDelta();
+		}
+		if (succeeded)
+		{
+			index.updateFingerprint(file, fingerprint);
+		}
+	}
+
 	protected List<IFileStoreIndexingParticipant> getIndexParticipants(IFileStore file)
 	{
 		IndexManager indexManager = getIndexManager();
@@ -0,0 +1,230 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.Platform;
+
+import com.aptana.core.IMap;
+import com.aptana.core.logging.IdeLog;
+
+/**
+ * Runs a task over a collection of items (typically the files of a build) on a fixed number of worker threads. Only a
+ * few items per worker are queued at any time so the results of a large build don't pile up in memory. Results are
+ * handed back to the calling thread, in completion order, through {@link #hasNext()} and {@link #next()}, so work that
+ * must stay on the calling thread (progress reporting, workspace updates) can be done there.
+ * 
+ * @param <T>
+ *            the type of the items
+ * @param <R>
+ *            the type of the results
+ */
+public class IndexWorkerPool<T, R>
+{
+	private static final int ITEMS_PER_WORKER = 2;
+
+	/**
+	 * Return the number of workers to use for builds, as configured by
+	 * {@link IPreferenceConstants#INDEX_WORKER_COUNT}. Files are indexed serially unless that's set otherwise
+	 * 
+	 * @return
+	 */
+	public static int getWorkerCount()
+	{
+		int count = Platform.getPreferencesService().getInt(IndexPlugin.PLUGIN_ID,
+				IPreferenceConstants.INDEX_WORKER_COUNT, IPreferenceConstants.DEFAULT_INDEX_WORKER_COUNT, null);
+
+		return (count > 0) ? count : Runtime.getRuntime().availableProcessors();
+	}
+
+	private final ExecutorService executor;
+	private final CompletionService<R> completion;
+	private final IMap<T, R> task;
+	private final int maxPending;
+	private Iterator<? extends T> items;
+
+	/**
+	 * The items queued or being processed whose results haven't been retrieved
+	 */
+	private final Set<Future<R>> pending;
+
+	/**
+	 * IndexWorkerPool
+	 * 
+	 * @param name
+	 *            the base name for the worker threads
+	 * @param workerCount
+	 * @param task
+	 *            the task to run on each item. It is called from the worker threads
+	 */
+	public IndexWorkerPool(final String name, int workerCount, IMap<T, R> task)
+	{
+		this.executor = Executors.newFixedThreadPool(workerCount, new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, name + " " + count.incrementAndGet()); //$NON-NLS-1$
+
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+		this.completion = new ExecutorCompletionService<R>(executor);
+		this.task = task;
+		this.maxPending = workerCount * ITEMS_PER_WORKER;
+		this.items = Collections.<T> emptyList().iterator();
+		this.pending = new HashSet<Future<R>>();
+	}
+
+	/**
+	 * Stop handing out new items. Items already queued are still processed and returned by {@link #next()}
+	 */
+	public void cancel()
+	{
+		this.items = Collections.<T> emptyList().iterator();
+	}
+
+	/**
+	 * Shut down the worker threads and wait for them to finish. Items whose results haven't been retrieved and that
+	 * haven't been started yet are dropped, so the tasks of the pool never outlive it
+	 */
+	public void dispose()
+	{
+		cancel();
+		abandonPending();
+		this.executor.shutdown();
+
+		try
+		{
+			this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			this.executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns true while there are results that haven't been retrieved
+	 * 
+	 * @return
+	 */
+	public boolean hasNext()
+	{
+		return !this.pending.isEmpty();
+	}
+
+	/**
+	 * Wait for the next result. Returns null if the task failed for the item, or if the calling thread was interrupted,
+	 * in which case no new items are handed out and the results not retrieved yet are dropped
+	 * 
+	 * @return
+	 */
+	public R next()
+	{
+		Future<R> future;
+
+		try
+		{
+			future = this.completion.take();
+		}
+		catch (InterruptedException e)
+		{
+			// the caller gives up on the remaining results, so none are left to wait for
+			cancel();
+			abandonPending();
+			Thread.currentThread().interrupt();
+			return null;
+		}
+
+		this.pending.remove(future);
+
+		R result = null;
+
+		try
+		{
+			result = future.get();
+		}
+		catch (InterruptedException e)
+		{
+			// can't happen, the future is done
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			IdeLog.logError(IndexPlugin.getDefault(), e.getCause());
+		}
+
+		submitItems();
+
+		return result;
+	}
+
+	/**
+	 * Start processing the specified items
+	 * 
+	 * @param items
+	 */
+	public void start(Collection<? extends T> items)
+	{
+		this.items = items.iterator();
+
+		submitItems();
+	}
+
+	/**
+	 * Drop the items whose results haven't been retrieved. Those already being processed are left to finish
+	 */
+	private void abandonPending()
+	{
+		for (Future<R> future : this.pending)
+		{
+			future.cancel(false);
+		}
+
+		this.pending.clear();
+	}
+
+	/**
+	 * Queue items until the workers have enough to do
+	 */
+	private void submitItems()
+	{
+		while (this.pending.size() < this.maxPending && this.items.hasNext())
+		{
+			final T item = this.items.next();
+
+			this.pending.add(this.completion.submit(new Callable<R>()
+			{
+				public R call() throws Exception
+				{
+					return task.map(item);
+				}
+			}));
+		}
+	}
+}
@@ -8,6 +8,8 @@ public class Messages extends NLS
 
 	public static String AbstractFileIndexingParticipant_Indexing_Message;
 
+	public static String Index_Compacting;
+
 	public static String IndexFilesOfProjectJob_Name;
 	public static String IndexPlugin_IndexingFile;
 	public static String IndexRequestJob_Name;
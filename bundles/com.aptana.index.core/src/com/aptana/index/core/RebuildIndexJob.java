@@ -13,7 +13,8 @@ import java.util.Set;
 import org.eclipse.core.filesystem.IFileStore;
 
 /**
- * Special subclass of IndexContainerJob that ignores the index timestamp and forces all files to be re-indexed.
+ * Special subclass of IndexContainerJob that ignores the index timestamp and file fingerprints and forces all files to
+ * be re-indexed.
  * 
  * @author cwilliams
  */
@@ -26,7 +27,7 @@ public class RebuildIndexJob extends IndexContainerJob
 	}
 
 	@Override
-	protected Set<IFileStore> filterFilesByTimestamp(long indexLastModified, Set<IFileStore> files)
+	protected Set<IFileStore> filterUnchangedFiles(Index index, long indexLastModified, Set<IFileStore> files)
 	{
 		return files;
 	}
@@ -137,7 +137,8 @@ public class BuildContext
 	protected ParseResult parse(String contentType, IParseState parseState, WorkingParseResult working)
 			throws Exception
 	{
-		return ParserPoolFactory.parse(contentType, parseState);
+		// Builds parse whole files which usually didn't change since the last session, so keep them on disk.
+		return ParserPoolFactory.parse(contentType, parseState, true);
 	}
 
 	public synchronized void resetAST()
@@ -26,5 +26,10 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer
 		IEclipsePreferences prefs = DefaultScope.INSTANCE.getNode(IndexPlugin.PLUGIN_ID);
 
 		prefs.put(IPreferenceConstants.FILTERED_INDEX_URIS, IPreferenceConstants.NO_ITEMS);
+		prefs.putBoolean(IPreferenceConstants.USE_MEMORY_MAPPED_INDEX,
+				IPreferenceConstants.DEFAULT_USE_MEMORY_MAPPED_INDEX);
+		prefs.putBoolean(IPreferenceConstants.USE_SEGMENTED_INDEX, IPreferenceConstants.DEFAULT_USE_SEGMENTED_INDEX);
+		prefs.putInt(IPreferenceConstants.INDEX_WORKER_COUNT, IPreferenceConstants.DEFAULT_INDEX_WORKER_COUNT);
+		prefs.putInt(IPreferenceConstants.QUERY_CACHE_SIZE, IPreferenceConstants.DEFAULT_QUERY_CACHE_SIZE);
 	}
 }
@@ -20,12 +20,16 @@ import java.io.UTFDataFormatException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
@@ -39,6 +43,10 @@ import com.aptana.index.core.SearchPattern;
  * Yuck this needs to be a random access file that stores the index of documents, category names, and the relationship
  * between them. We need to be careful to allow for quick access into the categories when reading, and to keep filesize
  * down if possible.
+ * <p>
+ * Queries may run concurrently from many reader threads. When created in memory-mapped mode the index file is opened
+ * once and every read seeks directly to the chunk or category offset it needs instead of re-opening the file and
+ * skipping forward to it.
  * 
  * @author cwilliams
  */
@@ -63,20 +71,39 @@ public class DiskIndex
 	// Usually a map from string to map from string to list of integer. But may also be a single integer (to represent a
 	// pointer to long array)
 	// FIXME YUCK!! This "usually a list of integers, sometimes one integer that acts as a pointer" stuff is killing me!
-	private Map<String, Map<String, Object>> categoryTables;
+	private volatile Map<String, Map<String, Object>> categoryTables;
 
 	private int streamEnd;
-	private String[][] cachedChunks;
+	private volatile AtomicReferenceArray<String[]> cachedChunks;
 	private String[] categoriesToDiscard;
 
+	private final boolean memoryMapped;
+	private volatile MappedIndexFile mappedFile;
+
+	// documents that have been superseded by a newer index segment. Their entries are skipped by queries
+	private volatile BitSet deletedDocuments;
+
 	/**
 	 * DiskIndex
 	 * 
 	 * @param fileName
 	 */
 	public DiskIndex(String fileName)
+	{
+		this(fileName, false);
+	}
+
+	/**
+	 * DiskIndex
+	 * 
+	 * @param fileName
+	 * @param memoryMapped
+	 *            If true, reads are served from a single memory-mapped view of the index file
+	 */
+	public DiskIndex(String fileName, boolean memoryMapped)
 	{
 		this.indexFile = new File(fileName);
+		this.memoryMapped = memoryMapped;
 
 		// clear cached items
 		this.headerInfoOffset = -1;
@@ -100,7 +127,7 @@ public class DiskIndex
 	public Set<String> addDocumentNames(String substring, MemoryIndex memoryIndex) throws IOException
 	{
 		// must skip over documents which have been added/changed/deleted in the memory index
-		List<String> docNames = readAllDocumentNames();
+		List<String> docNames = readLiveDocumentNames();
 		Set<String> results = new HashSet<String>(docNames.size());
 
 		if (substring == null)
@@ -184,7 +211,16 @@ public class DiskIndex
 
 			for (Integer docNumber : docNumbers)
 			{
-				result.addDocumentName(readDocumentName(docNumber));
+				if (!isDeleted(docNumber))
+				{
+					result.addDocumentName(readDocumentName(docNumber));
+				}
+			}
+
+			if (result.getDocuments().isEmpty())
+			{
+				// every reference was superseded by a newer segment
+				results.remove(word);
 			}
 		}
 		else
@@ -200,6 +236,11 @@ public class DiskIndex
 
 			for (Integer docNumber : docNumbers)
 			{
+				if (isDeleted(docNumber))
+				{
+					continue;
+				}
+
 				String docName = readDocumentName(docNumber);
 
 				if (!docsToRefs.containsKey(docName))
@@ -345,35 +386,41 @@ public class DiskIndex
 	 */
 	private void cacheDocumentNames() throws IOException
 	{
-		// will need all document names so get them now
-		this.cachedChunks = new String[this.numberOfChunks][];
-
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+		// will need all document names so get them now. Fill a private table and publish it once it is complete
+		AtomicReferenceArray<String[]> chunks = new AtomicReferenceArray<String[]>(this.numberOfChunks);
+		InputStream stream = openStream(this.chunkOffsets[0]);
 
 		try
 		{
-			// if (this.numberOfChunks > 5)
-			// BUFFER_READ_SIZE <<= 1;
-			int offset = this.chunkOffsets[0];
-
-			skip(stream, offset);
-
 			for (int i = 0; i < this.numberOfChunks; i++)
 			{
 				int size = i == this.numberOfChunks - 1 ? this.sizeOfLastChunk : CHUNK_SIZE;
+				String[] chunk = new String[size];
 
-				readChunk(this.cachedChunks[i] = new String[size], stream, 0, size);
+				readChunk(chunk, stream, 0, size);
+				chunks.set(i, chunk);
 			}
 		}
-		catch (IOException e)
-		{
-			this.cachedChunks = null;
-			throw e;
-		}
 		finally
 		{
 			stream.close();
 		}
+
+		this.cachedChunks = chunks;
+	}
+
+	/**
+	 * Release any open handle on the index file. This must be called before the file is deleted or replaced.
+	 */
+	public void close()
+	{
+		MappedIndexFile file = this.mappedFile;
+
+		if (file != null)
+		{
+			this.mappedFile = null;
+			file.close();
+		}
 	}
 
 	/**
@@ -541,6 +588,71 @@ public class DiskIndex
 		return newDocNames;
 	}
 
+	/**
+	 * Add every entry of the documents that have not been deleted from this index to the specified memory index.
+	 * 
+	 * @param memoryIndex
+	 * @throws IOException
+	 */
+	void copyLiveEntriesTo(MemoryIndex memoryIndex) throws IOException
+	{
+		if (this.categoryOffsets == null)
+		{
+			return; // file is empty
+		}
+
+		for (String category : getCategories())
+		{
+			Map<String, Object> wordsToDocNumbers = readCategoryTable(category, true);
+
+			if (wordsToDocNumbers == null)
+			{
+				continue;
+			}
+
+			for (Map.Entry<String, Object> entry : wordsToDocNumbers.entrySet())
+			{
+				for (Integer docNumber : readDocumentNumbers(entry.getValue()))
+				{
+					if (!isDeleted(docNumber))
+					{
+						memoryIndex.addEntry(category, entry.getKey(), readDocumentName(docNumber));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the set of document numbers in this index for the specified document names. Names that do not appear in
+	 * this index are ignored.
+	 * 
+	 * @param documentNames
+	 * @return
+	 * @throws IOException
+	 */
+	BitSet findDocumentNumbers(Collection<String> documentNames) throws IOException
+	{
+		BitSet result = new BitSet();
+		List<String> names = readAllDocumentNames();
+
+		if (!names.isEmpty())
+		{
+			for (String documentName : documentNames)
+			{
+				// document names are always written in sorted order
+				int index = (documentName == null) ? -1 : Collections.binarySearch(names, documentName);
+
+				if (index >= 0)
+				{
+					result.set(index);
+				}
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * copyQueryResults
 	 * 
@@ -585,6 +697,56 @@ public class DiskIndex
 		}
 	}
 
+	/**
+	 * getCachedChunks
+	 * 
+	 * @return
+	 */
+	private AtomicReferenceArray<String[]> getCachedChunks()
+	{
+		AtomicReferenceArray<String[]> chunks = this.cachedChunks;
+
+		if (chunks == null)
+		{
+			synchronized (this)
+			{
+				chunks = this.cachedChunks;
+
+				if (chunks == null)
+				{
+					this.cachedChunks = chunks = new AtomicReferenceArray<String[]>(this.numberOfChunks);
+				}
+			}
+		}
+
+		return chunks;
+	}
+
+	/**
+	 * getCategoryTables
+	 * 
+	 * @return
+	 */
+	private Map<String, Map<String, Object>> getCategoryTables()
+	{
+		Map<String, Map<String, Object>> tables = this.categoryTables;
+
+		if (tables == null)
+		{
+			synchronized (this)
+			{
+				tables = this.categoryTables;
+
+				if (tables == null)
+				{
+					this.categoryTables = tables = new ConcurrentHashMap<String, Map<String, Object>>(3);
+				}
+			}
+		}
+
+		return tables;
+	}
+
 	/**
 	 * getCategories
 	 * 
@@ -617,7 +779,7 @@ public class DiskIndex
 
 		try
 		{
-			result = this.readAllDocumentNames();
+			result = this.readLiveDocumentNames();
 		}
 		catch (IOException e)
 		{
@@ -626,6 +788,65 @@ public class DiskIndex
 		return result;
 	}
 
+	/**
+	 * getMappedFile
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private MappedIndexFile getMappedFile() throws IOException
+	{
+		MappedIndexFile file = this.mappedFile;
+
+		if (file == null)
+		{
+			synchronized (this)
+			{
+				file = this.mappedFile;
+
+				if (file == null)
+				{
+					this.mappedFile = file = new MappedIndexFile(this.indexFile);
+				}
+			}
+		}
+
+		return file;
+	}
+
+	/**
+	 * Returns the documents which have been marked as deleted from this index, or null if there are none
+	 * 
+	 * @return
+	 */
+	BitSet getDeletedDocuments()
+	{
+		return this.deletedDocuments;
+	}
+
+	/**
+	 * isDeleted
+	 * 
+	 * @param docNumber
+	 * @return
+	 */
+	private boolean isDeleted(int docNumber)
+	{
+		BitSet deleted = this.deletedDocuments;
+
+		return deleted != null && deleted.get(docNumber);
+	}
+
+	/**
+	 * isMemoryMapped
+	 * 
+	 * @return
+	 */
+	public boolean isMemoryMapped()
+	{
+		return this.memoryMapped;
+	}
+
 	/**
 	 * initialize
 	 * 
@@ -633,6 +854,8 @@ public class DiskIndex
 	 */
 	public void initialize(boolean reuseExistingFile) throws IOException
 	{
+		close();
+
 		if (this.indexFile.exists())
 		{
 			if (reuseExistingFile)
@@ -733,7 +956,7 @@ public class DiskIndex
 
 		int size = diskIndex.categoryOffsets == null ? 8 : diskIndex.categoryOffsets.size();
 		this.categoryOffsets = new HashMap<String, Integer>(size);
-		this.categoryTables = new HashMap<String, Map<String, Object>>(size);
+		this.categoryTables = new ConcurrentHashMap<String, Map<String, Object>>(size);
 		this.separator = diskIndex.separator;
 		this.categoriesToDiscard = diskIndex.categoriesToDiscard;
 	}
@@ -749,17 +972,9 @@ public class DiskIndex
 	private void mergeCategories(DiskIndex onDisk, int[] positions, OutputStream stream) throws IOException
 	{
 		// at this point, this.categoryTables contains the names -> wordsToDocs added in copyQueryResults()
-		Set<String> oldNames = onDisk.categoryOffsets.keySet();
-
-		for (String oldName : oldNames)
-		{
-			if (oldName != null && !this.categoryTables.containsKey(oldName))
-			{
-				this.categoryTables.put(oldName, null);
-			}
-		}
+		Set<String> categoryNames = new HashSet<String>(this.categoryTables.keySet());
 
-		Set<String> categoryNames = this.categoryTables.keySet();
+		categoryNames.addAll(onDisk.categoryOffsets.keySet());
 
 		for (String categoryName : categoryNames)
 		{
@@ -847,7 +1062,7 @@ public class DiskIndex
 				}
 			}
 
-			onDisk.categoryTables.put(categoryName, null); // flush cached table
+			onDisk.getCategoryTables().remove(categoryName); // flush cached table
 		}
 
 		writeCategoryTable(categoryName, wordsToDocs, stream);
@@ -881,7 +1096,9 @@ public class DiskIndex
 			}
 
 			// index is now empty since all the saved documents were removed
-			DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath());
+			close();
+
+			DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath(), this.memoryMapped);
 			newDiskIndex.initialize(false);
 
 			return newDiskIndex;
@@ -889,7 +1106,7 @@ public class DiskIndex
 
 		this.streamEnd = 0;
 
-		DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath() + ".tmp"); //$NON-NLS-1$
+		DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath() + ".tmp", this.memoryMapped); //$NON-NLS-1$
 
 		try
 		{
@@ -940,7 +1157,10 @@ public class DiskIndex
 
 			newDiskIndex.writeOffsetToHeader(offsetToHeader);
 
-			// rename file by deleting previous index file & renaming temp one
+			// rename file by deleting previous index file & renaming temp one. Our handle on the old file must be
+			// released first
+			close();
+
 			if (this.indexFile.exists() && !this.indexFile.delete())
 			{
 				throw new IOException("Failed to delete index file " + this.indexFile); //$NON-NLS-1$
@@ -969,6 +1189,36 @@ public class DiskIndex
 		return newDiskIndex;
 	}
 
+	/**
+	 * Open a stream on the index file positioned at the specified offset. In memory-mapped mode this seeks directly to
+	 * the offset in the shared mapping, otherwise the file is opened and we skip forward to the offset.
+	 * 
+	 * @param offset
+	 * @return
+	 * @throws IOException
+	 */
+	private InputStream openStream(int offset) throws IOException
+	{
+		if (this.memoryMapped)
+		{
+			return getMappedFile().openStream(offset);
+		}
+
+		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+
+		try
+		{
+			skip(stream, offset);
+		}
+		catch (IOException e)
+		{
+			stream.close();
+			throw e;
+		}
+
+		return stream;
+	}
+
 	/**
 	 * read
 	 * 
@@ -991,21 +1241,17 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized List<String> readAllDocumentNames() throws IOException
+	List<String> readAllDocumentNames() throws IOException
 	{
 		if (this.numberOfChunks <= 0)
 		{
 			return Collections.emptyList();
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+		InputStream stream = openStream(this.chunkOffsets[0]);
 
 		try
 		{
-			int offset = this.chunkOffsets[0];
-
-			skip(stream, offset);
-
 			int lastIndex = this.numberOfChunks - 1;
 
 			String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
@@ -1023,6 +1269,35 @@ public class DiskIndex
 		}
 	}
 
+	/**
+	 * readLiveDocumentNames
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private List<String> readLiveDocumentNames() throws IOException
+	{
+		List<String> names = readAllDocumentNames();
+		BitSet deleted = this.deletedDocuments;
+
+		if (deleted == null || deleted.isEmpty())
+		{
+			return names;
+		}
+
+		List<String> result = new ArrayList<String>(names.size());
+
+		for (int i = 0, l = names.size(); i < l; i++)
+		{
+			if (!deleted.get(i))
+			{
+				result.add(names.get(i));
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * readCategoryTable
 	 * 
@@ -1031,8 +1306,7 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized Map<String, Object> readCategoryTable(String categoryName, boolean readDocNumbers)
-			throws IOException
+	private Map<String, Object> readCategoryTable(String categoryName, boolean readDocNumbers) throws IOException
 	{
 		// result will be null if categoryName is unknown
 		Integer offset = this.categoryOffsets.get(categoryName);
@@ -1042,38 +1316,33 @@ public class DiskIndex
 			return null;
 		}
 
-		if (this.categoryTables == null)
-		{
-			this.categoryTables = new HashMap<String, Map<String, Object>>(3);
-		}
-		else
+		Map<String, Map<String, Object>> tables = getCategoryTables();
+		Map<String, Object> cachedTable = tables.get(categoryName);
+
+		if (cachedTable != null)
 		{
-			Map<String, Object> cachedTable = this.categoryTables.get(categoryName);
+			if (readDocNumbers)
+			{ // must cache remaining document number arrays
+				Map<String, Object> copy = new HashMap<String, Object>(cachedTable);
 
-			if (cachedTable != null)
-			{
-				if (readDocNumbers)
-				{ // must cache remaining document number arrays
-					Map<String, Object> copy = new HashMap<String, Object>(cachedTable);
+				for (Map.Entry<String, Object> entry : cachedTable.entrySet())
+				{
+					Object arrayOffset = entry.getValue();
 
-					for (Map.Entry<String, Object> entry : cachedTable.entrySet())
+					if (arrayOffset instanceof Integer)
 					{
-						Object arrayOffset = entry.getValue();
-
-						if (arrayOffset instanceof Integer)
-						{
-							copy.put(entry.getKey(), readDocumentNumbers(arrayOffset));
-						}
+						copy.put(entry.getKey(), readDocumentNumbers(arrayOffset));
 					}
-
-					cachedTable = copy;
 				}
 
-				return cachedTable;
+				cachedTable = copy;
 			}
+
+			return cachedTable;
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+		// skip to start of category
+		InputStream stream = openStream(offset);
 		Map<String, Object> categoryTable = null;
 		String[] matchingWords = null;
 		int count = 0;
@@ -1081,9 +1350,6 @@ public class DiskIndex
 
 		try
 		{
-			// skip to start of category
-			skip(stream, offset);
-
 			// Read the number of words in the category
 			int size = readStreamInt(stream);
 
@@ -1166,8 +1432,6 @@ public class DiskIndex
 					categoryTable.put(word, new Integer(arrayOffset)); // offset to array in the file
 				}
 			}
-
-			this.categoryTables.put(categoryName, categoryTable);
 		}
 		catch (IOException ioe)
 		{
@@ -1180,12 +1444,10 @@ public class DiskIndex
 
 		if (matchingWords != null && count > 0)
 		{
-			stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+			stream = openStream(firstOffset);
 
 			try
 			{
-				skip(stream, firstOffset);
-
 				for (int i = 0; i < count; i++)
 				{ // each array follows the previous one
 					categoryTable.put(matchingWords[i], readStreamDocumentArray(stream, readStreamInt(stream)));
@@ -1201,6 +1463,9 @@ public class DiskIndex
 			}
 		}
 
+		// only publish the table once it is complete, other readers may pick it up at any time
+		tables.put(categoryName, categoryTable);
+
 		return categoryTable;
 	}
 
@@ -1257,15 +1522,11 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized String readDocumentName(int docNumber) throws IOException
+	private String readDocumentName(int docNumber) throws IOException
 	{
-		if (this.cachedChunks == null)
-		{
-			this.cachedChunks = new String[this.numberOfChunks][];
-		}
-
+		AtomicReferenceArray<String[]> chunks = getCachedChunks();
 		int chunkNumber = docNumber / CHUNK_SIZE;
-		String[] chunk = this.cachedChunks[chunkNumber];
+		String[] chunk = chunks.get(chunkNumber);
 
 		if (chunk == null)
 		{
@@ -1278,12 +1539,10 @@ public class DiskIndex
 				throw new IllegalArgumentException();
 			}
 
-			InputStream file = new BufferedInputStream(new FileInputStream(this.indexFile));
+			InputStream file = openStream(start);
 
 			try
 			{
-				skip(file, start);
-
 				int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
 
 				chunk = new String[numberOfNames];
@@ -1298,7 +1557,8 @@ public class DiskIndex
 				file.close();
 			}
 
-			this.cachedChunks[chunkNumber] = chunk;
+			// if another reader got here first we simply replace its copy with an identical one
+			chunks.set(chunkNumber, chunk);
 		}
 
 		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
@@ -1311,8 +1571,8 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private @SuppressWarnings("unchecked")
-	synchronized List<Integer> readDocumentNumbers(Object arrayOffset) throws IOException
+	@SuppressWarnings("unchecked")
+	private List<Integer> readDocumentNumbers(Object arrayOffset) throws IOException
 	{
 		// arrayOffset is either a cached array of docNumbers or an Integer offset in the file
 		if (arrayOffset instanceof List<?>)
@@ -1320,14 +1580,10 @@ public class DiskIndex
 			return (List<Integer>) arrayOffset;
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+		InputStream stream = openStream(((Integer) arrayOffset).intValue());
 
 		try
 		{
-			int offset = ((Integer) arrayOffset).intValue();
-
-			skip(stream, offset);
-
 			return readStreamDocumentArray(stream, readStreamInt(stream));
 		}
 		finally
@@ -1372,7 +1628,7 @@ public class DiskIndex
 			this.categoryOffsets.put(categoryName, offset); // cache offset to category table
 		}
 
-		this.categoryTables = new HashMap<String, Map<String, Object>>(3);
+		this.categoryTables = new ConcurrentHashMap<String, Map<String, Object>>(3);
 	}
 
 	/**
@@ -1538,6 +1794,17 @@ public class DiskIndex
 		return newIndex;
 	}
 
+	/**
+	 * Mark the specified documents as deleted. The set is replaced rather than modified, so concurrent queries always
+	 * see a consistent view.
+	 * 
+	 * @param deletedDocuments
+	 */
+	void setDeletedDocuments(BitSet deletedDocuments)
+	{
+		this.deletedDocuments = (deletedDocuments == null || deletedDocuments.isEmpty()) ? null : deletedDocuments;
+	}
+
 	/**
 	 * skip
 	 * 
@@ -1646,7 +1913,7 @@ public class DiskIndex
 		}
 
 		this.categoryOffsets.put(categoryName, this.streamEnd); // remember the offset to the start of the table
-		this.categoryTables.put(categoryName, null); // flush cached table
+		this.categoryTables.remove(categoryName); // flush cached table
 		writeStreamInt(stream, wordsToDocs.size());
 
 		for (Map.Entry<String, Object> entry : wordsToDocs.entrySet())
@@ -0,0 +1,247 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.index.core.IndexPlugin;
+
+/**
+ * Records the size, last modification time and a 64-bit content hash of every document at the time it was indexed, so
+ * indexing jobs can tell which files actually changed since then. A file whose size and timestamp both match is
+ * considered unchanged. If only the timestamp differs (a touch, or a checkout that restored an older copy) the content
+ * hash decides.
+ * <p>
+ * The table is kept in a file next to the index it describes, <code>foo.index.fp</code> for <code>foo.index</code>.
+ * It is only written by {@link #save()}, which the owning index calls after flushing its entries, so the file never
+ * describes documents that aren't on disk yet. Methods are synchronized since indexing workers record fingerprints
+ * concurrently.
+ */
+public class FingerprintTable
+{
+	private static final String EXTENSION = ".fp"; //$NON-NLS-1$
+	private static final int VERSION = 1;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * The recorded state of a single document
+	 */
+	public static class Fingerprint
+	{
+		public final long size;
+		public final long lastModified;
+		public final long hash;
+
+		public Fingerprint(long size, long lastModified, long hash)
+		{
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * Compute the 64-bit FNV-1a hash of the stream's content. The stream is not closed
+	 * 
+	 * @param stream
+	 * @return
+	 * @throws IOException
+	 */
+	public static long hash(InputStream stream) throws IOException
+	{
+		byte[] buffer = new byte[8192];
+		long hash = FNV_OFFSET_BASIS;
+		int read;
+
+		while ((read = stream.read(buffer)) != -1)
+		{
+			for (int i = 0; i < read; i++)
+			{
+				hash ^= buffer[i] & 0xff;
+				hash *= FNV_PRIME;
+			}
+		}
+
+		return hash;
+	}
+
+	private final File file;
+	private final Map<String, Fingerprint> fingerprints;
+	private boolean dirty;
+
+	/**
+	 * FingerprintTable
+	 * 
+	 * @param indexFile
+	 *            The index the fingerprints belong to
+	 */
+	public FingerprintTable(File indexFile)
+	{
+		this.file = new File(indexFile.getPath() + EXTENSION);
+		this.fingerprints = new HashMap<String, Fingerprint>();
+	}
+
+	/**
+	 * Forget all fingerprints and delete the backing file
+	 */
+	public synchronized void clear()
+	{
+		this.fingerprints.clear();
+		this.dirty = false;
+
+		if (this.file.exists() && !this.file.delete())
+		{
+			IdeLog.logError(IndexPlugin.getDefault(),
+					MessageFormat.format("Failed to delete fingerprint file ''{0}''", this.file)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Return the fingerprint recorded for the document, or null if the document hasn't been fingerprinted
+	 * 
+	 * @param documentName
+	 * @return
+	 */
+	public synchronized Fingerprint get(String documentName)
+	{
+		return this.fingerprints.get(documentName);
+	}
+
+	/**
+	 * Read the fingerprints from disk. A missing or unreadable file leaves the table empty, which only means more
+	 * files will be reindexed
+	 */
+	public synchronized void load()
+	{
+		this.fingerprints.clear();
+		this.dirty = false;
+
+		if (!this.file.exists())
+		{
+			return;
+		}
+
+		try
+		{
+			DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+
+			try
+			{
+				if (stream.readInt() != VERSION)
+				{
+					return;
+				}
+
+				int count = stream.readInt();
+
+				for (int i = 0; i < count; i++)
+				{
+					String documentName = stream.readUTF();
+
+					this.fingerprints.put(documentName,
+							new Fingerprint(stream.readLong(), stream.readLong(), stream.readLong()));
+				}
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+		catch (IOException e)
+		{
+			this.fingerprints.clear();
+			IdeLog.logError(IndexPlugin.getDefault(), e);
+		}
+	}
+
+	/**
+	 * Record the fingerprint of a document
+	 * 
+	 * @param documentName
+	 * @param fingerprint
+	 */
+	public synchronized void put(String documentName, Fingerprint fingerprint)
+	{
+		this.fingerprints.put(documentName, fingerprint);
+		this.dirty = true;
+	}
+
+	/**
+	 * Forget the fingerprint of a document, typically because its index entries were removed
+	 * 
+	 * @param documentName
+	 */
+	public synchronized void remove(String documentName)
+	{
+		if (this.fingerprints.remove(documentName) != null)
+		{
+			this.dirty = true;
+		}
+	}
+
+	/**
+	 * Write the table to disk if it has changed since it was loaded or last saved
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException
+	{
+		if (!this.dirty)
+		{
+			return;
+		}
+
+		DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+
+		try
+		{
+			stream.writeInt(VERSION);
+			stream.writeInt(this.fingerprints.size());
+
+			for (Map.Entry<String, Fingerprint> entry : this.fingerprints.entrySet())
+			{
+				Fingerprint fingerprint = entry.getValue();
+
+				stream.writeUTF(entry.getKey());
+				stream.writeLong(fingerprint.size);
+				stream.writeLong(fingerprint.lastModified);
+				stream.writeLong(fingerprint.hash);
+			}
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		this.dirty = false;
+	}
+
+	/**
+	 * size
+	 * 
+	 * @return
+	 */
+	public synchronized int size()
+	{
+		return this.fingerprints.size();
+	}
+}
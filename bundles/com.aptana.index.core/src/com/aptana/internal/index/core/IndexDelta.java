@@ -0,0 +1,150 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.aptana.index.core.IIndexChangeListener;
+import com.aptana.index.core.Index;
+import com.aptana.index.core.QueryResult;
+
+/**
+ * Changes made to an index by a single thread that have not been applied to the index yet. Applying a delta gives the
+ * same result as making its changes directly against the index: documents removed in the delta are removed first, then
+ * the entries added in the delta are added.
+ */
+public class IndexDelta
+{
+	private final MemoryIndex entries;
+	private final Set<String> removedDocuments;
+
+	/**
+	 * IndexDelta
+	 */
+	public IndexDelta()
+	{
+		entries = new MemoryIndex();
+		removedDocuments = new LinkedHashSet<String>();
+	}
+
+	/**
+	 * addEntry
+	 * 
+	 * @param category
+	 * @param key
+	 * @param documentName
+	 */
+	public void addEntry(String category, String key, String documentName)
+	{
+		entries.addEntry(category, key, documentName);
+	}
+
+	/**
+	 * Add the matching entries added by this delta to the results
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param matchRules
+	 * @param results
+	 * @return
+	 */
+	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRules,
+			Map<String, QueryResult> results)
+	{
+		return entries.addQueryResults(categories, key, matchRules, results);
+	}
+
+	/**
+	 * Apply the changes in this delta to the specified memory index
+	 * 
+	 * @param target
+	 */
+	public void applyTo(MemoryIndex target)
+	{
+		for (String documentName : removedDocuments)
+		{
+			target.remove(documentName);
+		}
+
+		for (Map.Entry<String, Map<String, Set<String>>> document : entries.getDocumentsToReferences().entrySet())
+		{
+			Map<String, Set<String>> categoriesToWords = document.getValue();
+
+			if (categoriesToWords == null)
+			{
+				continue;
+			}
+
+			for (Map.Entry<String, Set<String>> category : categoriesToWords.entrySet())
+			{
+				for (String word : category.getValue())
+				{
+					target.addEntry(category.getKey(), word, document.getKey());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Report the changes in this delta to a listener of the index it was applied to, in the order
+	 * {@link #applyTo(MemoryIndex)} applies them
+	 * 
+	 * @param index
+	 * @param listener
+	 */
+	public void reportTo(Index index, IIndexChangeListener listener)
+	{
+		for (String documentName : removedDocuments)
+		{
+			listener.documentRemoved(index, documentName);
+		}
+
+		for (Map.Entry<String, Map<String, Set<String>>> document : entries.getDocumentsToReferences().entrySet())
+		{
+			Map<String, Set<String>> categoriesToWords = document.getValue();
+
+			if (categoriesToWords == null)
+			{
+				continue;
+			}
+
+			for (Map.Entry<String, Set<String>> category : categoriesToWords.entrySet())
+			{
+				for (String word : category.getValue())
+				{
+					listener.entryAdded(index, category.getKey(), word, document.getKey());
+				}
+			}
+		}
+	}
+
+	/**
+	 * isEmpty
+	 * 
+	 * @return
+	 */
+	public boolean isEmpty()
+	{
+		return removedDocuments.isEmpty() && !entries.hasChanged();
+	}
+
+	/**
+	 * Remove all entries for the document. Entries already added to this delta for the document are dropped as well
+	 * 
+	 * @param documentName
+	 */
+	public void remove(String documentName)
+	{
+		removedDocuments.add(documentName);
+
+		// forget anything added for the document so far. applyTo skips documents the delta has removed
+		entries.remove(documentName);
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.aptana.core.util.PlatformUtil;
+
+/**
+ * A read-only view of an index file that allows streams to be opened directly at an arbitrary offset. The file is
+ * opened once and shared by all readers. Every stream returned by {@link #openStream(int)} maintains its own position,
+ * so any number of threads may read from the file concurrently.
+ * <p>
+ * On most platforms the file is memory-mapped. On Windows a mapped file cannot be deleted or renamed until the mapping
+ * is garbage collected, so there we fall back to positional reads against the {@link FileChannel} instead.
+ */
+class MappedIndexFile
+{
+	private static final int CHANNEL_BUFFER_SIZE = 2048;
+
+	private volatile RandomAccessFile file;
+	private volatile FileChannel channel;
+	private volatile ByteBuffer mappedBuffer;
+
+	/**
+	 * MappedIndexFile
+	 * 
+	 * @param indexFile
+	 * @throws IOException
+	 */
+	MappedIndexFile(File indexFile) throws IOException
+	{
+		this.file = new RandomAccessFile(indexFile, "r"); //$NON-NLS-1$
+		this.channel = file.getChannel();
+
+		if (!PlatformUtil.isWindows())
+		{
+			try
+			{
+				this.mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			catch (IOException e)
+			{
+				// fall back to positional reads
+				this.mappedBuffer = null;
+			}
+		}
+	}
+
+	/**
+	 * Release the underlying file handle. Streams opened after this call will fail.
+	 */
+	synchronized void close()
+	{
+		mappedBuffer = null;
+
+		try
+		{
+			if (channel != null)
+			{
+				channel.close();
+			}
+
+			if (file != null)
+			{
+				file.close();
+			}
+		}
+		catch (IOException e)
+		{
+			// ignore
+		}
+		finally
+		{
+			channel = null;
+			file = null;
+		}
+	}
+
+	/**
+	 * Returns true if reads are served from a memory-mapped buffer.
+	 * 
+	 * @return
+	 */
+	boolean isMapped()
+	{
+		return mappedBuffer != null;
+	}
+
+	/**
+	 * Open a new stream positioned at the specified offset of the index file
+	 * 
+	 * @param offset
+	 * @return
+	 * @throws IOException
+	 */
+	InputStream openStream(int offset) throws IOException
+	{
+		ByteBuffer buffer = mappedBuffer;
+
+		if (buffer != null)
+		{
+			ByteBuffer view = buffer.duplicate();
+
+			if (offset > view.limit())
+			{
+				throw new IOException("Attempted to read past the end of index file"); //$NON-NLS-1$
+			}
+
+			view.position(offset);
+
+			return new ByteBufferInputStream(view);
+		}
+
+		FileChannel fileChannel = channel;
+
+		if (fileChannel == null)
+		{
+			throw new IOException("Index file has been closed"); //$NON-NLS-1$
+		}
+
+		return new ChannelInputStream(fileChannel, offset);
+	}
+
+	/**
+	 * A stream over a private view of the mapped buffer
+	 */
+	private static class ByteBufferInputStream extends InputStream
+	{
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int available()
+		{
+			return buffer.remaining();
+		}
+
+		@Override
+		public int read()
+		{
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length)
+		{
+			if (!buffer.hasRemaining())
+			{
+				return -1;
+			}
+
+			int count = Math.min(length, buffer.remaining());
+
+			buffer.get(bytes, offset, count);
+
+			return count;
+		}
+
+		@Override
+		public long skip(long n)
+		{
+			int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+
+			buffer.position(buffer.position() + count);
+
+			return count;
+		}
+	}
+
+	/**
+	 * A buffered stream that uses positional reads so it never disturbs the shared channel position
+	 */
+	private static class ChannelInputStream extends InputStream
+	{
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private long position;
+
+		ChannelInputStream(FileChannel channel, long position)
+		{
+			this.channel = channel;
+			this.position = position;
+			this.buffer = ByteBuffer.allocate(CHANNEL_BUFFER_SIZE);
+			this.buffer.limit(0);
+		}
+
+		/**
+		 * Refill the buffer from the current position. Returns false at the end of the file
+		 * 
+		 * @return
+		 * @throws IOException
+		 */
+		private boolean fill() throws IOException
+		{
+			buffer.clear();
+
+			int count = channel.read(buffer, position);
+
+			buffer.flip();
+
+			if (count <= 0)
+			{
+				return false;
+			}
+
+			position += count;
+
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			if (!buffer.hasRemaining() && !fill())
+			{
+				return -1;
+			}
+
+			return buffer.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException
+		{
+			if (!buffer.hasRemaining() && !fill())
+			{
+				return -1;
+			}
+
+			int count = Math.min(length, buffer.remaining());
+
+			buffer.get(bytes, offset, count);
+
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException
+		{
+			if (n <= 0)
+			{
+				return 0;
+			}
+
+			int buffered = buffer.remaining();
+
+			if (n <= buffered)
+			{
+				buffer.position(buffer.position() + (int) n);
+				return n;
+			}
+
+			long available = Math.max(0, channel.size() - position);
+			long skipped = Math.min(n - buffered, available);
+
+			buffer.limit(0);
+			position += skipped;
+
+			return buffered + skipped;
+		}
+	}
+}
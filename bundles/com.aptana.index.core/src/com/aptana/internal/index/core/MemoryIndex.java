@@ -14,6 +14,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import com.aptana.index.core.Index;
 import com.aptana.index.core.QueryResult;
@@ -24,12 +26,64 @@ public class MemoryIndex
 	private static final int MERGE_THRESHOLD = 100;
 	private HashMap<String, Map<String, Set<String>>> documentsToTable;
 
+	// category -> lower-cased key -> key -> documents. Lets exact and prefix queries do a range lookup instead of
+	// visiting every word of every document
+	private HashMap<String, SortedMap<String, Map<String, Set<String>>>> categoriesToKeys;
+
 	/**
 	 * MemoryIndex
 	 */
 	public MemoryIndex()
 	{
 		documentsToTable = new HashMap<String, Map<String, Set<String>>>();
+		categoriesToKeys = new HashMap<String, SortedMap<String, Map<String, Set<String>>>>();
+	}
+
+	/**
+	 * Add a query result for each key in the sorted key table that matches
+	 * 
+	 * @param keys
+	 * @param key
+	 * @param matchRules
+	 * @param results
+	 */
+	private void addKeyTableResults(SortedMap<String, Map<String, Set<String>>> keys, String key, int matchRules,
+			Map<String, QueryResult> results)
+	{
+		String foldedKey = key.toLowerCase();
+		boolean prefix = (matchRules & SearchPattern.PREFIX_MATCH) != 0;
+
+		for (Map.Entry<String, Map<String, Set<String>>> foldedEntry : keys.tailMap(foldedKey).entrySet())
+		{
+			String folded = foldedEntry.getKey();
+
+			if (prefix ? !folded.startsWith(foldedKey) : !folded.equals(foldedKey))
+			{
+				break; // past the end of the range
+			}
+
+			for (Map.Entry<String, Set<String>> entry : foldedEntry.getValue().entrySet())
+			{
+				String word = entry.getKey();
+
+				// the range is case-insensitive, so we still need to check case-sensitive rules
+				if (Index.isMatch(key, word, matchRules))
+				{
+					QueryResult result = results.get(word);
+
+					if (result == null)
+					{
+						result = new QueryResult(word);
+						results.put(word, result);
+					}
+
+					for (String documentName : entry.getValue())
+					{
+						result.addDocumentName(documentName);
+					}
+				}
+			}
+		}
 	}
 
 	/**
@@ -89,7 +143,47 @@ public class MemoryIndex
 			categoriesToWords.put(category, words);
 		}
 
-		words.add(key);
+		if (words.add(key))
+		{
+			addKey(category, key, filePath);
+		}
+	}
+
+	/**
+	 * Record the document in the sorted key table for the category
+	 * 
+	 * @param category
+	 * @param key
+	 * @param filePath
+	 */
+	private void addKey(String category, String key, String filePath)
+	{
+		SortedMap<String, Map<String, Set<String>>> keys = categoriesToKeys.get(category);
+
+		if (keys == null)
+		{
+			keys = new TreeMap<String, Map<String, Set<String>>>();
+			categoriesToKeys.put(category, keys);
+		}
+
+		String folded = key.toLowerCase();
+		Map<String, Set<String>> wordsToDocuments = keys.get(folded);
+
+		if (wordsToDocuments == null)
+		{
+			wordsToDocuments = new HashMap<String, Set<String>>(2);
+			keys.put(folded, wordsToDocuments);
+		}
+
+		Set<String> documents = wordsToDocuments.get(key);
+
+		if (documents == null)
+		{
+			documents = new HashSet<String>();
+			wordsToDocuments.put(key, documents);
+		}
+
+		documents.add(filePath);
 	}
 
 	/**
@@ -109,6 +203,24 @@ public class MemoryIndex
 			results = new HashMap<String, QueryResult>();
 		}
 
+		// exact and prefix matches on a non-empty key are range lookups in the sorted key tables
+		int rule = matchRules & ~SearchPattern.CASE_SENSITIVE;
+
+		if (key != null && key.length() > 0 && (rule == SearchPattern.EXACT_MATCH || rule == SearchPattern.PREFIX_MATCH))
+		{
+			for (String category : categories)
+			{
+				SortedMap<String, Map<String, Set<String>>> keys = categoriesToKeys.get(category);
+
+				if (keys != null)
+				{
+					addKeyTableResults(keys, key, matchRules, results);
+				}
+			}
+
+			return results;
+		}
+
 		for (Map.Entry<String, Map<String, Set<String>>> entry : documentsToTable.entrySet())
 		{
 			Map<String, Set<String>> categoriesToWords = entry.getValue();
@@ -246,7 +358,15 @@ public class MemoryIndex
 	 */
 	public void remove(String documentName)
 	{
-		this.documentsToTable.put(documentName, null);
+		Map<String, Set<String>> categoriesToWords = this.documentsToTable.put(documentName, null);
+
+		if (categoriesToWords != null)
+		{
+			for (Map.Entry<String, Set<String>> entry : categoriesToWords.entrySet())
+			{
+				removeKeys(entry.getKey(), entry.getValue(), documentName);
+			}
+		}
 	}
 
 	/**
@@ -266,6 +386,56 @@ public class MemoryIndex
 				}
 			}
 		}
+
+		for (String category : categoryNames)
+		{
+			categoriesToKeys.remove(category);
+		}
+	}
+
+	/**
+	 * Drop the document from the sorted key table entries of the given words
+	 * 
+	 * @param category
+	 * @param words
+	 * @param documentName
+	 */
+	private void removeKeys(String category, Set<String> words, String documentName)
+	{
+		SortedMap<String, Map<String, Set<String>>> keys = categoriesToKeys.get(category);
+
+		if (keys == null)
+		{
+			return;
+		}
+
+		for (String word : words)
+		{
+			String folded = word.toLowerCase();
+			Map<String, Set<String>> wordsToDocuments = keys.get(folded);
+
+			if (wordsToDocuments == null)
+			{
+				continue;
+			}
+
+			Set<String> documents = wordsToDocuments.get(word);
+
+			if (documents != null && documents.remove(documentName) && documents.isEmpty())
+			{
+				wordsToDocuments.remove(word);
+
+				if (wordsToDocuments.isEmpty())
+				{
+					keys.remove(folded);
+				}
+			}
+		}
+
+		if (keys.isEmpty())
+		{
+			categoriesToKeys.remove(category);
+		}
 	}
 
 	/**
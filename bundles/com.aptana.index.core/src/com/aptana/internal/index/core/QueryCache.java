@@ -0,0 +1,198 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aptana.index.core.QueryResult;
+
+/**
+ * A bounded, least-recently-used cache of query results for a single index, keyed by the categories, key and match
+ * rule of the query. Every entry belongs to a generation of the index (its modification stamp). The first lookup or
+ * store made with a newer generation drops everything cached for older ones, so callers only need to pass the current
+ * stamp and never have to invalidate entries themselves.
+ * <p>
+ * Very large results (typically "everything in this category" queries) are not cached, since holding on to them would
+ * cost more memory than re-running the query costs time.
+ */
+public class QueryCache
+{
+	/**
+	 * Returned by {@link #get(String[], String, int, long)} when nothing is cached for the query. Note that a cached
+	 * null, meaning the query had no results, is returned as null
+	 */
+	public static final List<QueryResult> NOT_CACHED = new ArrayList<QueryResult>(0);
+
+	private static final int MAX_CACHED_RESULTS = 1000;
+
+	/**
+	 * The identity of a query
+	 */
+	private static class Key
+	{
+		private final String[] categories;
+		private final String key;
+		private final int matchRule;
+		private final int hashCode;
+
+		Key(String[] categories, String key, int matchRule)
+		{
+			this.categories = (categories == null) ? null : categories.clone();
+			this.key = key;
+			this.matchRule = matchRule;
+			this.hashCode = (31 * Arrays.hashCode(categories) + ((key == null) ? 0 : key.hashCode())) * 31
+					+ matchRule;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+
+			Key other = (Key) obj;
+
+			return matchRule == other.matchRule && ((key == null) ? other.key == null : key.equals(other.key))
+					&& Arrays.equals(categories, other.categories);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+	}
+
+	private final Map<Key, List<QueryResult>> entries;
+	private long generation;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+
+	/**
+	 * QueryCache
+	 * 
+	 * @param maxSize
+	 *            The maximum number of queries to keep results for
+	 */
+	public QueryCache(final int maxSize)
+	{
+		this.entries = new LinkedHashMap<Key, List<QueryResult>>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, List<QueryResult>> eldest)
+			{
+				return size() > maxSize;
+			}
+		};
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * Return the cached results of the query, or {@link #NOT_CACHED}. The returned list must not be modified
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param matchRule
+	 * @param generation
+	 *            The current modification stamp of the index
+	 * @return
+	 */
+	public synchronized List<QueryResult> get(String[] categories, String key, int matchRule, long generation)
+	{
+		advance(generation);
+
+		Key queryKey = new Key(categories, key, matchRule);
+		List<QueryResult> results = this.entries.get(queryKey);
+
+		if (results == null && !this.entries.containsKey(queryKey))
+		{
+			this.misses.incrementAndGet();
+			return NOT_CACHED;
+		}
+
+		this.hits.incrementAndGet();
+		return results;
+	}
+
+	/**
+	 * The number of lookups that found cached results
+	 * 
+	 * @return
+	 */
+	public long getHits()
+	{
+		return this.hits.get();
+	}
+
+	/**
+	 * The number of lookups that didn't find cached results
+	 * 
+	 * @return
+	 */
+	public long getMisses()
+	{
+		return this.misses.get();
+	}
+
+	/**
+	 * Cache the results of a query run against the specified generation of the index. Results computed against an
+	 * older generation than the one already cached are dropped
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param matchRule
+	 * @param generation
+	 * @param results
+	 *            The results of the query, possibly null. The list must not be modified once cached
+	 */
+	public synchronized void put(String[] categories, String key, int matchRule, long generation,
+			List<QueryResult> results)
+	{
+		if (generation < this.generation || (results != null && results.size() > MAX_CACHED_RESULTS))
+		{
+			return;
+		}
+
+		advance(generation);
+		this.entries.put(new Key(categories, key, matchRule), results);
+	}
+
+	/**
+	 * The number of cached queries
+	 * 
+	 * @return
+	 */
+	public synchronized int size()
+	{
+		return this.entries.size();
+	}
+
+	/**
+	 * Drop all entries if the index has changed since they were cached
+	 * 
+	 * @param generation
+	 */
+	private void advance(long generation)
+	{
+		if (generation != this.generation)
+		{
+			this.entries.clear();
+			this.generation = generation;
+		}
+	}
+}
@@ -0,0 +1,635 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.index.core.IndexPlugin;
+import com.aptana.index.core.QueryResult;
+
+/**
+ * A log-structured disk index. The index consists of a base {@link DiskIndex} file plus a sequence of small immutable
+ * segment files, each holding the documents flushed from one {@link MemoryIndex}. Saving only writes the changed
+ * documents into a new segment and marks any older copies of those documents as deleted in a per-file tombstone
+ * bitmap, so the cost of a save scales with the size of the change rather than the size of the index.
+ * <p>
+ * Queries are answered by merging the results of the base and every segment. Once too many segments have accumulated
+ * they are folded back into the base file by {@link #compact()}.
+ * <p>
+ * The files that make up an index named <code>foo.index</code> are:
+ * <ul>
+ * <li><code>foo.index</code> - the base index</li>
+ * <li><code>foo.index.N.seg</code> - segment number N, higher numbers are newer</li>
+ * <li><code>foo.index.del</code>, <code>foo.index.N.seg.del</code> - the tombstones for the base and each segment</li>
+ * </ul>
+ * This class is not thread safe for writes. Callers must hold the owning index's write lock when calling
+ * {@link #flush(MemoryIndex)}, {@link #compact()} or {@link #removeCategories(String[], MemoryIndex)}, and its read
+ * lock for queries.
+ */
+public class SegmentedIndex
+{
+	/**
+	 * The number of segments allowed to accumulate before they should be compacted into the base index
+	 */
+	public static final int MAX_SEGMENTS = 8;
+
+	private static final String SEGMENT_EXTENSION = ".seg"; //$NON-NLS-1$
+	private static final String TOMBSTONE_EXTENSION = ".del"; //$NON-NLS-1$
+
+	private final File indexFile;
+	private final boolean memoryMapped;
+	private final boolean segmented;
+	private DiskIndex base;
+	private final List<Segment> segments;
+
+	/**
+	 * A segment file and its sequence number
+	 */
+	private static class Segment
+	{
+		final int number;
+		final DiskIndex index;
+
+		Segment(int number, DiskIndex index)
+		{
+			this.number = number;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * SegmentedIndex
+	 * 
+	 * @param fileName
+	 *            The path of the base index file
+	 * @param memoryMapped
+	 *            If true, the base and segment files are read through memory-mapped views
+	 * @param segmented
+	 *            If true, {@link #flush(MemoryIndex)} appends segments. Otherwise every flush merges into the base
+	 *            index
+	 */
+	public SegmentedIndex(String fileName, boolean memoryMapped, boolean segmented)
+	{
+		this.indexFile = new File(fileName);
+		this.memoryMapped = memoryMapped;
+		this.segmented = segmented;
+		this.base = new DiskIndex(fileName, memoryMapped);
+		this.segments = new CopyOnWriteArrayList<Segment>();
+	}
+
+	/**
+	 * addDocumentNames
+	 * 
+	 * @param substring
+	 * @param memoryIndex
+	 * @return
+	 * @throws IOException
+	 */
+	public Set<String> addDocumentNames(String substring, MemoryIndex memoryIndex) throws IOException
+	{
+		Set<String> results = this.base.addDocumentNames(substring, memoryIndex);
+
+		for (Segment segment : this.segments)
+		{
+			results.addAll(segment.index.addDocumentNames(substring, memoryIndex));
+		}
+
+		return results;
+	}
+
+	/**
+	 * addQueryResults
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param matchRule
+	 * @param memoryIndex
+	 * @return
+	 * @throws IOException
+	 */
+	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRule,
+			MemoryIndex memoryIndex) throws IOException
+	{
+		Map<String, QueryResult> results = this.base.addQueryResults(categories, key, matchRule, memoryIndex);
+
+		for (Segment segment : this.segments)
+		{
+			Map<String, QueryResult> segmentResults = segment.index.addQueryResults(categories, key, matchRule,
+					memoryIndex);
+
+			if (segmentResults == null || segmentResults.isEmpty())
+			{
+				continue;
+			}
+
+			if (results == null)
+			{
+				results = new HashMap<String, QueryResult>(segmentResults.size());
+			}
+
+			for (Map.Entry<String, QueryResult> entry : segmentResults.entrySet())
+			{
+				QueryResult result = results.get(entry.getKey());
+
+				if (result == null)
+				{
+					results.put(entry.getKey(), entry.getValue());
+				}
+				else
+				{
+					for (String documentName : entry.getValue().getDocuments())
+					{
+						result.addDocumentName(documentName);
+					}
+				}
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Release any open handles on the index files
+	 */
+	public void close()
+	{
+		this.base.close();
+
+		for (Segment segment : this.segments)
+		{
+			segment.index.close();
+		}
+	}
+
+	/**
+	 * Fold every segment back into the base index and drop all tombstones. After this call the index consists of a
+	 * single file again.
+	 * 
+	 * @throws IOException
+	 */
+	public void compact() throws IOException
+	{
+		if (this.segments.isEmpty() && this.base.getDeletedDocuments() == null)
+		{
+			return;
+		}
+
+		MemoryIndex changes = new MemoryIndex();
+
+		// segments are ordered oldest to newest and older copies of a document are already tombstoned, so each live
+		// document comes from exactly one segment
+		for (Segment segment : this.segments)
+		{
+			segment.index.copyLiveEntriesTo(changes);
+		}
+
+		// any document deleted from the base that does not live on in a segment has been removed
+		BitSet deleted = this.base.getDeletedDocuments();
+
+		if (deleted != null)
+		{
+			Map<String, Map<String, Set<String>>> documents = changes.getDocumentsToReferences();
+			List<String> names = this.base.readAllDocumentNames();
+
+			for (int i = deleted.nextSetBit(0); i >= 0; i = deleted.nextSetBit(i + 1))
+			{
+				String name = names.get(i);
+
+				if (!documents.containsKey(name))
+				{
+					changes.remove(name);
+				}
+			}
+		}
+
+		// the merged base is a new index without any tombstones
+		this.base = this.base.mergeWith(changes);
+		deleteSegments();
+	}
+
+	/**
+	 * Remove every segment and tombstone file
+	 */
+	private void deleteSegments()
+	{
+		List<Segment> oldSegments = new ArrayList<Segment>(this.segments);
+
+		this.segments.clear();
+
+		for (Segment segment : oldSegments)
+		{
+			segment.index.close();
+		}
+
+		for (File file : listSegmentFiles())
+		{
+			deleteFile(file);
+		}
+
+		deleteFile(getTombstoneFile(this.indexFile));
+	}
+
+	/**
+	 * Delete the base index file along with all segments
+	 */
+	public void deleteFiles()
+	{
+		close();
+		deleteSegments();
+		deleteFile(this.indexFile);
+	}
+
+	/**
+	 * deleteFile
+	 * 
+	 * @param file
+	 */
+	private void deleteFile(File file)
+	{
+		if (file.exists() && !file.delete())
+		{
+			IdeLog.logWarning(IndexPlugin.getDefault(), MessageFormat.format("Failed to delete index file ''{0}''", //$NON-NLS-1$
+					file));
+		}
+	}
+
+	/**
+	 * Write the changes held in the memory index to disk. In segmented mode the changed documents are written to a new
+	 * segment and tombstoned in the existing files, otherwise they are merged into the base file.
+	 * 
+	 * @param memoryIndex
+	 * @throws IOException
+	 */
+	public void flush(MemoryIndex memoryIndex) throws IOException
+	{
+		if (!this.segmented)
+		{
+			// fold in anything written while segments were enabled, then do a full merge
+			compact();
+			this.base = this.base.mergeWith(memoryIndex);
+			return;
+		}
+
+		Set<String> changedDocuments = new HashSet<String>(memoryIndex.getDocumentsToReferences().keySet());
+
+		changedDocuments.remove(null);
+
+		if (changedDocuments.isEmpty())
+		{
+			return;
+		}
+
+		// write the new segment first, so a failure leaves the existing files untouched
+		int number = this.segments.isEmpty() ? 1 : this.segments.get(this.segments.size() - 1).number + 1;
+		File segmentFile = getSegmentFile(number);
+		DiskIndex segment = new DiskIndex(segmentFile.getPath(), this.memoryMapped);
+
+		segment.initialize(false);
+		segment = segment.mergeWith(memoryIndex);
+
+		// hide the old copies of every changed document
+		markDeleted(this.base, this.indexFile, changedDocuments);
+
+		for (Segment existing : this.segments)
+		{
+			markDeleted(existing.index, getSegmentFile(existing.number), changedDocuments);
+		}
+
+		if (segment.getDocuments().isEmpty())
+		{
+			// the memory index only held deletions
+			segment.close();
+			deleteFile(segmentFile);
+		}
+		else
+		{
+			this.segments.add(new Segment(number, segment));
+		}
+
+		// index staleness is judged by the timestamp of the base file, so keep it current
+		if (!this.indexFile.setLastModified(System.currentTimeMillis()))
+		{
+			IdeLog.logWarning(IndexPlugin.getDefault(),
+					MessageFormat.format("Failed to update timestamp of index file ''{0}''", this.indexFile)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * getCategories
+	 * 
+	 * @return
+	 */
+	public List<String> getCategories()
+	{
+		Set<String> categories = new HashSet<String>(this.base.getCategories());
+
+		for (Segment segment : this.segments)
+		{
+			categories.addAll(segment.index.getCategories());
+		}
+
+		return new ArrayList<String>(categories);
+	}
+
+	/**
+	 * getIndexFile
+	 * 
+	 * @return
+	 */
+	public File getIndexFile()
+	{
+		return this.indexFile;
+	}
+
+	/**
+	 * isMemoryMapped
+	 * 
+	 * @return
+	 */
+	public boolean isMemoryMapped()
+	{
+		return this.memoryMapped;
+	}
+
+	/**
+	 * isSegmented
+	 * 
+	 * @return
+	 */
+	public boolean isSegmented()
+	{
+		return this.segmented;
+	}
+
+	/**
+	 * getSegmentCount
+	 * 
+	 * @return
+	 */
+	public int getSegmentCount()
+	{
+		return this.segments.size();
+	}
+
+	/**
+	 * getSegmentFile
+	 * 
+	 * @param number
+	 * @return
+	 */
+	private File getSegmentFile(int number)
+	{
+		return new File(this.indexFile.getPath() + '.' + number + SEGMENT_EXTENSION);
+	}
+
+	/**
+	 * getTombstoneFile
+	 * 
+	 * @param file
+	 * @return
+	 */
+	private File getTombstoneFile(File file)
+	{
+		return new File(file.getPath() + TOMBSTONE_EXTENSION);
+	}
+
+	/**
+	 * initialize
+	 * 
+	 * @param reuseExistingFiles
+	 * @throws IOException
+	 */
+	public void initialize(boolean reuseExistingFiles) throws IOException
+	{
+		close();
+		this.segments.clear();
+
+		if (!reuseExistingFiles)
+		{
+			deleteSegments();
+			this.base.initialize(false);
+			return;
+		}
+
+		this.base.initialize(true);
+		this.base.setDeletedDocuments(readTombstones(this.indexFile));
+
+		// open the segments in the order they were written
+		Map<Integer, File> segmentFiles = new HashMap<Integer, File>();
+		String prefix = this.indexFile.getName() + '.';
+
+		for (File file : listSegmentFiles())
+		{
+			String name = file.getName();
+
+			if (name.endsWith(SEGMENT_EXTENSION))
+			{
+				try
+				{
+					segmentFiles.put(Integer.valueOf(name.substring(prefix.length(),
+							name.length() - SEGMENT_EXTENSION.length())), file);
+				}
+				catch (NumberFormatException e)
+				{
+					// not one of ours
+				}
+			}
+		}
+
+		List<Integer> numbers = new ArrayList<Integer>(segmentFiles.keySet());
+
+		Collections.sort(numbers);
+
+		for (Integer number : numbers)
+		{
+			File file = segmentFiles.get(number);
+			DiskIndex segment = new DiskIndex(file.getPath(), this.memoryMapped);
+
+			segment.initialize(true);
+			segment.setDeletedDocuments(readTombstones(file));
+			this.segments.add(new Segment(number, segment));
+		}
+	}
+
+	/**
+	 * listSegmentFiles
+	 * 
+	 * @return
+	 */
+	private List<File> listSegmentFiles()
+	{
+		File directory = this.indexFile.getAbsoluteFile().getParentFile();
+		final String prefix = this.indexFile.getName() + '.';
+		final String baseTombstone = this.indexFile.getName() + TOMBSTONE_EXTENSION;
+
+		File[] files = (directory == null) ? null : directory.listFiles(new FilenameFilter()
+		{
+			public boolean accept(File dir, String name)
+			{
+				return name.startsWith(prefix) && !name.equals(baseTombstone)
+						&& (name.endsWith(SEGMENT_EXTENSION) || name.endsWith(SEGMENT_EXTENSION + TOMBSTONE_EXTENSION));
+			}
+		});
+
+		if (files == null)
+		{
+			return Collections.emptyList();
+		}
+
+		List<File> result = new ArrayList<File>(files.length);
+
+		Collections.addAll(result, files);
+
+		return result;
+	}
+
+	/**
+	 * Tombstone the specified documents in the given index and persist its updated bitmap
+	 * 
+	 * @param index
+	 * @param file
+	 * @param documentNames
+	 * @throws IOException
+	 */
+	private void markDeleted(DiskIndex index, File file, Set<String> documentNames) throws IOException
+	{
+		BitSet found = index.findDocumentNumbers(documentNames);
+
+		if (found.isEmpty())
+		{
+			return;
+		}
+
+		BitSet deleted = index.getDeletedDocuments();
+
+		if (deleted != null)
+		{
+			found.or(deleted);
+
+			if (found.equals(deleted))
+			{
+				return;
+			}
+		}
+
+		writeTombstones(file, found);
+		index.setDeletedDocuments(found);
+	}
+
+	/**
+	 * needsCompaction
+	 * 
+	 * @return
+	 */
+	public boolean needsCompaction()
+	{
+		return this.segments.size() > MAX_SEGMENTS;
+	}
+
+	/**
+	 * readTombstones
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	private BitSet readTombstones(File file) throws IOException
+	{
+		File tombstoneFile = getTombstoneFile(file);
+
+		if (!tombstoneFile.exists())
+		{
+			return null;
+		}
+
+		DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(tombstoneFile)));
+
+		try
+		{
+			int count = stream.readInt();
+			BitSet result = new BitSet();
+
+			for (int i = 0; i < count; i++)
+			{
+				result.set(stream.readInt());
+			}
+
+			return result;
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	/**
+	 * Remove the specified categories from the index. The segments are compacted first, since removing a category
+	 * rewrites the base file anyway.
+	 * 
+	 * @param categoryNames
+	 * @param memoryIndex
+	 * @throws IOException
+	 */
+	public void removeCategories(String[] categoryNames, MemoryIndex memoryIndex) throws IOException
+	{
+		compact();
+		this.base = this.base.removeCategories(categoryNames, memoryIndex);
+	}
+
+	/**
+	 * Write a tombstone file via a temporary file so readers never see a partial bitmap
+	 * 
+	 * @param file
+	 * @param deleted
+	 * @throws IOException
+	 */
+	private void writeTombstones(File file, BitSet deleted) throws IOException
+	{
+		File tombstoneFile = getTombstoneFile(file);
+		File tempFile = new File(tombstoneFile.getPath() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile, false)));
+
+		try
+		{
+			stream.writeInt(deleted.cardinality());
+
+			for (int i = deleted.nextSetBit(0); i >= 0; i = deleted.nextSetBit(i + 1))
+			{
+				stream.writeInt(i);
+			}
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		if ((tombstoneFile.exists() && !tombstoneFile.delete()) || !tempFile.renameTo(tombstoneFile))
+		{
+			throw new IOException("Failed to write index tombstones " + tombstoneFile); //$NON-NLS-1$
+		}
+	}
+}
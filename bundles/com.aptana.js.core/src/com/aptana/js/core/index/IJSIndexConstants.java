@@ -42,7 +42,12 @@ public interface IJSIndexConstants
 	// 0.36 - Include Module definition mappings to autogenerated UUID type names holding the exported object, remove
 	// requires keys
 	// 0.37 - Retain internal flag and user agent listing when writing types to index
-	public static final double INDEX_VERSION = 0.37;
+	// 0.38 - Store property, function and event payloads in the binary encoding of JSElementCodec
+	// 0.39 - Keep the key delimiter out of the binary payloads
+	public static final double INDEX_VERSION = 0.39;
+
+	// the first index version that stores member payloads in the binary encoding instead of JSON
+	public static final double BINARY_PAYLOAD_VERSION = 0.39;
 
 	// for debugging, comment the line above, and uncomment the following
 	// public static final double INDEX_VERSION = new Random().nextDouble() * 1e6;
@@ -12,10 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
@@ -39,6 +36,7 @@ import com.aptana.js.core.model.FunctionElement;
 import com.aptana.js.core.model.PropertyElement;
 import com.aptana.js.core.model.TypeElement;
 import com.aptana.js.internal.core.index.JSIndexReader;
+import com.aptana.js.internal.core.index.JSTypeGraph;
 
 /**
  * This class is intended to silently query the types/functions/properties/events for a given project. It uses the
@@ -215,49 +213,15 @@ public class JSIndexQueryHelper
 	}
 
 	/**
-	 * getTypeAncestorNames
+	 * Returns the names of the ancestors of a type, breadth-first, as declared in all the indices. The hierarchy is
+	 * read from the {@link JSTypeGraph} of the indices rather than by querying them for each ancestor.
 	 * 
-	 * @param index
 	 * @param typeName
 	 * @return
 	 */
 	public List<String> getTypeAncestorNames(String typeName)
 	{
-		// Using linked hash set to preserve the order items were added to set
-		Set<String> types = new LinkedHashSet<String>();
-
-		// Using linked list since it provides a queue interface
-		Queue<String> queue = new LinkedList<String>();
-
-		// prime the queue
-		queue.offer(typeName);
-
-		while (!queue.isEmpty())
-		{
-			String name = queue.poll();
-			Collection<TypeElement> typeList = getTypes(name, false);
-
-			if (typeList != null)
-			{
-				for (TypeElement type : typeList)
-				{
-					for (String parentType : type.getParentTypes())
-					{
-						if (!types.contains(parentType))
-						{
-							types.add(parentType);
-
-							if (!JSTypeConstants.OBJECT_TYPE.equals(parentType))
-							{
-								queue.offer(parentType);
-							}
-						}
-					}
-				}
-			}
-		}
-
-		return new ArrayList<String>(types);
+		return JSTypeGraph.getGraph(indices).getAncestorNames(typeName);
 	}
 
 	/**
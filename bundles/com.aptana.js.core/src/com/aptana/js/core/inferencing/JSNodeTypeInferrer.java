@@ -63,6 +63,7 @@ import com.aptana.js.core.parsing.ast.JSTreeWalker;
 import com.aptana.js.core.parsing.ast.JSTrueNode;
 import com.aptana.js.internal.core.inferencing.JSPropertyCollector;
 import com.aptana.js.internal.core.inferencing.JSSymbolTypeInferrer;
+import com.aptana.js.internal.core.inferencing.JSTypeInferenceCache;
 import com.aptana.js.internal.core.parsing.sdoc.model.DocumentationBlock;
 import com.aptana.js.internal.core.parsing.sdoc.model.ParamTag;
 import com.aptana.js.internal.core.parsing.sdoc.model.Tag;
@@ -272,16 +273,44 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 	{
 		if (node instanceof JSNode)
 		{
+			JSNode jsNode = (JSNode) node;
+
+			// use the types already inferred for the node, if any
+			JSTypeInferenceCache cache = JSTypeInferenceCache.getCache(jsNode, this._index, this._location, scope);
+			if (cache != null)
+			{
+				List<String> types = cache.get(jsNode, scope);
+				if (types != null)
+				{
+					return types;
+				}
+				if (!cache.enter(jsNode, scope))
+				{
+					// the node's types depend on themselves
+					return Collections.emptyList();
+				}
+			}
+
 			// create new nested walker
-			// FIXME How can we avoid total recursion here? can we re-use ourself somehow?
 			JSNodeTypeInferrer walker = new JSNodeTypeInferrer(scope, this._index, this._location, this._queryHelper,
 					_monitor.newChild(1));
-
-			// collect types
-			walker.visit((JSNode) node);
+			List<String> types = null;
+			try
+			{
+				// collect types
+				walker.visit(jsNode);
+				types = walker.getTypes();
+			}
+			finally
+			{
+				if (cache != null)
+				{
+					types = cache.exit(types);
+				}
+			}
 
 			// return collected types
-			return walker.getTypes();
+			return types;
 		}
 
 		return Collections.emptyList();
@@ -599,6 +628,7 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 				}
 
 				// lookup up rhs name in type and add that value's type here
+				JSTypeInferenceCache.addDependency(typeName);
 				Collection<PropertyElement> properties = this._queryHelper.getTypeMembers(typeName, memberName);
 
 				if (properties != null)
@@ -671,6 +701,13 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 			}
 			else
 			{
+				JSPropertyCollection symbol = this._scope.getSymbol(name);
+				if (symbol != null && symbol.hasTypes() && !symbol.hasElement())
+				{
+					// the symbol's types are still being inferred, so the ones it has so far are partial
+					JSTypeInferenceCache.markIncomplete();
+				}
+
 				// Check the local scope for type first
 				JSSymbolTypeInferrer symbolInferrer = new JSSymbolTypeInferrer(this._scope, this._index,
 						this._location, this._queryHelper);
@@ -683,6 +720,7 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 				else
 				{
 					// No match in the local scope, query the globals in index
+					addGlobalDependencies();
 					properties = this._queryHelper.getGlobals(getFileName(), name);
 				}
 			}
@@ -703,6 +741,7 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 			{
 				name = _factory.resolve(name, org.eclipse.core.filesystem.URIUtil.toPath(_location), _projectLocation);
 			}
+			addGlobalDependencies();
 			properties = this._queryHelper.getGlobals(getFileName(), name);
 		}
 
@@ -732,6 +771,15 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 		_monitor.worked(1);
 	}
 
+	/**
+	 * Records that the types being inferred depend on the types holding the globals.
+	 */
+	private void addGlobalDependencies()
+	{
+		JSTypeInferenceCache.addDependency(JSTypeConstants.GLOBAL_TYPE);
+		JSTypeInferenceCache.addDependency(JSTypeConstants.WINDOW_TYPE);
+	}
+
 	protected String getFileName()
 	{
 		return URIUtil.getFileName(_location);
@@ -6,10 +6,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.Stack;
 
 import org.eclipse.core.internal.utils.StringPool;
@@ -707,10 +706,8 @@ class GraalASTWalker extends NodeVisitor<LexicalContext>
 				popNode(); // export node
 			}
 			// when the function node is the "init" of a parent VarNode, we need to avoid hitting the "name" IdentNode.
-			if (!functionNode.isAnonymous() && !functionNode.isMethod())
-			{
-				wipeNextIdent = true;
-			}
+			// Always (re)set, so that a flag left over from a function nested in the body doesn't leak out of it.
+			wipeNextIdent = !functionNode.isAnonymous() && !functionNode.isMethod();
 
 			// fix offsets of parent as the function's end offset may have been changed based on #enterBlockNode()
 			fixOffsets((ParseNode) getCurrentNode(), funcNode.getStartingOffset(), funcNode.getEndingOffset());
@@ -1232,13 +1229,17 @@ class GraalASTWalker extends NodeVisitor<LexicalContext>
 			return;
 		}
 		Map<Integer, List<JSVarNode>> startOffsetToListToMerge = gatherVarNodesToMergeByStartOffset(children);
-		Set<IParseNode> toRemove = mergeVarNodesByOffset(startOffsetToListToMerge);
+		Map<IParseNode, Boolean> toRemove = mergeVarNodesByOffset(startOffsetToListToMerge);
+		if (toRemove.isEmpty())
+		{
+			return;
+		}
 
 		// Now copy children, skipping the ones we want to remove
 		Collection<IParseNode> newChildren = new ArrayList<IParseNode>();
 		for (int i = 0; i < children.length; i++)
 		{
-			if (!toRemove.contains(children[i]))
+			if (!toRemove.containsKey(children[i]))
 			{
 				newChildren.add(children[i]);
 			}
@@ -1270,14 +1271,15 @@ class GraalASTWalker extends NodeVisitor<LexicalContext>
 	}
 
 	/**
-	 * Returns a set of the nodes we've merged and need to now be removed.
+	 * Returns the nodes we've merged and need to now be removed (as the keys of an identity map).
 	 * 
 	 * @param startOffsetToListToMerge
 	 * @return
 	 */
-	private Set<IParseNode> mergeVarNodesByOffset(Map<Integer, List<JSVarNode>> startOffsetToListToMerge)
+	private Map<IParseNode, Boolean> mergeVarNodesByOffset(Map<Integer, List<JSVarNode>> startOffsetToListToMerge)
 	{
-		Set<IParseNode> toRemove = new HashSet<IParseNode>();
+		// Compare by identity: the structural hashCode() of nodes would walk their whole subtrees
+		Map<IParseNode, Boolean> toRemove = new IdentityHashMap<IParseNode, Boolean>();
 		// Now go through the map and if there's a list with 2+ elements, merge them!
 		for (Map.Entry<Integer, List<JSVarNode>> entry : startOffsetToListToMerge.entrySet())
 		{
@@ -1291,7 +1293,7 @@ class GraalASTWalker extends NodeVisitor<LexicalContext>
 				// Now loop through the others we want to merge
 				for (JSVarNode other : entry.getValue().subList(1, entry.getValue().size()))
 				{
-					toRemove.add(other); // Mark this JSVarNode for removal from new listing
+					toRemove.put(other, Boolean.TRUE); // Mark this JSVarNode for removal from new listing
 					JSDeclarationNode declNode = (JSDeclarationNode) other.getFirstChild();
 					// We need to set semicolon included to false on each decl node!
 					declNode.setSemicolonIncluded(false);
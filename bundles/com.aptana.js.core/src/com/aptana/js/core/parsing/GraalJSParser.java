@@ -5,6 +5,9 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
 import com.aptana.core.build.IProblem.Severity;
 import com.aptana.core.util.StringUtil;
 import com.aptana.js.core.IJSConstants;
@@ -46,7 +49,9 @@ public class GraalJSParser extends AbstractParser
 
 		try
 		{
-			FunctionNode graalAST = parse(filename, 0, source, working);
+			IProgressMonitor monitor = parseState.getProgressMonitor();
+			FunctionNode graalAST = parse(filename, 0, source, working, monitor);
+			checkCanceled(monitor);
 			JSParseRootNode ast = (JSParseRootNode) convertAST(source, graalAST);
 			if (ast != null)
 			{
@@ -68,6 +73,11 @@ public class GraalJSParser extends AbstractParser
 			}
 
 		}
+		catch (OperationCanceledException e)
+		{
+			// Not an error: no one wants the result anymore.
+			throw e;
+		}
 		catch (Exception e)
 		{
 			System.err.println(e);
@@ -89,6 +99,14 @@ public class GraalJSParser extends AbstractParser
 				Severity.ERROR);
 	}
 
+	private static void checkCanceled(IProgressMonitor monitor)
+	{
+		if (monitor != null && monitor.isCanceled())
+		{
+			throw new OperationCanceledException();
+		}
+	}
+
 	private IParseRootNode convertAST(final String source, final FunctionNode result)
 	{
 		if (result == null)
@@ -102,7 +120,7 @@ public class GraalJSParser extends AbstractParser
 	}
 
 	private FunctionNode parse(final String filename, int startOffset, final String source,
-			final WorkingParseResult working)
+			final WorkingParseResult working, IProgressMonitor monitor)
 	{
 		Source src = Source.sourceFor(filename, source);
 
@@ -130,19 +148,21 @@ public class GraalJSParser extends AbstractParser
 			}
 		};
 		// Subclass and collect comments too
-		fParser = new CommentCollectingParser(env, src, errorManager);
+		fParser = new CommentCollectingParser(env, src, errorManager, monitor);
 
 		// TODO Can we do a quick peek/guess based on a regexp to find imports/exports at top-level?
 		// FIXME Based on file extensions, choose module goal explicitly for *.mjs files!
 
 		// First try as module. This also implicitly does strict mode.
 		FunctionNode result = fParser.parseModule(filename, startOffset, source.length() - startOffset);
+		checkCanceled(monitor);
 		if (result == null || errorManager.getParserException() != null)
 		{
 			// Reset state and fall back to non-strict script as our goal
 			working.getErrors().clear();
-			fParser = new CommentCollectingParser(env, src, errorManager);
+			fParser = new CommentCollectingParser(env, src, errorManager, monitor);
 			result = fParser.parse(filename, startOffset, source.length() - startOffset, false);
+			checkCanceled(monitor);
 		}
 
 		// If any errors found, will run in a simple recovery mode where will assume basic expected tokens({, },IDENT, (,)) are available and proceed with the parse without failing.
@@ -151,7 +171,7 @@ public class GraalJSParser extends AbstractParser
 			// run in recovery mode and see if we can build better IR by inserting tokens. Parse errors won't be
 			// considered in the recovery mode
 			inRecoveryMode[0] = true;
-			fParser = new CommentCollectingParser(env, src, errorManager, true);
+			fParser = new CommentCollectingParser(env, src, errorManager, monitor, true);
 			result = fParser.parse(filename, startOffset, source.length() - startOffset, false);
 
 		}
@@ -163,23 +183,39 @@ public class GraalJSParser extends AbstractParser
 		private static final int DIDNT_SEE_COMMENT = -1;
 		private final List<IParseNode> comments = new ArrayList<IParseNode>();
 		private int fLastCommentStart = DIDNT_SEE_COMMENT;
+		/**
+		 * How many tokens to read between checks of the progress monitor.
+		 */
+		private static final int CANCEL_CHECK_INTERVAL = 256;
 		private boolean inRecoveryMode;
+		private final IProgressMonitor fMonitor;
+		private int fTokensUntilCancelCheck = CANCEL_CHECK_INTERVAL;
+		private boolean fCanceled;
 
-		public CommentCollectingParser(ScriptEnvironment env, Source src, ErrorManager errorManager)
+		public CommentCollectingParser(ScriptEnvironment env, Source src, ErrorManager errorManager,
+				IProgressMonitor monitor)
 		{
-			super(env, src, errorManager);
+			this(env, src, errorManager, monitor, false);
 		}
 
 		public CommentCollectingParser(ScriptEnvironment env, Source src, ErrorManager errorManager,
-				final boolean inRecoveryMode)
+				IProgressMonitor monitor, final boolean inRecoveryMode)
 		{
 			super(env, src, errorManager);
+			this.fMonitor = monitor;
 			this.inRecoveryMode = inRecoveryMode;
 		}
 
 		@Override
 		protected TokenType nextToken()
 		{
+			// The graal parser catches and recovers from any exception, so once cancelled keep on throwing until it
+			// unwinds completely (the caller checks the monitor again after the parse returns).
+			if (fCanceled || (--fTokensUntilCancelCheck == 0 && isCanceled()))
+			{
+				fCanceled = true;
+				throw new OperationCanceledException();
+			}
 			TokenType tt = super.nextToken();
 			if (sawCommentLastTime())
 			{
@@ -194,6 +230,12 @@ public class GraalJSParser extends AbstractParser
 			return tt;
 		}
 
+		private boolean isCanceled()
+		{
+			fTokensUntilCancelCheck = CANCEL_CHECK_INTERVAL;
+			return fMonitor != null && fMonitor.isCanceled();
+		}
+
 		private void recordComment(TokenType curTokenType)
 		{
 			// FIXME finish can *still* be wrong. If finish is less than fLastCommentStart, use start - 1?
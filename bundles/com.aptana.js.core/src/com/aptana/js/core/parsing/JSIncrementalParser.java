@@ -0,0 +1,470 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.aptana.core.util.StringUtil;
+import com.aptana.js.core.parsing.ast.JSClassNode;
+import com.aptana.js.core.parsing.ast.JSExportNode;
+import com.aptana.js.core.parsing.ast.JSFunctionNode;
+import com.aptana.js.core.parsing.ast.JSGeneratorFunctionNode;
+import com.aptana.js.core.parsing.ast.JSImportNode;
+import com.aptana.js.core.parsing.ast.JSParseRootNode;
+import com.aptana.parsing.IParseState;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseNode;
+import com.aptana.parsing.util.ParseUtil;
+
+/**
+ * Parses successive versions of a single JS document (i.e.: the contents of an editor), reparsing only the body of the
+ * innermost function containing the changes when possible.
+ * <p>
+ * The changed region is found by comparing the new source with the previous one. If it lies strictly inside the braces
+ * of a function body, only that body is parsed again, wrapped in an empty function of the same kind and in the same
+ * strictness as the original (a module, a class or a "use strict" directive around it). The result is a copy of the
+ * previous AST with the new statements in place of the old ones and the offsets of the nodes after them shifted, so
+ * the ASTs returned before are never modified. Otherwise (or if the previous or new contents have syntax errors, whose
+ * reporting depends on the whole document) a full parse is done.
+ * <p>
+ * The ASTs are owned by this parser: they're not taken from nor put in the {@link com.aptana.parsing.ParsingEngine}
+ * cache.
+ */
+public class JSIncrementalParser
+{
+	/**
+	 * Text put before a function body so that it can be parsed on its own.
+	 */
+	private static final String FUNCTION_PREFIX = "function f()"; //$NON-NLS-1$
+	private static final String GENERATOR_PREFIX = "function* f()"; //$NON-NLS-1$
+
+	/**
+	 * Put before the function when its body is strict code. A module prefix makes the whole text module code, so a
+	 * body which isn't valid there fails to parse instead of being parsed as a sloppy script.
+	 */
+	private static final String STRICT_PREFIX = "'use strict';"; //$NON-NLS-1$
+	private static final String MODULE_PREFIX = "export {};"; //$NON-NLS-1$
+
+	private static final String USE_STRICT = "use strict"; //$NON-NLS-1$
+
+	private final GraalJSParser fParser = new GraalJSParser();
+
+	private String fLastSource;
+	private ParseResult fLastResult;
+
+	/**
+	 * The number of parses done since the last reset which only reparsed a function body (for testing purposes).
+	 */
+	private int fIncrementalParses;
+
+	/**
+	 * Parses the given state, reusing the result of the previous parse if possible.
+	 * 
+	 * @param parseState
+	 * @return
+	 * @throws Exception
+	 */
+	public synchronized ParseResult parse(IParseState parseState) throws Exception // $codepro.audit.disable
+																					// declaredExceptions
+	{
+		String source = parseState.getSource();
+		if (source == null || parseState.getStartingOffset() != 0 || parseState.getSkippedRanges() != null)
+		{
+			reset();
+			return fParser.parse(parseState);
+		}
+
+		if (fLastResult != null && source.equals(fLastSource))
+		{
+			return fLastResult;
+		}
+
+		ParseResult result = null;
+		if (fLastResult != null && fLastResult.getRootNode() instanceof JSParseRootNode
+				&& fLastResult.getErrors().isEmpty())
+		{
+			result = reparseFunctionBody(source);
+		}
+		if (result == null)
+		{
+			result = fParser.parse(parseState);
+		}
+		else
+		{
+			fIncrementalParses++;
+		}
+
+		fLastSource = source;
+		fLastResult = result;
+		return result;
+	}
+
+	/**
+	 * Forgets the previous parse, so that the next one is a full parse.
+	 */
+	public synchronized void reset()
+	{
+		fLastSource = null;
+		fLastResult = null;
+		fIncrementalParses = 0;
+	}
+
+	/**
+	 * @return the number of parses since the last reset which only reparsed a function body.
+	 */
+	public synchronized int getIncrementalParseCount()
+	{
+		return fIncrementalParses;
+	}
+
+	/**
+	 * @return the updated previous result or null if a full parse is needed.
+	 */
+	private ParseResult reparseFunctionBody(String source) throws Exception // $codepro.audit.disable declaredExceptions
+	{
+		String lastSource = fLastSource;
+		int lastLength = lastSource.length();
+		int length = source.length();
+
+		// Find the changed region: [start, lastEnd) in the previous source became [start, end) in the new one.
+		int max = Math.min(lastLength, length);
+		int start = 0;
+		while (start < max && lastSource.charAt(start) == source.charAt(start))
+		{
+			start++;
+		}
+		int suffix = 0;
+		while (suffix < max - start
+				&& lastSource.charAt(lastLength - suffix - 1) == source.charAt(length - suffix - 1))
+		{
+			suffix++;
+		}
+		int lastEnd = lastLength - suffix;
+		int delta = length - lastLength;
+
+		JSParseRootNode root = (JSParseRootNode) fLastResult.getRootNode();
+		List<IParseNode> path = new ArrayList<IParseNode>();
+		JSFunctionNode function = findEnclosingFunction(root, start, lastEnd, lastSource, path);
+		if (function == null)
+		{
+			return null;
+		}
+
+		// Parse the new body on its own, inside an empty function of the same kind and in the same context.
+		String context = getContextPrefix(root, path, lastSource);
+		if (context == null)
+		{
+			return null;
+		}
+		IParseNode oldBody = function.getBody();
+		int bodyStart = oldBody.getStartingOffset();
+		int oldBodyEnd = oldBody.getEndingOffset();
+		String prefix = context
+				+ ((function instanceof JSGeneratorFunctionNode) ? GENERATOR_PREFIX : FUNCTION_PREFIX);
+		ParseResult bodyResult = fParser.parse(new ParseState(prefix
+				+ source.substring(bodyStart, oldBodyEnd + delta + 1), 0));
+		IParseNode newBody = getReparsedBody(bodyResult, prefix.length(), prefix.length() + oldBodyEnd + delta
+				- bodyStart);
+		if (newBody == null)
+		{
+			return null;
+		}
+		int shift = bodyStart - prefix.length();
+		ParseUtil.addOffset(newBody, shift);
+
+		// Copy the nodes from the root down to the function with the new body in, fixing their ends, and copy whatever
+		// else they hold (shifted if it comes after the body), so that the previous AST is left untouched.
+		path.add(oldBody);
+		JSParseRootNode newRoot = (JSParseRootNode) copyPath(path, 0, newBody, oldBodyEnd, delta);
+
+		newRoot.setCommentNodes(spliceComments(root.getCommentNodes(), bodyResult.getRootNode().getCommentNodes(),
+				prefix.length(), bodyStart, oldBodyEnd, shift, delta));
+
+		return new ParseResult(newRoot, Collections.<IParseError> emptyList());
+	}
+
+	/**
+	 * @return the text to put before the wrapping function so that the body is parsed as strict or module code if
+	 *         it's in the original, an empty string for sloppy code, or null if that can't be told.
+	 */
+	private static String getContextPrefix(JSParseRootNode root, List<IParseNode> path, String source)
+	{
+		for (IParseNode child : root.getChildren())
+		{
+			if (child instanceof JSImportNode || child instanceof JSExportNode)
+			{
+				return MODULE_PREFIX;
+			}
+		}
+		if (hasUseStrictDirective(source, 0))
+		{
+			return STRICT_PREFIX;
+		}
+		// The directive of the function itself is part of the reparsed body.
+		for (int i = 1; i < path.size() - 1; i++)
+		{
+			IParseNode node = path.get(i);
+			if (node instanceof JSClassNode)
+			{
+				return STRICT_PREFIX;
+			}
+			if (node instanceof JSFunctionNode && node.getChildCount() > 0)
+			{
+				int bodyStart = ((JSFunctionNode) node).getBody().getStartingOffset();
+				if (bodyStart < 0 || source.charAt(bodyStart) != '{')
+				{
+					// An expression body (or one whose range we can't trust): can't look for its directives.
+					return null;
+				}
+				if (hasUseStrictDirective(source, bodyStart + 1))
+				{
+					return STRICT_PREFIX;
+				}
+			}
+		}
+		return StringUtil.EMPTY;
+	}
+
+	/**
+	 * @return true if the directive prologue starting at the given offset (i.e.: the string literal statements at the
+	 *         start of a script or a function body) has a "use strict" directive.
+	 */
+	private static boolean hasUseStrictDirective(String source, int offset)
+	{
+		int length = source.length();
+		int i = skipWhitespaceAndComments(source, offset);
+		while (i < length && (source.charAt(i) == '"' || source.charAt(i) == '\''))
+		{
+			char quote = source.charAt(i);
+			int end = i + 1;
+			while (end < length && source.charAt(end) != quote && source.charAt(end) != '\n')
+			{
+				// skip escaped chars (a directive with escapes is never "use strict")
+				end += (source.charAt(end) == '\\') ? 2 : 1;
+			}
+			if (end >= length || source.charAt(end) != quote)
+			{
+				return false;
+			}
+			String directive = source.substring(i + 1, end);
+
+			// Only a string statement on its own is a directive (not the start of a longer expression).
+			int next = skipWhitespaceAndComments(source, end + 1);
+			boolean lineBreak = source.substring(end + 1, next).indexOf('\n') != -1;
+			if (next < length && source.charAt(next) != ';' && source.charAt(next) != '}' && !lineBreak)
+			{
+				return false;
+			}
+			if (USE_STRICT.equals(directive))
+			{
+				return true;
+			}
+			i = (next < length && source.charAt(next) == ';') ? skipWhitespaceAndComments(source, next + 1) : next;
+		}
+		return false;
+	}
+
+	private static int skipWhitespaceAndComments(String source, int offset)
+	{
+		int length = source.length();
+		int i = offset;
+		while (i < length)
+		{
+			char c = source.charAt(i);
+			if (Character.isWhitespace(c))
+			{
+				i++;
+			}
+			else if (source.startsWith("//", i)) //$NON-NLS-1$
+			{
+				int end = source.indexOf('\n', i);
+				i = (end == -1) ? length : end + 1;
+			}
+			else if (source.startsWith("/*", i)) //$NON-NLS-1$
+			{
+				int end = source.indexOf("*/", i + 2); //$NON-NLS-1$
+				i = (end == -1) ? length : end + 2;
+			}
+			else
+			{
+				break;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Copies the node at the given index of the path, whose last node is the old body which is replaced by the new one.
+	 * The copies on the path end delta chars later. The other children are copied too (and shifted if they come after
+	 * the old body), as their parent changes.
+	 */
+	private static IParseNode copyPath(List<IParseNode> path, int index, IParseNode newBody, int oldBodyEnd, int delta)
+	{
+		IParseNode node = path.get(index);
+		IParseNode onPath = path.get(index + 1);
+		// getChildren() may return the node's own array
+		IParseNode[] children = node.getChildren().clone();
+		for (int i = 0; i < children.length; i++)
+		{
+			IParseNode child = children[i];
+			if (child == onPath)
+			{
+				children[i] = (index + 1 == path.size() - 1) ? newBody : copyPath(path, index + 1, newBody,
+						oldBodyEnd, delta);
+			}
+			else
+			{
+				children[i] = copyTree(child, (child.getStartingOffset() > oldBodyEnd) ? delta : 0);
+			}
+		}
+		ParseNode copy = ((ParseNode) node).copy();
+		copy.setChildren(children);
+		copy.setLocation(node.getStartingOffset(), node.getEndingOffset() + delta);
+		return copy;
+	}
+
+	/**
+	 * @return a deep copy of the given node, with all the offsets moved by the given amount.
+	 */
+	private static IParseNode copyTree(IParseNode node, int offset)
+	{
+		ParseNode copy = ((ParseNode) node).copy();
+		if (node.hasChildren())
+		{
+			IParseNode[] children = node.getChildren().clone();
+			for (int i = 0; i < children.length; i++)
+			{
+				children[i] = copyTree(children[i], offset);
+			}
+			copy.setChildren(children);
+		}
+		if (offset != 0)
+		{
+			copy.addOffset(offset);
+		}
+		return copy;
+	}
+
+	/**
+	 * Finds the innermost function whose body contains the range [start, end) without touching its braces.
+	 * 
+	 * @param path
+	 *            filled with the nodes from the root down to the returned function.
+	 */
+	private static JSFunctionNode findEnclosingFunction(IParseNode root, int start, int end, String source,
+			List<IParseNode> path)
+	{
+		JSFunctionNode result = null;
+		int resultDepth = 0;
+		List<IParseNode> current = new ArrayList<IParseNode>();
+		IParseNode node = root;
+		while (node != null)
+		{
+			current.add(node);
+			if (node instanceof JSFunctionNode && node.getChildCount() > 0)
+			{
+				IParseNode body = ((JSFunctionNode) node).getBody();
+				int bodyStart = body.getStartingOffset();
+				int bodyEnd = body.getEndingOffset();
+				// Arrow functions may have an expression as the body (and their recorded body range may not include
+				// the braces), so we check that the body range really is delimited by braces.
+				if (bodyStart < start && end <= bodyEnd && source.charAt(bodyStart) == '{'
+						&& source.charAt(bodyEnd) == '}')
+				{
+					result = (JSFunctionNode) node;
+					resultDepth = current.size();
+				}
+			}
+
+			IParseNode next = null;
+			for (int i = 0; i < node.getChildCount(); i++)
+			{
+				IParseNode child = node.getChild(i);
+				if (child.getStartingOffset() < start && end <= child.getEndingOffset())
+				{
+					next = child;
+					break;
+				}
+			}
+			node = next;
+		}
+		if (result != null)
+		{
+			path.addAll(current.subList(0, resultDepth));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the body of the function parsed on its own, or null if the text didn't parse without errors as one
+	 *         function with a body spanning [bodyStart, bodyEnd] (after the context prefix, if any).
+	 */
+	private static IParseNode getReparsedBody(ParseResult result, int bodyStart, int bodyEnd)
+	{
+		IParseRootNode root = result.getRootNode();
+		if (!(root instanceof JSParseRootNode) || !result.getErrors().isEmpty())
+		{
+			return null;
+		}
+		IParseNode body = null;
+		for (IParseNode child : root.getChildren())
+		{
+			if (child instanceof JSFunctionNode && child.getChildCount() > 0)
+			{
+				if (body != null)
+				{
+					return null;
+				}
+				body = ((JSFunctionNode) child).getBody();
+			}
+		}
+		if (body == null || body.getStartingOffset() != bodyStart || body.getEndingOffset() != bodyEnd)
+		{
+			return null;
+		}
+		return body;
+	}
+
+	/**
+	 * @return copies of the comments of the previous parse, with the ones inside the old body replaced by the new ones
+	 *         (those of the reparsed text which come after its prefix) and the ones after it shifted.
+	 */
+	private static IParseNode[] spliceComments(IParseNode[] comments, IParseNode[] bodyComments, int prefixLength,
+			int bodyStart, int oldBodyEnd, int shift, int delta)
+	{
+		List<IParseNode> result = new ArrayList<IParseNode>(comments.length + bodyComments.length);
+		int i = 0;
+		while (i < comments.length && comments[i].getStartingOffset() < bodyStart)
+		{
+			result.add(comments[i++]);
+		}
+		while (i < comments.length && comments[i].getStartingOffset() <= oldBodyEnd)
+		{
+			i++;
+		}
+		for (IParseNode comment : bodyComments)
+		{
+			if (comment.getStartingOffset() >= prefixLength)
+			{
+				ParseUtil.addOffset(comment, shift);
+				result.add(comment);
+			}
+		}
+		for (; i < comments.length; i++)
+		{
+			result.add(copyTree(comments[i], delta));
+		}
+		return result.toArray(new IParseNode[result.size()]);
+	}
+}
@@ -9,6 +9,7 @@ import beaver.Symbol;
  */
 public abstract class JSAbstractForNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private Symbol _leftParenthesis;
 	private Symbol _rightParenthesis;
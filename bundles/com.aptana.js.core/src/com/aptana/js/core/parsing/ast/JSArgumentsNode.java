@@ -9,6 +9,7 @@ package com.aptana.js.core.parsing.ast;
 
 public class JSArgumentsNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public JSArgumentsNode(int start, int end)
 	{
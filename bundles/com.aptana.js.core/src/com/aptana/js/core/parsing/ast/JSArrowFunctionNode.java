@@ -4,6 +4,7 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class JSArrowFunctionNode extends JSFunctionNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public JSArrowFunctionNode(int start, int end)
 	{
@@ -13,6 +13,8 @@ import beaver.Symbol;
 
 public class JSBinaryArithmeticOperatorNode extends JSBinaryOperatorNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSArithmeticOperatorNode
 	 * 
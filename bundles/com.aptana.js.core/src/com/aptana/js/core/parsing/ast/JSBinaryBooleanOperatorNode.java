@@ -13,6 +13,8 @@ import beaver.Symbol;
 
 public class JSBinaryBooleanOperatorNode extends JSBinaryOperatorNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSBooleanOperatorNode
 	 * 
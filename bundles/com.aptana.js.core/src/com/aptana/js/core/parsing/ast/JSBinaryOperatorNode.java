@@ -13,6 +13,8 @@ import beaver.Symbol;
 
 public abstract class JSBinaryOperatorNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private Symbol _operator;
 
 	
@@ -13,6 +13,7 @@ import beaver.Symbol;
 
 public class JSCatchNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private Symbol _leftParenthesis;
 	private Symbol _rightParenthesis;
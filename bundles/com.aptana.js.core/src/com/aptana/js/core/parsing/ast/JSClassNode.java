@@ -4,6 +4,7 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class JSClassNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private final boolean _hasName;
 	private final boolean _hasSuperclass;
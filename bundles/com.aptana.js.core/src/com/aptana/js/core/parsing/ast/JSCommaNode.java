@@ -11,6 +11,7 @@ import beaver.Symbol;
 
 public class JSCommaNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public JSCommaNode(int start, int end, Symbol symbol)
 	{
@@ -9,6 +9,8 @@ package com.aptana.js.core.parsing.ast;
 
 public class JSCommentNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSCommentNode
 	 * 
@@ -11,6 +11,7 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class JSConstructNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public JSConstructNode(int start, int end)
 	{
@@ -7,6 +7,7 @@ package com.aptana.js.core.parsing.ast;
  */
 public class JSDestructuringNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public JSDestructuringNode(JSNode binding)
 	{
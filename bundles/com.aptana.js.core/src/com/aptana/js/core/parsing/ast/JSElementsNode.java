@@ -9,6 +9,8 @@ package com.aptana.js.core.parsing.ast;
 
 public class JSElementsNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSElementsNode
 	 * 
@@ -11,6 +11,8 @@ import beaver.Symbol;
 
 public class JSEmptyNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSEmptyNode
 	 * 
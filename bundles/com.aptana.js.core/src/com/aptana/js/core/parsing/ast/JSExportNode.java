@@ -4,6 +4,7 @@ import beaver.Symbol;
 
 public class JSExportNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private final boolean _isDefault;
 	private final String _from;
@@ -4,6 +4,7 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class JSExportSpecifierNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public JSExportSpecifierNode(JSIdentifierNode name, JSIdentifierNode alias)
 	{
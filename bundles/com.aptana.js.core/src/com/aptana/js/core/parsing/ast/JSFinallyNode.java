@@ -11,6 +11,8 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class JSFinallyNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	public JSFinallyNode(int start, int end, JSNode statements)
 	{
 		super(IJSNodeTypes.FINALLY, statements);
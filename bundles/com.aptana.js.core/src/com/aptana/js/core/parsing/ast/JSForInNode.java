@@ -13,6 +13,8 @@ import beaver.Symbol;
 
 public class JSForInNode extends JSAbstractForNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private Symbol _in;
 
 	/**
@@ -13,6 +13,8 @@ import beaver.Symbol;
 
 public class JSForNode extends JSAbstractForNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private Symbol _semicolon1;
 	private Symbol _semicolon2;
 
@@ -13,6 +13,8 @@ import beaver.Symbol;
 
 public class JSForOfNode extends JSAbstractForNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Used by ANTLR AST
 	 * 
@@ -24,6 +24,8 @@ import com.aptana.parsing.ast.ParseNodeAttribute;
 
 public class JSFunctionNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private List<String> fReturnTypes;
 	private boolean _isStatic;
 
@@ -2,6 +2,7 @@ package com.aptana.js.core.parsing.ast;
 
 public class JSGeneratorFunctionNode extends JSFunctionNode
 {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Used by ANTLR AST
@@ -11,6 +11,7 @@ import beaver.Symbol;
 
 public class JSGetPropertyNode extends JSBinaryOperatorNode
 {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Used by ANTLR AST
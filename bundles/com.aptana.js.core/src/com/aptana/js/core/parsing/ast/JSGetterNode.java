@@ -2,6 +2,7 @@ package com.aptana.js.core.parsing.ast;
 
 public class JSGetterNode extends JSNameValuePairNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private final boolean isStatic;
 
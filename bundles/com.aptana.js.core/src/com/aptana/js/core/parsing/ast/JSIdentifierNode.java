@@ -11,6 +11,8 @@ import beaver.Symbol;
 
 public class JSIdentifierNode extends JSPrimitiveNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSIdentifierNode
 	 * 
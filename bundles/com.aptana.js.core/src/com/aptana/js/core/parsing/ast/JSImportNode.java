@@ -2,6 +2,7 @@ package com.aptana.js.core.parsing.ast;
 
 public class JSImportNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private final String _from;
 
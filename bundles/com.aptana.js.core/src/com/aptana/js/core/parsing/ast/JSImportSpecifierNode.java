@@ -6,6 +6,7 @@ import beaver.Symbol;
 
 public class JSImportSpecifierNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private final Symbol _star;
 
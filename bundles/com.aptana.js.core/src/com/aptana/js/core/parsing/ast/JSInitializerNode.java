@@ -4,6 +4,8 @@ import beaver.Symbol;
 
 public class JSInitializerNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private Symbol _equals;
 
 	public JSInitializerNode(Symbol equals, JSNode expression)
@@ -13,6 +13,8 @@ import beaver.Symbol;
 
 public class JSNameValuePairNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private Symbol _colon;
 
 	/**
@@ -28,6 +28,8 @@ import com.aptana.parsing.ast.ParseRootNode;
 
 public class JSNode extends ParseNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private static final int NODE_TYPE_MASK = 255; // 8 bits
 	private static final int DOC_TYPE_MASK = 0x3; // two bits
 
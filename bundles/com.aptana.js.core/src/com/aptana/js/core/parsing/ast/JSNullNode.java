@@ -13,6 +13,8 @@ import beaver.Symbol;
 
 public class JSNullNode extends JSPrimitiveNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSNullNode
 	 */
@@ -9,6 +9,7 @@ package com.aptana.js.core.parsing.ast;
 
 public class JSParametersNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public JSParametersNode(int lParen, int rParen)
 	{
@@ -12,10 +12,18 @@ import beaver.Symbol;
 import com.aptana.js.core.IJSConstants;
 import com.aptana.js.core.inferencing.JSScope;
 import com.aptana.js.internal.core.inferencing.JSSymbolCollector;
+import com.aptana.js.internal.core.inferencing.JSTypeInferenceCache;
 import com.aptana.parsing.ast.ParseRootNode;
 
 public class JSParseRootNode extends ParseRootNode
 {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The types inferred for the nodes of this tree, dropped along with the offset index whenever the tree changes.
+	 */
+	private transient volatile JSTypeInferenceCache fInferenceCache;
+
 	/**
 	 * JSParseRootNode
 	 */
@@ -65,6 +73,39 @@ public class JSParseRootNode extends ParseRootNode
 		return s.getScope();
 	}
 
+	/**
+	 * getInferenceCache
+	 * 
+	 * @return the cache of the types inferred for the nodes of this tree, or null if there's none yet.
+	 */
+	public JSTypeInferenceCache getInferenceCache()
+	{
+		return fInferenceCache;
+	}
+
+	/**
+	 * setInferenceCache
+	 * 
+	 * @param cache
+	 */
+	public void setInferenceCache(JSTypeInferenceCache cache)
+	{
+		fInferenceCache = cache;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseRootNode#invalidateIndex()
+	 */
+	@Override
+	public void invalidateIndex()
+	{
+		super.invalidateIndex();
+
+		// the types inferred for a node may depend on any other node of the tree
+		fInferenceCache = null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.parsing.ast.ParseNode#toString()
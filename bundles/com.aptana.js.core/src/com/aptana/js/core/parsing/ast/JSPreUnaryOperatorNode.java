@@ -14,6 +14,8 @@ import beaver.Symbol;
 
 public class JSPreUnaryOperatorNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private Symbol _operator;
 
 	/**
@@ -11,6 +11,8 @@ import beaver.Symbol;
 
 public class JSRegexNode extends JSPrimitiveNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSRegexNode
 	 * 
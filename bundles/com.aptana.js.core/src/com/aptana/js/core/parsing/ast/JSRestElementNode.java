@@ -10,6 +10,8 @@ import beaver.Symbol;
  */
 public class JSRestElementNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private Symbol _ellipsis;
 
 	public JSRestElementNode(Symbol ellipsis, JSIdentifierNode ident)
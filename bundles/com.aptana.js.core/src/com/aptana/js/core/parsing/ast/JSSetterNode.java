@@ -2,6 +2,7 @@ package com.aptana.js.core.parsing.ast;
 
 public class JSSetterNode extends JSNameValuePairNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public JSSetterNode(int start, int end)
 	{
@@ -4,6 +4,8 @@ import beaver.Symbol;
 
 public class JSSpreadElementNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private Symbol _ellipsis;
 
 	public JSSpreadElementNode(int start, int end, Symbol ellipsis)
@@ -9,6 +9,7 @@ package com.aptana.js.core.parsing.ast;
 
 public class JSStatementsNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public JSStatementsNode(int start, int end)
 	{
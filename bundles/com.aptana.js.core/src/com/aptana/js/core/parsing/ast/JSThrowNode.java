@@ -9,6 +9,7 @@ package com.aptana.js.core.parsing.ast;
 
 public class JSThrowNode extends JSPreUnaryOperatorNode
 {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * USed by ANTLR AST
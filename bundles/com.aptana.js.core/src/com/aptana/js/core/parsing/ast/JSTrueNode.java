@@ -13,6 +13,8 @@ import com.aptana.js.core.JSLanguageConstants;
 
 public class JSTrueNode extends JSPrimitiveNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSTrueNode
 	 */
@@ -11,6 +11,7 @@ import com.aptana.parsing.ast.IParseNode;
 
 public class JSTryNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public JSTryNode(int start, int end)
 	{
@@ -13,6 +13,8 @@ import beaver.Symbol;
 
 public class JSVarNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private Symbol _var;
 
 	public JSVarNode(int start, int end, Symbol var)
@@ -13,6 +13,8 @@ import beaver.Symbol;
 
 public class JSWithNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private Symbol _leftParenthesis;
 	private Symbol _rightParenthesis;
 
@@ -6,6 +6,8 @@ import beaver.Symbol;
 
 public class JSYieldNode extends JSNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private final boolean _hasStar;
 
 	public JSYieldNode(int start, int end, Symbol y)
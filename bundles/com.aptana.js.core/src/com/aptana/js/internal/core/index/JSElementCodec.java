@@ -0,0 +1,572 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
+import com.aptana.jetty.util.epl.ajax.JSON.Output;
+import com.aptana.js.core.index.IJSIndexConstants;
+
+/**
+ * A compact alternative to the JSON text we store as the payload of property, function and event index entries. The
+ * encoder walks the same {@link Convertible#toJSON(Output)} calls the JSON serializer does, and the decoder produces
+ * the same maps, arrays and boxed values {@link com.aptana.jetty.util.epl.ajax.JSON#parse(String)} would, so the model
+ * elements don't need to know which format was used.
+ * <p>
+ * The payload is a string since that's all the index can store, and it's the last column of a key whose columns are
+ * separated by {@link com.aptana.js.core.index.IJSIndexConstants#DELIMITER}, so it must never contain that character.
+ * Integers are written as variable length groups of bits, each in a printable ASCII character so it fits in a single
+ * byte of the index file: groups of 5 bits in the range ' '..'?' followed by a last group of 6 bits in the range
+ * '@'..DEL. Strings are written once per payload and referred to by number afterwards, and the table starts out with
+ * the property names used by the model elements. The rare string that holds the delimiter is escaped. Decoded short
+ * strings such as type names and user agent platforms are shared across payloads.
+ * <p>
+ * NOTE: Any change to the layout or to {@link #KNOWN_STRINGS} requires a bump of
+ * {@link com.aptana.js.core.index.IJSIndexConstants#INDEX_VERSION}
+ */
+public class JSElementCodec
+{
+	// the first character of every encoded payload. JSON payloads always start with '{'
+	private static final char MAGIC = '\u0001';
+
+	private static final char TAG_NULL = 'n';
+	private static final char TAG_TRUE = 't';
+	private static final char TAG_FALSE = 'f';
+	private static final char TAG_LONG = 'l';
+	private static final char TAG_DOUBLE = 'd';
+	private static final char TAG_STRING = 's';
+	private static final char TAG_ARRAY = 'a';
+	private static final char TAG_OBJECT = 'o';
+
+	// integers are written least significant group first, all groups but the last one in the continuation range
+	private static final int VARINT_GROUP_BITS = 5;
+	private static final int VARINT_GROUP_MASK = (1 << VARINT_GROUP_BITS) - 1;
+	private static final char VARINT_GROUP_BASE = ' ';
+	private static final int VARINT_LAST_BITS = 6;
+	private static final int VARINT_LAST_MASK = (1 << VARINT_LAST_BITS) - 1;
+	private static final char VARINT_LAST_BASE = '@';
+
+	// escapes the index key delimiter, and itself, in strings
+	private static final char ESCAPE = '\u0002';
+	private static final char DELIMITER = IJSIndexConstants.DELIMITER.charAt(0);
+
+	// @formatter:off
+	@SuppressWarnings("nls")
+	private static final String[] KNOWN_STRINGS = new String[] {
+		"constants", "deprecated", "description", "events", "examples", "exceptions", "functions", "internal",
+		"isClassProperty", "isConstructor", "isInstanceProperty", "isInternal", "isMethod", "name", "os",
+		"osVersion", "owningType", "parameters", "platform", "properties", "references", "remarks",
+		"returnTypes", "since", "type", "types", "usage", "userAgents", "version", "", "Object", "String",
+		"Number", "Boolean", "Function", "Array"
+	};
+	// @formatter:on
+
+	// decoded strings at or below this length are shared between payloads
+	private static final int MAX_SHARED_LENGTH = 64;
+	private static final int MAX_SHARED_STRINGS = 20000;
+	private static final ConcurrentHashMap<String, String> SHARED_STRINGS = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Encode a model element
+	 * 
+	 * @param element
+	 * @return
+	 */
+	public static String encode(Convertible element)
+	{
+		Encoder encoder = new Encoder();
+
+		encoder.buffer.append(MAGIC);
+		encoder.writeValue(element);
+
+		return encoder.buffer.toString();
+	}
+
+	/**
+	 * Decode a payload created by {@link #encode(Convertible)} into the map that should be passed to the element's
+	 * {@link Convertible#fromJSON(Map)} method
+	 * 
+	 * @param payload
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the payload is not a valid encoded element
+	 */
+	@SuppressWarnings("rawtypes")
+	public static Map decode(String payload)
+	{
+		if (!isEncoded(payload))
+		{
+			throw new IllegalArgumentException("Not an encoded element payload"); //$NON-NLS-1$
+		}
+
+		try
+		{
+			Decoder decoder = new Decoder(payload);
+			Object result = decoder.readValue();
+
+			if (!(result instanceof Map))
+			{
+				throw new IllegalArgumentException("Encoded element payload does not hold an object"); //$NON-NLS-1$
+			}
+
+			return (Map) result;
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw new IllegalArgumentException("Truncated element payload", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Determine if the specified payload was created by this codec, as opposed to being JSON text
+	 * 
+	 * @param payload
+	 * @return
+	 */
+	public static boolean isEncoded(String payload)
+	{
+		return payload != null && payload.length() > 0 && payload.charAt(0) == MAGIC;
+	}
+
+	/**
+	 * Return a shared instance of a short decoded string
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static String share(String value)
+	{
+		if (value.length() > MAX_SHARED_LENGTH)
+		{
+			return value;
+		}
+
+		String shared = SHARED_STRINGS.get(value);
+
+		if (shared == null)
+		{
+			if (SHARED_STRINGS.size() >= MAX_SHARED_STRINGS)
+			{
+				// don't let an unusual set of files pin an ever growing pool
+				SHARED_STRINGS.clear();
+			}
+
+			shared = SHARED_STRINGS.putIfAbsent(value, value);
+
+			if (shared == null)
+			{
+				shared = value;
+			}
+		}
+
+		return shared;
+	}
+
+	private JSElementCodec()
+	{
+	}
+
+	/**
+	 * Encoder
+	 */
+	private static class Encoder
+	{
+		private final StringBuilder buffer = new StringBuilder();
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+		Encoder()
+		{
+			for (String string : KNOWN_STRINGS)
+			{
+				strings.put(string, strings.size());
+			}
+		}
+
+		private void writeInt(long value)
+		{
+			while ((value & ~VARINT_LAST_MASK) != 0)
+			{
+				buffer.append((char) (VARINT_GROUP_BASE + (value & VARINT_GROUP_MASK)));
+				value >>>= VARINT_GROUP_BITS;
+			}
+
+			buffer.append((char) (VARINT_LAST_BASE + value));
+		}
+
+		private void writeString(String value)
+		{
+			Integer reference = strings.get(value);
+
+			if (reference != null)
+			{
+				writeInt(reference.intValue() + 1);
+			}
+			else
+			{
+				strings.put(value, strings.size());
+				writeInt(0);
+
+				if (value.indexOf(DELIMITER) == -1 && value.indexOf(ESCAPE) == -1)
+				{
+					// the low bit tells whether the string is escaped
+					writeInt(value.length() << 1);
+					buffer.append(value);
+				}
+				else
+				{
+					String escaped = escape(value);
+
+					writeInt((escaped.length() << 1) | 1);
+					buffer.append(escaped);
+				}
+			}
+		}
+
+		private String escape(String value)
+		{
+			StringBuilder result = new StringBuilder(value.length() + 8);
+
+			for (int i = 0; i < value.length(); i++)
+			{
+				char c = value.charAt(i);
+
+				if (c == DELIMITER)
+				{
+					result.append(ESCAPE).append('0');
+				}
+				else if (c == ESCAPE)
+				{
+					result.append(ESCAPE).append(ESCAPE);
+				}
+				else
+				{
+					result.append(c);
+				}
+			}
+
+			return result.toString();
+		}
+
+		private void writeObject(List<String> names, List<Object> values)
+		{
+			buffer.append(TAG_OBJECT);
+			writeInt(names.size());
+
+			for (int i = 0; i < names.size(); i++)
+			{
+				writeString(names.get(i));
+				writeValue(values.get(i));
+			}
+		}
+
+		@SuppressWarnings("rawtypes")
+		void writeValue(Object value)
+		{
+			if (value == null)
+			{
+				buffer.append(TAG_NULL);
+			}
+			else if (value instanceof String)
+			{
+				buffer.append(TAG_STRING);
+				writeString((String) value);
+			}
+			else if (value instanceof Boolean)
+			{
+				buffer.append(((Boolean) value).booleanValue() ? TAG_TRUE : TAG_FALSE);
+			}
+			else if (value instanceof Double || value instanceof Float)
+			{
+				buffer.append(TAG_DOUBLE);
+				writeInt(Double.doubleToLongBits(((Number) value).doubleValue()));
+			}
+			else if (value instanceof Number)
+			{
+				// zig-zag so small negative numbers stay short
+				long longValue = ((Number) value).longValue();
+
+				buffer.append(TAG_LONG);
+				writeInt((longValue << 1) ^ (longValue >> 63));
+			}
+			else if (value instanceof Convertible)
+			{
+				ObjectOutput output = new ObjectOutput();
+
+				((Convertible) value).toJSON(output);
+
+				if (output.value != null)
+				{
+					writeValue(output.value);
+				}
+				else
+				{
+					writeObject(output.names, output.values);
+				}
+			}
+			else if (value instanceof Map)
+			{
+				List<String> names = new ArrayList<String>();
+				List<Object> values = new ArrayList<Object>();
+
+				for (Object entry : ((Map) value).entrySet())
+				{
+					names.add(String.valueOf(((Map.Entry) entry).getKey()));
+					values.add(((Map.Entry) entry).getValue());
+				}
+
+				writeObject(names, values);
+			}
+			else if (value instanceof Collection)
+			{
+				Collection items = (Collection) value;
+
+				buffer.append(TAG_ARRAY);
+				writeInt(items.size());
+
+				for (Object item : items)
+				{
+					writeValue(item);
+				}
+			}
+			else if (value instanceof Object[])
+			{
+				Object[] items = (Object[]) value;
+
+				buffer.append(TAG_ARRAY);
+				writeInt(items.length);
+
+				for (Object item : items)
+				{
+					writeValue(item);
+				}
+			}
+			else
+			{
+				// the JSON serializer falls back to the string form of anything else
+				buffer.append(TAG_STRING);
+				writeString(value.toString());
+			}
+		}
+	}
+
+	/**
+	 * Collects the properties written by a {@link Convertible}
+	 */
+	private static class ObjectOutput implements Output
+	{
+		private final List<String> names = new ArrayList<String>();
+		private final List<Object> values = new ArrayList<Object>();
+		private Object value;
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.jetty.util.epl.ajax.JSON.Output#add(java.lang.Object)
+		 */
+		public void add(Object obj)
+		{
+			// a convertible may stand in for a single value instead of an object
+			this.value = obj;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.jetty.util.epl.ajax.JSON.Output#add(java.lang.String, boolean)
+		 */
+		public void add(String name, boolean value)
+		{
+			add(name, Boolean.valueOf(value));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.jetty.util.epl.ajax.JSON.Output#add(java.lang.String, double)
+		 */
+		public void add(String name, double value)
+		{
+			add(name, new Double(value));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.jetty.util.epl.ajax.JSON.Output#add(java.lang.String, long)
+		 */
+		public void add(String name, long value)
+		{
+			add(name, Long.valueOf(value));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.jetty.util.epl.ajax.JSON.Output#add(java.lang.String, java.lang.Object)
+		 */
+		public void add(String name, Object value)
+		{
+			names.add(name);
+			values.add(value);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.jetty.util.epl.ajax.JSON.Output#addClass(java.lang.Class)
+		 */
+		@SuppressWarnings("rawtypes")
+		public void addClass(Class type)
+		{
+			add("class", type.getName()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Decoder
+	 */
+	private static class Decoder
+	{
+		private final String payload;
+		private final List<String> strings;
+		private int offset;
+
+		Decoder(String payload)
+		{
+			this.payload = payload;
+			this.strings = new ArrayList<String>(KNOWN_STRINGS.length + 16);
+			this.offset = 1; // skip magic
+
+			for (String string : KNOWN_STRINGS)
+			{
+				strings.add(string);
+			}
+		}
+
+		private long readInt()
+		{
+			long result = 0;
+			int shift = 0;
+
+			while (true)
+			{
+				char c = payload.charAt(offset++);
+
+				if (c >= VARINT_LAST_BASE && c <= VARINT_LAST_BASE + VARINT_LAST_MASK)
+				{
+					return result | ((long) (c - VARINT_LAST_BASE)) << shift;
+				}
+				if (c < VARINT_GROUP_BASE || c >= VARINT_LAST_BASE)
+				{
+					throw new IllegalArgumentException("Invalid number in element payload"); //$NON-NLS-1$
+				}
+
+				result |= ((long) (c - VARINT_GROUP_BASE)) << shift;
+				shift += VARINT_GROUP_BITS;
+			}
+		}
+
+		private String unescape(String value)
+		{
+			StringBuilder result = new StringBuilder(value.length());
+
+			for (int i = 0; i < value.length(); i++)
+			{
+				char c = value.charAt(i);
+
+				if (c == ESCAPE)
+				{
+					c = (value.charAt(++i) == '0') ? DELIMITER : ESCAPE;
+				}
+
+				result.append(c);
+			}
+
+			return result.toString();
+		}
+
+		private String readString()
+		{
+			int reference = (int) readInt();
+
+			if (reference > 0)
+			{
+				if (reference > strings.size())
+				{
+					throw new IllegalArgumentException("Invalid string reference in element payload"); //$NON-NLS-1$
+				}
+
+				return strings.get(reference - 1);
+			}
+
+			int header = (int) readInt();
+			int length = header >>> 1;
+			String value = payload.substring(offset, offset + length);
+
+			offset += length;
+			value = share(((header & 1) != 0) ? unescape(value) : value);
+			strings.add(value);
+
+			return value;
+		}
+
+		Object readValue()
+		{
+			char tag = payload.charAt(offset++);
+
+			switch (tag)
+			{
+				case TAG_NULL:
+					return null;
+
+				case TAG_TRUE:
+					return Boolean.TRUE;
+
+				case TAG_FALSE:
+					return Boolean.FALSE;
+
+				case TAG_LONG:
+					long value = readInt();
+
+					return Long.valueOf((value >>> 1) ^ -(value & 1));
+
+				case TAG_DOUBLE:
+					return new Double(Double.longBitsToDouble(readInt()));
+
+				case TAG_STRING:
+					return readString();
+
+				case TAG_ARRAY:
+					Object[] items = new Object[(int) readInt()];
+
+					for (int i = 0; i < items.length; i++)
+					{
+						items[i] = readValue();
+					}
+
+					return items;
+
+				case TAG_OBJECT:
+					int count = (int) readInt();
+					Map<String, Object> object = new HashMap<String, Object>(count * 2);
+
+					for (int i = 0; i < count; i++)
+					{
+						String name = readString();
+
+						object.put(name, readValue());
+					}
+
+					return object;
+
+				default:
+					throw new IllegalArgumentException("Unknown tag in element payload: " + (int) tag); //$NON-NLS-1$
+			}
+		}
+	}
+}
@@ -11,19 +11,23 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import com.aptana.core.IMap;
+import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
-import com.aptana.core.util.RegexUtil;
 import com.aptana.core.util.StringUtil;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexReader;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
+import com.aptana.js.core.JSCorePlugin;
 import com.aptana.js.core.JSTypeConstants;
 import com.aptana.js.core.index.IJSIndexConstants;
+import com.aptana.js.core.model.BaseElement;
 import com.aptana.js.core.model.EventElement;
 import com.aptana.js.core.model.FunctionElement;
 import com.aptana.js.core.model.PropertyElement;
@@ -75,7 +79,7 @@ public class JSIndexReader extends IndexReader
 	 */
 	protected EventElement createEvent(QueryResult event)
 	{
-		return this.populateElement(new EventElement(), event, 2);
+		return this.populateMember(new EventElement(), event);
 	}
 
 	/**
@@ -86,7 +90,7 @@ public class JSIndexReader extends IndexReader
 	 */
 	protected FunctionElement createFunction(QueryResult function)
 	{
-		return this.populateElement(new FunctionElement(), function, 2);
+		return this.populateMember(new FunctionElement(), function);
 	}
 
 	/**
@@ -97,7 +101,7 @@ public class JSIndexReader extends IndexReader
 	 */
 	protected PropertyElement createProperty(QueryResult property)
 	{
-		return this.populateElement(new PropertyElement(), property, 2);
+		return this.populateMember(new PropertyElement(), property);
 	}
 
 	/**
@@ -205,11 +209,7 @@ public class JSIndexReader extends IndexReader
 		{
 			// read events
 			// @formatter:off
-			List<QueryResult> events = index.query(
-				new String[] { IJSIndexConstants.EVENT },
-				this.getMemberPattern(owningTypes),
-				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE
-			);
+			List<QueryResult> events = this.getMembers(index, IJSIndexConstants.EVENT, owningTypes);
 			// @formatter:on
 
 			return CollectionsUtil.map(events, new IMap<QueryResult, EventElement>()
@@ -252,10 +252,9 @@ public class JSIndexReader extends IndexReader
 		{
 			// read events
 			// @formatter:off
-			List<QueryResult> events = index.query(
-				new String[] { IJSIndexConstants.EVENT },
-				this.getMemberPattern(owningType, eventName),
-				SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE
+			List<QueryResult> events = JSMemberTable.getTable(index, IJSIndexConstants.EVENT).getMembers(
+				stripGenericsFromType(owningType),
+				eventName
 			);
 			// @formatter:on
 
@@ -285,11 +284,7 @@ public class JSIndexReader extends IndexReader
 		{
 			// read functions
 			// @formatter:off
-			List<QueryResult> functions = index.query(
-				new String[] { IJSIndexConstants.FUNCTION },
-				this.getMemberPattern(owningTypes),
-				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE
-			);
+			List<QueryResult> functions = this.getMembers(index, IJSIndexConstants.FUNCTION, owningTypes);
 			// @formatter:on
 
 			return CollectionsUtil.map(functions, new IMap<QueryResult, FunctionElement>()
@@ -331,10 +326,9 @@ public class JSIndexReader extends IndexReader
 		if (index != null && !StringUtil.isEmpty(owningType) && !StringUtil.isEmpty(propertyName))
 		{
 			// @formatter:off
-			List<QueryResult> functions = index.query(
-				new String[] { IJSIndexConstants.FUNCTION },
-				this.getMemberPattern(owningType, propertyName),
-				SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE
+			List<QueryResult> functions = JSMemberTable.getTable(index, IJSIndexConstants.FUNCTION).getMembers(
+				stripGenericsFromType(owningType),
+				propertyName
 			);
 			// @formatter:on
 
@@ -351,36 +345,73 @@ public class JSIndexReader extends IndexReader
 	}
 
 	/**
-	 * getMemberPattern
+	 * Collect the members of the given types from the member table for the specified category
 	 * 
-	 * @param typeNames
+	 * @param index
+	 * @param category
+	 * @param owningTypes
 	 * @return
 	 */
-	private String getMemberPattern(List<String> typeNames)
+	private List<QueryResult> getMembers(Index index, String category, List<String> owningTypes)
 	{
-		typeNames = CollectionsUtil.map(typeNames, new IMap<String, String>()
+		JSMemberTable table = JSMemberTable.getTable(index, category);
+		Set<String> typeNames = new LinkedHashSet<String>();
+		List<QueryResult> result = new ArrayList<QueryResult>();
+
+		for (String owningType : owningTypes)
 		{
-			public String map(String item)
+			// Array<Foo> and Array share the same members, so only collect them once
+			if (typeNames.add(stripGenericsFromType(owningType)))
 			{
-				return stripGenericsFromType(item);
+				result.addAll(table.getMembers(stripGenericsFromType(owningType)));
 			}
-		});
-		String typePattern = RegexUtil.createQuotedListPattern(typeNames);
+		}
 
-		return MessageFormat.format("^{1}{0}", new Object[] { this.getDelimiter(), typePattern }); //$NON-NLS-1$
+		return result;
 	}
 
 	/**
-	 * getMemberPattern
+	 * Fill in a property, function or event from the payload column of its index entry. The payload is either JSON
+	 * text or, for newer indexes, the binary encoding of {@link JSElementCodec}
 	 * 
-	 * @param typeName
-	 * @param memberName
+	 * @param element
+	 * @param item
 	 * @return
 	 */
-	private String getMemberPattern(String typeName, String memberName)
+	protected <T extends BaseElement> T populateMember(T element, QueryResult item)
 	{
-		return MessageFormat.format(
-				"{1}{0}{2}{0}", new Object[] { this.getDelimiter(), stripGenericsFromType(typeName), memberName }); //$NON-NLS-1$
+		String key = item.getWord();
+		int typeEnd = key.indexOf(IJSIndexConstants.DELIMITER);
+		int nameEnd = (typeEnd != -1) ? key.indexOf(IJSIndexConstants.DELIMITER, typeEnd + 1) : -1;
+
+		if (nameEnd == -1 || !JSElementCodec.isEncoded(key.substring(nameEnd + 1)))
+		{
+			return this.populateElement(element, item, 2);
+		}
+
+		try
+		{
+			element.fromJSON(JSElementCodec.decode(key.substring(nameEnd + 1)));
+
+			for (String document : item.getDocuments())
+			{
+				element.addDocument(document);
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			// @formatter:off
+			String message = MessageFormat.format(
+				"An error occurred while decoding the index entry for ''{0}.{1}''", //$NON-NLS-1$
+				key.substring(0, typeEnd),
+				key.substring(typeEnd + 1, nameEnd)
+			);
+			// @formatter:on
+
+			IdeLog.logError(JSCorePlugin.getDefault(), message, e);
+		}
+
+		return element;
 	}
 
 	/**
@@ -389,7 +420,7 @@ public class JSIndexReader extends IndexReader
 	 * @param typeName
 	 * @return
 	 */
-	private String stripGenericsFromType(String typeName)
+	static String stripGenericsFromType(String typeName)
 	{
 		if (typeName.startsWith(JSTypeConstants.GENERIC_ARRAY_OPEN))
 		{
@@ -412,11 +443,7 @@ public class JSIndexReader extends IndexReader
 		{
 			// read properties
 			// @formatter:off
-			List<QueryResult> properties = index.query(
-				new String[] { IJSIndexConstants.PROPERTY },
-				this.getMemberPattern(owningTypes),
-				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE
-			);
+			List<QueryResult> properties = this.getMembers(index, IJSIndexConstants.PROPERTY, owningTypes);
 			// @formatter:on
 
 			return CollectionsUtil.map(properties, new IMap<QueryResult, PropertyElement>()
@@ -458,10 +485,9 @@ public class JSIndexReader extends IndexReader
 		if (index != null && !StringUtil.isEmpty(owningType) && !StringUtil.isEmpty(propertyName))
 		{
 			// @formatter:off
-			List<QueryResult> properties = index.query(
-				new String[] { IJSIndexConstants.PROPERTY },
-				this.getMemberPattern(owningType, propertyName),
-				SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE
+			List<QueryResult> properties = JSMemberTable.getTable(index, IJSIndexConstants.PROPERTY).getMembers(
+				stripGenericsFromType(owningType),
+				propertyName
 			);
 			// @formatter:on
 
@@ -0,0 +1,405 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.aptana.index.core.IIndexChangeListener;
+import com.aptana.index.core.Index;
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+
+/**
+ * A table derived from the entries of one category of an index. The category is read once, when the table is first
+ * asked for, and the table is then kept up to date with the entries added and the documents removed as the index
+ * reports them, so writes made while a project is being built don't cause the category to be read again.
+ * <p>
+ * Tables are shared per index, category and kind of table. They're only softly referenced, so they're dropped rather
+ * than pinning the entries of every index in memory when memory runs low, and read again when next asked for.
+ * <p>
+ * Subclasses are told which words (entry keys) appear in, or disappear from, the category through
+ * {@link #wordAdded(String)} and {@link #wordRemoved(String)}. Both are called with the table's lock held, which
+ * subclasses use to guard their own state.
+ */
+abstract class JSIndexTable
+{
+	/**
+	 * Creates the tables of a kind
+	 */
+	interface Factory<T extends JSIndexTable>
+	{
+		T create(String category);
+	}
+
+	// @formatter:off
+	private static final Map<Index, Map<String, SoftReference<JSIndexTable>>> TABLES =
+		new WeakHashMap<Index, Map<String, SoftReference<JSIndexTable>>>();
+	// @formatter:on
+
+	/**
+	 * Passes the changes of the indices that have tables on to those tables
+	 */
+	private static final IIndexChangeListener UPDATER = new IIndexChangeListener()
+	{
+		public void entryAdded(Index index, String category, String key, String documentName)
+		{
+			for (JSIndexTable table : getTables(index))
+			{
+				if (table.category.equals(category))
+				{
+					table.entryAdded(key, documentName);
+				}
+			}
+		}
+
+		public void documentRemoved(Index index, String documentName)
+		{
+			for (JSIndexTable table : getTables(index))
+			{
+				table.documentRemoved(documentName);
+			}
+		}
+
+		public void indexReset(Index index)
+		{
+			synchronized (TABLES)
+			{
+				TABLES.remove(index);
+			}
+		}
+	};
+
+	/**
+	 * Return the table of a kind for the specified index and category, reading the category if the table doesn't
+	 * exist yet
+	 *
+	 * @param index
+	 * @param category
+	 * @param kind
+	 *            distinguishes the kinds of tables made for the same category
+	 * @param factory
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends JSIndexTable> T getTable(Index index, String category, String kind, Factory<T> factory)
+	{
+		String key = kind + '/' + category;
+		T table;
+
+		synchronized (TABLES)
+		{
+			Map<String, SoftReference<JSIndexTable>> tables = TABLES.get(index);
+
+			if (tables == null)
+			{
+				tables = new HashMap<String, SoftReference<JSIndexTable>>();
+				TABLES.put(index, tables);
+			}
+
+			SoftReference<JSIndexTable> reference = tables.get(key);
+			JSIndexTable existing = (reference != null) ? reference.get() : null;
+
+			if (existing != null)
+			{
+				return (T) existing;
+			}
+
+			// registered before the category is read so that no change made while reading it gets lost
+			index.addChangeListener(UPDATER);
+			table = factory.create(category);
+			tables.put(key, new SoftReference<JSIndexTable>(table));
+		}
+
+		// read outside of the lock so a slow read doesn't block lookups against other indexes
+		boolean loaded = false;
+
+		try
+		{
+			table.load(index);
+			loaded = true;
+		}
+		finally
+		{
+			if (!loaded)
+			{
+				synchronized (TABLES)
+				{
+					Map<String, SoftReference<JSIndexTable>> tables = TABLES.get(index);
+
+					if (tables != null)
+					{
+						tables.remove(key);
+					}
+				}
+
+				table.loadFailed();
+			}
+		}
+
+		return table;
+	}
+
+	/**
+	 * Return the live tables of an index
+	 *
+	 * @param index
+	 * @return
+	 */
+	private static List<JSIndexTable> getTables(Index index)
+	{
+		synchronized (TABLES)
+		{
+			Map<String, SoftReference<JSIndexTable>> tables = TABLES.get(index);
+
+			if (tables == null)
+			{
+				return Collections.emptyList();
+			}
+
+			List<JSIndexTable> result = new ArrayList<JSIndexTable>(tables.size());
+			Iterator<SoftReference<JSIndexTable>> references = tables.values().iterator();
+
+			while (references.hasNext())
+			{
+				JSIndexTable table = references.next().get();
+
+				if (table == null)
+				{
+					references.remove();
+				}
+				else
+				{
+					result.add(table);
+				}
+			}
+
+			return result;
+		}
+	}
+
+	private final String category;
+	private final Map<String, Set<String>> documentsByWord;
+	private final Map<String, Set<String>> wordsByDocument;
+
+	/**
+	 * The changes reported while the category is being read. They're applied once it has been, which gives the same
+	 * result whether or not the read already saw them
+	 */
+	private List<String[]> pendingChanges;
+	private boolean loaded;
+
+	/**
+	 * JSIndexTable
+	 *
+	 * @param category
+	 */
+	protected JSIndexTable(String category)
+	{
+		this.category = category;
+		this.documentsByWord = new HashMap<String, Set<String>>();
+		this.wordsByDocument = new HashMap<String, Set<String>>();
+		this.pendingChanges = new ArrayList<String[]>();
+	}
+
+	/**
+	 * Called when a word appears in the category
+	 *
+	 * @param word
+	 */
+	protected abstract void wordAdded(String word);
+
+	/**
+	 * Called when the last document using a word is removed from the category
+	 *
+	 * @param word
+	 */
+	protected abstract void wordRemoved(String word);
+
+	/**
+	 * Create a query result for a word of the category, as a query of the index would have returned it
+	 *
+	 * @param word
+	 * @return
+	 */
+	protected synchronized QueryResult createQueryResult(String word)
+	{
+		QueryResult result = new QueryResult(word);
+		Set<String> documents = documentsByWord.get(word);
+
+		if (documents != null)
+		{
+			for (String document : documents)
+			{
+				result.addDocumentName(document);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Wait for the category to be read. Subclasses call this, holding the table's lock, before answering lookups
+	 */
+	protected void waitUntilLoaded()
+	{
+		while (!loaded)
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Read all the entries of the category, then apply the changes reported in the meantime
+	 *
+	 * @param index
+	 */
+	void load(Index index)
+	{
+		// @formatter:off
+		List<QueryResult> entries = index.query(
+			new String[] { category },
+			"*", //$NON-NLS-1$
+			SearchPattern.PATTERN_MATCH
+		);
+		// @formatter:on
+
+		synchronized (this)
+		{
+			if (entries != null)
+			{
+				for (QueryResult entry : entries)
+				{
+					for (String document : entry.getDocuments())
+					{
+						add(entry.getWord(), document);
+					}
+				}
+			}
+
+			for (String[] change : pendingChanges)
+			{
+				if (change[0] != null)
+				{
+					add(change[0], change[1]);
+				}
+				else
+				{
+					remove(change[1]);
+				}
+			}
+
+			pendingChanges = null;
+			loaded = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Release the threads waiting for a table that couldn't be read. The table has already been dropped
+	 */
+	synchronized void loadFailed()
+	{
+		pendingChanges = null;
+		loaded = true;
+		notifyAll();
+	}
+
+	private synchronized void entryAdded(String word, String documentName)
+	{
+		if (!loaded)
+		{
+			pendingChanges.add(new String[] { word, documentName });
+		}
+		else
+		{
+			add(word, documentName);
+		}
+	}
+
+	private synchronized void documentRemoved(String documentName)
+	{
+		if (!loaded)
+		{
+			pendingChanges.add(new String[] { null, documentName });
+		}
+		else
+		{
+			remove(documentName);
+		}
+	}
+
+	private void add(String word, String documentName)
+	{
+		Set<String> documents = documentsByWord.get(word);
+		boolean isNew = (documents == null);
+
+		if (isNew)
+		{
+			documents = new HashSet<String>(2);
+			documentsByWord.put(word, documents);
+		}
+
+		if (!documents.add(documentName))
+		{
+			return;
+		}
+
+		Set<String> words = wordsByDocument.get(documentName);
+
+		if (words == null)
+		{
+			words = new HashSet<String>();
+			wordsByDocument.put(documentName, words);
+		}
+
+		words.add(word);
+
+		if (isNew)
+		{
+			wordAdded(word);
+		}
+	}
+
+	private void remove(String documentName)
+	{
+		Set<String> words = wordsByDocument.remove(documentName);
+
+		if (words == null)
+		{
+			return;
+		}
+
+		for (String word : words)
+		{
+			Set<String> documents = documentsByWord.get(word);
+
+			if (documents != null && documents.remove(documentName) && documents.isEmpty())
+			{
+				documentsByWord.remove(word);
+				wordRemoved(word);
+			}
+		}
+	}
+}
@@ -19,6 +19,7 @@ import com.aptana.js.core.IDebugScopes;
 import com.aptana.js.core.JSCorePlugin;
 import com.aptana.js.core.JSTypeConstants;
 import com.aptana.js.core.index.IJSIndexConstants;
+import com.aptana.js.core.model.BaseElement;
 import com.aptana.js.core.model.EventElement;
 import com.aptana.js.core.model.FunctionElement;
 import com.aptana.js.core.model.PropertyElement;
@@ -26,6 +27,26 @@ import com.aptana.js.core.model.TypeElement;
 
 public class JSIndexWriter extends IndexWriter
 {
+	private final boolean binaryPayloads;
+
+	/**
+	 * JSIndexWriter
+	 */
+	public JSIndexWriter()
+	{
+		this(IJSIndexConstants.INDEX_VERSION);
+	}
+
+	/**
+	 * Create a writer that produces entries in the layout of the specified index version
+	 * 
+	 * @param indexVersion
+	 */
+	public JSIndexWriter(double indexVersion)
+	{
+		this.binaryPayloads = indexVersion >= IJSIndexConstants.BINARY_PAYLOAD_VERSION;
+	}
+
 	/**
 	 * getDocumentPath
 	 * 
@@ -36,6 +57,17 @@ public class JSIndexWriter extends IndexWriter
 		return URI.create(IJSIndexConstants.METADATA_FILE_LOCATION);
 	}
 
+	/**
+	 * Serialize the payload of a property, function or event entry
+	 * 
+	 * @param element
+	 * @return
+	 */
+	protected String serializeMember(BaseElement element)
+	{
+		return this.binaryPayloads ? JSElementCodec.encode(element) : this.serialize(element);
+	}
+
 	/**
 	 * writeEvent
 	 * 
@@ -45,14 +77,7 @@ public class JSIndexWriter extends IndexWriter
 	 */
 	protected void writeEvent(Index index, EventElement event, URI location)
 	{
-		// @formatter:off
-		String value = StringUtil.join(
-			IJSIndexConstants.DELIMITER,
-			event.getOwningType(),
-			event.getName(),
-			this.serialize(event)
-		);
-		// @formatter:on
+		String value = JSMemberTable.createKey(event.getOwningType(), event.getName(), this.serializeMember(event));
 
 		if (IdeLog.isTraceEnabled(JSCorePlugin.getDefault(), IDebugScopes.INDEX_WRITES))
 		{
@@ -81,14 +106,7 @@ public class JSIndexWriter extends IndexWriter
 	 */
 	protected void writeFunction(Index index, FunctionElement function, URI location)
 	{
-		// @formatter:off
-		String value = StringUtil.join(
-			IJSIndexConstants.DELIMITER,
-			function.getOwningType(),
-			function.getName(),
-			this.serialize(function)
-		);
-		// @formatter:on
+		String value = JSMemberTable.createKey(function.getOwningType(), function.getName(), this.serializeMember(function));
 
 		if (IdeLog.isTraceEnabled(JSCorePlugin.getDefault(), IDebugScopes.INDEX_WRITES))
 		{
@@ -117,14 +135,7 @@ public class JSIndexWriter extends IndexWriter
 	 */
 	public void writeProperty(Index index, PropertyElement property, URI location)
 	{
-		// @formatter:off
-		String value = StringUtil.join(
-			IJSIndexConstants.DELIMITER,
-			property.getOwningType(),
-			property.getName(),
-			this.serialize(property)
-		);
-		// @formatter:on
+		String value = JSMemberTable.createKey(property.getOwningType(), property.getName(), this.serializeMember(property));
 
 		if (IdeLog.isTraceEnabled(JSCorePlugin.getDefault(), IDebugScopes.INDEX_WRITES))
 		{
@@ -0,0 +1,218 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.Index;
+import com.aptana.index.core.QueryResult;
+import com.aptana.js.core.index.IJSIndexConstants;
+
+/**
+ * Member entries (properties, functions and events) are written to the index as a single key with three columns: the
+ * owning type, the member name and the JSON payload for the member. This class reads a member category once and keeps
+ * the entries in hash tables keyed by the owning type and member name columns, so looking up the members of a type
+ * doesn't need a regex scan over the whole category. The payload column is left untouched until an element is actually
+ * created from the entry.
+ * <p>
+ * Tables are shared per index and category, and follow the entries written to and removed from the index as they
+ * happen (see {@link JSIndexTable}), so they're not read again after each file indexed during a build.
+ */
+class JSMemberTable extends JSIndexTable
+{
+	private static final String KIND = "members"; //$NON-NLS-1$
+
+	private static final Factory<JSMemberTable> FACTORY = new Factory<JSMemberTable>()
+	{
+		public JSMemberTable create(String category)
+		{
+			return new JSMemberTable(category);
+		}
+	};
+
+	/**
+	 * Create the index key for a member
+	 * 
+	 * @param owningType
+	 * @param name
+	 * @param payload
+	 * @return
+	 */
+	static String createKey(String owningType, String name, String payload)
+	{
+		return StringUtil.join(IJSIndexConstants.DELIMITER, owningType, name, payload);
+	}
+
+	/**
+	 * Return the member table for the specified index and category, reading the category the first time
+	 * 
+	 * @param index
+	 * @param category
+	 * @return
+	 */
+	static JSMemberTable getTable(Index index, String category)
+	{
+		return getTable(index, category, KIND, FACTORY);
+	}
+
+	private final Map<String, Map<String, List<String>>> membersByType;
+
+	/**
+	 * JSMemberTable
+	 * 
+	 * @param category
+	 */
+	private JSMemberTable(String category)
+	{
+		super(category);
+		this.membersByType = new HashMap<String, Map<String, List<String>>>();
+	}
+
+	/**
+	 * Return all members of the specified type
+	 * 
+	 * @param owningType
+	 * @return
+	 */
+	synchronized List<QueryResult> getMembers(String owningType)
+	{
+		waitUntilLoaded();
+
+		Map<String, List<String>> members = membersByType.get(owningType);
+
+		if (members == null)
+		{
+			return Collections.emptyList();
+		}
+
+		List<QueryResult> result = new ArrayList<QueryResult>();
+
+		for (List<String> words : members.values())
+		{
+			for (String word : words)
+			{
+				result.add(createQueryResult(word));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Return the members of the specified type with the specified name
+	 * 
+	 * @param owningType
+	 * @param memberName
+	 * @return
+	 */
+	synchronized List<QueryResult> getMembers(String owningType, String memberName)
+	{
+		waitUntilLoaded();
+
+		Map<String, List<String>> members = membersByType.get(owningType);
+		List<String> words = (members != null) ? members.get(memberName) : null;
+
+		if (words == null)
+		{
+			return Collections.emptyList();
+		}
+
+		List<QueryResult> result = new ArrayList<QueryResult>(words.size());
+
+		for (String word : words)
+		{
+			result.add(createQueryResult(word));
+		}
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.internal.core.index.JSIndexTable#wordAdded(java.lang.String)
+	 */
+	@Override
+	protected void wordAdded(String word)
+	{
+		int typeEnd = word.indexOf(IJSIndexConstants.DELIMITER);
+
+		if (typeEnd == -1)
+		{
+			return;
+		}
+
+		String owningType = word.substring(0, typeEnd);
+		String name = getName(word, typeEnd);
+		Map<String, List<String>> members = membersByType.get(owningType);
+
+		if (members == null)
+		{
+			members = new HashMap<String, List<String>>();
+			membersByType.put(owningType, members);
+		}
+
+		List<String> words = members.get(name);
+
+		if (words == null)
+		{
+			words = new ArrayList<String>(1);
+			members.put(name, words);
+		}
+
+		words.add(word);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.internal.core.index.JSIndexTable#wordRemoved(java.lang.String)
+	 */
+	@Override
+	protected void wordRemoved(String word)
+	{
+		int typeEnd = word.indexOf(IJSIndexConstants.DELIMITER);
+
+		if (typeEnd == -1)
+		{
+			return;
+		}
+
+		String owningType = word.substring(0, typeEnd);
+		String name = getName(word, typeEnd);
+		Map<String, List<String>> members = membersByType.get(owningType);
+		List<String> words = (members != null) ? members.get(name) : null;
+
+		if (words != null && words.remove(word) && words.isEmpty())
+		{
+			members.remove(name);
+
+			if (members.isEmpty())
+			{
+				membersByType.remove(owningType);
+			}
+		}
+	}
+
+	/**
+	 * Return the member name column of a key
+	 * 
+	 * @param key
+	 * @param typeEnd
+	 * @return
+	 */
+	private static String getName(String key, int typeEnd)
+	{
+		int nameEnd = key.indexOf(IJSIndexConstants.DELIMITER, typeEnd + 1);
+
+		return (nameEnd != -1) ? key.substring(typeEnd + 1, nameEnd) : key.substring(typeEnd + 1);
+	}
+}
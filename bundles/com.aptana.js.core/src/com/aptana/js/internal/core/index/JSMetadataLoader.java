@@ -158,7 +158,7 @@ public class JSMetadataLoader extends MetadataLoader<JSMetadataReader>
 		// reset old index. This basically wipes it without deleting it. This way any current refs to it won't be broken
 		getIndexManager().resetIndex(URI.create(IJSIndexConstants.METADATA_INDEX_LOCATION));
 
-		JSIndexWriter indexer = new JSIndexWriter();
+		JSIndexWriter indexer = new JSIndexWriter(getIndexVersion());
 
 		// TODO: The following should be done in the index writer, but this will introduce a dependency to
 		// com.aptana.parsing in com.aptana.index.core
@@ -0,0 +1,732 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.aptana.index.core.Index;
+import com.aptana.js.core.JSTypeConstants;
+import com.aptana.js.core.index.IJSIndexConstants;
+
+/**
+ * The parent types of the types written to one or more indices. The parents of each type are read from the type
+ * entries of each index once, and then follow the type entries written to and removed from the index (see
+ * {@link JSIndexTable}), so reindexing a file only updates the types of that file. The ancestors of a type are computed
+ * the first time they're asked for and kept until the parents of the type or of one of its ancestors change, so
+ * walking up the hierarchy of types like Window, Function or Object doesn't need an index query per ancestor, and
+ * indexing a file doesn't throw away the ancestors of the types it doesn't declare.
+ * <p>
+ * Type names are interned as ints, both in the tables of the indices and in the graph, which keeps the ancestors of
+ * each type as an array of ids.
+ * <p>
+ * The graph of a list of indices (i.e.: a project's index, its build paths and the JS core index) is shared, and looks
+ * the parents of a type up in each of those indices in turn.
+ */
+public class JSTypeGraph
+{
+	/**
+	 * Graphs, keyed by the first of the indices they were made for.
+	 */
+	// @formatter:off
+	private static final Map<Index, SoftReference<JSTypeGraph>> GRAPHS =
+		new WeakHashMap<Index, SoftReference<JSTypeGraph>>();
+	// @formatter:on
+
+	/**
+	 * Return the type graph for the specified indices, in the order their types should be looked up. Parents declared
+	 * for a type in several indices are combined.
+	 *
+	 * @param indices
+	 * @return
+	 */
+	public static JSTypeGraph getGraph(List<Index> indices)
+	{
+		if (indices.isEmpty())
+		{
+			return new JSTypeGraph(Collections.<TypeTable> emptyList());
+		}
+
+		List<TypeTable> parts = new ArrayList<TypeTable>(indices.size());
+
+		for (Index index : indices)
+		{
+			parts.add(TypeTable.getTable(index));
+		}
+
+		Index key = indices.get(0);
+
+		synchronized (GRAPHS)
+		{
+			SoftReference<JSTypeGraph> reference = GRAPHS.get(key);
+			JSTypeGraph graph = (reference != null) ? reference.get() : null;
+
+			// tables don't override equals, so this checks the parts are the very same tables
+			if (graph == null || !graph.parts.equals(parts))
+			{
+				graph = new JSTypeGraph(parts);
+				GRAPHS.put(key, new SoftReference<JSTypeGraph>(graph));
+			}
+
+			return graph;
+		}
+	}
+
+	/**
+	 * The ancestors of a type, and the types whose parents were looked up to find them
+	 */
+	private static class Ancestors
+	{
+		final int[] types;
+		final int[] lookups;
+
+		Ancestors(int[] types, int[] lookups)
+		{
+			this.types = types;
+			this.lookups = lookups;
+		}
+	}
+
+	private final List<TypeTable> parts;
+
+	/**
+	 * The versions of the parts the ancestors are up to date with
+	 */
+	private final int[] versions;
+
+	/**
+	 * The ids of the type names, and the names by id
+	 */
+	private final Map<String, Integer> ids;
+	private final List<String> names;
+
+	/**
+	 * The ancestors of the types asked for so far, by id
+	 */
+	private final Map<Integer, Ancestors> ancestors;
+
+	/**
+	 * The types whose ancestors were computed from the parents of a type, by the id of that type
+	 */
+	private final Map<Integer, Set<Integer>> dependents;
+
+	/**
+	 * JSTypeGraph
+	 *
+	 * @param parts
+	 */
+	private JSTypeGraph(List<TypeTable> parts)
+	{
+		this.parts = parts;
+		this.versions = new int[parts.size()];
+		this.ids = new HashMap<String, Integer>();
+		this.names = new ArrayList<String>();
+		this.ancestors = new HashMap<Integer, Ancestors>();
+		this.dependents = new HashMap<Integer, Set<Integer>>();
+
+		for (int i = 0; i < versions.length; i++)
+		{
+			versions[i] = parts.get(i).version;
+		}
+	}
+
+	/**
+	 * Return the names of the ancestors of the specified type, breadth-first. The ancestors of Object aren't included
+	 * unless Object itself is the specified type.
+	 *
+	 * @param typeName
+	 * @return a new list, empty if the type isn't known
+	 */
+	public synchronized List<String> getAncestorNames(String typeName)
+	{
+		if (typeName == null)
+		{
+			return new ArrayList<String>();
+		}
+
+		update();
+
+		Integer type = getId(JSIndexReader.stripGenericsFromType(typeName));
+		Ancestors result = ancestors.get(type);
+
+		if (result == null)
+		{
+			result = computeAncestors(type);
+			ancestors.put(type, result);
+
+			for (int lookup : result.lookups)
+			{
+				Set<Integer> types = dependents.get(lookup);
+
+				if (types == null)
+				{
+					types = new HashSet<Integer>(2);
+					dependents.put(lookup, types);
+				}
+
+				types.add(type);
+			}
+		}
+
+		List<String> ancestorNames = new ArrayList<String>(result.types.length);
+
+		for (int ancestor : result.types)
+		{
+			ancestorNames.add(names.get(ancestor));
+		}
+
+		return ancestorNames;
+	}
+
+	/**
+	 * Return whether the ancestors of the specified type are kept (for testing purposes)
+	 *
+	 * @param typeName
+	 * @return
+	 */
+	synchronized boolean isCached(String typeName)
+	{
+		update();
+
+		Integer type = ids.get(typeName);
+
+		return type != null && ancestors.containsKey(type);
+	}
+
+	/**
+	 * Return the number of type names known to this graph, parent type names included
+	 *
+	 * @return
+	 */
+	public int size()
+	{
+		Set<String> typeNames = new HashSet<String>();
+
+		for (TypeTable part : parts)
+		{
+			part.addTypeNames(typeNames);
+		}
+
+		return typeNames.size();
+	}
+
+	/**
+	 * Drop the ancestors computed from the parents of the types that changed in the parts since the last lookup
+	 */
+	private void update()
+	{
+		Set<String> changed = null;
+		boolean all = false;
+
+		for (int i = 0; i < versions.length; i++)
+		{
+			TypeTable part = parts.get(i);
+			int version = part.version;
+
+			if (versions[i] != version)
+			{
+				if (changed == null)
+				{
+					changed = new HashSet<String>();
+				}
+
+				// too many changes to have kept them all
+				all |= !part.getChanges(versions[i], version, changed);
+				versions[i] = version;
+			}
+		}
+
+		if (all)
+		{
+			ancestors.clear();
+			dependents.clear();
+		}
+		else if (changed != null)
+		{
+			for (String typeName : changed)
+			{
+				Integer type = ids.get(typeName);
+				Set<Integer> types = (type != null) ? dependents.get(type) : null;
+
+				if (types != null)
+				{
+					for (Integer dependent : new ArrayList<Integer>(types))
+					{
+						removeAncestors(dependent);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drop the ancestors of a type
+	 *
+	 * @param type
+	 */
+	private void removeAncestors(Integer type)
+	{
+		Ancestors removed = ancestors.remove(type);
+
+		if (removed == null)
+		{
+			return;
+		}
+
+		for (int lookup : removed.lookups)
+		{
+			Set<Integer> types = dependents.get(lookup);
+
+			if (types != null && types.remove(type) && types.isEmpty())
+			{
+				dependents.remove(lookup);
+			}
+		}
+	}
+
+	/**
+	 * Return the id of a type name, interning it if needed
+	 *
+	 * @param typeName
+	 * @return
+	 */
+	private Integer getId(String typeName)
+	{
+		Integer id = ids.get(typeName);
+
+		if (id == null)
+		{
+			id = names.size();
+			names.add(typeName);
+			ids.put(typeName, id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Walk up the hierarchy of the specified type
+	 *
+	 * @param type
+	 * @return
+	 */
+	private Ancestors computeAncestors(Integer type)
+	{
+		Set<Integer> found = new LinkedHashSet<Integer>();
+		Set<Integer> lookups = new HashSet<Integer>();
+
+		// each type is queued once at most, after the type itself
+		List<Integer> queue = new ArrayList<Integer>();
+		int head = 0;
+
+		queue.add(type);
+
+		while (head < queue.size())
+		{
+			String typeName = names.get(queue.get(head++));
+
+			// Array<Foo> has the parents of Array, as far as the index is concerned
+			String lookup = typeName.startsWith(JSTypeConstants.GENERIC_ARRAY_OPEN) ? JSTypeConstants.ARRAY_TYPE
+					: typeName;
+
+			lookups.add(getId(lookup));
+
+			for (TypeTable part : parts)
+			{
+				for (String parent : part.getParents(lookup))
+				{
+					Integer parentType = getId(parent);
+
+					if (found.add(parentType) && !JSTypeConstants.OBJECT_TYPE.equals(parent))
+					{
+						queue.add(parentType);
+					}
+				}
+			}
+		}
+
+		return new Ancestors(toArray(found), toArray(lookups));
+	}
+
+	private static int[] toArray(Set<Integer> set)
+	{
+		int[] result = new int[set.size()];
+		int i = 0;
+
+		for (Integer value : set)
+		{
+			result[i++] = value;
+		}
+
+		return result;
+	}
+
+	/**
+	 * The parents of a type in one index: the parent types named by its entries, with the number of entries naming each
+	 */
+	private static class Parents
+	{
+		int[] types = new int[2];
+		int[] counts = new int[2];
+		int size;
+
+		/**
+		 * The names of the parent types, made when first asked for
+		 */
+		String[] names;
+
+		/**
+		 * Count an entry naming a parent type
+		 *
+		 * @param type
+		 * @return true if it's a new parent type
+		 */
+		boolean add(int type)
+		{
+			int index = indexOf(type);
+
+			if (index != -1)
+			{
+				counts[index]++;
+				return false;
+			}
+
+			if (size == types.length)
+			{
+				int[] newTypes = new int[size * 2];
+				int[] newCounts = new int[size * 2];
+				System.arraycopy(types, 0, newTypes, 0, size);
+				System.arraycopy(counts, 0, newCounts, 0, size);
+				types = newTypes;
+				counts = newCounts;
+			}
+
+			types[size] = type;
+			counts[size] = 1;
+			size++;
+			names = null;
+
+			return true;
+		}
+
+		/**
+		 * Uncount an entry naming a parent type
+		 *
+		 * @param type
+		 * @return true if no entry names it anymore
+		 */
+		boolean remove(int type)
+		{
+			int index = indexOf(type);
+
+			if (index == -1 || --counts[index] > 0)
+			{
+				return false;
+			}
+
+			System.arraycopy(types, index + 1, types, index, size - index - 1);
+			System.arraycopy(counts, index + 1, counts, index, size - index - 1);
+			size--;
+			names = null;
+
+			return true;
+		}
+
+		private int indexOf(int type)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				if (types[i] == type)
+				{
+					return i;
+				}
+			}
+
+			return -1;
+		}
+	}
+
+	/**
+	 * The parent types of the types written to one index. The parents are the second column of the type entries
+	 */
+	private static class TypeTable extends JSIndexTable
+	{
+		private static final String KIND = "types"; //$NON-NLS-1$
+
+		private static final String[] NO_TYPES = new String[0];
+
+		/**
+		 * The number of changes kept for the graphs which haven't seen them yet
+		 */
+		private static final int MAX_CHANGES = 256;
+
+		private static final Factory<TypeTable> FACTORY = new Factory<TypeTable>()
+		{
+			public TypeTable create(String category)
+			{
+				return new TypeTable(category);
+			}
+		};
+
+		static TypeTable getTable(Index index)
+		{
+			return getTable(index, IJSIndexConstants.TYPE, KIND, FACTORY);
+		}
+
+		/**
+		 * The ids of the names of the types and parent types, and the names by id. Names are kept as long as the table
+		 */
+		private final Map<String, Integer> ids;
+		private final List<String> names;
+
+		/**
+		 * The parents of the types which have some, by id
+		 */
+		private final Map<Integer, Parents> parentsByType;
+
+		/**
+		 * The names of the types whose parents changed, the first one being change number firstChange
+		 */
+		private final List<String> changes;
+		private int firstChange;
+
+		/**
+		 * The number of changes of the parents of types so far
+		 */
+		volatile int version;
+
+		/**
+		 * TypeTable
+		 *
+		 * @param category
+		 */
+		private TypeTable(String category)
+		{
+			super(category);
+			this.ids = new HashMap<String, Integer>();
+			this.names = new ArrayList<String>();
+			this.parentsByType = new HashMap<Integer, Parents>();
+			this.changes = new ArrayList<String>();
+		}
+
+		/**
+		 * Return the parents of the specified type, combined over all the entries of that type. The array is shared
+		 * and mustn't be modified
+		 *
+		 * @param typeName
+		 * @return
+		 */
+		synchronized String[] getParents(String typeName)
+		{
+			waitUntilLoaded();
+
+			Integer type = ids.get(typeName);
+			Parents parents = (type != null) ? parentsByType.get(type) : null;
+
+			if (parents == null)
+			{
+				return NO_TYPES;
+			}
+
+			if (parents.names == null)
+			{
+				parents.names = new String[parents.size];
+
+				for (int i = 0; i < parents.size; i++)
+				{
+					parents.names[i] = names.get(parents.types[i]);
+				}
+			}
+
+			return parents.names;
+		}
+
+		/**
+		 * Add the names of the types whose parents changed between two versions to a set
+		 *
+		 * @param from
+		 * @param to
+		 * @param typeNames
+		 * @return false if those changes aren't known anymore
+		 */
+		synchronized boolean getChanges(int from, int to, Set<String> typeNames)
+		{
+			if (from < firstChange)
+			{
+				return false;
+			}
+
+			typeNames.addAll(changes.subList(from - firstChange, to - firstChange));
+
+			return true;
+		}
+
+		/**
+		 * Add the names of the types and parent types of this table to a set
+		 *
+		 * @param typeNames
+		 */
+		synchronized void addTypeNames(Set<String> typeNames)
+		{
+			waitUntilLoaded();
+
+			for (Map.Entry<Integer, Parents> entry : parentsByType.entrySet())
+			{
+				Parents parents = entry.getValue();
+
+				typeNames.add(names.get(entry.getKey()));
+
+				for (int i = 0; i < parents.size; i++)
+				{
+					typeNames.add(names.get(parents.types[i]));
+				}
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.js.internal.core.index.JSIndexTable#wordAdded(java.lang.String)
+		 */
+		@Override
+		protected void wordAdded(String word)
+		{
+			int nameEnd = word.indexOf(IJSIndexConstants.DELIMITER);
+
+			if (nameEnd == -1)
+			{
+				return;
+			}
+
+			String typeName = word.substring(0, nameEnd);
+			Integer type = getId(typeName);
+			Parents parents = parentsByType.get(type);
+			boolean changed = false;
+
+			for (String parentType : getParentTypes(word, nameEnd))
+			{
+				if (parentType.length() > 0 && !parentType.equals(typeName))
+				{
+					if (parents == null)
+					{
+						parents = new Parents();
+						parentsByType.put(type, parents);
+					}
+
+					changed |= parents.add(getId(parentType));
+				}
+			}
+
+			if (changed)
+			{
+				typeChanged(typeName);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.js.internal.core.index.JSIndexTable#wordRemoved(java.lang.String)
+		 */
+		@Override
+		protected void wordRemoved(String word)
+		{
+			int nameEnd = word.indexOf(IJSIndexConstants.DELIMITER);
+
+			if (nameEnd == -1)
+			{
+				return;
+			}
+
+			String typeName = word.substring(0, nameEnd);
+			Integer type = ids.get(typeName);
+			Parents parents = (type != null) ? parentsByType.get(type) : null;
+
+			if (parents == null)
+			{
+				return;
+			}
+
+			boolean changed = false;
+
+			for (String parentType : getParentTypes(word, nameEnd))
+			{
+				Integer parentId = ids.get(parentType);
+
+				if (parentId != null && !parentType.equals(typeName))
+				{
+					changed |= parents.remove(parentId);
+				}
+			}
+
+			if (parents.size == 0)
+			{
+				parentsByType.remove(type);
+			}
+
+			if (changed)
+			{
+				typeChanged(typeName);
+			}
+		}
+
+		/**
+		 * Return the parent types named by a type entry. Like {@link com.aptana.js.core.model.TypeElement}, a type
+		 * can't be its own parent, which callers check
+		 *
+		 * @param word
+		 * @param nameEnd
+		 * @return
+		 */
+		private static String[] getParentTypes(String word, int nameEnd)
+		{
+			int parentsEnd = word.indexOf(IJSIndexConstants.DELIMITER, nameEnd + 1);
+			String parentTypes = (parentsEnd != -1) ? word.substring(nameEnd + 1, parentsEnd) : word
+					.substring(nameEnd + 1);
+
+			return parentTypes.split(IJSIndexConstants.SUB_DELIMITER);
+		}
+
+		private Integer getId(String typeName)
+		{
+			Integer id = ids.get(typeName);
+
+			if (id == null)
+			{
+				id = names.size();
+				names.add(typeName);
+				ids.put(typeName, id);
+			}
+
+			return id;
+		}
+
+		/**
+		 * Record a change of the parents of a type
+		 *
+		 * @param typeName
+		 */
+		private void typeChanged(String typeName)
+		{
+			if (changes.size() == MAX_CHANGES)
+			{
+				firstChange += changes.size();
+				changes.clear();
+			}
+
+			changes.add(names.get(ids.get(typeName)));
+			version++;
+		}
+	}
+}
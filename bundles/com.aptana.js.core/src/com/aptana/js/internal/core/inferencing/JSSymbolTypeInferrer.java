@@ -647,6 +647,9 @@ public class JSSymbolTypeInferrer
 
 			// write the type to the index
 			writer.writeType(index, type, location);
+
+			// and forget whatever was inferred from what the index held before
+			JSTypeInferenceCache.typeChanged(type.getName());
 		}
 	}
 }
@@ -0,0 +1,360 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.inferencing;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.aptana.core.util.ObjectUtil;
+import com.aptana.index.core.Index;
+import com.aptana.js.core.inferencing.JSScope;
+import com.aptana.js.core.parsing.ast.JSNode;
+import com.aptana.js.core.parsing.ast.JSParseRootNode;
+import com.aptana.parsing.ast.IParseNode;
+
+/**
+ * Remembers the types inferred for the nodes of a JS parse tree, so that an expression is inferred once however many
+ * times it's reached (i.e.: the operands of long chains of calls, or the values of symbols referenced all over a file).
+ * A cache is attached to the {@link JSParseRootNode} and is only used for the index, file and global scope it was
+ * created for; a new one replaces it when an inference starts after the index has changed.
+ * <p>
+ * The names of the index types consulted to infer a node are kept with its types, so that the results depending on a
+ * type can be dropped when that type is written to the index. Results computed while a cycle was cut short (an
+ * expression whose type depends on itself, or on a symbol whose type is still being inferred) are partial and aren't
+ * kept.
+ */
+public class JSTypeInferenceCache
+{
+	/**
+	 * A node, inferred in a scope. Both are compared by identity.
+	 */
+	private static class Key
+	{
+		private final JSNode node;
+		private final JSScope scope;
+
+		Key(JSNode node, JSScope scope)
+		{
+			this.node = node;
+			this.scope = scope;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key) obj;
+			return node == other.node && scope == other.scope;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return System.identityHashCode(node) * 31 + System.identityHashCode(scope);
+		}
+	}
+
+	private static class Entry
+	{
+		private final List<String> types;
+		private final Set<String> dependencies;
+
+		Entry(List<String> types, Set<String> dependencies)
+		{
+			this.types = types;
+			this.dependencies = dependencies;
+		}
+	}
+
+	/**
+	 * A node being inferred on the current thread.
+	 */
+	private static class Frame
+	{
+		private final JSTypeInferenceCache cache;
+		private final Key key;
+		private final int depth;
+		private final Set<String> dependencies = new HashSet<String>();
+
+		/**
+		 * The depth of the lowest frame whose result was needed before it was known. The result of this frame can only
+		 * be kept if that's not below itself.
+		 */
+		private int lowestNeeded;
+
+		Frame(JSTypeInferenceCache cache, Key key, int depth)
+		{
+			this.cache = cache;
+			this.key = key;
+			this.depth = depth;
+			this.lowestNeeded = depth;
+		}
+	}
+
+	private static final ThreadLocal<List<Frame>> IN_PROGRESS = new ThreadLocal<List<Frame>>()
+	{
+		@Override
+		protected List<Frame> initialValue()
+		{
+			return new ArrayList<Frame>();
+		}
+	};
+
+	private final Index fIndex;
+	private final URI fLocation;
+	private final JSScope fGlobalScope;
+	private final long fModificationStamp;
+
+	private final Map<Key, Entry> fEntries = new HashMap<Key, Entry>();
+
+	/**
+	 * The keys of the results that depend on each type.
+	 */
+	private final Map<String, Set<Key>> fDependents = new HashMap<String, Set<Key>>();
+
+	/**
+	 * Returns the cache to use to infer the types of a node of a JS parse tree, creating it if needed.
+	 * 
+	 * @param node
+	 * @param index
+	 *            the index the types are looked up in.
+	 * @param location
+	 *            the file the tree was parsed from.
+	 * @param scope
+	 *            the scope the node is inferred in.
+	 * @return the cache or null if the node isn't part of a JS parse tree, or if the cache of the tree is for something
+	 *         else and can't be replaced because an inference is in progress.
+	 */
+	public static JSTypeInferenceCache getCache(JSNode node, Index index, URI location, JSScope scope)
+	{
+		IParseNode root = node;
+		while (root != null && !(root instanceof JSParseRootNode))
+		{
+			root = root.getParent();
+		}
+		if (root == null)
+		{
+			return null;
+		}
+		JSScope globalScope = scope;
+		while (globalScope != null && globalScope.getParentScope() != null)
+		{
+			globalScope = globalScope.getParentScope();
+		}
+
+		JSParseRootNode parseRoot = (JSParseRootNode) root;
+		JSTypeInferenceCache cache = parseRoot.getInferenceCache();
+		boolean inferring = !IN_PROGRESS.get().isEmpty();
+		if (cache != null && cache.isFor(index, location, globalScope)
+				&& (inferring || cache.fModificationStamp == getModificationStamp(index)))
+		{
+			return cache;
+		}
+		if (inferring)
+		{
+			// the results of the current inference belong to the cache it started with
+			return null;
+		}
+		cache = new JSTypeInferenceCache(index, location, globalScope);
+		parseRoot.setInferenceCache(cache);
+		return cache;
+	}
+
+	/**
+	 * Records that the result of the node being inferred on the current thread depends on a type of the index.
+	 * 
+	 * @param typeName
+	 */
+	public static void addDependency(String typeName)
+	{
+		List<Frame> frames = IN_PROGRESS.get();
+		if (!frames.isEmpty() && typeName != null)
+		{
+			frames.get(frames.size() - 1).dependencies.add(typeName);
+		}
+	}
+
+	/**
+	 * Records that the nodes being inferred on the current thread used a partial result (i.e.: the types of a symbol
+	 * which is still being inferred), so none of their results is kept.
+	 */
+	public static void markIncomplete()
+	{
+		for (Frame frame : IN_PROGRESS.get())
+		{
+			frame.lowestNeeded = -1;
+		}
+	}
+
+	/**
+	 * Drops the results depending on a type from the caches used by the inference in progress on the current thread,
+	 * after the type was written to the index.
+	 * 
+	 * @param typeName
+	 */
+	public static void typeChanged(String typeName)
+	{
+		Set<JSTypeInferenceCache> caches = new HashSet<JSTypeInferenceCache>();
+		for (Frame frame : IN_PROGRESS.get())
+		{
+			if (caches.add(frame.cache))
+			{
+				frame.cache.invalidate(typeName);
+			}
+		}
+	}
+
+	private static long getModificationStamp(Index index)
+	{
+		return (index != null) ? index.getModificationStamp() : 0;
+	}
+
+	private JSTypeInferenceCache(Index index, URI location, JSScope globalScope)
+	{
+		fIndex = index;
+		fLocation = location;
+		fGlobalScope = globalScope;
+		fModificationStamp = getModificationStamp(index);
+	}
+
+	private boolean isFor(Index index, URI location, JSScope globalScope)
+	{
+		return fIndex == index && fGlobalScope == globalScope && ObjectUtil.areEqual(fLocation, location);
+	}
+
+	/**
+	 * Returns the types inferred for a node, if known. The dependencies of the result are added to the node being
+	 * inferred on the current thread, if any.
+	 * 
+	 * @param node
+	 * @param scope
+	 * @return the types or null if they aren't known.
+	 */
+	public List<String> get(JSNode node, JSScope scope)
+	{
+		Entry entry;
+		synchronized (this)
+		{
+			entry = fEntries.get(new Key(node, scope));
+		}
+		if (entry == null)
+		{
+			return null;
+		}
+		List<Frame> frames = IN_PROGRESS.get();
+		if (!frames.isEmpty())
+		{
+			frames.get(frames.size() - 1).dependencies.addAll(entry.dependencies);
+		}
+		return entry.types;
+	}
+
+	/**
+	 * Starts inferring a node on the current thread. Must be followed by a call to {@link #exit(List)} if it succeeds.
+	 * 
+	 * @param node
+	 * @param scope
+	 * @return false if the node is already being inferred in that scope, in which case it has no types as far as the
+	 *         inference in progress is concerned.
+	 */
+	public boolean enter(JSNode node, JSScope scope)
+	{
+		Key key = new Key(node, scope);
+		List<Frame> frames = IN_PROGRESS.get();
+		for (Frame frame : frames)
+		{
+			if (frame.key.equals(key))
+			{
+				Frame top = frames.get(frames.size() - 1);
+				top.lowestNeeded = Math.min(top.lowestNeeded, frame.depth);
+				return false;
+			}
+		}
+		frames.add(new Frame(this, key, frames.size()));
+		return true;
+	}
+
+	/**
+	 * Ends the inference of the node last entered on the current thread.
+	 * 
+	 * @param types
+	 *            the types inferred or null if the inference failed (i.e.: it was cancelled).
+	 * @return the types, as kept by the cache.
+	 */
+	public List<String> exit(List<String> types)
+	{
+		List<Frame> frames = IN_PROGRESS.get();
+		Frame frame = frames.remove(frames.size() - 1);
+		if (!frames.isEmpty())
+		{
+			Frame parent = frames.get(frames.size() - 1);
+			parent.dependencies.addAll(frame.dependencies);
+			parent.lowestNeeded = Math.min(parent.lowestNeeded, frame.lowestNeeded);
+		}
+		if (types == null)
+		{
+			return null;
+		}
+
+		List<String> result = Collections.unmodifiableList(new ArrayList<String>(types));
+		if (frame.lowestNeeded >= frame.depth)
+		{
+			put(frame.key, new Entry(result, frame.dependencies));
+		}
+		return result;
+	}
+
+	private synchronized void put(Key key, Entry entry)
+	{
+		fEntries.put(key, entry);
+		for (String typeName : entry.dependencies)
+		{
+			Set<Key> dependents = fDependents.get(typeName);
+			if (dependents == null)
+			{
+				dependents = new HashSet<Key>();
+				fDependents.put(typeName, dependents);
+			}
+			dependents.add(key);
+		}
+	}
+
+	/**
+	 * Drops the results which depend on a type.
+	 * 
+	 * @param typeName
+	 */
+	public synchronized void invalidate(String typeName)
+	{
+		Set<Key> dependents = fDependents.remove(typeName);
+		if (dependents != null)
+		{
+			for (Key key : dependents)
+			{
+				fEntries.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of nodes whose types are known.
+	 */
+	public synchronized int size()
+	{
+		return fEntries.size();
+	}
+}
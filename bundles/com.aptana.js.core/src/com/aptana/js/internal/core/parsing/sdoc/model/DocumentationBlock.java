@@ -20,6 +20,8 @@ import com.aptana.core.util.StringUtil;
 
 public class DocumentationBlock extends Symbol
 {
+	private static final long serialVersionUID = 1L;
+
 	private String _text;
 	private List<Tag> _tags;
 
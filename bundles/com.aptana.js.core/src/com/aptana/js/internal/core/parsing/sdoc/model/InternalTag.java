@@ -9,6 +9,8 @@ package com.aptana.js.internal.core.parsing.sdoc.model;
 
 public class InternalTag extends Tag
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * InternalTag
 	 * 
@@ -13,6 +13,8 @@ import com.aptana.core.util.SourcePrinter;
 
 public class Parameter extends Symbol
 {
+	private static final long serialVersionUID = 1L;
+
 	private String _name;
 	private Usage _usage;
 
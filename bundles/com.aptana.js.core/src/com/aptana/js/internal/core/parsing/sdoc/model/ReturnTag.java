@@ -11,6 +11,8 @@ import java.util.List;
 
 public class ReturnTag extends TagWithTypes
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * ReturnTag
 	 * 
@@ -14,6 +14,8 @@ import beaver.Symbol;
 
 public class Type extends Symbol
 {
+	private static final long serialVersionUID = 1L;
+
 	public static final Type OBJECT_TYPE = new Type(JSTypeConstants.OBJECT_TYPE);
 
 	private String _name;
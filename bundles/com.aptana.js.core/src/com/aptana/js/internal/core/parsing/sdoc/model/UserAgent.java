@@ -12,6 +12,8 @@ package com.aptana.js.internal.core.parsing.sdoc.model;
  */
 public class UserAgent extends Tag
 {
+	private static final long serialVersionUID = 1L;
+
 	private String _name;
 	private String _version;
 
@@ -12,6 +12,8 @@ package com.aptana.json.core.parsing.ast;
  */
 public class JSONFalseNode extends JSONNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSONFalseNode
 	 */
@@ -14,6 +14,8 @@ import com.aptana.parsing.ast.IParseNode;
  */
 public class JSONObjectNode extends JSONNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * JSONObjectNode
 	 */
@@ -17,6 +17,7 @@ import com.aptana.parsing.ast.ParseRootNode;
  */
 public class JSONParseRootNode extends ParseRootNode
 {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * JSParseRootNode
@@ -12,6 +12,8 @@ package com.aptana.json.core.parsing.ast;
  */
 public class JSONStringNode extends JSONNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private String _text;
 
 	/**
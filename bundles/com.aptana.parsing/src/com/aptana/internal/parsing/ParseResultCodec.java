@@ -0,0 +1,889 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.parsing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import beaver.Symbol;
+
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseNode;
+
+/**
+ * Writes and reads parse results in a compact binary form for the {@link PersistentParseCache}.
+ * <p>
+ * The nodes of the tree (and the comments of the root) are numbered and written one after the other, without
+ * recursion: first the class of each node, then the values of its fields. Offsets and other ints are variable length,
+ * strings are written once and referred to by index afterwards, and references to nodes (children, parents, comments)
+ * are node numbers. The fields are found by reflection, so the node classes don't have to do anything.
+ * <p>
+ * Java serialization is only used where nothing else works: to create the nodes (most node classes have no default
+ * constructor, so each class gets one empty serialized instance which is then copied for every node) and for field
+ * values which are neither nodes, plain symbols, strings nor primitives (i.e.: documentation blocks). Those are written
+ * in a separate stream in which the nodes are replaced by their numbers.
+ */
+class ParseResultCodec
+{
+	// field value tags
+	private static final int NULL = 0;
+	private static final int NODE = 1;
+	private static final int STRING = 2;
+	private static final int SYMBOL = 3;
+	private static final int NODE_ARRAY = 4;
+	private static final int SERIALIZED = 5;
+
+	// field kinds
+	private static final int OBJECT = 0;
+	private static final int BOOLEAN = 1;
+	private static final int BYTE = 2;
+	private static final int CHAR = 3;
+	private static final int SHORT = 4;
+	private static final int INT = 5;
+	private static final int LONG = 6;
+	private static final int FLOAT = 7;
+	private static final int DOUBLE = 8;
+	private static final int OFFSET = 9;
+
+	private static final Field SYMBOL_VALUE;
+	static
+	{
+		try
+		{
+			SYMBOL_VALUE = getAccessibleField(Symbol.class, "value"); //$NON-NLS-1$
+		}
+		catch (NoSuchFieldException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Stands for a node in the stream of serialized values.
+	 */
+	private static class NodeRef implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int fIndex;
+
+		NodeRef(int index)
+		{
+			fIndex = index;
+		}
+	}
+
+	/**
+	 * The instance fields of a node class (declared by its superclasses first, then by name), except the transient
+	 * ones.
+	 */
+	private static class Layout
+	{
+		final Field[] fields;
+		final int[] kinds;
+		final String[] names;
+
+		Layout(Class<?> nodeClass)
+		{
+			List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+			for (Class<?> c = nodeClass; c != Object.class; c = c.getSuperclass())
+			{
+				hierarchy.add(0, c);
+			}
+			List<Field> list = new ArrayList<Field>();
+			for (Class<?> c : hierarchy)
+			{
+				Field[] declared = c.getDeclaredFields();
+				Arrays.sort(declared, new Comparator<Field>()
+				{
+					public int compare(Field f1, Field f2)
+					{
+						return f1.getName().compareTo(f2.getName());
+					}
+				});
+				for (Field field : declared)
+				{
+					int modifiers = field.getModifiers();
+					if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers))
+					{
+						field.setAccessible(true);
+						list.add(field);
+					}
+				}
+			}
+
+			fields = list.toArray(new Field[list.size()]);
+			kinds = new int[fields.length];
+			names = new String[fields.length];
+			for (int i = 0; i < fields.length; i++)
+			{
+				kinds[i] = getKind(fields[i]);
+				names[i] = fields[i].getDeclaringClass().getName() + '.' + fields[i].getName();
+			}
+		}
+
+		private static int getKind(Field field)
+		{
+			if (field.getDeclaringClass() == Symbol.class
+					&& ("start".equals(field.getName()) || "end".equals(field.getName()))) //$NON-NLS-1$ //$NON-NLS-2$
+			{
+				return OFFSET;
+			}
+			Class<?> type = field.getType();
+			if (!type.isPrimitive())
+			{
+				return OBJECT;
+			}
+			if (type == Boolean.TYPE)
+			{
+				return BOOLEAN;
+			}
+			if (type == Byte.TYPE)
+			{
+				return BYTE;
+			}
+			if (type == Character.TYPE)
+			{
+				return CHAR;
+			}
+			if (type == Short.TYPE)
+			{
+				return SHORT;
+			}
+			if (type == Integer.TYPE)
+			{
+				return INT;
+			}
+			if (type == Long.TYPE)
+			{
+				return LONG;
+			}
+			return (type == Float.TYPE) ? FLOAT : DOUBLE;
+		}
+
+		/**
+		 * @return a copy of the node with all its fields cleared, to be serialized as the prototype of its class.
+		 */
+		ParseNode createPrototype(ParseNode node) throws IllegalAccessException
+		{
+			ParseNode prototype = node.copy();
+			for (int i = 0; i < fields.length; i++)
+			{
+				switch (kinds[i])
+				{
+					case OBJECT:
+						fields[i].set(prototype, null);
+						break;
+					case BOOLEAN:
+						fields[i].setBoolean(prototype, false);
+						break;
+					case CHAR:
+						fields[i].setChar(prototype, (char) 0);
+						break;
+					default:
+						// all the other primitives are widened from a byte
+						fields[i].setByte(prototype, (byte) 0);
+						break;
+				}
+			}
+			return prototype;
+		}
+	}
+
+	/**
+	 * Gets the layout of a class from the ones computed for a stream (they aren't kept any longer, so that the classes
+	 * of the parsers can be unloaded).
+	 */
+	private static Layout getLayout(Map<Class<?>, Layout> layouts, Class<?> nodeClass)
+	{
+		Layout layout = layouts.get(nodeClass);
+		if (layout == null)
+		{
+			layout = new Layout(nodeClass);
+			layouts.put(nodeClass, layout);
+		}
+		return layout;
+	}
+
+	private static Field getAccessibleField(Class<?> c, String name) throws NoSuchFieldException
+	{
+		Field field = c.getDeclaredField(name);
+		field.setAccessible(true);
+		return field;
+	}
+
+	private ParseResultCodec()
+	{
+	}
+
+	/**
+	 * Writes the tree of the result and its errors.
+	 *
+	 * @throws NotSerializableException
+	 *             if a node isn't a {@link ParseNode} or a field holds a value which can't be serialized.
+	 */
+	static void write(DataOutputStream out, ParseResult result) throws IOException
+	{
+		new Writer(out).write(result);
+	}
+
+	/**
+	 * Reads a result written by {@link #write(DataOutputStream, ParseResult)}.
+	 *
+	 * @param classLoader
+	 *            used to load the classes of the nodes (i.e.: the class loader of the parser which produced them).
+	 */
+	static ParseResult read(DataInputStream in, ClassLoader classLoader) throws IOException, ClassNotFoundException
+	{
+		return new Reader(in, classLoader).read();
+	}
+
+	private static class Writer
+	{
+		private final DataOutputStream fOut;
+		private final Map<IParseNode, Integer> fIndices = new IdentityHashMap<IParseNode, Integer>();
+		private final List<ParseNode> fNodes = new ArrayList<ParseNode>();
+		private final Map<String, Integer> fStrings = new HashMap<String, Integer>();
+		private final Map<Class<?>, Layout> fLayouts = new HashMap<Class<?>, Layout>();
+		private final ByteArrayOutputStream fSerializedBytes = new ByteArrayOutputStream();
+		private ObjectOutputStream fSerialized;
+
+		/**
+		 * The index of the node whose fields are being written.
+		 */
+		private int fCurrent;
+
+		/**
+		 * The last offset written, the next one being written relative to it (offsets of nodes in document order are
+		 * close to each other).
+		 */
+		private int fOffset;
+
+		Writer(DataOutputStream out)
+		{
+			fOut = out;
+		}
+
+		void write(ParseResult result) throws IOException
+		{
+			IParseRootNode root = result.getRootNode();
+			addTree(root);
+			for (IParseNode comment : root.getCommentNodes())
+			{
+				addTree(comment);
+			}
+
+			// The classes, with their layouts and prototypes
+			Map<Class<?>, Integer> classIndices = new HashMap<Class<?>, Integer>();
+			List<Layout> layouts = new ArrayList<Layout>();
+			ByteArrayOutputStream prototypeBytes = new ByteArrayOutputStream();
+			ObjectOutputStream prototypes = new ObjectOutputStream(prototypeBytes);
+			for (ParseNode node : fNodes)
+			{
+				Class<?> nodeClass = node.getClass();
+				if (!classIndices.containsKey(nodeClass))
+				{
+					Layout layout = getLayout(fLayouts, nodeClass);
+					classIndices.put(nodeClass, layouts.size());
+					layouts.add(layout);
+					try
+					{
+						prototypes.writeObject(layout.createPrototype(node));
+					}
+					catch (IllegalAccessException e)
+					{
+						throw new NotSerializableException(nodeClass.getName());
+					}
+				}
+			}
+			prototypes.close();
+
+			writeClassTable(layouts, classIndices);
+			writeInt(prototypeBytes.size());
+			prototypeBytes.writeTo(fOut);
+
+			// The nodes
+			writeInt(fNodes.size());
+			for (ParseNode node : fNodes)
+			{
+				writeInt(classIndices.get(node.getClass()));
+			}
+			for (fCurrent = 0; fCurrent < fNodes.size(); fCurrent++)
+			{
+				ParseNode node = fNodes.get(fCurrent);
+				Layout layout = getLayout(fLayouts, node.getClass());
+				try
+				{
+					for (int i = 0; i < layout.fields.length; i++)
+					{
+						writeField(node, layout.fields[i], layout.kinds[i]);
+					}
+				}
+				catch (IllegalAccessException e)
+				{
+					throw new NotSerializableException(node.getClass().getName());
+				}
+			}
+
+			// The values which had to be serialized, then the errors
+			getSerialized().writeObject(new ArrayList<IParseError>(result.getErrors()));
+			fSerialized.close();
+			writeInt(fSerializedBytes.size());
+			fSerializedBytes.writeTo(fOut);
+		}
+
+		private void writeClassTable(List<Layout> layouts, Map<Class<?>, Integer> classIndices) throws IOException
+		{
+			Class<?>[] classes = new Class<?>[layouts.size()];
+			for (Map.Entry<Class<?>, Integer> entry : classIndices.entrySet())
+			{
+				classes[entry.getValue()] = entry.getKey();
+			}
+			writeInt(classes.length);
+			for (int i = 0; i < classes.length; i++)
+			{
+				Layout layout = layouts.get(i);
+				fOut.writeUTF(classes[i].getName());
+				writeInt(layout.names.length);
+				for (String name : layout.names)
+				{
+					fOut.writeUTF(name);
+				}
+			}
+		}
+
+		/**
+		 * Numbers the node and its descendants (in document order) if it's not done yet.
+		 */
+		private void addTree(IParseNode root) throws IOException
+		{
+			List<IParseNode> stack = new ArrayList<IParseNode>();
+			stack.add(root);
+			while (!stack.isEmpty())
+			{
+				IParseNode node = stack.remove(stack.size() - 1);
+				if (node == null || fIndices.containsKey(node))
+				{
+					continue;
+				}
+				if (!(node instanceof ParseNode))
+				{
+					throw new NotSerializableException(node.getClass().getName());
+				}
+				fIndices.put(node, fNodes.size());
+				fNodes.add((ParseNode) node);
+
+				IParseNode[] children = node.getChildren();
+				for (int i = children.length - 1; i >= 0; i--)
+				{
+					stack.add(children[i]);
+				}
+			}
+		}
+
+		private void writeField(ParseNode node, Field field, int kind) throws IOException, IllegalAccessException
+		{
+			switch (kind)
+			{
+				case OBJECT:
+					writeValue(field.get(node));
+					break;
+				case BOOLEAN:
+					fOut.writeBoolean(field.getBoolean(node));
+					break;
+				case BYTE:
+					fOut.writeByte(field.getByte(node));
+					break;
+				case CHAR:
+					fOut.writeChar(field.getChar(node));
+					break;
+				case SHORT:
+					writeInt(field.getShort(node));
+					break;
+				case INT:
+					writeInt(field.getInt(node));
+					break;
+				case OFFSET:
+					int offset = field.getInt(node);
+					writeInt(offset - fOffset);
+					fOffset = offset;
+					break;
+				case LONG:
+					fOut.writeLong(field.getLong(node));
+					break;
+				case FLOAT:
+					fOut.writeFloat(field.getFloat(node));
+					break;
+				default:
+					fOut.writeDouble(field.getDouble(node));
+					break;
+			}
+		}
+
+		private void writeValue(Object value) throws IOException, IllegalAccessException
+		{
+			if (value == null)
+			{
+				fOut.writeByte(NULL);
+			}
+			else if (value instanceof String)
+			{
+				fOut.writeByte(STRING);
+				writeString((String) value);
+			}
+			else if (fIndices.containsKey(value))
+			{
+				fOut.writeByte(NODE);
+				writeNodeRef(value);
+			}
+			else if (isPlainSymbol(value))
+			{
+				// i.e.: the operator of an expression
+				Symbol symbol = (Symbol) value;
+				fOut.writeByte(SYMBOL);
+				writeInt(symbol.getId());
+				writeInt(symbol.getStart());
+				writeInt(symbol.getEnd());
+				writeValue(symbol.value);
+			}
+			else if (isNodeArray(value))
+			{
+				Object[] array = (Object[]) value;
+				fOut.writeByte(NODE_ARRAY);
+				writeString(array.getClass().getComponentType().getName());
+				writeInt(array.length);
+				for (Object element : array)
+				{
+					writeNodeRef(element);
+				}
+			}
+			else
+			{
+				fOut.writeByte(SERIALIZED);
+				getSerialized().writeObject(value);
+			}
+		}
+
+		private boolean isPlainSymbol(Object value)
+		{
+			if (value.getClass() != Symbol.class)
+			{
+				return false;
+			}
+			Object symbolValue = ((Symbol) value).value;
+			return symbolValue == null || symbolValue instanceof String;
+		}
+
+		private boolean isNodeArray(Object value)
+		{
+			if (!(value instanceof IParseNode[]))
+			{
+				return false;
+			}
+			for (Object element : (Object[]) value)
+			{
+				if (element != null && !fIndices.containsKey(element))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private ObjectOutputStream getSerialized() throws IOException
+		{
+			if (fSerialized == null)
+			{
+				fSerialized = new ObjectOutputStream(fSerializedBytes)
+				{
+					{
+						enableReplaceObject(true);
+					}
+
+					@Override
+					protected Object replaceObject(Object obj) throws IOException
+					{
+						Integer index = fIndices.get(obj);
+						return (index == null) ? obj : new NodeRef(index);
+					}
+				};
+			}
+			return fSerialized;
+		}
+
+		private void writeString(String value) throws IOException
+		{
+			Integer index = fStrings.get(value);
+			if (index != null)
+			{
+				writeInt(index + 1);
+				return;
+			}
+			fStrings.put(value, fStrings.size());
+			writeInt(0);
+			byte[] bytes = value.getBytes("UTF-8"); //$NON-NLS-1$
+			writeInt(bytes.length);
+			fOut.write(bytes);
+		}
+
+		/**
+		 * Writes a reference to a node (or null) relative to the node being written, which keeps the references to
+		 * parents, children and siblings short.
+		 */
+		private void writeNodeRef(Object node) throws IOException
+		{
+			writeUnsigned((node == null) ? 0 : zigZag(fIndices.get(node) - fCurrent) + 1);
+		}
+
+		/**
+		 * Writes a variable length int, small absolute values (negative ones included) taking less.
+		 */
+		private void writeInt(int value) throws IOException
+		{
+			writeUnsigned(zigZag(value));
+		}
+
+		/**
+		 * Writes 7 bits a byte, the high bit telling whether there are more.
+		 */
+		private void writeUnsigned(int value) throws IOException
+		{
+			while ((value & ~0x7f) != 0)
+			{
+				fOut.writeByte((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			fOut.writeByte(value);
+		}
+
+		private static int zigZag(int value)
+		{
+			return (value << 1) ^ (value >> 31);
+		}
+	}
+
+	private static class Reader
+	{
+		private final DataInputStream fIn;
+		private final ClassLoader fClassLoader;
+		private final List<String> fStrings = new ArrayList<String>();
+		private final Map<String, Class<?>> fArrayTypes = new HashMap<String, Class<?>>();
+		private final Map<Class<?>, Layout> fLayouts = new HashMap<Class<?>, Layout>();
+		private ParseNode[] fNodes;
+
+		/**
+		 * The index of the node whose fields are being read.
+		 */
+		private int fCurrent;
+
+		/**
+		 * The last offset read.
+		 */
+		private int fOffset;
+
+		/**
+		 * The fields whose values are in the stream of serialized values, in order (as node, field pairs).
+		 */
+		private final List<Object> fPending = new ArrayList<Object>();
+
+		Reader(DataInputStream in, ClassLoader classLoader)
+		{
+			fIn = in;
+			fClassLoader = classLoader;
+		}
+
+		ParseResult read() throws IOException, ClassNotFoundException
+		{
+			// The classes, whose fields must be the ones they were written with
+			int classCount = readInt();
+			Layout[] layouts = new Layout[classCount];
+			for (int i = 0; i < classCount; i++)
+			{
+				Class<?> nodeClass = Class.forName(fIn.readUTF(), false, fClassLoader);
+				Layout layout = getLayout(fLayouts, nodeClass);
+				int fieldCount = readInt();
+				if (fieldCount != layout.names.length)
+				{
+					throw new InvalidClassException(nodeClass.getName());
+				}
+				for (int j = 0; j < fieldCount; j++)
+				{
+					if (!layout.names[j].equals(fIn.readUTF()))
+					{
+						throw new InvalidClassException(nodeClass.getName());
+					}
+				}
+				layouts[i] = layout;
+			}
+			ObjectInputStream prototypeStream = createObjectInputStream(readBytes());
+			ParseNode[] prototypes = new ParseNode[classCount];
+			for (int i = 0; i < classCount; i++)
+			{
+				prototypes[i] = (ParseNode) prototypeStream.readObject();
+			}
+
+			// The nodes
+			int nodeCount = readInt();
+			fNodes = new ParseNode[nodeCount];
+			Layout[] nodeLayouts = new Layout[nodeCount];
+			for (int i = 0; i < nodeCount; i++)
+			{
+				int classIndex = readInt();
+				fNodes[i] = prototypes[classIndex].copy();
+				nodeLayouts[i] = layouts[classIndex];
+			}
+			try
+			{
+				for (fCurrent = 0; fCurrent < nodeCount; fCurrent++)
+				{
+					Layout layout = nodeLayouts[fCurrent];
+					for (int j = 0; j < layout.fields.length; j++)
+					{
+						readField(fNodes[fCurrent], layout.fields[j], layout.kinds[j]);
+					}
+				}
+
+				// The values which had to be serialized, then the errors
+				ObjectInputStream serialized = createObjectInputStream(readBytes());
+				for (int i = 0; i < fPending.size(); i += 2)
+				{
+					((Field) fPending.get(i + 1)).set(fPending.get(i), serialized.readObject());
+				}
+				@SuppressWarnings("unchecked")
+				List<IParseError> errors = (List<IParseError>) serialized.readObject();
+				return new ParseResult((IParseRootNode) fNodes[0], errors);
+			}
+			catch (IllegalAccessException e)
+			{
+				throw new InvalidClassException(e.getMessage());
+			}
+			catch (IllegalArgumentException e)
+			{
+				// a value of the wrong type
+				throw new InvalidClassException(e.getMessage());
+			}
+		}
+
+		private void readField(ParseNode node, Field field, int kind) throws IOException, IllegalAccessException,
+				ClassNotFoundException
+		{
+			switch (kind)
+			{
+				case OBJECT:
+					int tag = fIn.readByte();
+					if (tag == SERIALIZED)
+					{
+						fPending.add(node);
+						fPending.add(field);
+					}
+					else
+					{
+						field.set(node, readValue(tag));
+					}
+					break;
+				case BOOLEAN:
+					field.setBoolean(node, fIn.readBoolean());
+					break;
+				case BYTE:
+					field.setByte(node, fIn.readByte());
+					break;
+				case CHAR:
+					field.setChar(node, fIn.readChar());
+					break;
+				case SHORT:
+					field.setShort(node, (short) readInt());
+					break;
+				case INT:
+					field.setInt(node, readInt());
+					break;
+				case OFFSET:
+					fOffset += readInt();
+					field.setInt(node, fOffset);
+					break;
+				case LONG:
+					field.setLong(node, fIn.readLong());
+					break;
+				case FLOAT:
+					field.setFloat(node, fIn.readFloat());
+					break;
+				default:
+					field.setDouble(node, fIn.readDouble());
+					break;
+			}
+		}
+
+		/**
+		 * Reads a value whose tag has just been read (serialized values are read at the end, separately).
+		 */
+		private Object readValue(int tag) throws IOException, IllegalAccessException, ClassNotFoundException
+		{
+			switch (tag)
+			{
+				case NULL:
+					return null;
+				case STRING:
+					return readString();
+				case NODE:
+					return readNodeRef();
+				case SYMBOL:
+					Symbol symbol = new Symbol((short) readInt(), readInt(), readInt());
+					int valueTag = fIn.readByte();
+					if (valueTag != NULL && valueTag != STRING)
+					{
+						throw new StreamCorruptedException();
+					}
+					SYMBOL_VALUE.set(symbol, readValue(valueTag));
+					return symbol;
+				case NODE_ARRAY:
+					Class<?> componentType = getArrayType(readString());
+					int length = readInt();
+					Object array = Array.newInstance(componentType, length);
+					for (int i = 0; i < length; i++)
+					{
+						Array.set(array, i, readNodeRef());
+					}
+					return array;
+				default:
+					throw new StreamCorruptedException();
+			}
+		}
+
+		private ParseNode readNodeRef() throws IOException
+		{
+			int ref = readUnsigned();
+			if (ref == 0)
+			{
+				return null;
+			}
+			ref--;
+			return getNode(fCurrent + ((ref >>> 1) ^ -(ref & 1)));
+		}
+
+		private ParseNode getNode(int index) throws StreamCorruptedException
+		{
+			if (index < 0 || index >= fNodes.length)
+			{
+				throw new StreamCorruptedException();
+			}
+			return fNodes[index];
+		}
+
+		private Class<?> getArrayType(String name) throws ClassNotFoundException
+		{
+			Class<?> type = fArrayTypes.get(name);
+			if (type == null)
+			{
+				type = Class.forName(name, false, fClassLoader);
+				fArrayTypes.put(name, type);
+			}
+			return type;
+		}
+
+		private ObjectInputStream createObjectInputStream(byte[] bytes) throws IOException
+		{
+			return new ObjectInputStream(new ByteArrayInputStream(bytes))
+			{
+				{
+					enableResolveObject(true);
+				}
+
+				@Override
+				protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+				{
+					try
+					{
+						return Class.forName(desc.getName(), false, fClassLoader);
+					}
+					catch (ClassNotFoundException e)
+					{
+						return super.resolveClass(desc);
+					}
+				}
+
+				@Override
+				protected Object resolveObject(Object obj) throws IOException
+				{
+					return (obj instanceof NodeRef) ? getNode(((NodeRef) obj).fIndex) : obj;
+				}
+			};
+		}
+
+		private byte[] readBytes() throws IOException
+		{
+			byte[] bytes = new byte[readInt()];
+			fIn.readFully(bytes);
+			return bytes;
+		}
+
+		private String readString() throws IOException
+		{
+			int index = readInt();
+			if (index > 0)
+			{
+				if (index > fStrings.size())
+				{
+					throw new StreamCorruptedException();
+				}
+				return fStrings.get(index - 1);
+			}
+			byte[] bytes = new byte[readInt()];
+			fIn.readFully(bytes);
+			String value = new String(bytes, "UTF-8"); //$NON-NLS-1$
+			fStrings.add(value);
+			return value;
+		}
+
+		private int readInt() throws IOException
+		{
+			int zigZag = readUnsigned();
+			return (zigZag >>> 1) ^ -(zigZag & 1);
+		}
+
+		private int readUnsigned() throws IOException
+		{
+			int value = 0;
+			int shift = 0;
+			int b;
+			do
+			{
+				if (shift > 28)
+				{
+					throw new StreamCorruptedException();
+				}
+				b = fIn.readUnsignedByte();
+				value |= (b & 0x7f) << shift;
+				shift += 7;
+			}
+			while ((b & 0x80) != 0);
+			return value;
+		}
+	}
+}
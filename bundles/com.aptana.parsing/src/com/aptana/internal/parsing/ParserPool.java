@@ -7,27 +7,89 @@
  */
 package com.aptana.internal.parsing;
 
+import java.lang.ref.WeakReference;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.core.runtime.IConfigurationElement;
 
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.ReapingObjectPool;
+import com.aptana.core.util.StringUtil;
+import com.aptana.parsing.IDebugScopes;
 import com.aptana.parsing.IParser;
 import com.aptana.parsing.IParserPool;
+import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ParsingPlugin;
 
+/**
+ * Pool of the parsers for a content type. A minimum number of idle parsers is kept around (instead of creating and
+ * reaping them as the load changes, which also throws away their JIT-warm state), and a thread gets back the parser it
+ * used last if it's available.
+ */
 public class ParserPool extends ReapingObjectPool<IParser> implements IParserPool
 {
 
 	private IConfigurationElement parserExtension;
 
+	/**
+	 * The number of idle parsers which are never reaped.
+	 */
+	private final int minSize;
+
+	/**
+	 * The parser each thread checked in last (weakly referenced, so that reaped parsers go away).
+	 */
+	private final ThreadLocal<WeakReference<IParser>> lastUsed = new ThreadLocal<WeakReference<IParser>>();
+
+	/**
+	 * Counters of the parsers created, handed out again and reaped. Access should be synchronized on this.
+	 */
+	private int createdCount;
+	private int reusedCount;
+	private int reapedCount;
+
 	public ParserPool(IConfigurationElement parserExtension)
+	{
+		this(parserExtension, 1);
+	}
+
+	/**
+	 * @param minSize
+	 *            the number of idle parsers to keep
+	 */
+	public ParserPool(IConfigurationElement parserExtension, int minSize)
 	{
 		this.parserExtension = parserExtension;
+		this.minSize = minSize;
 		start();
 	}
 
+	/**
+	 * For testing purposes.
+	 */
+	ParserPool(int minSize, int expirationTime)
+	{
+		super(expirationTime);
+		this.minSize = minSize;
+	}
+
 	@Override
 	public IParser create()
+	{
+		IParser parser = createParser();
+		if (parser != null)
+		{
+			synchronized (this)
+			{
+				createdCount++;
+			}
+		}
+		return parser;
+	}
+
+	protected IParser createParser()
 	{
 		try
 		{
@@ -43,13 +105,102 @@ public class ParserPool extends ReapingObjectPool<IParser> implements IParserPoo
 	@Override
 	public boolean validate(IParser o)
 	{
-		// Always keep one available parser
-		return unlockedItems() == 1;
+		// Keep the minimum number of available parsers
+		return unlockedItems() <= minSize;
 	}
 
 	@Override
-	public void expire(IParser o)
+	public synchronized void expire(IParser o)
 	{
 		// no need to clean the parser up
+		reapedCount++;
+	}
+
+	@Override
+	public synchronized IParser checkOut()
+	{
+		WeakReference<IParser> reference = lastUsed.get();
+		int created = createdCount;
+		IParser parser = super.checkOut((reference == null) ? null : reference.get());
+		if (parser != null && created == createdCount)
+		{
+			reusedCount++;
+		}
+		return parser;
+	}
+
+	@Override
+	public void checkIn(IParser t)
+	{
+		if (t != null)
+		{
+			lastUsed.set(new WeakReference<IParser>(t));
+		}
+		super.checkIn(t);
+	}
+
+	/**
+	 * Creates parsers up to the minimum size of the pool, and has each one parse an empty source so that the first
+	 * real parse doesn't pay for loading the parser classes.
+	 */
+	public void warmUp()
+	{
+		List<IParser> parsers = new ArrayList<IParser>(minSize);
+		try
+		{
+			for (int i = 0; i < minSize; i++)
+			{
+				IParser parser = checkOut();
+				if (parser == null)
+				{
+					break;
+				}
+				parsers.add(parser);
+			}
+			for (IParser parser : parsers)
+			{
+				try
+				{
+					parser.parse(new ParseState(StringUtil.EMPTY));
+				}
+				catch (Exception e)
+				{
+					IdeLog.logTrace(ParsingPlugin.getDefault(),
+							MessageFormat.format("Failed to warm up parser {0}: {1}", parser, e), //$NON-NLS-1$
+							IDebugScopes.PARSING);
+				}
+			}
+		}
+		finally
+		{
+			for (IParser parser : parsers)
+			{
+				checkIn(parser);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of parsers created by this pool.
+	 */
+	public synchronized int getCreatedCount()
+	{
+		return createdCount;
+	}
+
+	/**
+	 * @return the number of times an existing parser was handed out.
+	 */
+	public synchronized int getReusedCount()
+	{
+		return reusedCount;
+	}
+
+	/**
+	 * @return the number of parsers reaped (or disposed) by this pool.
+	 */
+	public synchronized int getReapedCount()
+	{
+		return reapedCount;
 	}
 }
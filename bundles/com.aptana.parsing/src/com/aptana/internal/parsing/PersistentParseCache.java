@@ -0,0 +1,350 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.parsing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.parsing.IDebugScopes;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParsingPlugin;
+
+/**
+ * Keeps parse results on disk across sessions, so that a build after a restart doesn't have to parse the files that
+ * didn't change. Entries are keyed by the content type and a SHA-1 of the source, and hold the AST and errors in the
+ * compact form of {@link ParseResultCodec}. The total size of the entries is bounded, the least recently used ones
+ * being deleted first.
+ * <p>
+ * Results whose nodes can't be written are simply not stored. The stored fields of each node class are checked when
+ * reading, but a field may keep its name and change its meaning, so entries are also keyed by a version of the parser
+ * (i.e.: the version of the bundle contributing it): entries written by another version are never read back and age
+ * out of the cache, so there's no need to clear it when the parsers change.
+ */
+public class PersistentParseCache
+{
+	private static final String EXTENSION = ".ast"; //$NON-NLS-1$
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+	private static final int VERSION = 3;
+
+	private final File fDirectory;
+	private final long fMaxBytes;
+
+	/**
+	 * The size of each entry (by file name), in access order. Access should be synchronized on this.
+	 */
+	private final LinkedHashMap<String, Long> fEntries;
+	private long fTotalBytes;
+
+	private int fHits;
+	private int fMisses;
+
+	/**
+	 * @param directory
+	 *            where the entries are kept (created if needed). Entries from previous sessions are picked up, the
+	 *            most recently modified being considered the most recently used.
+	 * @param maxBytes
+	 *            the maximum size of all the entries together.
+	 */
+	public PersistentParseCache(File directory, long maxBytes)
+	{
+		fDirectory = directory;
+		fMaxBytes = maxBytes;
+		fEntries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			IdeLog.logError(ParsingPlugin.getDefault(), MessageFormat.format(
+					"Failed to create the parse cache directory ''{0}''", directory)); //$NON-NLS-1$
+			return;
+		}
+		File[] files = directory.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>()
+		{
+			public int compare(File f1, File f2)
+			{
+				long diff = f1.lastModified() - f2.lastModified();
+				return (diff < 0) ? -1 : ((diff > 0) ? 1 : 0);
+			}
+		});
+		synchronized (this)
+		{
+			for (File file : files)
+			{
+				String name = file.getName();
+				if (name.endsWith(EXTENSION))
+				{
+					long length = file.length();
+					fEntries.put(name, length);
+					fTotalBytes += length;
+				}
+				else if (name.endsWith(TEMP_EXTENSION))
+				{
+					// left over from a write that didn't finish
+					file.delete();
+				}
+			}
+			evict();
+		}
+	}
+
+	/**
+	 * @param parserVersion
+	 *            identifies the parser that produced the stored results (see {@link #put(String, String, String,
+	 *            ParseResult)}).
+	 * @param classLoader
+	 *            used to load the classes of the nodes (i.e.: the class loader of the parser for the content type).
+	 * @return the stored result for the source or null if there's none (or it couldn't be read).
+	 */
+	public ParseResult get(String contentTypeId, String parserVersion, String source, ClassLoader classLoader)
+	{
+		String name = getEntryName(contentTypeId, parserVersion, source);
+		synchronized (this)
+		{
+			if (fEntries.get(name) == null)
+			{
+				fMisses++;
+				return null;
+			}
+		}
+
+		File file = new File(fDirectory, name);
+		try
+		{
+			DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try
+			{
+				if (stream.readInt() == VERSION && stream.readUTF().equals(contentTypeId)
+						&& stream.readUTF().equals(parserVersion) && stream.readInt() == source.length())
+				{
+					ParseResult result = ParseResultCodec.read(stream, classLoader);
+
+					file.setLastModified(System.currentTimeMillis());
+					synchronized (this)
+					{
+						fHits++;
+					}
+					return result;
+				}
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+		catch (Exception e)
+		{
+			// Stale (i.e.: the node classes changed) or corrupt: just parse again.
+			IdeLog.logTrace(ParsingPlugin.getDefault(),
+					MessageFormat.format("Dropping unreadable parse cache entry ''{0}'': {1}", name, e), //$NON-NLS-1$
+					IDebugScopes.PARSING);
+		}
+		remove(name);
+		synchronized (this)
+		{
+			fMisses++;
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the result for the source. Results which can't be written are ignored.
+	 * 
+	 * @param parserVersion
+	 *            identifies the parser that produced the result, and changes whenever its nodes may be serialized
+	 *            differently.
+	 */
+	public void put(String contentTypeId, String parserVersion, String source, ParseResult result)
+	{
+		if (result.getRootNode() == null)
+		{
+			return;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try
+		{
+			DataOutputStream stream = new DataOutputStream(bytes);
+			stream.writeInt(VERSION);
+			stream.writeUTF(contentTypeId);
+			stream.writeUTF(parserVersion);
+			stream.writeInt(source.length());
+			ParseResultCodec.write(stream, result);
+			stream.close();
+		}
+		catch (IOException e)
+		{
+			// Some node (or error) can't be written.
+			IdeLog.logTrace(ParsingPlugin.getDefault(), MessageFormat.format(
+					"Unable to store the parse result for content type {0}: {1}", contentTypeId, e), //$NON-NLS-1$
+					IDebugScopes.PARSING);
+			return;
+		}
+		catch (RuntimeException e)
+		{
+			// i.e.: a writeReplace() which failed, or a field which can't be accessed
+			logStoreError(contentTypeId, e);
+			return;
+		}
+		if (bytes.size() > fMaxBytes)
+		{
+			return;
+		}
+
+		String name = getEntryName(contentTypeId, parserVersion, source);
+		File temp = new File(fDirectory, name + TEMP_EXTENSION);
+		File file = new File(fDirectory, name);
+		try
+		{
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+			try
+			{
+				bytes.writeTo(out);
+			}
+			finally
+			{
+				out.close();
+			}
+			synchronized (this)
+			{
+				if ((!file.exists() || file.delete()) && temp.renameTo(file))
+				{
+					Long previous = fEntries.put(name, (long) bytes.size());
+					fTotalBytes += bytes.size() - ((previous == null) ? 0 : previous);
+					evict();
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(ParsingPlugin.getDefault(), e);
+		}
+		finally
+		{
+			temp.delete();
+		}
+	}
+
+	private static void logStoreError(String contentTypeId, Throwable e)
+	{
+		IdeLog.logError(ParsingPlugin.getDefault(), MessageFormat.format(
+				"Unable to store the parse result for content type {0}", contentTypeId), e); //$NON-NLS-1$
+	}
+
+	/**
+	 * Deletes all the entries.
+	 */
+	public synchronized void clear()
+	{
+		for (String name : fEntries.keySet())
+		{
+			new File(fDirectory, name).delete();
+		}
+		fEntries.clear();
+		fTotalBytes = 0;
+	}
+
+	/**
+	 * @return the total size of the entries.
+	 */
+	public synchronized long getTotalBytes()
+	{
+		return fTotalBytes;
+	}
+
+	/**
+	 * @return the number of lookups which returned a stored result (for testing purposes).
+	 */
+	public synchronized int getHits()
+	{
+		return fHits;
+	}
+
+	/**
+	 * @return the number of lookups which didn't return a stored result (for testing purposes).
+	 */
+	public synchronized int getMisses()
+	{
+		return fMisses;
+	}
+
+	private synchronized void remove(String name)
+	{
+		Long length = fEntries.remove(name);
+		if (length != null)
+		{
+			fTotalBytes -= length;
+		}
+		new File(fDirectory, name).delete();
+	}
+
+	/**
+	 * Deletes the least recently used entries until the total size is within the bounds. Must be called with the lock
+	 * on this.
+	 */
+	private void evict()
+	{
+		Iterator<Map.Entry<String, Long>> iterator = fEntries.entrySet().iterator();
+		while (fTotalBytes > fMaxBytes && iterator.hasNext())
+		{
+			Map.Entry<String, Long> entry = iterator.next();
+			new File(fDirectory, entry.getKey()).delete();
+			fTotalBytes -= entry.getValue();
+			iterator.remove();
+		}
+	}
+
+	private static String getEntryName(String contentTypeId, String parserVersion, String source)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			digest.update(contentTypeId.getBytes("UTF-8")); //$NON-NLS-1$
+			digest.update((byte) 0);
+			digest.update(parserVersion.getBytes("UTF-8")); //$NON-NLS-1$
+			digest.update((byte) 0);
+			digest.update(source.getBytes("UTF-8")); //$NON-NLS-1$
+
+			StringBuilder name = new StringBuilder(40 + EXTENSION.length());
+			for (byte b : digest.digest())
+			{
+				name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return name.append(EXTENSION).toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
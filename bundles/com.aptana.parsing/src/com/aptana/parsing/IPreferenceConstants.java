@@ -0,0 +1,23 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+public interface IPreferenceConstants
+{
+	/**
+	 * The maximum size (in megabytes) of the parse results kept on disk for builds, so that files which didn't change
+	 * don't need to be parsed again after a restart. Zero turns the cache off.
+	 */
+	public static final String PERSISTENT_PARSE_CACHE_SIZE = "PERSISTENT_PARSE_CACHE_SIZE"; //$NON-NLS-1$
+
+	/**
+	 * The number of idle parsers kept for each content type. These are created (and warmed up) in the background when
+	 * the plugin starts.
+	 */
+	public static final String PARSER_POOL_MIN_SIZE = "PARSER_POOL_MIN_SIZE"; //$NON-NLS-1$
+}
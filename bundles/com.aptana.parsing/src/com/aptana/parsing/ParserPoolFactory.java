@@ -7,13 +7,17 @@
  */
 package com.aptana.parsing;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.content.IContentType;
 import org.eclipse.core.runtime.content.IContentTypeManager;
 
@@ -29,6 +33,11 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 	private static final String ELEMENT_PARSER = "parser"; //$NON-NLS-1$
 	private static final String ATTR_CONTENT_TYPE = "content-type"; //$NON-NLS-1$
 
+	/**
+	 * Default for {@link IPreferenceConstants#PARSER_POOL_MIN_SIZE}.
+	 */
+	public static final int DEFAULT_PARSER_POOL_MIN_SIZE = 2;
+
 	private static ParserPoolFactory INSTANCE;
 	private Map<String, IConfigurationElement> parsers;
 	private Map<String, IParserPool> pools;
@@ -155,7 +164,7 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 
 				if (parserExtension != null)
 				{
-					result = new ParserPool(parserExtension);
+					result = new ParserPool(parserExtension, getParserPoolMinSize());
 					pools.put(contentTypeId, result);
 				}
 				else
@@ -173,6 +182,49 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 		return result;
 	}
 
+	/**
+	 * Creates and warms up the minimum number of parsers of all the content types (see
+	 * {@link IPreferenceConstants#PARSER_POOL_MIN_SIZE}), so that the first parses don't have to. Meant to be called in
+	 * the background when the plugin starts.
+	 */
+	public void warmUp(IProgressMonitor monitor)
+	{
+		List<String> contentTypeIds;
+		synchronized (this)
+		{
+			if (parsers == null)
+			{
+				parsers = getParsers();
+			}
+			contentTypeIds = new ArrayList<String>(parsers.keySet());
+		}
+
+		SubMonitor sub = SubMonitor.convert(monitor, contentTypeIds.size());
+		for (String contentTypeId : contentTypeIds)
+		{
+			if (sub.isCanceled())
+			{
+				return;
+			}
+			IParserPool pool = getParserPool(contentTypeId);
+			if (pool instanceof ParserPool)
+			{
+				((ParserPool) pool).warmUp();
+			}
+			sub.worked(1);
+		}
+	}
+
+	private static int getParserPoolMinSize()
+	{
+		if (ParsingPlugin.getDefault() == null)
+		{
+			return DEFAULT_PARSER_POOL_MIN_SIZE;
+		}
+		return Math.max(0, Platform.getPreferencesService().getInt(ParsingPlugin.PLUGIN_ID,
+				IPreferenceConstants.PARSER_POOL_MIN_SIZE, DEFAULT_PARSER_POOL_MIN_SIZE, null));
+	}
+
 	/**
 	 * parse
 	 * 
@@ -230,6 +282,31 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 		return getInstance().fParsingEngine.parse(contentTypeId, parseState);
 	}
 
+	/**
+	 * Parses like {@link #parse(String, IParseState)}, optionally reusing (and storing) the result on disk across
+	 * sessions.
+	 * 
+	 * @see ParsingEngine#parse(String, IParseState, boolean)
+	 */
+	public static ParseResult parse(String contentTypeId, IParseState parseState, boolean usePersistentCache)
+			throws Exception // $codepro.audit.disable declaredExceptions
+	{
+		return getInstance().fParsingEngine.parse(contentTypeId, parseState, usePersistentCache);
+	}
+
+	/**
+	 * parseAsync
+	 * 
+	 * @param contentTypeId
+	 * @param parseState
+	 * @return
+	 * @see ParsingEngine#parseAsync(String, IParseState)
+	 */
+	public static Future<ParseResult> parseAsync(String contentTypeId, IParseState parseState)
+	{
+		return getInstance().fParsingEngine.parseAsync(contentTypeId, parseState);
+	}
+
 	/**
 	 * To be used to force the cache to be cleaned. Primarily used for testing, but also if some settings/prefs change
 	 * and we need to wipe cached parse results that conatin markers/warnings/etc.
@@ -8,18 +8,39 @@
 package com.aptana.parsing;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Platform;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
 
 import com.aptana.core.epl.util.ILRUCacheable;
 import com.aptana.core.epl.util.LRUCacheWithSoftPrunedValues;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.StringUtil;
+import com.aptana.internal.parsing.PersistentParseCache;
 
 /**
  * This class is responsible for actually calling the parsing. It'll use the ParseState#getCacheKey() to know if an
  * ongoing parse can be used for a new requestor (and if so, that requestor will be blocked until the end of the parse
  * rather than doing the parse itself).
+ * <p>
+ * {@link #parseAsync(String, IParseState)} runs parses on a small pool of background threads instead. Requests for the
+ * same cache key share a single in-flight parse, and each requestor can cancel its own future without affecting the
+ * others. The shared parse itself is only cancelled once every requestor has given up on it.
  * 
  * @author Fabio
  */
@@ -56,6 +77,11 @@ public class ParsingEngine
 		 */
 		private volatile boolean fResultGotten = false;
 
+		/**
+		 * True if the parse didn't complete (it failed or was cancelled), in which case the value must not be reused.
+		 */
+		private volatile boolean fFailed = false;
+
 		private final int fcacheFootprint;
 
 		public int getCacheFootprint()
@@ -86,25 +112,28 @@ public class ParsingEngine
 			return fCachedParseStateKey.requiresReparse(newCacheKey);
 		}
 
+		/**
+		 * @return true if the parse for this value didn't complete, so a new request should parse again.
+		 */
+		public boolean isFailed()
+		{
+			return fFailed;
+		}
+
 		/**
 		 * @return the result from doing the parse. If it's still not available, blocks until it's provided.
+		 * @throws InterruptedException
+		 *             if the waiting thread is interrupted before the result is available.
 		 */
-		public ParseResult getResult()
+		public ParseResult getResult() throws InterruptedException
 		{
-			while (!fResultGotten) // Double-check pattern for speed.
+			if (!fResultGotten) // Double-check pattern for speed.
 			{
 				synchronized (fLock)
 				{
-					if (!fResultGotten)
+					while (!fResultGotten)
 					{
-						try
-						{
-							fLock.wait();
-						}
-						catch (InterruptedException e)
-						{
-							// ignore
-						}
+						fLock.wait();
 					}
 				}
 			}
@@ -113,12 +142,17 @@ public class ParsingEngine
 
 		/**
 		 * Sets the result of the parse. Notifies any waiting thread that it has become available.
+		 * 
+		 * @param failed
+		 *            true if the parse didn't complete. Threads already waiting still get the result, but later
+		 *            requests won't reuse it.
 		 */
-		public void setResult(ParseResult parseResult)
+		public void setResult(ParseResult parseResult, boolean failed)
 		{
 			Assert.isNotNull(parseResult); // A parse result must NOT be null (should be an empty parse result if
 											// needed).
 			fCachedParseResult = parseResult;
+			fFailed = failed;
 			synchronized (fLock)
 			{
 				fResultGotten = true;
@@ -128,12 +162,190 @@ public class ParsingEngine
 
 	}
 
+	/**
+	 * A parse requested through {@link ParsingEngine#parseAsync(String, IParseState)} which may be shared by any number
+	 * of requestors asking for the same cache key while it's in progress. Each requestor gets its own
+	 * {@link ParseFuture}; the parse is only cancelled when all of them were cancelled.
+	 */
+	private class SharedParse implements Runnable
+	{
+		private final String fContentTypeId;
+		private final IParseState fParseState;
+		private final IParseStateCacheKey fKey;
+
+		/**
+		 * Monitor set in the parse state so that the parsers can stop early once no one is interested in the result.
+		 */
+		private final IProgressMonitor fMonitor = new NullProgressMonitor();
+
+		/**
+		 * The futures still waiting for this parse. Access should be synchronized on this.
+		 */
+		private final List<ParseFuture> fWaiters = new ArrayList<ParseFuture>();
+
+		/**
+		 * Whether the parse finished. Access should be synchronized on this.
+		 */
+		private boolean fDone;
+
+		private SharedParse(String contentTypeId, IParseState parseState, IParseStateCacheKey key)
+		{
+			fContentTypeId = contentTypeId;
+			fParseState = parseState;
+			fKey = key;
+		}
+
+		/**
+		 * @return a new future for this parse or null if it's not possible to wait for it anymore (it's already
+		 *         finished or was cancelled).
+		 */
+		private synchronized ParseFuture join()
+		{
+			if (fDone || fMonitor.isCanceled())
+			{
+				return null;
+			}
+			ParseFuture future = new ParseFuture(this);
+			fWaiters.add(future);
+			return future;
+		}
+
+		/**
+		 * Called when a future is cancelled. If it was the last one waiting, the parse itself is cancelled.
+		 */
+		private void leave(ParseFuture future)
+		{
+			boolean abandoned;
+			synchronized (this)
+			{
+				abandoned = fWaiters.remove(future) && fWaiters.isEmpty() && !fDone;
+				if (abandoned)
+				{
+					fMonitor.setCanceled(true);
+				}
+			}
+			if (abandoned && fKey != null)
+			{
+				fInFlightParses.remove(fKey, this);
+			}
+		}
+
+		public void run()
+		{
+			ParseResult result = ParseResult.EMPTY;
+			Throwable error = null;
+			try
+			{
+				if (!fMonitor.isCanceled())
+				{
+					fParseState.setProgressMonitor(fMonitor);
+					result = parse(fContentTypeId, fParseState);
+				}
+			}
+			catch (Throwable e)
+			{
+				error = e;
+			}
+			finally
+			{
+				if (fKey != null)
+				{
+					fInFlightParses.remove(fKey, this);
+				}
+			}
+
+			List<ParseFuture> waiters;
+			synchronized (this)
+			{
+				fDone = true;
+				waiters = new ArrayList<ParseFuture>(fWaiters);
+				fWaiters.clear();
+			}
+			for (ParseFuture future : waiters)
+			{
+				if (error != null)
+				{
+					future.fail(error);
+				}
+				else
+				{
+					future.complete(result);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The future given to each requestor of an async parse. Cancelling it only releases that requestor (the underlying
+	 * parse goes on while someone else is still waiting for it).
+	 */
+	private static class ParseFuture extends FutureTask<ParseResult>
+	{
+		private static final Callable<ParseResult> NO_CALLABLE = new Callable<ParseResult>()
+		{
+			public ParseResult call() throws Exception
+			{
+				throw new IllegalStateException("The result is provided by the shared parse"); //$NON-NLS-1$
+			}
+		};
+
+		private final SharedParse fSharedParse;
+
+		private ParseFuture(SharedParse sharedParse)
+		{
+			super(NO_CALLABLE);
+			fSharedParse = sharedParse;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			// Never interrupt: the thread is running a parse which may still be needed by other requestors.
+			boolean cancelled = super.cancel(false);
+			if (cancelled && fSharedParse != null)
+			{
+				fSharedParse.leave(this);
+			}
+			return cancelled;
+		}
+
+		private void complete(ParseResult result)
+		{
+			set(result);
+		}
+
+		private void fail(Throwable error)
+		{
+			setException(error);
+		}
+	}
+
+	/**
+	 * The parses requested through {@link #parseAsync(String, IParseState)} which didn't finish yet.
+	 */
+	private final ConcurrentMap<IParseStateCacheKey, SharedParse> fInFlightParses = new ConcurrentHashMap<IParseStateCacheKey, SharedParse>();
+
+	/**
+	 * Runs the async parses. Created on the first async request. Access should be synchronized with fExecutorLock.
+	 */
+	private ExecutorService fExecutor;
+
+	private final Object fExecutorLock = new Object();
+
 	/**
 	 * A parse cache. Keyed by combo of content type and source hash, holds IParseRootNode result. Retains most recently
 	 * used ASTs.
 	 */
 	private LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> fParseCache;
 
+	/**
+	 * Parse results kept on disk across sessions (null when disabled). Only used for the parses which ask for it (see
+	 * {@link #parse(String, IParseState, boolean)}). Created on first use, access should be synchronized with
+	 * fParseCacheLock.
+	 */
+	private PersistentParseCache fPersistentCache;
+	private boolean fPersistentCacheInitialized;
+
 	/**
 	 * Object providing access to the pool provider.
 	 */
@@ -144,6 +356,11 @@ public class ParsingEngine
 	 */
 	private final Object fParseCacheLock = new Object();
 
+	/**
+	 * The directory (in the plugin state location) holding the persistent parse cache.
+	 */
+	private static final String PERSISTENT_CACHE_DIR = "parseCache"; //$NON-NLS-1$
+
 	/**
 	 * Default for fMinimunNumberOfCharsToEnterCache.
 	 */
@@ -188,6 +405,14 @@ public class ParsingEngine
 	public void dispose()
 	{
 		fParseCache = null;
+		synchronized (fExecutorLock)
+		{
+			if (fExecutor != null)
+			{
+				fExecutor.shutdownNow();
+				fExecutor = null;
+			}
+		}
 	}
 
 	/**
@@ -204,6 +429,21 @@ public class ParsingEngine
 
 	public ParseResult parse(String contentTypeId, IParseState parseState) throws Exception // $codepro.audit.disable
 																							// declaredExceptions
+	{
+		return parse(contentTypeId, parseState, false);
+	}
+
+	/**
+	 * Parses the given state, optionally looking for the result in the persistent (on disk) parse cache first and
+	 * storing it there after the parse. Meant for builds, which parse the same unchanged files after every restart
+	 * (editors parse many transient versions of a file which aren't worth storing).
+	 * <p>
+	 * The persistent cache is only used if enabled in the preferences (see
+	 * {@link IPreferenceConstants#PERSISTENT_PARSE_CACHE_SIZE}) and for plain parse states (whole sources without
+	 * skipped ranges nor parse options in the cache key).
+	 */
+	public ParseResult parse(String contentTypeId, IParseState parseState, boolean usePersistentCache)
+			throws Exception // $codepro.audit.disable declaredExceptions
 	{
 		try
 		{
@@ -229,172 +469,352 @@ public class ParsingEngine
 				return noCacheParse(contentTypeId, parseState);
 			}
 
-			IParseStateCacheKey newParseStateKey = parseState.getCacheKey(contentTypeId);
-			CacheValue cacheValue = null;
-			LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> parseCache = fParseCache;
-			if (parseCache == null)
-			{
-				return ParseResult.EMPTY; // already disposed.
-			}
+			return cachedParse(contentTypeId, parseState, sourceLen, usePersistentCache);
+		}
+		finally
+		{
+			// Clean up source inside parse state to help reduce RAM usage...
+			parseState.clearEditState();
+		}
 
-			boolean getResultFromCache = false;
-			boolean traceEnabled = plugin != null && IdeLog.isTraceEnabled(plugin, IDebugScopes.PARSING);
-			IParserPool pool = null;
-			IParser parser = null;
-			try
+	}
+
+	/**
+	 * Parses through the cache, or waits for a parse of the same key that's already in progress.
+	 */
+	private ParseResult cachedParse(String contentTypeId, IParseState parseState, int sourceLen,
+			boolean usePersistentCache) throws Exception // $codepro.audit.disable declaredExceptions
+	{
+		ParsingPlugin plugin = ParsingPlugin.getDefault();
+		IParseStateCacheKey newParseStateKey = parseState.getCacheKey(contentTypeId);
+		CacheValue cacheValue = null;
+		LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> parseCache = fParseCache;
+		if (parseCache == null)
+		{
+			return ParseResult.EMPTY; // already disposed.
+		}
+
+		boolean getResultFromCache = false;
+		boolean traceEnabled = plugin != null && IdeLog.isTraceEnabled(plugin, IDebugScopes.PARSING);
+		IParserPool pool = null;
+		IParser parser = null;
+		try
+		{
+			synchronized (fParseCacheLock)
 			{
-				synchronized (fParseCacheLock)
+				cacheValue = parseCache.get(newParseStateKey);
+
+				if (cacheValue != null && !cacheValue.isFailed() && !cacheValue.requiresReparse(newParseStateKey))
 				{
-					cacheValue = parseCache.get(newParseStateKey);
 
-					if (cacheValue != null && !cacheValue.requiresReparse(newParseStateKey))
+					if (traceEnabled)
 					{
+						IdeLog.logTrace(plugin,
+								MessageFormat.format("Parsing cache hit for key {0}", newParseStateKey), //$NON-NLS-1$
+								IDebugScopes.PARSING);
+					}
 
+					// Cache hit... it may still be in progress, but the cacheValue.getResult should handle that
+					// (but we'll get out of the synchronized block to actually do that).
+					getResultFromCache = true;
+				}
+				else
+				{
+					if (cacheValue == null)
+					{
 						if (traceEnabled)
 						{
 							IdeLog.logTrace(plugin,
-									MessageFormat.format("Parsing cache hit for key {0}", newParseStateKey), //$NON-NLS-1$
+									MessageFormat.format("Parsing cache miss for key {0}", newParseStateKey), //$NON-NLS-1$
 									IDebugScopes.PARSING);
 						}
-
-						// Cache hit... it may still be in progress, but the cacheValue.getResult should handle that
-						// (but we'll get out of the synchronized block to actually do that).
-						getResultFromCache = true;
 					}
-					else
+					else if (cacheValue.isFailed() || cacheValue.requiresReparse(newParseStateKey))
 					{
-						if (cacheValue == null)
-						{
-							if (traceEnabled)
-							{
-								IdeLog.logTrace(plugin,
-										MessageFormat.format("Parsing cache miss for key {0}", newParseStateKey), //$NON-NLS-1$
-										IDebugScopes.PARSING);
-							}
-						}
-						else if (cacheValue != null && cacheValue.requiresReparse(newParseStateKey))
+						if (traceEnabled)
 						{
-							if (traceEnabled)
-							{
-								IdeLog.logTrace(plugin, MessageFormat.format(
-										"Parsing cache hit for key {0}, but reparse required", newParseStateKey), //$NON-NLS-1$
-										IDebugScopes.PARSING);
-							}
+							IdeLog.logTrace(plugin, MessageFormat.format(
+									"Parsing cache hit for key {0}, but reparse required", newParseStateKey), //$NON-NLS-1$
+									IDebugScopes.PARSING);
 						}
+					}
 
-						// No cache-hit, we'll do the parsing here.
-						pool = fParserPoolProvider.getParserPool(contentTypeId);
+					// No cache-hit, we'll do the parsing here.
+					pool = fParserPoolProvider.getParserPool(contentTypeId);
 
-						// If we won't be able to do the parsing because we're unable to get the pool or the
-						// parser, don't even register the cache value (so that no one listens for something thot
-						// won't yield a correct return anyways).
-						if (pool == null)
-						{
-							if (IdeLog.isInfoEnabled(plugin, null))
-							{
-								String message = MessageFormat.format(
-										Messages.ParserPoolFactory_Cannot_Acquire_Parser_Pool, contentTypeId);
-								IdeLog.logInfo(plugin, message, IDebugScopes.PARSING);
-							}
-							return ParseResult.EMPTY;
-						}
-						parser = pool.checkOut();
-						if (parser == null)
+					// If we won't be able to do the parsing because we're unable to get the pool or the
+					// parser, don't even register the cache value (so that no one listens for something thot
+					// won't yield a correct return anyways).
+					if (pool == null)
+					{
+						if (IdeLog.isInfoEnabled(plugin, null))
 						{
-							String message = MessageFormat.format(Messages.ParserPoolFactory_Cannot_Acquire_Parser,
-									contentTypeId);
-							IdeLog.logError(plugin, message, IDebugScopes.PARSING);
-							return ParseResult.EMPTY;
+							String message = MessageFormat.format(
+									Messages.ParserPoolFactory_Cannot_Acquire_Parser_Pool, contentTypeId);
+							IdeLog.logInfo(plugin, message, IDebugScopes.PARSING);
 						}
-
-						// Ok, we're in a state where either there's no one parsing or the currently cached value does
-						// not match the one in the cache for this key (i.e.: parse without comments and later with
-						// comments).
-						cacheValue = new CacheValue(newParseStateKey, sourceLen);
-						parseCache.put(newParseStateKey, cacheValue);
-						// Important: after we put it here (in the situation getResultFromCache), we MUST have a result
-						// cacheValue.setResult(), otherwise we may end up with a listener waiting eternally for a
-						// result.
+						return ParseResult.EMPTY;
+					}
+					parser = pool.checkOut();
+					if (parser == null)
+					{
+						String message = MessageFormat.format(Messages.ParserPoolFactory_Cannot_Acquire_Parser,
+								contentTypeId);
+						IdeLog.logError(plugin, message, IDebugScopes.PARSING);
+						return ParseResult.EMPTY;
 					}
+
+					// Ok, we're in a state where either there's no one parsing or the currently cached value does
+					// not match the one in the cache for this key (i.e.: parse without comments and later with
+					// comments).
+					cacheValue = new CacheValue(newParseStateKey, sourceLen);
+					parseCache.put(newParseStateKey, cacheValue);
+					// Important: after we put it here (in the situation getResultFromCache), we MUST have a result
+					// cacheValue.setResult(), otherwise we may end up with a listener waiting eternally for a
+					// result.
 				}
 			}
-			catch (Throwable e)
+		}
+		catch (Throwable e)
+		{
+			if (!getResultFromCache)
 			{
-				if (!getResultFromCache)
+				// Clean up if something bad happened at somewhere there (to avoid any possible deadlock).
+				if (pool != null && parser != null)
 				{
-					// Clean up if something bad happened at somewhere there (to avoid any possible deadlock).
-					if (pool != null && parser != null)
+					try
 					{
-						try
-						{
-							pool.checkIn(parser);
-						}
-						catch (Throwable e1)
-						{
-							// Don't even log this one (we're already in a bad state if something happened and we'll
-							// throw the original exception).
-						}
+						pool.checkIn(parser);
 					}
-					if (cacheValue != null)
+					catch (Throwable e1)
 					{
-						// We really HAVE to call this one to avoid possible deadlocks.
-						cacheValue.setResult(ParseResult.EMPTY);
+						// Don't even log this one (we're already in a bad state if something happened and we'll
+						// throw the original exception).
 					}
 				}
-				throw new RuntimeException(e);
-
+				if (cacheValue != null)
+				{
+					// We really HAVE to call this one to avoid possible deadlocks.
+					cacheValue.setResult(ParseResult.EMPTY, true);
+				}
 			}
+			throw new RuntimeException(e);
+
+		}
 
-			if (getResultFromCache)
+		if (getResultFromCache)
+		{
+			ParseResult result = cacheValue.getResult();
+			if (!cacheValue.isFailed())
 			{
-				return cacheValue.getResult();
+				return result;
 			}
-			else
+			// The parse we waited for was cancelled or threw: its partial result isn't ours to use. Go through the
+			// cache again, which replaces the failed value (or waits for whoever replaced it first) and parses anew.
+			return cachedParse(contentTypeId, parseState, sourceLen, usePersistentCache);
+		}
+		else
+		{
+			ParseResult result = ParseResult.EMPTY;
+			boolean completed = false;
+			PersistentParseCache persistentCache = null;
+			String parserVersion = null;
+			String source = parseState.getSource();
+			try
 			{
-				ParseResult result = ParseResult.EMPTY;
 				try
 				{
-					try
+					if (traceEnabled)
 					{
-						if (traceEnabled)
-						{
-							IdeLog.logTrace(plugin, MessageFormat.format(
-									"Parsing content type {0}, length {1}, source ''{2}''", contentTypeId, //$NON-NLS-1$
-									parseState.getSource().length(), StringUtil.truncate(parseState.getSource(), 100)
-											.replaceAll("\\r|\\n", " ")), //$NON-NLS-1$ //$NON-NLS-2$
-									IDebugScopes.PARSING);
-						}
-
-						result = parser.parse(parseState);
+						IdeLog.logTrace(plugin, MessageFormat.format(
+								"Parsing content type {0}, length {1}, source ''{2}''", contentTypeId, //$NON-NLS-1$
+								parseState.getSource().length(), StringUtil.truncate(parseState.getSource(), 100)
+										.replaceAll("\\r|\\n", " ")), //$NON-NLS-1$ //$NON-NLS-2$
+								IDebugScopes.PARSING);
+					}
 
+					if (usePersistentCache && isPersistable(parseState, newParseStateKey))
+					{
+						persistentCache = getPersistentCache();
+						parserVersion = getParserVersion(parser);
 					}
-					finally
+					ParseResult stored = (persistentCache == null) ? null : persistentCache.get(contentTypeId,
+							parserVersion, source, parser.getClass().getClassLoader());
+					if (stored != null)
 					{
-						pool.checkIn(parser);
+						result = stored;
+						completed = true;
+						persistentCache = null; // nothing new to store
 					}
-					synchronized (fParseCacheLock)
+					else
 					{
-						// Make a get just to update time stamp or change it from the soft map back into the main LRU.
-						// Done because we may have the situation where the a main parse has multiple sub-parses, and
-						// it's more important to persist the main parse than the sub-parses.
-						parseCache.get(newParseStateKey);
+						result = parser.parse(parseState);
+						// A parser may bail out early with a partial result when cancelled: don't keep that one.
+						completed = !parseState.getProgressMonitor().isCanceled();
 					}
 				}
 				finally
 				{
-					// Set the result even if this means setting null (otherwise it's possible that some listener
-					// deadlocks because of that).
-					cacheValue.setResult(result);
+					pool.checkIn(parser);
+				}
+				synchronized (fParseCacheLock)
+				{
+					// Make a get just to update time stamp or change it from the soft map back into the main LRU.
+					// Done because we may have the situation where the a main parse has multiple sub-parses, and
+					// it's more important to persist the main parse than the sub-parses.
+					parseCache.get(newParseStateKey);
 				}
-				return result;
 			}
+			finally
+			{
+				// Set the result even if this means setting null (otherwise it's possible that some listener
+				// deadlocks because of that). A parse that threw or was cancelled is marked as failed so that it's
+				// not served to later requests.
+				cacheValue.setResult(result, !completed);
+			}
+			if (completed && persistentCache != null)
+			{
+				// Done after setting the result so that whoever is waiting for it doesn't wait for the write too.
+				persistentCache.put(contentTypeId, parserVersion, source, result);
+			}
+			return result;
 		}
-		finally
+	}
+
+	/**
+	 * @return the version of the given parser for the persistent cache: its class and the version of the bundle it
+	 *         comes from, which changes with every build of that bundle (and so with its node classes).
+	 */
+	private static String getParserVersion(IParser parser)
+	{
+		Class<?> parserClass = parser.getClass();
+		Bundle bundle = FrameworkUtil.getBundle(parserClass);
+		if (bundle == null)
 		{
-			// Clean up source inside parse state to help reduce RAM usage...
-			parseState.clearEditState();
+			return parserClass.getName();
+		}
+		return parserClass.getName() + '@' + bundle.getVersion();
+	}
+
+	/**
+	 * @return true if the result of parsing the given state only depends on the source, so it can be stored in the
+	 *         persistent cache.
+	 */
+	private static boolean isPersistable(IParseState parseState, IParseStateCacheKey key)
+	{
+		return parseState.getStartingOffset() == 0 && parseState.getSkippedRanges() == null
+				&& key.getClass() == ParseStateCacheKey.class;
+	}
+
+	/**
+	 * @return the persistent parse cache or null if it's disabled.
+	 */
+	private PersistentParseCache getPersistentCache()
+	{
+		synchronized (fParseCacheLock)
+		{
+			if (!fPersistentCacheInitialized)
+			{
+				fPersistentCacheInitialized = true;
+				ParsingPlugin plugin = ParsingPlugin.getDefault();
+				int size = (plugin == null) ? 0 : Platform.getPreferencesService().getInt(ParsingPlugin.PLUGIN_ID,
+						IPreferenceConstants.PERSISTENT_PARSE_CACHE_SIZE, 0, null);
+				if (size > 0)
+				{
+					fPersistentCache = new PersistentParseCache(plugin.getStateLocation().append(PERSISTENT_CACHE_DIR)
+							.toFile(), size * 1024L * 1024L);
+				}
+			}
+			return fPersistentCache;
+		}
+	}
+
+	/**
+	 * Sets the persistent parse cache to use instead of the one configured in the preferences (for testing purposes).
+	 */
+	public void setPersistentCache(PersistentParseCache persistentCache)
+	{
+		synchronized (fParseCacheLock)
+		{
+			fPersistentCacheInitialized = true;
+			fPersistentCache = persistentCache;
 		}
+	}
 
+	/**
+	 * Requests a parse to be done in a background thread. Requests for a cache key which is already being parsed
+	 * asynchronously share that parse (and its result) instead of starting a new one.
+	 * <p>
+	 * Cancelling the returned future only affects the caller: the parse goes on while any other requestor is still
+	 * waiting for it, and is cancelled (through the progress monitor set in its parse state) when the last one gives
+	 * up. Note that the progress monitor of the given parse state is replaced by the one controlling the shared parse.
+	 * 
+	 * @return a future with the result of the parse. Its get() throws an ExecutionException wrapping any error thrown by
+	 *         the parser.
+	 */
+	public Future<ParseResult> parseAsync(String contentTypeId, IParseState parseState)
+	{
+		if (fParseCache == null)
+		{
+			// already disposed.
+			ParseFuture future = new ParseFuture(null);
+			future.complete(ParseResult.EMPTY);
+			return future;
+		}
+
+		IParseStateCacheKey key = (contentTypeId == null) ? null : parseState.getCacheKey(contentTypeId);
+		while (true)
+		{
+			SharedParse current = (key == null) ? null : fInFlightParses.get(key);
+			if (current != null && !current.fKey.requiresReparse(key))
+			{
+				ParseFuture future = current.join();
+				if (future != null)
+				{
+					return future;
+				}
+				// Finished or cancelled in the meanwhile: remove it so that we can register a new one.
+				fInFlightParses.remove(key, current);
+				continue;
+			}
+
+			SharedParse sharedParse = new SharedParse(contentTypeId, parseState, key);
+			ParseFuture future = sharedParse.join();
+			if (key != null)
+			{
+				boolean registered = (current == null) ? fInFlightParses.putIfAbsent(key, sharedParse) == null
+						: fInFlightParses.replace(key, current, sharedParse);
+				if (!registered)
+				{
+					// Someone else registered a parse for the key first: try to join it.
+					continue;
+				}
+			}
+			getExecutor().execute(sharedParse);
+			return future;
+		}
+	}
+
+	private ExecutorService getExecutor()
+	{
+		synchronized (fExecutorLock)
+		{
+			if (fExecutor == null)
+			{
+				final AtomicInteger count = new AtomicInteger();
+				fExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+						new ThreadFactory()
+						{
+							public Thread newThread(Runnable runnable)
+							{
+								Thread thread = new Thread(runnable, "Parser " + count.incrementAndGet()); //$NON-NLS-1$
+								thread.setDaemon(true);
+								return thread;
+							}
+						});
+			}
+			return fExecutor;
+		}
 	}
 
 	private ParseResult noCacheParse(String contentTypeId, IParseState parseState) throws Exception
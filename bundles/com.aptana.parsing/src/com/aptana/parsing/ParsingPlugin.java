@@ -7,7 +7,11 @@
  */
 package com.aptana.parsing;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Plugin;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -34,6 +38,19 @@ public class ParsingPlugin extends Plugin
 	{
 		super.start(context);
 		PLUGIN = this;
+
+		Job job = new Job("Warming up parsers") //$NON-NLS-1$
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				ParserPoolFactory.getInstance().warmUp(monitor);
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.setPriority(Job.DECORATE);
+		job.schedule();
 	}
 
 	/*
@@ -7,6 +7,8 @@
  */
 package com.aptana.parsing.ast;
 
+import java.util.List;
+
 public interface IParseRootNode extends IParseNode
 {
 
@@ -16,4 +18,16 @@ public interface IParseRootNode extends IParseNode
 	 * @return an array of comment nodes
 	 */
 	public IParseNode[] getCommentNodes();
+
+	/**
+	 * Returns the nodes (at any depth) whose range overlaps the given one. Parents come before their children and
+	 * siblings are in document order.
+	 * 
+	 * @param startOffset
+	 *            the start of the range (inclusive)
+	 * @param endOffset
+	 *            the end of the range (inclusive)
+	 * @return a list of nodes, empty if none overlaps the range
+	 */
+	public List<IParseNode> getNodesOverlapping(int startOffset, int endOffset);
 }
@@ -17,6 +17,8 @@ import beaver.Symbol;
  */
 public class ParseError extends Problem implements IParseError
 {
+	private static final long serialVersionUID = 1L;
+
 	private String fLanguage;
 
 	public ParseError(String language, Symbol symbol, Severity severity)
@@ -19,8 +19,10 @@ import com.aptana.parsing.lexer.Range;
 import beaver.spec.ast.Node;
 import beaver.spec.ast.TreeWalker;
 
-public abstract class ParseNode extends Node implements IParseNode
+public abstract class ParseNode extends Node implements IParseNode, Cloneable
 {
+	private static final long serialVersionUID = 1L;
+
 	protected static final class NameNode implements INameNode
 	{
 		private final String fName;
@@ -116,6 +118,34 @@ public abstract class ParseNode extends Node implements IParseNode
 		setLocation(getStart() + offset, getEnd() + offset);
 	}
 
+	/**
+	 * Returns a copy of this node with the same location and children, and no parent. The copy has its own list of
+	 * children, so replacing them leaves this node alone, but the children themselves are shared until they're
+	 * replaced as well (and they keep this node as their parent).
+	 * 
+	 * @return
+	 */
+	public ParseNode copy()
+	{
+		try
+		{
+			ParseNode copy = (ParseNode) super.clone();
+			copy.fChildren = NO_CHILDREN;
+			if (fChildrenCount > 0)
+			{
+				copy.fChildren = new IParseNode[fChildrenCount];
+				System.arraycopy(fChildren, 0, copy.fChildren, 0, fChildrenCount);
+			}
+			copy.fParent = null;
+			return copy;
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// can't happen, nodes are cloneable
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.parsing.lexer.IRange#contains(int)
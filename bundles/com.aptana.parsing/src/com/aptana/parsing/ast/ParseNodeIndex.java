@@ -0,0 +1,263 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.ast;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers offset lookups on a parse tree without scanning all the siblings at each level. The children of nodes with
+ * many children are kept sorted by offset (built on demand, the first time a lookup goes through the node), so that
+ * finding the child containing an offset is a binary search.
+ * <p>
+ * The results are the same as {@link ParseNode#getNodeAtOffset(int)}: nodes whose children overlap each other are
+ * scanned linearly and nodes overriding getNodeAtOffset() are asked directly. A node whose number of children changed
+ * since it was indexed is indexed again; other changes must invalidate the whole index (see
+ * {@link ParseRootNode#invalidateIndex()}).
+ */
+class ParseNodeIndex
+{
+	/**
+	 * Nodes with up to this number of children are just scanned.
+	 */
+	private static final int LINEAR_SCAN_THRESHOLD = 8;
+
+	/**
+	 * Whether a node class overrides getNodeAtOffset() (in which case we can't go through its children ourselves).
+	 */
+	private static final Map<Class<?>, Boolean> OVERRIDES_LOOKUP = new ConcurrentHashMap<Class<?>, Boolean>();
+
+	/**
+	 * The children of an indexed node, with the ones that can contain an offset sorted by offset (if they don't
+	 * overlap).
+	 */
+	private static class Entry
+	{
+		final int childCount;
+		final IParseNode[] sortedChildren;
+
+		Entry(int childCount, IParseNode[] sortedChildren)
+		{
+			this.childCount = childCount;
+			this.sortedChildren = sortedChildren;
+		}
+	}
+
+	private final IParseNode fRoot;
+	private final Map<IParseNode, Entry> fEntries;
+
+	ParseNodeIndex(IParseNode root)
+	{
+		fRoot = root;
+		fEntries = new IdentityHashMap<IParseNode, Entry>();
+	}
+
+	/**
+	 * @see IParseNode#getNodeAtOffset(int)
+	 */
+	IParseNode getNodeAtOffset(int offset)
+	{
+		if (!fRoot.contains(offset))
+		{
+			return null;
+		}
+
+		IParseNode node = fRoot;
+		while (true)
+		{
+			IParseNode child = getChildAtOffset(node, offset);
+			if (child == null)
+			{
+				return node;
+			}
+			if (overridesLookup(child))
+			{
+				IParseNode result = child.getNodeAtOffset(offset);
+				return (result != null) ? result : node;
+			}
+			node = child;
+		}
+	}
+
+	/**
+	 * Returns the nodes overlapping the given range (both ends inclusive), in the order they appear in the tree (parents
+	 * before their children).
+	 */
+	List<IParseNode> getNodesOverlapping(int startOffset, int endOffset)
+	{
+		List<IParseNode> result = new ArrayList<IParseNode>();
+		if (overlaps(fRoot, startOffset, endOffset))
+		{
+			result.add(fRoot);
+			addNodesOverlapping(fRoot, startOffset, endOffset, result);
+		}
+		return result;
+	}
+
+	private void addNodesOverlapping(IParseNode node, int startOffset, int endOffset, List<IParseNode> result)
+	{
+		Entry entry = getEntry(node);
+		if (entry == null || entry.sortedChildren == null)
+		{
+			for (IParseNode child : node.getChildren())
+			{
+				if (overlaps(child, startOffset, endOffset))
+				{
+					result.add(child);
+					addNodesOverlapping(child, startOffset, endOffset, result);
+				}
+			}
+			return;
+		}
+
+		// skip the children ending before the range, then take them until one starts after it
+		IParseNode[] children = entry.sortedChildren;
+		int low = 0;
+		int high = children.length;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (children[middle].getEndingOffset() < startOffset)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		for (int i = low; i < children.length && children[i].getStartingOffset() <= endOffset; i++)
+		{
+			result.add(children[i]);
+			addNodesOverlapping(children[i], startOffset, endOffset, result);
+		}
+	}
+
+	/**
+	 * @return the first child of the node containing the offset or null if there's none.
+	 */
+	private IParseNode getChildAtOffset(IParseNode node, int offset)
+	{
+		Entry entry = getEntry(node);
+		if (entry == null || entry.sortedChildren == null)
+		{
+			for (IParseNode child : node.getChildren())
+			{
+				if (child.contains(offset))
+				{
+					return child;
+				}
+			}
+			return null;
+		}
+
+		IParseNode[] children = entry.sortedChildren;
+		int low = 0;
+		int high = children.length - 1;
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			IParseNode child = children[middle];
+			if (child.getEndingOffset() < offset)
+			{
+				low = middle + 1;
+			}
+			else if (child.getStartingOffset() > offset)
+			{
+				high = middle - 1;
+			}
+			else
+			{
+				return child;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the entry for the node or null if it has too few children to be worth one.
+	 */
+	private Entry getEntry(IParseNode node)
+	{
+		int childCount = node.getChildCount();
+		if (childCount <= LINEAR_SCAN_THRESHOLD)
+		{
+			return null;
+		}
+
+		synchronized (fEntries)
+		{
+			Entry entry = fEntries.get(node);
+			if (entry == null || entry.childCount != childCount)
+			{
+				entry = new Entry(childCount, sortChildren(node.getChildren()));
+				fEntries.put(node, entry);
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * @return the children which may contain an offset (in the same order) or null if they overlap or aren't in
+	 *         offset order (in which case we can't binary search them).
+	 */
+	private static IParseNode[] sortChildren(IParseNode[] children)
+	{
+		List<IParseNode> result = new ArrayList<IParseNode>(children.length);
+		int lastEnd = Integer.MIN_VALUE;
+		for (IParseNode child : children)
+		{
+			int start = child.getStartingOffset();
+			int end = child.getEndingOffset();
+			if (end < start)
+			{
+				// empty nodes never contain an offset
+				continue;
+			}
+			if (start <= lastEnd)
+			{
+				return null;
+			}
+			result.add(child);
+			lastEnd = end;
+		}
+		return result.toArray(new IParseNode[result.size()]);
+	}
+
+	private static boolean overlaps(IParseNode node, int startOffset, int endOffset)
+	{
+		return node.getStartingOffset() <= endOffset && startOffset <= node.getEndingOffset()
+				&& node.getStartingOffset() <= node.getEndingOffset();
+	}
+
+	private static boolean overridesLookup(IParseNode node)
+	{
+		if (!(node instanceof ParseNode))
+		{
+			return true;
+		}
+		Class<?> nodeClass = node.getClass();
+		Boolean result = OVERRIDES_LOOKUP.get(nodeClass);
+		if (result == null)
+		{
+			try
+			{
+				result = nodeClass.getMethod("getNodeAtOffset", int.class).getDeclaringClass() != ParseNode.class; //$NON-NLS-1$
+			}
+			catch (NoSuchMethodException e)
+			{
+				result = Boolean.TRUE;
+			}
+			OVERRIDES_LOOKUP.put(nodeClass, result);
+		}
+		return result;
+	}
+}
@@ -14,8 +14,15 @@ import beaver.Symbol;
 
 public abstract class ParseRootNode extends ParseNode implements IParseRootNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private IParseNode[] fComments;
 
+	/**
+	 * Built on the first offset lookup and dropped whenever the children of the root change.
+	 */
+	private transient volatile ParseNodeIndex fIndex;
+
 	/**
 	 * Constructor to be used if the start will be the start of the first node and the end the end of the last node.
 	 * 
@@ -96,4 +103,65 @@ public abstract class ParseRootNode extends ParseNode implements IParseRootNode
 	{
 		fComments = comments;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#getNodeAtOffset(int)
+	 */
+	@Override
+	public IParseNode getNodeAtOffset(int offset)
+	{
+		return getOffsetIndex().getNodeAtOffset(offset);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseRootNode#getNodesOverlapping(int, int)
+	 */
+	public List<IParseNode> getNodesOverlapping(int startOffset, int endOffset)
+	{
+		return getOffsetIndex().getNodesOverlapping(startOffset, endOffset);
+	}
+
+	private ParseNodeIndex getOffsetIndex()
+	{
+		ParseNodeIndex index = fIndex;
+		if (index == null)
+		{
+			index = new ParseNodeIndex(this);
+			fIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Drops the offset index, so that it's rebuilt on the next lookup. Changes to the children of the root do it
+	 * automatically, but whoever modifies the tree deeper without changing the number of children of the modified
+	 * node (i.e.: replacing a child) must call it.
+	 */
+	public void invalidateIndex()
+	{
+		fIndex = null;
+	}
+
+	@Override
+	public void addChild(IParseNode child)
+	{
+		super.addChild(child);
+		invalidateIndex();
+	}
+
+	@Override
+	public void replaceChild(int index, IParseNode child) throws IndexOutOfBoundsException
+	{
+		super.replaceChild(index, child);
+		invalidateIndex();
+	}
+
+	@Override
+	public void setChildren(IParseNode[] children)
+	{
+		super.setChildren(children);
+		invalidateIndex();
+	}
 }
@@ -0,0 +1,519 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.xpath;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.aptana.parsing.ast.IParseNode;
+
+/**
+ * A path expression over parse nodes, compiled once and then evaluated with a single walk of the tree. It supports the
+ * subset of XPath used to select nodes by element name:
+ * <ul>
+ * <li>steps separated by "/" (children) or "//" (descendants), optionally starting with "/" or "//" to start from the
+ * root of the tree rather than from the context node</li>
+ * <li>element names or "*" as node tests</li>
+ * <li>positional predicates: "[2]" or "[position() = 2]"</li>
+ * <li>unions of paths with "|"</li>
+ * </ul>
+ * For instance, "invoke[1]/group/function|invoke[1]/function". The paths of a union are merged where they share their
+ * first steps, and a branch of the tree is only visited while some step may still match below it. Nodes are returned
+ * in document order, each one once, as {@link ParseNodeXPath} would.
+ * <p>
+ * Queries are immutable and may be shared between threads.
+ */
+public final class ParseNodeQuery
+{
+	private static final String ANY = "*"; //$NON-NLS-1$
+	private static final String POSITION = "position()"; //$NON-NLS-1$
+
+	/**
+	 * A step of one or more paths. The steps following it in those paths are its next steps.
+	 */
+	private static class Step
+	{
+		/**
+		 * The element name to match or null to match any node.
+		 */
+		private final String name;
+
+		/**
+		 * The (1-based) position the node must have among the nodes this step matches in its parent, or 0.
+		 */
+		private final int position;
+
+		/**
+		 * Whether the step matches descendants of the context node rather than only its children.
+		 */
+		private final boolean descendant;
+
+		private final List<Step> next = new ArrayList<Step>(1);
+
+		/**
+		 * Whether the step is the last one of a path, in which case the nodes it matches are selected.
+		 */
+		private boolean selects;
+
+		Step(String name, int position, boolean descendant)
+		{
+			this.name = name;
+			this.position = position;
+			this.descendant = descendant;
+		}
+
+		boolean isSameAs(String name, int position, boolean descendant)
+		{
+			return (this.name == null ? name == null : this.name.equals(name)) && this.position == position
+					&& this.descendant == descendant;
+		}
+	}
+
+	private final String fExpression;
+	private final boolean fCaseInsensitive;
+
+	/**
+	 * The first steps of the paths which start from the context node.
+	 */
+	private final List<Step> fRelative = new ArrayList<Step>(1);
+
+	/**
+	 * The first steps of the paths which start from the root of the tree.
+	 */
+	private final List<Step> fAbsolute = new ArrayList<Step>(1);
+
+	/**
+	 * Compiles a path expression.
+	 *
+	 * @param expression
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the expression isn't valid or uses something which isn't supported.
+	 */
+	public static ParseNodeQuery compile(String expression)
+	{
+		return new ParseNodeQuery(expression, false);
+	}
+
+	/**
+	 * Compiles a path expression.
+	 *
+	 * @param expression
+	 * @param caseInsensitive
+	 *            whether element names are matched regardless of case.
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the expression isn't valid or uses something which isn't supported.
+	 */
+	public static ParseNodeQuery compile(String expression, boolean caseInsensitive)
+	{
+		return new ParseNodeQuery(expression, caseInsensitive);
+	}
+
+	private ParseNodeQuery(String expression, boolean caseInsensitive)
+	{
+		if (expression == null)
+		{
+			throw new IllegalArgumentException("No expression"); //$NON-NLS-1$
+		}
+		fExpression = expression;
+		fCaseInsensitive = caseInsensitive;
+
+		Parser parser = new Parser(expression);
+		do
+		{
+			parser.parsePath();
+		}
+		while (parser.skip('|'));
+		if (!parser.atEnd())
+		{
+			throw parser.error();
+		}
+	}
+
+	/**
+	 * Returns the nodes selected by the expression.
+	 *
+	 * @param context
+	 *            the node relative paths start from.
+	 * @return the nodes in document order.
+	 */
+	public List<IParseNode> select(IParseNode context)
+	{
+		return select(context, IParseNode.class);
+	}
+
+	/**
+	 * Returns the nodes of a type selected by the expression.
+	 *
+	 * @param context
+	 *            the node relative paths start from.
+	 * @param type
+	 *            the type of the nodes to return; other nodes are skipped.
+	 * @return the nodes in document order.
+	 */
+	public <T> List<T> select(IParseNode context, Class<T> type)
+	{
+		if (context == null)
+		{
+			return Collections.emptyList();
+		}
+		List<T> result = new ArrayList<T>();
+		if (!fAbsolute.isEmpty())
+		{
+			IParseNode root = context;
+			while (root.getParent() != null)
+			{
+				root = root.getParent();
+			}
+			if (root == context)
+			{
+				collect(context, merge(fRelative, fAbsolute), type, result);
+				return result;
+			}
+			if (!fRelative.isEmpty())
+			{
+				// the results of both need to be put in document order
+				List<T> relative = new ArrayList<T>();
+				collect(context, fRelative, type, relative);
+				collect(root, fAbsolute, type, result);
+				return mergeInDocumentOrder(result, relative);
+			}
+			collect(root, fAbsolute, type, result);
+			return result;
+		}
+		collect(context, fRelative, type, result);
+		return result;
+	}
+
+	/**
+	 * Matches the steps against the children of a node, going down the tree for the next steps of those that match.
+	 */
+	private <T> void collect(IParseNode node, List<Step> steps, Class<T> type, List<T> result)
+	{
+		int stepCount = steps.size();
+		int[] matched = null;
+		for (IParseNode child : node.getChildren())
+		{
+			String name = null;
+			boolean selected = false;
+			List<Step> childSteps = null;
+			for (int i = 0; i < stepCount; i++)
+			{
+				Step step = steps.get(i);
+				if (step.descendant)
+				{
+					// it may match further down too
+					childSteps = add(childSteps, step);
+				}
+				if (step.name != null)
+				{
+					if (name == null)
+					{
+						name = child.getElementName();
+					}
+					if (!(fCaseInsensitive ? step.name.equalsIgnoreCase(name) : step.name.equals(name)))
+					{
+						continue;
+					}
+				}
+				if (step.position > 0)
+				{
+					if (matched == null)
+					{
+						matched = new int[stepCount];
+					}
+					if (++matched[i] != step.position)
+					{
+						continue;
+					}
+				}
+				selected |= step.selects;
+				for (Step next : step.next)
+				{
+					childSteps = add(childSteps, next);
+				}
+			}
+			if (selected && type.isInstance(child))
+			{
+				result.add(type.cast(child));
+			}
+			if (childSteps != null)
+			{
+				collect(child, childSteps, type, result);
+			}
+		}
+	}
+
+	private static List<Step> add(List<Step> steps, Step step)
+	{
+		if (steps == null)
+		{
+			steps = new ArrayList<Step>(2);
+		}
+		else if (steps.contains(step))
+		{
+			return steps;
+		}
+		steps.add(step);
+		return steps;
+	}
+
+	private static List<Step> merge(List<Step> steps, List<Step> others)
+	{
+		List<Step> result = new ArrayList<Step>(steps);
+		for (Step step : others)
+		{
+			add(result, step);
+		}
+		return result;
+	}
+
+	private static <T> List<T> mergeInDocumentOrder(List<T> nodes, List<T> others)
+	{
+		List<T> result = new ArrayList<T>(nodes.size() + others.size());
+		int i = 0;
+		int j = 0;
+		while (i < nodes.size() || j < others.size())
+		{
+			if (j == others.size())
+			{
+				result.add(nodes.get(i++));
+				continue;
+			}
+			if (i == nodes.size())
+			{
+				result.add(others.get(j++));
+				continue;
+			}
+			T node = nodes.get(i);
+			T other = others.get(j);
+			if (node == other)
+			{
+				result.add(node);
+				i++;
+				j++;
+			}
+			else if (comesBefore((IParseNode) node, (IParseNode) other))
+			{
+				result.add(nodes.get(i++));
+			}
+			else
+			{
+				result.add(others.get(j++));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if the first node comes before the second one in document order.
+	 */
+	private static boolean comesBefore(IParseNode node, IParseNode other)
+	{
+		List<IParseNode> path = getPath(node);
+		List<IParseNode> otherPath = getPath(other);
+		int length = Math.min(path.size(), otherPath.size());
+		for (int i = 0; i < length; i++)
+		{
+			if (path.get(i) != otherPath.get(i))
+			{
+				// siblings under the same parent
+				return path.get(i).getIndex() < otherPath.get(i).getIndex();
+			}
+		}
+		// an ancestor comes before its descendants
+		return path.size() < otherPath.size();
+	}
+
+	private static List<IParseNode> getPath(IParseNode node)
+	{
+		List<IParseNode> path = new ArrayList<IParseNode>();
+		for (IParseNode current = node; current != null; current = current.getParent())
+		{
+			path.add(0, current);
+		}
+		return path;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return fExpression;
+	}
+
+	/**
+	 * Turns the paths of the expression into steps.
+	 */
+	private class Parser
+	{
+		private final String fText;
+		private int fOffset;
+
+		Parser(String text)
+		{
+			fText = text;
+		}
+
+		void parsePath()
+		{
+			skipWhitespace();
+			List<Step> steps = fRelative;
+			boolean descendant = false;
+			if (skip('/'))
+			{
+				steps = fAbsolute;
+				descendant = skip('/');
+			}
+			while (true)
+			{
+				Step step = parseStep(steps, descendant);
+				skipWhitespace();
+				if (!skip('/'))
+				{
+					step.selects = true;
+					return;
+				}
+				descendant = skip('/');
+				steps = step.next;
+			}
+		}
+
+		private Step parseStep(List<Step> steps, boolean descendant)
+		{
+			skipWhitespace();
+			String name = parseName();
+			if (ANY.equals(name))
+			{
+				name = null;
+			}
+			else if (fCaseInsensitive)
+			{
+				name = name.toLowerCase();
+			}
+			int position = 0;
+			skipWhitespace();
+			if (skip('['))
+			{
+				skipWhitespace();
+				if (fText.startsWith(POSITION, fOffset))
+				{
+					fOffset += POSITION.length();
+					skipWhitespace();
+					expect('=');
+					skipWhitespace();
+				}
+				position = parsePosition();
+				skipWhitespace();
+				expect(']');
+			}
+
+			for (Step step : steps)
+			{
+				if (step.isSameAs(name, position, descendant))
+				{
+					return step;
+				}
+			}
+			Step step = new Step(name, position, descendant);
+			steps.add(step);
+			return step;
+		}
+
+		private String parseName()
+		{
+			if (skip('*'))
+			{
+				return ANY;
+			}
+			int start = fOffset;
+			if (fOffset == fText.length() || !isNameStart(fText.charAt(fOffset)))
+			{
+				throw error();
+			}
+			while (fOffset < fText.length() && isNameCharacter(fText.charAt(fOffset)))
+			{
+				fOffset++;
+			}
+			return fText.substring(start, fOffset);
+		}
+
+		private int parsePosition()
+		{
+			int start = fOffset;
+			while (fOffset < fText.length() && Character.isDigit(fText.charAt(fOffset)))
+			{
+				fOffset++;
+			}
+			if (start == fOffset)
+			{
+				throw error();
+			}
+			int position = Integer.parseInt(fText.substring(start, fOffset));
+			if (position < 1)
+			{
+				throw error();
+			}
+			return position;
+		}
+
+		private boolean isNameStart(char c)
+		{
+			return Character.isLetter(c) || c == '_';
+		}
+
+		private boolean isNameCharacter(char c)
+		{
+			return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':';
+		}
+
+		private void skipWhitespace()
+		{
+			while (fOffset < fText.length() && Character.isWhitespace(fText.charAt(fOffset)))
+			{
+				fOffset++;
+			}
+		}
+
+		boolean skip(char c)
+		{
+			if (fOffset < fText.length() && fText.charAt(fOffset) == c)
+			{
+				fOffset++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c)
+		{
+			if (!skip(c))
+			{
+				throw error();
+			}
+		}
+
+		boolean atEnd()
+		{
+			skipWhitespace();
+			return fOffset == fText.length();
+		}
+
+		IllegalArgumentException error()
+		{
+			return new IllegalArgumentException(MessageFormat.format(
+					"Unsupported path expression ''{0}'' at offset {1}", fText, fOffset)); //$NON-NLS-1$
+		}
+	}
+}
@@ -12,6 +12,8 @@ import java.util.List;
 
 public abstract class BinarySelector extends SelectorNode
 {
+	private static final long serialVersionUID = 1L;
+
 	protected ISelectorNode _left;
 	protected ISelectorNode _right;
 	protected List<Integer> matchResults;
@@ -13,6 +13,8 @@ import com.aptana.core.util.StringUtil;
 
 public class DescendantSelector extends BinarySelector
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * DescendantSelector
 	 * 
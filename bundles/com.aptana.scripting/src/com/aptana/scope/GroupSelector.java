@@ -16,6 +16,8 @@ import com.aptana.core.util.StringUtil;
  */
 public class GroupSelector extends SelectorNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private ISelectorNode child;
 
 	/**
@@ -11,6 +11,8 @@ import java.util.ArrayList;
 
 public class IntersectionSelector extends BinarySelector
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * IntersectionSelector
 	 * 
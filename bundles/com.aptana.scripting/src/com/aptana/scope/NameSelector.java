@@ -14,6 +14,8 @@ import com.aptana.core.util.StringUtil;
 
 public class NameSelector extends SelectorNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private String _name;
 	private int matchLength = 0;
 
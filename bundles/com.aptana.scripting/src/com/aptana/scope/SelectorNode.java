@@ -17,6 +17,8 @@ import beaver.Symbol;
  */
 public class SelectorNode extends Symbol implements ISelectorNode
 {
+	private static final long serialVersionUID = 1L;
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.scope.ISelectorNode#matchResults()
@@ -26,6 +26,7 @@ import com.aptana.xml.core.parsing.XMLParser;
 
 public class XMLElementNode extends XMLNode
 {
+	private static final long serialVersionUID = 1L;
 
 	private NameNode fNameNode;
 	private final boolean fIsSelfClosing;
@@ -12,6 +12,8 @@ import com.aptana.xml.core.IXMLConstants;
 
 public class XMLNode extends ParseNode
 {
+	private static final long serialVersionUID = 1L;
+
 	private XMLNodeType fType;
 
 	/**
@@ -17,6 +17,7 @@ import com.aptana.xml.core.IXMLConstants;
  */
 public class XMLParseRootNode extends ParseRootNode
 {
+	private static final long serialVersionUID = 1L;
 
 	public XMLParseRootNode(int start, int end)
 	{
@@ -27,6 +27,7 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.hamcrest.Matchers;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.jmock.lib.concurrent.Synchroniser;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.After;
 import org.junit.Before;
@@ -142,6 +143,8 @@ public class UnifiedBuilderTest
 	{
 		{
 			setImposteriser(ClassImposteriser.INSTANCE);
+			// files may be built on worker threads
+			setThreadingPolicy(new Synchroniser());
 		}
 	};
 
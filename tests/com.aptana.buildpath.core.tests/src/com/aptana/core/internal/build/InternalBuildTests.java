@@ -5,7 +5,7 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ BuildParticipantWorkingCopyTest.class, BuildParticipantManagerTest.class,
-		IndexBuildParticipantTest.class })
+		IndexBuildParticipantTest.class, MarkerReconcilerTest.class, MessageFilterTest.class })
 public class InternalBuildTests
 {
 
@@ -0,0 +1,156 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.internal.build;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.core.build.IProblem;
+import com.aptana.core.build.Problem;
+import com.aptana.core.resources.IMarkerConstants;
+import com.aptana.testing.utils.ProjectCreator;
+
+@SuppressWarnings("nls")
+public class MarkerReconcilerTest
+{
+	private IProject project;
+	private IFile file;
+	private IFile otherFile;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		project = ProjectCreator.createAndOpen("marker_reconciler");
+		file = project.getFile("file.js");
+		file.create(new ByteArrayInputStream("var a = 1;\nvar b = 2;\n".getBytes()), true, null);
+		otherFile = project.getFile("other.js");
+		otherFile.create(new ByteArrayInputStream("var c = 3;\n".getBytes()), true, null);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		if (project != null)
+		{
+			project.delete(IResource.FORCE, new NullProgressMonitor());
+			project = null;
+		}
+	}
+
+	@Test
+	public void testOnlyChangedMarkersAreTouched() throws Exception
+	{
+		MarkerReconciler reconciler = new MarkerReconciler(1);
+		reconciler.add(file, problems(warning("a", 4, 1, 1), warning("b", 15, 1, 2), error("missing", 20, 0, 2)), null);
+
+		assertEquals(3, reconciler.getAddedCount());
+		Set<Long> ids = getMarkerIds(file);
+		assertEquals(3, ids.size());
+
+		// one problem fixed, one new
+		reconciler.add(file, problems(warning("a", 4, 1, 1), warning("b", 15, 1, 2), warning("c", 8, 1, 1)), null);
+
+		assertEquals(4, reconciler.getAddedCount());
+		assertEquals(1, reconciler.getRemovedCount());
+		assertEquals(2, reconciler.getKeptCount());
+		Set<Long> newIds = getMarkerIds(file);
+		assertEquals(3, newIds.size());
+		newIds.retainAll(ids);
+		assertEquals(2, newIds.size());
+	}
+
+	@Test
+	public void testKeptMarkersGetNewAttributes() throws Exception
+	{
+		MarkerReconciler reconciler = new MarkerReconciler(1);
+		reconciler.add(file, problems(warning("a", 4, 1, 1)), null);
+		reconciler.add(file, problems(warning("a", 4, 1, 2)), null);
+
+		assertEquals(1, reconciler.getKeptCount());
+		IMarker[] markers = file.findMarkers(IMarkerConstants.PROBLEM_MARKER, false, IResource.DEPTH_ZERO);
+		assertEquals(1, markers.length);
+		assertEquals(2, markers[0].getAttribute(IMarker.LINE_NUMBER, -1));
+	}
+
+	@Test
+	public void testEmptyTypeRemovesMarkers() throws Exception
+	{
+		MarkerReconciler reconciler = new MarkerReconciler(1);
+		reconciler.add(file, problems(warning("a", 4, 1, 1), warning("a", 4, 1, 1)), null);
+		reconciler.add(file, problems(), null);
+
+		assertEquals(2, reconciler.getRemovedCount());
+		assertEquals(0, getMarkerIds(file).size());
+	}
+
+	@Test
+	public void testFilesAreBatched() throws Exception
+	{
+		MarkerReconciler reconciler = new MarkerReconciler(3);
+		reconciler.add(file, problems(warning("a", 4, 1, 1)), null);
+		reconciler.add(otherFile, problems(warning("c", 4, 1, 1)), null);
+
+		assertEquals(0, getMarkerIds(file).size());
+		assertEquals(0, getMarkerIds(otherFile).size());
+
+		reconciler.flush(null);
+
+		assertEquals(2, reconciler.getAddedCount());
+		assertEquals(1, getMarkerIds(file).size());
+		assertEquals(1, getMarkerIds(otherFile).size());
+	}
+
+	private Map<String, Collection<IProblem>> problems(IProblem... problems)
+	{
+		Collection<IProblem> list = new ArrayList<IProblem>();
+		for (IProblem problem : problems)
+		{
+			list.add(problem);
+		}
+		Map<String, Collection<IProblem>> result = new HashMap<String, Collection<IProblem>>();
+		result.put(IMarkerConstants.PROBLEM_MARKER, list);
+		return result;
+	}
+
+	private IProblem warning(String message, int offset, int length, int line)
+	{
+		return new Problem(IMarker.SEVERITY_WARNING, message, offset, length, line, file.getLocation().toOSString());
+	}
+
+	private IProblem error(String message, int offset, int length, int line)
+	{
+		return new Problem(IMarker.SEVERITY_ERROR, message, offset, length, line, file.getLocation().toOSString());
+	}
+
+	private Set<Long> getMarkerIds(IFile file) throws CoreException
+	{
+		Set<Long> ids = new HashSet<Long>();
+		for (IMarker marker : file.findMarkers(IMarkerConstants.PROBLEM_MARKER, false, IResource.DEPTH_ZERO))
+		{
+			ids.add(marker.getId());
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.internal.build;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class MessageFilterTest
+{
+	private static final List<String> EXPRESSIONS = Arrays.asList(".*Unknown pseudo-element.*",
+			"Property\\s*[-_].*doesn't exist.*", ".*-moz-.*", ".*-o-*", "Parse.*", ".*zoom", "exact", "(a)\\1",
+			"(?x) a b # comment", ".*rgba.*is not a .* value.*", Pattern.quote("Value Error : (background) :"));
+
+	@Test
+	public void testLiterals()
+	{
+		MessageFilter filter = new MessageFilter(EXPRESSIONS);
+
+		assertTrue(filter.matches("Unknown pseudo-element ::foo"));
+		assertTrue(filter.matches("Parse Error"));
+		assertTrue(filter.matches("big zoom"));
+		assertTrue(filter.matches("exact"));
+		assertTrue(filter.matches("Value Error : (background) :"));
+		assertFalse(filter.matches("zoom in"));
+		assertFalse(filter.matches("exactly"));
+		assertFalse(filter.matches("Value Error : background :"));
+	}
+
+	@Test
+	public void testPatterns()
+	{
+		MessageFilter filter = new MessageFilter(EXPRESSIONS);
+
+		assertTrue(filter.matches("Property -foo doesn't exist"));
+		assertTrue(filter.matches("x-o---"));
+		assertTrue(filter.matches("aa"));
+		assertTrue(filter.matches("ab"));
+		assertTrue(filter.matches("rgba(0,0,0,0) is not a color value"));
+		assertFalse(filter.matches("Property foo doesn't exist"));
+		assertFalse(filter.matches("a b"));
+	}
+
+	@Test
+	public void testMessagesSpanningLines()
+	{
+		// "." doesn't match line terminators
+		MessageFilter filter = new MessageFilter(EXPRESSIONS);
+
+		assertFalse(filter.matches("Parse\nError"));
+		assertFalse(filter.matches("big\nzoom"));
+		assertTrue(filter.matches("Property\n-foo doesn't exist"));
+	}
+
+	@Test
+	public void testInvalidExpressionsAreIgnored()
+	{
+		MessageFilter filter = new MessageFilter(Arrays.asList("[unclosed", ".*warning.*"));
+
+		assertTrue(filter.matches("a warning"));
+		assertFalse(filter.matches("[unclosed"));
+	}
+
+	@Test
+	public void testIsFor()
+	{
+		MessageFilter filter = new MessageFilter(EXPRESSIONS);
+
+		assertTrue(filter.isFor(EXPRESSIONS));
+		assertFalse(filter.isFor(Arrays.asList(".*zoom")));
+	}
+
+	@Test
+	public void testMatchesLikeEachPattern()
+	{
+		MessageFilter filter = new MessageFilter(EXPRESSIONS);
+		Random random = new Random(7);
+		String chars = "ab-o \nzPrse";
+		for (int i = 0; i < 20000; i++)
+		{
+			StringBuilder message = new StringBuilder();
+			int length = random.nextInt(10);
+			for (int j = 0; j < length; j++)
+			{
+				message.append(chars.charAt(random.nextInt(chars.length())));
+			}
+			boolean expected = false;
+			for (String expression : EXPRESSIONS)
+			{
+				expected |= Pattern.compile(expression).matcher(message).matches();
+			}
+			assertEquals(message.toString(), expected, filter.matches(message.toString()));
+		}
+	}
+}
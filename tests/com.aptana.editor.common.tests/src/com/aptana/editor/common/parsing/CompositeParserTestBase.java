@@ -7,6 +7,9 @@
  */
 package com.aptana.editor.common.parsing;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 import junit.framework.TestCase;
@@ -80,6 +83,15 @@ public abstract class CompositeParserTestBase
 			// TODO Auto-generated method stub
 			return null;
 		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.parsing.ast.IParseRootNode#getNodesOverlapping(int, int)
+		 */
+		public List<IParseNode> getNodesOverlapping(int startOffset, int endOffset)
+		{
+			return Collections.emptyList();
+		}
 	}
 
 	protected abstract IMerger createMerger();
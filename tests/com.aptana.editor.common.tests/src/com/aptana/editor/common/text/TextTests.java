@@ -5,7 +5,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ RubyRegexpAutoIndentStrategyTest.class, SingleTokenScannerTest.class, })
+@SuiteClasses({ RubyRegexpAutoIndentStrategyTest.class, SingleTokenScannerTest.class, WordOccurrenceIndexTest.class, })
 public class TextTests
 {
 
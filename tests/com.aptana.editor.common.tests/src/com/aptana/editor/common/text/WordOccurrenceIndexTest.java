@@ -0,0 +1,165 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.text;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class WordOccurrenceIndexTest
+{
+	private IDocument document;
+	private WordOccurrenceIndex index;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		document = new Document("var foo = bar(foo);\nfoo.bar = foobar;");
+		index = WordOccurrenceIndex.getIndex(document);
+	}
+
+	@Test
+	public void testOccurrences()
+	{
+		assertSame(index, WordOccurrenceIndex.getIndex(document));
+		assertArrayEquals(new int[] { 4, 14, 20 }, index.getOccurrences(document, "foo"));
+		assertArrayEquals(new int[] { 10, 24 }, index.getOccurrences(document, "bar"));
+		assertArrayEquals(new int[] { 30 }, index.getOccurrences(document, "foobar"));
+		assertArrayEquals(new int[0], index.getOccurrences(document, "baz"));
+	}
+
+	@Test
+	public void testIsWord()
+	{
+		assertTrue(WordOccurrenceIndex.isWord("foo_1"));
+		assertFalse(WordOccurrenceIndex.isWord("foo.bar"));
+		assertFalse(WordOccurrenceIndex.isWord("+="));
+		assertFalse(WordOccurrenceIndex.isWord(""));
+		assertFalse(WordOccurrenceIndex.isWord(null));
+	}
+
+	@Test
+	public void testEditsBetweenLookups() throws Exception
+	{
+		index.getOccurrences(document, "foo");
+
+		// "var foo = bar(foo);" -> "var fo = bar(foo);"
+		document.replace(6, 1, "");
+		assertArrayEquals(new int[] { 13, 19 }, index.getOccurrences(document, "foo"));
+		assertArrayEquals(new int[] { 4 }, index.getOccurrences(document, "fo"));
+
+		// joining and splitting words
+		document.replace(22, 1, "");
+		document.replace(2, 0, " ");
+		assertArrayEquals(new int[] { 14 }, index.getOccurrences(document, "foo"));
+		assertArrayEquals(new int[] { 20, 29 }, index.getOccurrences(document, "foobar"));
+		assertArrayEquals(new int[] { 10 }, index.getOccurrences(document, "bar"));
+		assertArrayEquals(new int[] { 0 }, index.getOccurrences(document, "va"));
+		assertArrayEquals(new int[] { 3 }, index.getOccurrences(document, "r"));
+		assertArrayEquals(new int[0], index.getOccurrences(document, "var"));
+	}
+
+	@Test
+	public void testLookupWhileChangingIsNull() throws Exception
+	{
+		final List<int[]> during = new ArrayList<int[]>();
+		document.addDocumentListener(new IDocumentListener()
+		{
+			public void documentAboutToBeChanged(DocumentEvent event)
+			{
+				during.add(index.getOccurrences(document, "foo"));
+			}
+
+			public void documentChanged(DocumentEvent event)
+			{
+				during.add(index.getOccurrences(document, "foo"));
+			}
+		});
+
+		// before the index is built, then once it is
+		document.replace(0, 0, "foo ");
+		document.replace(0, 0, "foo ");
+
+		assertNull(during.get(0));
+		assertArrayEquals(new int[] { 0, 8, 18, 24 }, during.get(1));
+		assertNull(during.get(2));
+		assertArrayEquals(new int[] { 0, 4, 12, 22, 28 }, during.get(3));
+	}
+
+	@Test
+	public void testRandomEditsMatchSearch() throws Exception
+	{
+		Random random = new Random(42);
+		String[] inserts = { "a", "foo", " ", ".", "\n", "bar baz", "(x)" };
+		for (int i = 0; i < 500; i++)
+		{
+			int edits = random.nextInt(3) + 1;
+			for (int j = 0; j < edits; j++)
+			{
+				int offset = random.nextInt(document.getLength() + 1);
+				int length = random.nextInt(Math.min(4, document.getLength() - offset) + 1);
+				document.replace(offset, length, inserts[random.nextInt(inserts.length)]);
+			}
+			for (String word : new String[] { "a", "foo", "bar", "baz", "x", "afoo" })
+			{
+				assertArrayEquals(word, search(document.get(), word), index.getOccurrences(document, word));
+			}
+		}
+	}
+
+	@Test
+	public void testWordsNotLookedUpFollowEdits() throws Exception
+	{
+		// enough lookups for the log of edits to be applied to all the words, and some more
+		for (int i = 0; i < 50; i++)
+		{
+			document.replace(i % 2 == 0 ? 0 : document.getLength(), 0, "bar foobar ");
+			assertArrayEquals(search(document.get(), "foo"), index.getOccurrences(document, "foo"));
+			if (i == 10)
+			{
+				assertArrayEquals(search(document.get(), "var"), index.getOccurrences(document, "var"));
+			}
+		}
+		for (String word : new String[] { "var", "bar", "foobar" })
+		{
+			assertArrayEquals(word, search(document.get(), word), index.getOccurrences(document, word));
+		}
+	}
+
+	private static int[] search(String source, String word)
+	{
+		List<Integer> offsets = new ArrayList<Integer>();
+		Matcher matcher = Pattern.compile("\\b" + Pattern.quote(word) + "\\b").matcher(source);
+		while (matcher.find())
+		{
+			offsets.add(matcher.start());
+		}
+		int[] result = new int[offsets.size()];
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = offsets.get(i);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.text.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class ScopeRunMapTest
+{
+	private IDocument document;
+	private ScopeRunMap map;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		// "var x = 1;" colored as: keyword, space, variable, space, operator, space, number, punctuation
+		document = new Document("var x = 1;");
+		map = ScopeRunMap.getScopeMap(document);
+		map.replace(0, 10, runs(0, 3, "keyword", 4, 5, "variable", 6, 7, "operator", 8, 9, "number", 9, 10,
+				"punctuation"), 5);
+	}
+
+	@Test
+	public void testGetScope()
+	{
+		assertSame(map, ScopeRunMap.getScopeMap(document));
+		assertEquals("keyword", ScopeRunMap.getScope(document, 0));
+		assertEquals("keyword", map.getScope(2));
+		assertNull(map.getScope(3));
+		assertEquals("variable", map.getScope(4));
+		assertEquals("number", map.getScope(8));
+		assertEquals("punctuation", map.getScope(9));
+		assertNull(map.getScope(10));
+		assertNull(ScopeRunMap.getScope(new Document("var"), 0));
+	}
+
+	@Test
+	public void testReplaceCutsCrossingRuns()
+	{
+		map.replace(1, 5, runs(2, 4, "string"), 1);
+
+		assertEquals(5, map.getRunCount());
+		assertEquals("keyword", map.getScope(0));
+		assertNull(map.getScope(1));
+		assertEquals("string", map.getScope(2));
+		assertEquals("string", map.getScope(3));
+		assertNull(map.getScope(4));
+		assertNull(map.getScope(5));
+		assertEquals("operator", map.getScope(6));
+	}
+
+	@Test
+	public void testReplaceInsideRun()
+	{
+		map.replace(1, 1, runs(1, 2, "string"), 1);
+
+		assertEquals(7, map.getRunCount());
+		assertEquals("keyword", map.getScope(0));
+		assertEquals("string", map.getScope(1));
+		assertEquals("keyword", map.getScope(2));
+		assertEquals("variable", map.getScope(4));
+	}
+
+	@Test
+	public void testInsertMovesRuns() throws Exception
+	{
+		// inside a run it grows, at its start it doesn't
+		document.replace(4, 0, "xx");
+		document.replace(1, 0, "a");
+
+		assertEquals("keyword", map.getScope(3));
+		assertNull(map.getScope(4));
+		assertNull(map.getScope(6));
+		assertEquals("variable", map.getScope(7));
+		assertNull(map.getScope(8));
+		assertEquals("punctuation", map.getScope(12));
+		assertNull(map.getScope(13));
+	}
+
+	@Test
+	public void testDeleteRemovesRuns() throws Exception
+	{
+		// "var x = 1;" -> "va1;"
+		document.replace(2, 6, "");
+
+		assertEquals(3, map.getRunCount());
+		assertEquals("keyword", map.getScope(1));
+		assertEquals("number", map.getScope(2));
+		assertEquals("punctuation", map.getScope(3));
+		assertNull(map.getScope(4));
+	}
+
+	@Test
+	public void testReplaceAll() throws Exception
+	{
+		document.set("x");
+		assertEquals(0, map.getRunCount());
+
+		map.replace(0, 1, runs(0, 1, "variable"), 1);
+		assertEquals("variable", map.getScope(0));
+	}
+
+	private static int[] runs(Object... runs)
+	{
+		int[] result = new int[runs.length];
+		for (int i = 0; i < runs.length; i += ScopeRunMap.RUN_SIZE)
+		{
+			result[i] = (Integer) runs[i];
+			result[i + 1] = (Integer) runs[i + 1];
+			result[i + 2] = ScopeRunMap.getScopeId((String) runs[i + 2]);
+		}
+		return result;
+	}
+}
@@ -388,6 +388,68 @@ public class HTMLParserTest
 		assertEquals(1, errors.size());
 		
 	}
+
+	@Test
+	public void testParallelEmbeddedParsingGivesSameResult() throws Exception
+	{
+		StringBuilder source = new StringBuilder("<html><head>");
+		for (int i = 0; i < 20; i++)
+		{
+			source.append("<style>p.c").append(i).append(" { color: red; }</style>");
+			source.append("<script>var v").append(i).append(" = function() { return ").append(i)
+					.append((i % 5 == 0) ? "; ( };" : "; };").append("</script>");
+		}
+		source.append("</head><body>");
+		for (int i = 0; i < 20; i++)
+		{
+			source.append("<p style=\"margin: ").append(i).append("px; color: blue\" onclick=\"go(").append(i)
+					.append(");\">text").append((i % 7 == 0) ? "<i>" : "").append("</p>");
+		}
+		source.append("</body></html>");
+
+		fParser.setParallelEmbeddedParsing(false);
+		ParseResult sequential = fParser.parse(new HTMLParseState(source.toString()));
+		fParser.setParallelEmbeddedParsing(true);
+		ParseResult parallel = fParser.parse(new HTMLParseState(source.toString()));
+
+		assertEquals(toString(sequential.getRootNode()), toString(parallel.getRootNode()));
+		assertEquals(toString(sequential.getErrors()), toString(parallel.getErrors()));
+		assertEquals(11, sequential.getErrors().size());
+	}
+
+	private String toString(IParseNode node)
+	{
+		StringBuilder text = new StringBuilder();
+		text.append('(').append(node.getClass().getSimpleName()).append(' ').append(node.getStartingOffset())
+				.append('-').append(node.getEndingOffset());
+		if (node instanceof HTMLElementNode)
+		{
+			for (IParseNode styleNode : ((HTMLElementNode) node).getCSSStyleNodes())
+			{
+				text.append(" style").append(toString(styleNode));
+			}
+			for (IParseNode jsNode : ((HTMLElementNode) node).getJSAttributeNodes())
+			{
+				text.append(" js").append(toString(jsNode));
+			}
+		}
+		for (IParseNode child : node.getChildren())
+		{
+			text.append(toString(child));
+		}
+		return text.append(')').toString();
+	}
+
+	private String toString(List<IParseError> errors)
+	{
+		StringBuilder text = new StringBuilder();
+		for (IParseError error : errors)
+		{
+			text.append(error.getLangauge()).append(' ').append(error.getOffset()).append(' ')
+					.append(error.getMessage()).append('\n');
+		}
+		return text.toString();
+	}
 	
 	/**
 	 * This method is not being used for formal testing, but it's useful to determine how effective
@@ -0,0 +1,204 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.junit.Before;
+import org.junit.Test;
+
+import beaver.Symbol;
+
+import com.aptana.js.core.parsing.JSFlexScanner;
+import com.aptana.js.core.parsing.JSTokenType;
+import com.aptana.js.core.parsing.Terminals;
+
+@SuppressWarnings("nls")
+public class JSTokenStreamTest
+{
+	private static final String SOURCE = "var a = 1;\n" //
+			+ "function foo(x) {\n" //
+			+ "  var re = /ab+c/g, d = x / 2;\n" //
+			+ "  return 'str' + \"ing\\\n" //
+			+ "continued\";\n" //
+			+ "}\n" //
+			+ "/* comment */\n" //
+			+ "var t = `a${foo({b: 1})}c`;\n" //
+			+ "bar(a, # 1);\n";
+
+	private IDocument document;
+	private JSTokenStream stream;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		document = new Document(SOURCE);
+		stream = new JSTokenStream();
+		document.addDocumentListener(stream);
+	}
+
+	@Test
+	public void testSameTokensAsScanner() throws Exception
+	{
+		assertTokens();
+	}
+
+	@Test
+	public void testEditInLineRescansLine() throws Exception
+	{
+		assertTokens();
+		int tokens = stream.getScannedCount();
+
+		document.replace(SOURCE.indexOf("x / 2"), 1, "xy");
+		assertTokens();
+		assertTrue(stream.getScannedCount() < tokens / 2);
+	}
+
+	@Test
+	public void testEdits() throws Exception
+	{
+		String[][] edits = { { "var a", "let a" }, { "d = x", "d = (x)" }, { "'str'", "'st" }, { "'st", "'str'" },
+				{ "continued", "cont\ninued" }, { "\\\n", "\n" }, { "a${foo", "a${ foo" }, { "{b: 1}", "{b: 1, c: 2}" },
+				{ "# 1", "1" }, { "1;\nfunction", "1; function" }, { "ab+c", "a b" }, { "/* comment */", "" } };
+		assertTokens();
+		for (String[] edit : edits)
+		{
+			document.replace(document.get().indexOf(edit[0]), edit[0].length(), edit[1]);
+			assertTokens();
+		}
+	}
+
+	@Test
+	public void testEditInMultiLineConstructRescansFromBeforeIt() throws Exception
+	{
+		StringBuilder source = new StringBuilder();
+		for (int i = 0; i < 50; i++)
+		{
+			source.append("var a").append(i).append(" = ").append(i).append(";\n");
+		}
+		int comment = source.length();
+		source.append("/*\n");
+		for (int i = 0; i < 20; i++)
+		{
+			source.append(" * var b").append(i).append(" = `").append(i).append("${x}`;\n");
+		}
+		source.append(" */\n");
+		int template = source.length();
+		source.append("var t = `\n${a0}\nb\n`;\n");
+		for (int i = 0; i < 50; i++)
+		{
+			source.append("var c").append(i).append(" = ").append(i).append(" / 2;\n");
+		}
+		document.set(source.toString());
+		assertTokens();
+		int tokens = stream.getScannedCount();
+
+		// closing the comment early, then opening it again
+		int line = document.getLineOffset(document.getLineOfOffset(comment) + 10);
+		document.replace(line, 0, "*/");
+		assertTokens();
+		document.replace(line, 2, "");
+		assertTokens();
+		assertTrue(stream.getScannedCount() < tokens / 2);
+
+		// opening a substitution in a template, then removing it
+		line = document.getLineOffset(document.getLineOfOffset(template) + 2);
+		document.replace(line, 0, "${");
+		assertTokens();
+		assertTrue(stream.getScannedCount() < tokens / 2);
+		document.replace(line + 1, 0, "}");
+		assertTokens();
+		assertTrue(stream.getScannedCount() < tokens / 2);
+	}
+
+	@Test
+	public void testRandomEdits() throws Exception
+	{
+		Random random = new Random(42);
+		String[] inserts = { "/", "*", "/*", "*/", "`", "${", "}", "$", "{", "\n", " ", "x", "'", "\\", "//", "1" };
+		assertTokens();
+		for (int i = 0; i < 300; i++)
+		{
+			int offset = random.nextInt(document.getLength() + 1);
+			int length = random.nextInt(Math.min(3, document.getLength() - offset) + 1);
+			document.replace(offset, length, inserts[random.nextInt(inserts.length)]);
+			assertTokens();
+		}
+	}
+
+	@Test
+	public void testManyEditsBeforeUpdate() throws Exception
+	{
+		assertTokens();
+		document.replace(document.get().indexOf("foo(x)"), 3, "foobar");
+		document.replace(document.get().indexOf("bar(a"), 3, "baz");
+		document.replace(0, 0, "\n\n");
+		document.replace(document.get().indexOf("return"), 6, "return (1) +");
+		assertTokens();
+	}
+
+	@Test
+	public void testRange() throws Exception
+	{
+		int offset = SOURCE.indexOf("return");
+		int length = SOURCE.indexOf("}\n") - offset;
+		assertEquals(toString(scan(document.get(offset, length))), toString(stream.getTokens(document, offset, length)));
+	}
+
+	@Test
+	public void testNoStreamForOtherDocuments() throws Exception
+	{
+		assertNull(JSTokenStream.getTokenStream(new Document(SOURCE)));
+	}
+
+	private void assertTokens() throws Exception
+	{
+		assertEquals(toString(scan(document.get())), toString(stream.getTokens(document, 0, document.getLength())));
+	}
+
+	/**
+	 * @return the tokens of the source as returned by the scanner (skipping the unexpected characters).
+	 */
+	private List<Symbol> scan(String source) throws Exception
+	{
+		List<Symbol> result = new ArrayList<Symbol>();
+		JSFlexScanner scanner = new JSFlexScanner();
+		scanner.setCollectComments(false);
+		scanner.setSource(source);
+		Symbol symbol = scanner.nextToken();
+		while (symbol.getId() != Terminals.EOF || symbol.getEnd() >= symbol.getStart())
+		{
+			if (symbol.getId() != Terminals.EOF)
+			{
+				result.add(symbol);
+			}
+			symbol = scanner.nextToken();
+		}
+		result.add(new Symbol(Terminals.EOF, source.length(), source.length() - 1, JSTokenType.EOF.getName()));
+		return result;
+	}
+
+	private String toString(List<Symbol> symbols)
+	{
+		StringBuilder builder = new StringBuilder();
+		for (Symbol symbol : symbols)
+		{
+			builder.append(symbol.getId()).append(' ').append(symbol.getStart()).append('-').append(symbol.getEnd())
+					.append(' ').append(symbol.value).append('\n');
+		}
+		return builder.toString();
+	}
+}
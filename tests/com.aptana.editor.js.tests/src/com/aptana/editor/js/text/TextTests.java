@@ -14,7 +14,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({ JSAutoIndentStrategyTest.class, JSCodeScannerTest.class, JSDocScannerTest.class,
 		JSDoubleQuotedStringScannerTest.class, JSRegexScannerTest.class, JSSingleQuotedStringScannerTest.class,
-		JSSourcePartitionScannerJFlexTest.class, JSTextHoverTest.class, })
+		JSSourcePartitionScannerJFlexTest.class, JSTextHoverTest.class, JSTokenStreamTest.class, })
 public class TextTests
 {
 
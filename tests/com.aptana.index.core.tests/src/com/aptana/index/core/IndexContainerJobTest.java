@@ -8,11 +8,17 @@ import java.net.URI;
 import java.util.List;
 
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeMatcher;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.jmock.lib.concurrent.Synchroniser;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.After;
 import org.junit.Before;
@@ -21,6 +27,7 @@ import org.junit.Test;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.FileUtil;
 import com.aptana.index.core.build.BuildContext;
+import com.aptana.internal.index.core.FingerprintTable.Fingerprint;
 
 public class IndexContainerJobTest
 {
@@ -29,6 +36,8 @@ public class IndexContainerJobTest
 	{
 		{
 			setImposteriser(ClassImposteriser.INSTANCE);
+			// files may be indexed on worker threads
+			setThreadingPolicy(new Synchroniser());
 		}
 	};
 	private File tmpDir;
@@ -117,6 +126,14 @@ public class IndexContainerJobTest
 				oneOf(index).getIndexFile();
 				will(returnValue(indexFile));
 
+				// None of the files have been fingerprinted, so they're all newer than the index file
+				allowing(index).hasFingerprint(with(any(IFileStore.class)));
+				will(returnValue(false));
+				allowing(index).beginDelta();
+				allowing(index).commitDelta();
+				allowing(index).getFingerprint(with(any(IFileStore.class)));
+				will(returnValue(new Fingerprint(0, 0, 0)));
+
 				// We remove and index the files.
 				oneOf(index).remove(URI.create(file1.toURI().toString()));
 				oneOf(index).remove(URI.create(file2.toURI().toString()));
@@ -125,6 +142,7 @@ public class IndexContainerJobTest
 				oneOf(index).remove(URI.create(file5.toURI().toString()));
 				exactly(5).of(participant).index(with(any(BuildContext.class)), with(index),
 						with(any(IProgressMonitor.class)));
+				exactly(5).of(index).updateFingerprint(with(any(IFileStore.class)), with(any(Fingerprint.class)));
 
 				// Now save the index at the end
 				oneOf(index).save();
@@ -133,4 +151,136 @@ public class IndexContainerJobTest
 		job.run(new NullProgressMonitor());
 		context.assertIsSatisfied();
 	}
+
+	@Test
+	public void testOnlyChangedFilesAreReindexed() throws Exception
+	{
+		final File indexFile = FileUtil.createTempFile("fake_indexFile", ".index");
+
+		final File unchanged = new File(tmpDir, "unchanged");
+		unchanged.createNewFile();
+		final File changed = new File(tmpDir, "changed");
+		changed.createNewFile();
+		final Fingerprint fingerprint = new Fingerprint(0, changed.lastModified(), 0);
+
+		final Index index = context.mock(Index.class);
+		final IFileStoreIndexingParticipant participant = context.mock(IFileStoreIndexingParticipant.class);
+		IndexContainerJob job = new IndexContainerJob(tmpDir.toURI())
+		{
+			@Override
+			protected Index getIndex()
+			{
+				return index;
+			}
+
+			@Override
+			protected List<IFileStoreIndexingParticipant> getIndexParticipants(IFileStore file)
+			{
+				return CollectionsUtil.newList(participant);
+			}
+		};
+		context.checking(new Expectations()
+		{
+			{
+				oneOf(index).queryDocumentNames(null);
+				will(returnValue(CollectionsUtil.newSet(unchanged.toURI().toString(), changed.toURI().toString())));
+
+				oneOf(index).getIndexFile();
+				will(returnValue(indexFile));
+
+				allowing(index).hasFingerprint(with(any(IFileStore.class)));
+				will(returnValue(true));
+				allowing(index).isUpToDate(with(fileStore(unchanged)));
+				will(returnValue(true));
+				allowing(index).isUpToDate(with(fileStore(changed)));
+				will(returnValue(false));
+				allowing(index).beginDelta();
+				allowing(index).commitDelta();
+				oneOf(index).getFingerprint(with(fileStore(changed)));
+				will(returnValue(fingerprint));
+
+				// Only the changed file is reindexed
+				oneOf(index).remove(URI.create(changed.toURI().toString()));
+				oneOf(participant).index(with(any(BuildContext.class)), with(index),
+						with(any(IProgressMonitor.class)));
+				oneOf(index).updateFingerprint(with(fileStore(changed)), with(same(fingerprint)));
+
+				oneOf(index).save();
+			}
+		});
+		job.run(new NullProgressMonitor());
+		context.assertIsSatisfied();
+	}
+
+	@Test
+	public void testFailedFilesAreNotFingerprinted() throws Exception
+	{
+		final File indexFile = FileUtil.createTempFile("fake_indexFile", ".index");
+
+		final File file = new File(tmpDir, "file");
+		file.createNewFile();
+
+		final Index index = context.mock(Index.class);
+		final IFileStoreIndexingParticipant participant = context.mock(IFileStoreIndexingParticipant.class);
+		IndexContainerJob job = new IndexContainerJob(tmpDir.toURI())
+		{
+			@Override
+			protected Index getIndex()
+			{
+				return index;
+			}
+
+			@Override
+			protected List<IFileStoreIndexingParticipant> getIndexParticipants(IFileStore file)
+			{
+				return CollectionsUtil.newList(participant);
+			}
+		};
+		context.checking(new Expectations()
+		{
+			{
+				oneOf(index).queryDocumentNames(null);
+				will(returnValue(CollectionsUtil.newSet(file.toURI().toString())));
+
+				oneOf(index).getIndexFile();
+				will(returnValue(indexFile));
+
+				allowing(index).hasFingerprint(with(any(IFileStore.class)));
+				will(returnValue(true));
+				allowing(index).isUpToDate(with(any(IFileStore.class)));
+				will(returnValue(false));
+				allowing(index).beginDelta();
+				allowing(index).commitDelta();
+				allowing(index).getFingerprint(with(any(IFileStore.class)));
+				will(returnValue(new Fingerprint(0, 0, 0)));
+
+				// The indexer fails, so the file is left without a fingerprint to be retried next time
+				oneOf(index).remove(URI.create(file.toURI().toString()));
+				oneOf(participant).index(with(any(BuildContext.class)), with(index),
+						with(any(IProgressMonitor.class)));
+				will(throwException(new CoreException(Status.CANCEL_STATUS)));
+				never(index).updateFingerprint(with(any(IFileStore.class)), with(any(Fingerprint.class)));
+
+				oneOf(index).save();
+			}
+		});
+		job.run(new NullProgressMonitor());
+		context.assertIsSatisfied();
+	}
+
+	private static Matcher<IFileStore> fileStore(final File file)
+	{
+		return new TypeSafeMatcher<IFileStore>()
+		{
+			public boolean matchesSafely(IFileStore item)
+			{
+				return file.toURI().equals(item.toURI());
+			}
+
+			public void describeTo(Description description)
+			{
+				description.appendText("file store for ").appendValue(file);
+			}
+		};
+	}
 }
@@ -9,6 +9,7 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.List;
 import java.util.Set;
@@ -16,6 +17,8 @@ import java.util.Set;
 import org.junit.After;
 import org.junit.Test;
 
+import com.aptana.core.util.CollectionsUtil;
+
 @SuppressWarnings({ "nls", "deprecation" })
 public class IndexTest
 {
@@ -275,4 +278,49 @@ public class IndexTest
 		assertEntryAdded();
 	}
 
+	@Test
+	public void testChangeListener() throws Exception
+	{
+		createIndex("change_listener");
+		final List<String> changes = new ArrayList<String>();
+		IIndexChangeListener listener = new IIndexChangeListener()
+		{
+			public void entryAdded(Index index, String category, String key, String documentName)
+			{
+				changes.add("add " + category + " " + key + " " + documentName);
+			}
+
+			public void documentRemoved(Index index, String documentName)
+			{
+				changes.add("remove " + documentName);
+			}
+
+			public void indexReset(Index index)
+			{
+				changes.add("reset");
+			}
+		};
+		index.addChangeListener(listener);
+		index.addChangeListener(listener);
+
+		index.addEntry("category", "key1", new URI("file1.rb"));
+		index.beginDelta();
+		try
+		{
+			index.remove(new URI("file1.rb"));
+			index.addEntry("category", "key2", new URI("file1.rb"));
+		}
+		finally
+		{
+			index.commitDelta();
+		}
+		index.removeCategories("category");
+		index.removeChangeListener(listener);
+		index.addEntry("category", "key3", new URI("file2.rb"));
+
+		// delta changes are reported once committed, removals first
+		assertEquals(
+				CollectionsUtil.newList("add category key1 file1.rb", "remove file1.rb", "add category key2 file1.rb",
+						"reset"), changes);
+	}
 }
@@ -0,0 +1,145 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.aptana.core.IMap;
+
+@SuppressWarnings("nls")
+public class IndexWorkerPoolTest
+{
+	private List<Integer> createItems(int count)
+	{
+		List<Integer> items = new ArrayList<Integer>(count);
+		for (int i = 1; i <= count; i++)
+		{
+			items.add(i);
+		}
+		return items;
+	}
+
+	@Test
+	public void testAllResultsAreReturned()
+	{
+		IndexWorkerPool<Integer, Integer> pool = new IndexWorkerPool<Integer, Integer>("test", 3,
+				new IMap<Integer, Integer>()
+				{
+					public Integer map(Integer item)
+					{
+						return item * 2;
+					}
+				});
+
+		int sum = 0;
+		try
+		{
+			pool.start(createItems(50));
+			while (pool.hasNext())
+			{
+				sum += pool.next();
+			}
+		}
+		finally
+		{
+			pool.dispose();
+		}
+
+		assertEquals(50 * 51, sum);
+	}
+
+	@Test
+	public void testInterruptDropsPendingResults() throws Exception
+	{
+		final CountDownLatch started = new CountDownLatch(2);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger runs = new AtomicInteger();
+		IndexWorkerPool<Integer, Integer> pool = new IndexWorkerPool<Integer, Integer>("test", 2,
+				new IMap<Integer, Integer>()
+				{
+					public Integer map(Integer item)
+					{
+						runs.incrementAndGet();
+						started.countDown();
+						try
+						{
+							release.await();
+						}
+						catch (InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+						}
+						return item;
+					}
+				});
+
+		try
+		{
+			pool.start(createItems(10));
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+
+			Thread.currentThread().interrupt();
+			assertNull(pool.next());
+			assertTrue(Thread.interrupted());
+
+			// nothing is left to wait for, so a caller looping on hasNext() stops
+			assertFalse(pool.hasNext());
+		}
+		finally
+		{
+			release.countDown();
+			pool.dispose();
+		}
+
+		// the queued items were dropped rather than run
+		assertEquals(2, runs.get());
+	}
+
+	@Test
+	public void testDisposeWaitsForRunningItems() throws Exception
+	{
+		final CountDownLatch started = new CountDownLatch(2);
+		final AtomicInteger finished = new AtomicInteger();
+		IndexWorkerPool<Integer, Integer> pool = new IndexWorkerPool<Integer, Integer>("test", 2,
+				new IMap<Integer, Integer>()
+				{
+					public Integer map(Integer item)
+					{
+						started.countDown();
+						try
+						{
+							Thread.sleep(200);
+						}
+						catch (InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+						}
+						finished.incrementAndGet();
+						return item;
+					}
+				});
+
+		pool.start(createItems(10));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		pool.dispose();
+
+		// the two items being processed finished, the ones still queued were dropped
+		assertEquals(2, finished.get());
+	}
+}
@@ -7,9 +7,14 @@ import org.junit.runners.Suite.SuiteClasses;
 import com.aptana.index.core.IndexCoreTests;
 import com.aptana.index.core.build.BuildContextTest;
 import com.aptana.internal.index.core.DiskIndexTest;
+import com.aptana.internal.index.core.FingerprintTableTest;
+import com.aptana.internal.index.core.IndexDeltaTest;
+import com.aptana.internal.index.core.MemoryIndexTest;
+import com.aptana.internal.index.core.QueryCacheTest;
+import com.aptana.internal.index.core.SegmentedIndexTest;
 
 @RunWith(Suite.class)
-@SuiteClasses({ DiskIndexTest.class, BuildContextTest.class, IndexCoreTests.class, })
+@SuiteClasses({ DiskIndexTest.class, MemoryIndexTest.class, IndexDeltaTest.class, FingerprintTableTest.class, QueryCacheTest.class, SegmentedIndexTest.class, BuildContextTest.class, IndexCoreTests.class, })
 public class AllIndexCoreTests
 {
 
@@ -0,0 +1,21 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core.tests;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+import com.aptana.internal.index.core.DiskIndexPerformanceTest;
+
+@RunWith(Suite.class)
+@SuiteClasses({ DiskIndexPerformanceTest.class, })
+public class PerformanceTests
+{
+
+}
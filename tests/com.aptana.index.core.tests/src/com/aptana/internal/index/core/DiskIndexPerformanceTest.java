@@ -0,0 +1,97 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.File;
+
+import org.junit.experimental.categories.Category;
+
+import com.aptana.core.tests.GlobalTimePerformanceTestCase;
+import com.aptana.index.core.SearchPattern;
+import com.aptana.testing.categories.PerformanceTests;
+
+/**
+ * Measures query latency against a 50k document disk index, once reading through streams and once through the
+ * memory-mapped reader.
+ */
+@SuppressWarnings("nls")
+@Category({ PerformanceTests.class })
+public class DiskIndexPerformanceTest extends GlobalTimePerformanceTestCase
+{
+	private static final int NUMBER_OF_DOCUMENTS = 50000;
+	private static final String[] CATEGORIES = new String[] { "type", "function" };
+
+	private File indexFile;
+
+	@Override
+	public void setUp() throws Exception
+	{
+		super.setUp();
+
+		indexFile = File.createTempFile("perf", ".index");
+		indexFile.deleteOnExit();
+
+		MemoryIndex memoryIndex = new MemoryIndex();
+
+		for (int i = 0; i < NUMBER_OF_DOCUMENTS; i++)
+		{
+			String document = "src/module" + (i / 100) + "/file" + i + ".js";
+
+			memoryIndex.addEntry("type", "Type" + (i % 5000), document);
+			memoryIndex.addEntry("function", "function" + (i % 20000), document);
+			memoryIndex.addEntry("function", "common", document);
+		}
+
+		DiskIndex diskIndex = new DiskIndex(indexFile.getAbsolutePath());
+		diskIndex.initialize(false);
+		diskIndex.mergeWith(memoryIndex);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		if (indexFile != null)
+		{
+			indexFile.delete();
+			indexFile = null;
+		}
+
+		super.tearDown();
+	}
+
+	public void testStreamQueries() throws Exception
+	{
+		timeQueries(false, 50);
+	}
+
+	public void testMemoryMappedQueries() throws Exception
+	{
+		timeQueries(true, 50);
+	}
+
+	private void timeQueries(boolean memoryMapped, int iterations) throws Exception
+	{
+		for (int i = 0; i < iterations; i++)
+		{
+			// use a fresh index each time so we measure reads from the file rather than the category cache
+			DiskIndex index = new DiskIndex(indexFile.getAbsolutePath(), memoryMapped);
+			index.initialize(true);
+
+			startMeasuring();
+			index.addQueryResults(CATEGORIES, "Type42", SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE, null);
+			index.addQueryResults(CATEGORIES, "function19", SearchPattern.PREFIX_MATCH, null);
+			index.addQueryResults(CATEGORIES, "common", SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE, null);
+			stopMeasuring();
+
+			index.close();
+		}
+
+		commitMeasurements();
+		assertPerformance();
+	}
+}
@@ -7,12 +7,18 @@
  */
 package com.aptana.internal.index.core;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
@@ -20,6 +26,8 @@ import org.eclipse.core.runtime.Platform;
 import org.junit.Test;
 
 import com.aptana.core.util.ResourceUtil;
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
 
 @SuppressWarnings("nls")
 public class DiskIndexTest
@@ -47,4 +55,132 @@ public class DiskIndexTest
 			fail("Expected an IOException, so that we'd catch it up the stack and clean up the index. Instead we got a NegativeArraySizeException!");
 		}
 	}
+
+	@Test
+	public void testMemoryMappedQueriesMatchStreamQueries() throws Exception
+	{
+		File file = createIndexFile(1000);
+
+		try
+		{
+			DiskIndex streamIndex = new DiskIndex(file.getAbsolutePath(), false);
+			streamIndex.initialize(true);
+			DiskIndex mappedIndex = new DiskIndex(file.getAbsolutePath(), true);
+			mappedIndex.initialize(true);
+
+			String[] categories = new String[] { "type", "function" };
+			int exact = SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE;
+
+			assertEquals(toString(streamIndex.addQueryResults(categories, "Type7", exact, null)),
+					toString(mappedIndex.addQueryResults(categories, "Type7", exact, null)));
+			assertEquals(toString(streamIndex.addQueryResults(categories, "function1", SearchPattern.PREFIX_MATCH, null)),
+					toString(mappedIndex.addQueryResults(categories, "function1", SearchPattern.PREFIX_MATCH, null)));
+			assertEquals(toString(streamIndex.addQueryResults(categories, null, SearchPattern.PREFIX_MATCH, null)),
+					toString(mappedIndex.addQueryResults(categories, null, SearchPattern.PREFIX_MATCH, null)));
+			assertEquals(streamIndex.getDocuments(), mappedIndex.getDocuments());
+
+			streamIndex.close();
+			mappedIndex.close();
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testConcurrentMemoryMappedQueries() throws Exception
+	{
+		File file = createIndexFile(1000);
+
+		try
+		{
+			final DiskIndex index = new DiskIndex(file.getAbsolutePath(), true);
+			index.initialize(true);
+
+			final List<Throwable> failures = new ArrayList<Throwable>();
+			List<Thread> threads = new ArrayList<Thread>();
+
+			for (int i = 0; i < 8; i++)
+			{
+				final String key = "function" + i;
+
+				threads.add(new Thread(new Runnable()
+				{
+					public void run()
+					{
+						try
+						{
+							for (int j = 0; j < 50; j++)
+							{
+								Map<String, QueryResult> results = index.addQueryResults(new String[] { "function" }, key,
+										SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE, null);
+
+								assertNotNull(results);
+								assertEquals(10, results.get(key).getDocuments().size());
+							}
+						}
+						catch (Throwable t)
+						{
+							synchronized (failures)
+							{
+								failures.add(t);
+							}
+						}
+					}
+				}));
+			}
+
+			for (Thread thread : threads)
+			{
+				thread.start();
+			}
+
+			for (Thread thread : threads)
+			{
+				thread.join();
+			}
+
+			index.close();
+
+			assertTrue(failures.toString(), failures.isEmpty());
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	private File createIndexFile(int numberOfDocuments) throws IOException
+	{
+		File file = File.createTempFile("disk", ".index");
+		MemoryIndex memoryIndex = new MemoryIndex();
+
+		for (int i = 0; i < numberOfDocuments; i++)
+		{
+			String document = "file" + i + ".js";
+
+			memoryIndex.addEntry("type", "Type" + (i % 50), document);
+			memoryIndex.addEntry("function", "function" + (i % 100), document);
+		}
+
+		DiskIndex diskIndex = new DiskIndex(file.getAbsolutePath());
+		diskIndex.initialize(false);
+		diskIndex.mergeWith(memoryIndex);
+
+		return file;
+	}
+
+	private String toString(Map<String, QueryResult> results)
+	{
+		StringBuilder builder = new StringBuilder();
+
+		for (String word : new TreeSet<String>(results.keySet()))
+		{
+			builder.append(word).append('=').append(new TreeSet<String>(results.get(word).getDocuments()));
+			builder.append('\n');
+		}
+
+		return builder.toString();
+	}
 }
@@ -0,0 +1,100 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.internal.index.core.FingerprintTable.Fingerprint;
+
+@SuppressWarnings("nls")
+public class FingerprintTableTest
+{
+	private File indexFile;
+	private FingerprintTable table;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		indexFile = File.createTempFile("fingerprints", ".index");
+		table = new FingerprintTable(indexFile);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		table.clear();
+		indexFile.delete();
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception
+	{
+		table.put("file:/a.js", new Fingerprint(10, 1000, 42));
+		table.put("file:/b.js", new Fingerprint(20, 2000, -7));
+		table.save();
+
+		FingerprintTable loaded = new FingerprintTable(indexFile);
+		loaded.load();
+
+		assertEquals(2, loaded.size());
+
+		Fingerprint fingerprint = loaded.get("file:/b.js");
+		assertNotNull(fingerprint);
+		assertEquals(20, fingerprint.size);
+		assertEquals(2000, fingerprint.lastModified);
+		assertEquals(-7, fingerprint.hash);
+	}
+
+	@Test
+	public void testRemovedFingerprintIsNotSaved() throws Exception
+	{
+		table.put("file:/a.js", new Fingerprint(10, 1000, 42));
+		table.save();
+		table.remove("file:/a.js");
+		table.save();
+
+		FingerprintTable loaded = new FingerprintTable(indexFile);
+		loaded.load();
+
+		assertNull(loaded.get("file:/a.js"));
+	}
+
+	@Test
+	public void testClearDeletesFile() throws Exception
+	{
+		table.put("file:/a.js", new Fingerprint(10, 1000, 42));
+		table.save();
+		table.clear();
+
+		FingerprintTable loaded = new FingerprintTable(indexFile);
+		loaded.load();
+
+		assertEquals(0, loaded.size());
+	}
+
+	@Test
+	public void testHash() throws Exception
+	{
+		long hash = FingerprintTable.hash(new ByteArrayInputStream("var x = 1;".getBytes("UTF-8")));
+
+		assertEquals(hash, FingerprintTable.hash(new ByteArrayInputStream("var x = 1;".getBytes("UTF-8"))));
+		assertFalse(hash == FingerprintTable.hash(new ByteArrayInputStream("var x = 2;".getBytes("UTF-8"))));
+		assertTrue(hash != 0);
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+
+@SuppressWarnings("nls")
+public class IndexDeltaTest
+{
+	private static final String[] CATEGORIES = new String[] { "type", "function" };
+
+	private MemoryIndex serial;
+	private MemoryIndex merged;
+	private IndexDelta delta;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		serial = new MemoryIndex();
+		merged = new MemoryIndex();
+		delta = new IndexDelta();
+
+		for (MemoryIndex index : new MemoryIndex[] { serial, merged })
+		{
+			index.addEntry("type", "Foo", "a.js");
+			index.addEntry("function", "foo", "a.js");
+			index.addEntry("type", "Bar", "b.js");
+		}
+	}
+
+	@Test
+	public void testEmpty() throws Exception
+	{
+		assertTrue(delta.isEmpty());
+
+		delta.remove("a.js");
+
+		assertFalse(delta.isEmpty());
+	}
+
+	@Test
+	public void testReindexDocument() throws Exception
+	{
+		serial.remove("a.js");
+		serial.addEntry("type", "Baz", "a.js");
+
+		delta.remove("a.js");
+		delta.addEntry("type", "Baz", "a.js");
+		delta.applyTo(merged);
+
+		assertEquals(contents(serial), contents(merged));
+		assertFalse(contents(merged).containsKey("Foo"));
+	}
+
+	@Test
+	public void testAddThenRemoveDocument() throws Exception
+	{
+		serial.addEntry("type", "Baz", "a.js");
+		serial.remove("a.js");
+
+		delta.addEntry("type", "Baz", "a.js");
+		delta.remove("a.js");
+		delta.applyTo(merged);
+
+		assertEquals(contents(serial), contents(merged));
+		assertFalse(contents(merged).containsKey("Baz"));
+	}
+
+	@Test
+	public void testAddToExistingDocument() throws Exception
+	{
+		serial.addEntry("type", "Baz", "b.js");
+		serial.addEntry("type", "Foo", "c.js");
+
+		delta.addEntry("type", "Baz", "b.js");
+		delta.addEntry("type", "Foo", "c.js");
+		delta.applyTo(merged);
+
+		assertEquals(contents(serial), contents(merged));
+		assertEquals(new TreeSet<String>(Arrays.asList("a.js", "c.js")), contents(merged).get("Foo"));
+	}
+
+	@Test
+	public void testQueryOnlySeesDeltaEntries() throws Exception
+	{
+		delta.addEntry("type", "Baz", "c.js");
+
+		Map<String, QueryResult> results = delta.addQueryResults(CATEGORIES, "*", SearchPattern.PATTERN_MATCH, null);
+
+		assertEquals(1, results.size());
+		assertTrue(results.containsKey("Baz"));
+	}
+
+	private Map<String, Set<String>> contents(MemoryIndex index)
+	{
+		Map<String, QueryResult> results = index.addQueryResults(CATEGORIES, "*", SearchPattern.PATTERN_MATCH, null);
+		Map<String, Set<String>> documents = new TreeMap<String, Set<String>>();
+
+		if (results != null)
+		{
+			for (Map.Entry<String, QueryResult> entry : results.entrySet())
+			{
+				documents.put(entry.getKey(), new TreeSet<String>(entry.getValue().getDocuments()));
+			}
+		}
+
+		return documents;
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+
+@SuppressWarnings("nls")
+public class MemoryIndexTest
+{
+	private static final String[] CATEGORIES = new String[] { "type" };
+
+	private MemoryIndex index;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		index = new MemoryIndex();
+		index.addEntry("type", "Foo", "a.js");
+		index.addEntry("type", "foobar", "b.js");
+		index.addEntry("type", "FooBar", "c.js");
+		index.addEntry("type", "Bar", "a.js");
+		index.addEntry("function", "foo", "d.js");
+	}
+
+	@Test
+	public void testExactMatchCaseSensitive() throws Exception
+	{
+		Map<String, Set<String>> results = query("Foo", SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE);
+
+		assertEquals(1, results.size());
+		assertEquals(new TreeSet<String>(Arrays.asList("a.js")), results.get("Foo"));
+	}
+
+	@Test
+	public void testExactMatch() throws Exception
+	{
+		Map<String, Set<String>> results = query("FOOBAR", SearchPattern.EXACT_MATCH);
+
+		assertEquals(new TreeSet<String>(Arrays.asList("foobar", "FooBar")), results.keySet());
+	}
+
+	@Test
+	public void testPrefixMatchCaseSensitive() throws Exception
+	{
+		Map<String, Set<String>> results = query("Foo", SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE);
+
+		assertEquals(new TreeSet<String>(Arrays.asList("Foo", "FooBar")), results.keySet());
+	}
+
+	@Test
+	public void testPrefixMatch() throws Exception
+	{
+		Map<String, Set<String>> results = query("fo", SearchPattern.PREFIX_MATCH);
+
+		assertEquals(new TreeSet<String>(Arrays.asList("Foo", "foobar", "FooBar")), results.keySet());
+	}
+
+	@Test
+	public void testPrefixMatchMatchesScan() throws Exception
+	{
+		// pattern matches still visit every word, so they should agree with the range lookup
+		assertEquals(query("foo*", SearchPattern.PATTERN_MATCH), query("foo", SearchPattern.PREFIX_MATCH));
+	}
+
+	@Test
+	public void testRemovedDocumentIsNotFound() throws Exception
+	{
+		index.remove("a.js");
+
+		assertTrue(query("Foo", SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE).isEmpty());
+		assertTrue(query("Bar", SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE).isEmpty());
+		assertEquals(new TreeSet<String>(Arrays.asList("foobar", "FooBar")), query("foo", SearchPattern.PREFIX_MATCH)
+				.keySet());
+
+		index.addEntry("type", "Foo", "a.js");
+
+		assertEquals(new TreeSet<String>(Arrays.asList("a.js")),
+				query("Foo", SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE).get("Foo"));
+	}
+
+	@Test
+	public void testRemoveCategories() throws Exception
+	{
+		index.removeCategories(CATEGORIES);
+
+		assertTrue(query("foo", SearchPattern.PREFIX_MATCH).isEmpty());
+	}
+
+	private Map<String, Set<String>> query(String key, int matchRules)
+	{
+		Map<String, QueryResult> results = index.addQueryResults(CATEGORIES, key, matchRules, null);
+		Map<String, Set<String>> documents = new TreeMap<String, Set<String>>();
+
+		for (Map.Entry<String, QueryResult> entry : results.entrySet())
+		{
+			documents.put(entry.getKey(), new TreeSet<String>(entry.getValue().getDocuments()));
+		}
+
+		return documents;
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+
+@SuppressWarnings("nls")
+public class QueryCacheTest
+{
+	private static final String[] CATEGORIES = new String[] { "type" };
+
+	private QueryCache cache;
+	private List<QueryResult> results;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		cache = new QueryCache(2);
+		results = new ArrayList<QueryResult>();
+		results.add(new QueryResult("Foo"));
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception
+	{
+		assertSame(QueryCache.NOT_CACHED, cache.get(CATEGORIES, "Foo", SearchPattern.EXACT_MATCH, 1));
+
+		cache.put(CATEGORIES, "Foo", SearchPattern.EXACT_MATCH, 1, results);
+
+		assertSame(results, cache.get(new String[] { "type" }, "Foo", SearchPattern.EXACT_MATCH, 1));
+		assertSame(QueryCache.NOT_CACHED, cache.get(CATEGORIES, "Foo", SearchPattern.PREFIX_MATCH, 1));
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testNewGenerationInvalidates() throws Exception
+	{
+		cache.put(CATEGORIES, "Foo", SearchPattern.EXACT_MATCH, 1, results);
+
+		assertSame(QueryCache.NOT_CACHED, cache.get(CATEGORIES, "Foo", SearchPattern.EXACT_MATCH, 2));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testStaleResultsAreNotCached() throws Exception
+	{
+		cache.put(CATEGORIES, "Foo", SearchPattern.EXACT_MATCH, 2, results);
+		cache.put(CATEGORIES, "Bar", SearchPattern.EXACT_MATCH, 1, results);
+
+		assertSame(QueryCache.NOT_CACHED, cache.get(CATEGORIES, "Bar", SearchPattern.EXACT_MATCH, 2));
+	}
+
+	@Test
+	public void testEmptyResultsAreCached() throws Exception
+	{
+		cache.put(CATEGORIES, "Foo", SearchPattern.EXACT_MATCH, 1, null);
+
+		assertNull(cache.get(CATEGORIES, "Foo", SearchPattern.EXACT_MATCH, 1));
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() throws Exception
+	{
+		cache.put(CATEGORIES, "Foo", SearchPattern.EXACT_MATCH, 1, results);
+		cache.put(CATEGORIES, "Bar", SearchPattern.EXACT_MATCH, 1, results);
+		cache.get(CATEGORIES, "Foo", SearchPattern.EXACT_MATCH, 1);
+		cache.put(CATEGORIES, "Baz", SearchPattern.EXACT_MATCH, 1, results);
+
+		assertEquals(2, cache.size());
+		assertSame(results, cache.get(CATEGORIES, "Foo", SearchPattern.EXACT_MATCH, 1));
+		assertSame(QueryCache.NOT_CACHED, cache.get(CATEGORIES, "Bar", SearchPattern.EXACT_MATCH, 1));
+	}
+}
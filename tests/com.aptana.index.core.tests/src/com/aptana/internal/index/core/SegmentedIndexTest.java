@@ -0,0 +1,189 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+
+@SuppressWarnings("nls")
+public class SegmentedIndexTest
+{
+	private static final String[] CATEGORIES = new String[] { "type" };
+	private static final int EXACT = SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE;
+
+	private File indexFile;
+	private SegmentedIndex index;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		indexFile = File.createTempFile("segmented", ".index");
+		index = new SegmentedIndex(indexFile.getAbsolutePath(), true, true);
+		index.initialize(false);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		if (index != null)
+		{
+			index.deleteFiles();
+			index = null;
+		}
+
+		indexFile = null;
+	}
+
+	@Test
+	public void testFlushAppendsSegments() throws Exception
+	{
+		MemoryIndex memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("type", "Foo", "a.js");
+		memoryIndex.addEntry("type", "Bar", "b.js");
+		index.flush(memoryIndex);
+
+		memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("type", "Foo", "c.js");
+		index.flush(memoryIndex);
+
+		assertEquals(2, index.getSegmentCount());
+		assertEquals(new TreeSet<String>(Arrays.asList("a.js", "c.js")), documents("Foo"));
+		assertEquals(new TreeSet<String>(Arrays.asList("b.js")), documents("Bar"));
+	}
+
+	@Test
+	public void testReindexedDocumentHidesOlderEntries() throws Exception
+	{
+		MemoryIndex memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("type", "Foo", "a.js");
+		memoryIndex.addEntry("type", "Bar", "a.js");
+		index.flush(memoryIndex);
+
+		memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("type", "Baz", "a.js");
+		index.flush(memoryIndex);
+
+		assertTrue(documents("Foo").isEmpty());
+		assertTrue(documents("Bar").isEmpty());
+		assertEquals(new TreeSet<String>(Arrays.asList("a.js")), documents("Baz"));
+		assertEquals(1, index.addDocumentNames(null, null).size());
+	}
+
+	@Test
+	public void testRemovedDocument() throws Exception
+	{
+		MemoryIndex memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("type", "Foo", "a.js");
+		memoryIndex.addEntry("type", "Foo", "b.js");
+		index.flush(memoryIndex);
+
+		memoryIndex = new MemoryIndex();
+		memoryIndex.remove("a.js");
+		index.flush(memoryIndex);
+
+		// a segment that only holds deletions isn't kept
+		assertEquals(1, index.getSegmentCount());
+		assertEquals(new TreeSet<String>(Arrays.asList("b.js")), documents("Foo"));
+	}
+
+	@Test
+	public void testSegmentsAndTombstonesSurviveReopen() throws Exception
+	{
+		MemoryIndex memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("type", "Foo", "a.js");
+		memoryIndex.addEntry("type", "Foo", "b.js");
+		index.flush(memoryIndex);
+
+		memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("type", "Bar", "b.js");
+		index.flush(memoryIndex);
+
+		index.close();
+		index = new SegmentedIndex(indexFile.getAbsolutePath(), false, true);
+		index.initialize(true);
+
+		assertEquals(2, index.getSegmentCount());
+		assertEquals(new TreeSet<String>(Arrays.asList("a.js")), documents("Foo"));
+		assertEquals(new TreeSet<String>(Arrays.asList("b.js")), documents("Bar"));
+	}
+
+	@Test
+	public void testCompact() throws Exception
+	{
+		MemoryIndex memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("type", "Foo", "a.js");
+		memoryIndex.addEntry("type", "Foo", "b.js");
+		memoryIndex.addEntry("type", "Bar", "c.js");
+		index.flush(memoryIndex);
+		index.compact();
+
+		for (int i = 0; i <= SegmentedIndex.MAX_SEGMENTS; i++)
+		{
+			memoryIndex = new MemoryIndex();
+			memoryIndex.addEntry("type", "Foo" + i, "d" + i + ".js");
+			memoryIndex.remove("c.js");
+			memoryIndex.addEntry("type", "Foo", "b.js");
+			index.flush(memoryIndex);
+		}
+
+		assertTrue(index.needsCompaction());
+		index.compact();
+
+		assertEquals(0, index.getSegmentCount());
+		assertFalse(index.needsCompaction());
+		assertEquals(new TreeSet<String>(Arrays.asList("a.js", "b.js")), documents("Foo"));
+		assertTrue(documents("Bar").isEmpty());
+		assertEquals(new TreeSet<String>(Arrays.asList("d3.js")), documents("Foo3"));
+		assertFalse(new File(indexFile.getPath() + ".1.seg").exists());
+		assertFalse(new File(indexFile.getPath() + ".del").exists());
+	}
+
+	@Test
+	public void testUnsegmentedFlushMergesIntoBase() throws Exception
+	{
+		index.deleteFiles();
+		index = new SegmentedIndex(indexFile.getAbsolutePath(), false, false);
+		index.initialize(false);
+
+		MemoryIndex memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("type", "Foo", "a.js");
+		index.flush(memoryIndex);
+
+		assertEquals(0, index.getSegmentCount());
+		assertEquals(new TreeSet<String>(Arrays.asList("a.js")), documents("Foo"));
+		assertNull(index.addQueryResults(CATEGORIES, "Missing", EXACT, null));
+	}
+
+	private Set<String> documents(String key) throws Exception
+	{
+		Map<String, QueryResult> results = index.addQueryResults(CATEGORIES, key, EXACT, null);
+		Set<String> documents = new TreeSet<String>();
+
+		if (results != null && results.containsKey(key))
+		{
+			documents.addAll(results.get(key).getDocuments());
+		}
+
+		return documents;
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.index;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+import org.jaxen.XPath;
+import org.junit.experimental.categories.Category;
+
+import com.aptana.core.tests.GlobalTimePerformanceTestCase;
+import com.aptana.core.util.IOUtil;
+import com.aptana.js.core.JSCorePlugin;
+import com.aptana.js.core.parsing.GraalJSParser;
+import com.aptana.js.core.parsing.JSParseState;
+import com.aptana.js.core.tests.ITestFiles;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.xpath.ParseNodeQuery;
+import com.aptana.parsing.xpath.ParseNodeXPath;
+import com.aptana.testing.categories.PerformanceTests;
+
+/**
+ * Compares looking up the lambdas the JS indexer processes with Jaxen and with the compiled {@link ParseNodeQuery},
+ * from the root of a file and from every function in it (as the indexer does for the lambdas it finds).
+ */
+@SuppressWarnings("nls")
+@Category({ PerformanceTests.class })
+public class JSLambdaQueryPerformanceTest extends GlobalTimePerformanceTestCase
+{
+	private static final String LAMBDAS_IN_SCOPE = "invoke[position() = 1]/group/function"
+			+ "|invoke[position() = 1]/function";
+
+	private List<IParseNode> contexts;
+
+	@Override
+	public void setUp() throws Exception
+	{
+		super.setUp();
+
+		contexts = new ArrayList<IParseNode>();
+		for (String resourceName : ITestFiles.DOJO_FILES)
+		{
+			InputStream stream = FileLocator.openStream(Platform.getBundle(JSCorePlugin.PLUGIN_ID), new Path(
+					resourceName), false);
+			String source = IOUtil.read(stream);
+			IParseNode root = new GraalJSParser().parse(new JSParseState(source)).getRootNode();
+
+			contexts.add(root);
+			contexts.addAll(ParseNodeQuery.compile("//function").select(root));
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		contexts = null;
+
+		super.tearDown();
+	}
+
+	public void testXPath() throws Exception
+	{
+		XPath query = new ParseNodeXPath(LAMBDAS_IN_SCOPE);
+
+		for (int i = 0; i < 20; i++)
+		{
+			startMeasuring();
+			for (IParseNode context : contexts)
+			{
+				query.selectNodes(context);
+			}
+			stopMeasuring();
+		}
+
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testCompiledQuery() throws Exception
+	{
+		ParseNodeQuery query = ParseNodeQuery.compile(LAMBDAS_IN_SCOPE);
+
+		for (int i = 0; i < 20; i++)
+		{
+			startMeasuring();
+			for (IParseNode context : contexts)
+			{
+				query.select(context);
+			}
+			stopMeasuring();
+		}
+
+		commitMeasurements();
+		assertPerformance();
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+import org.junit.experimental.categories.Category;
+
+import com.aptana.core.tests.GlobalTimePerformanceTestCase;
+import com.aptana.core.util.IOUtil;
+import com.aptana.js.core.JSCorePlugin;
+import com.aptana.js.core.tests.ITestFiles;
+import com.aptana.parsing.ParseState;
+import com.aptana.testing.categories.PerformanceTests;
+
+/**
+ * Times the parses of a large file which is edited inside a function body, near its start (so most of the AST comes
+ * after the edit and is copied with shifted offsets) and near its end. The incremental parses are measured and have to
+ * beat full parses of the same edits.
+ */
+@Category({ PerformanceTests.class })
+@SuppressWarnings("nls")
+public class JSIncrementalParserPerformanceTest extends GlobalTimePerformanceTestCase
+{
+	private static final int NUM_RUNS = 100;
+
+	/**
+	 * The text typed into the function body
+	 */
+	private static final String EDIT = "x;";
+
+	public void testDojoEditNearStart() throws Exception
+	{
+		assertIncrementalParse(ITestFiles.DOJO_FILES[0], 0.1);
+	}
+
+	public void testDojoEditNearEnd() throws Exception
+	{
+		assertIncrementalParse(ITestFiles.DOJO_FILES[0], 0.9);
+	}
+
+	public void testTiMobileEditNearStart() throws Exception
+	{
+		assertIncrementalParse(ITestFiles.TIMOBILE_FILES[0], 0.1);
+	}
+
+	/**
+	 * Alternately adds and removes an edit in the first function body after the given fraction of the file, timing the
+	 * incremental parses and comparing them to full parses.
+	 *
+	 * @param resourceName
+	 * @param position
+	 * @throws Exception
+	 */
+	private void assertIncrementalParse(String resourceName, double position) throws Exception
+	{
+		String source = getSource(resourceName);
+		int offset = source.indexOf(") {\n", (int) (source.length() * position));
+		assertTrue("No function body found in " + resourceName, offset != -1);
+		offset += 4;
+		String[] versions = new String[] { source.substring(0, offset) + EDIT + source.substring(offset), source };
+
+		JSIncrementalParser incrementalParser = new JSIncrementalParser();
+		incrementalParser.parse(new ParseState(source, 0));
+
+		long incrementalTime = 0;
+		for (int i = 0; i < NUM_RUNS; i++)
+		{
+			ParseState parseState = new ParseState(versions[i % 2], 0);
+			long start = System.nanoTime();
+			startMeasuring();
+			incrementalParser.parse(parseState);
+			stopMeasuring();
+			incrementalTime += System.nanoTime() - start;
+		}
+		commitMeasurements();
+		assertPerformance();
+		assertEquals("Not all the edits were parsed incrementally", NUM_RUNS,
+				incrementalParser.getIncrementalParseCount());
+
+		GraalJSParser parser = new GraalJSParser();
+		long fullTime = 0;
+		for (int i = 0; i < NUM_RUNS; i++)
+		{
+			ParseState parseState = new ParseState(versions[i % 2], 0);
+			long start = System.nanoTime();
+			parser.parse(parseState);
+			fullTime += System.nanoTime() - start;
+		}
+
+		assertTrue("Incremental parses (" + incrementalTime / 1000000 + "ms) weren't faster than full parses ("
+				+ fullTime / 1000000 + "ms)", incrementalTime < fullTime);
+	}
+
+	private String getSource(String resourceName) throws IOException
+	{
+		InputStream stream = FileLocator.openStream(Platform.getBundle(JSCorePlugin.PLUGIN_ID), new Path(resourceName),
+				false);
+		try
+		{
+			return IOUtil.read(stream);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+@SuppressWarnings("nls")
+public class JSIncrementalParserTest
+{
+	private static final String SOURCE = "var a = 1;\n" //
+			+ "function foo(x) {\n" //
+			+ "  // first\n" //
+			+ "  var y = function() { return x; };\n" //
+			+ "  return y();\n" //
+			+ "}\n" //
+			+ "/* after */\n" //
+			+ "function bar() { return foo(a); }\n";
+
+	private JSIncrementalParser parser;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		parser = new JSIncrementalParser();
+	}
+
+	@Test
+	public void testEditInsideFunctionBody() throws Exception
+	{
+		parse(SOURCE);
+		String source = SOURCE.replace("return y();", "var z = y() + 42;\n  return z;");
+		ParseResult result = parse(source);
+
+		assertEquals(1, parser.getIncrementalParseCount());
+		assertSameTree(source, result.getRootNode());
+	}
+
+	@Test
+	public void testEditInsideNestedFunctionBody() throws Exception
+	{
+		IParseRootNode root = parse(SOURCE).getRootNode();
+		String source = SOURCE.replace("return x;", "/* x */ return x * 2;");
+		ParseResult result = parse(source);
+
+		assertEquals(1, parser.getIncrementalParseCount());
+		assertNotSame(root, result.getRootNode());
+		assertSameTree(source, result.getRootNode());
+		assertParentsIn(result.getRootNode(), result.getRootNode());
+	}
+
+	@Test
+	public void testPreviousTreeIsUnchanged() throws Exception
+	{
+		IParseRootNode root = parse(SOURCE).getRootNode();
+		String source = SOURCE.replace("return y();", "/* y */ return y() + 1;");
+		parse(source);
+
+		assertEquals(1, parser.getIncrementalParseCount());
+		assertSameTree(SOURCE, root);
+		assertParentsIn(root, root);
+	}
+
+	@Test
+	public void testEditInsideStrictFunctionBody() throws Exception
+	{
+		String strict = "'use strict';\n" + SOURCE;
+		parse(strict);
+		String source = strict.replace("return y();", "var z = y() + 42;\n  return z;");
+		ParseResult result = parse(source);
+
+		assertEquals(1, parser.getIncrementalParseCount());
+		assertSameTree(source, result.getRootNode());
+	}
+
+	@Test
+	public void testSloppyOnlyEditInStrictCodeIsFullParse() throws Exception
+	{
+		String strict = "'use strict';\n" + SOURCE;
+		parse(strict);
+		// with statements are sloppy code only: the body must not be parsed as if it were
+		String source = strict.replace("return y();", "with (x) { return y(); }");
+		ParseResult result = parse(source);
+
+		assertEquals(0, parser.getIncrementalParseCount());
+		assertFalse(result.getErrors().isEmpty());
+	}
+
+	@Test
+	public void testSloppyOnlyEditInStrictFunctionIsFullParse() throws Exception
+	{
+		String strict = SOURCE.replace("function foo(x) {\n", "function foo(x) {\n  \"use strict\";\n");
+		parse(strict);
+		String source = strict.replace("return x;", "with (x) { return x; }");
+		ParseResult result = parse(source);
+
+		assertEquals(0, parser.getIncrementalParseCount());
+		assertFalse(result.getErrors().isEmpty());
+	}
+
+	@Test
+	public void testEditOutsideFunctionsIsFullParse() throws Exception
+	{
+		parse(SOURCE);
+		String source = SOURCE.replace("var a = 1;", "var a = 12;");
+		ParseResult result = parse(source);
+
+		assertEquals(0, parser.getIncrementalParseCount());
+		assertSameTree(source, result.getRootNode());
+	}
+
+	@Test
+	public void testEditAcrossFunctionsIsFullParse() throws Exception
+	{
+		parse(SOURCE);
+		String source = SOURCE.replace("return y();\n}\n/* after */\nfunction bar() {", "return y();");
+		ParseResult result = parse(source);
+
+		assertEquals(0, parser.getIncrementalParseCount());
+		assertSameTree(source, result.getRootNode());
+	}
+
+	@Test
+	public void testEditClosingTheBodyIsFullParse() throws Exception
+	{
+		parse(SOURCE);
+		// The body now ends before the old closing brace: must not be spliced in.
+		String source = SOURCE.replace("return y();", "return y(); } function baz() {");
+		ParseResult result = parse(source);
+
+		assertEquals(0, parser.getIncrementalParseCount());
+		assertSameTree(source, result.getRootNode());
+	}
+
+	private ParseResult parse(String source) throws Exception
+	{
+		return parser.parse(new ParseState(source, 0));
+	}
+
+	private void assertSameTree(String source, IParseRootNode root) throws Exception
+	{
+		IParseRootNode expected = new GraalJSParser().parse(new ParseState(source, 0)).getRootNode();
+
+		assertEquals(toString(expected), toString(root));
+		assertEquals(toString(expected.getCommentNodes()), toString(root.getCommentNodes()));
+	}
+
+	private void assertParentsIn(IParseNode node, IParseRootNode root)
+	{
+		for (IParseNode child : node.getChildren())
+		{
+			assertSame(node, child.getParent());
+			assertParentsIn(child, root);
+		}
+	}
+
+	private String toString(IParseNode... nodes)
+	{
+		StringBuilder builder = new StringBuilder();
+		for (IParseNode node : nodes)
+		{
+			builder.append('(').append(node.getClass().getSimpleName()).append(' ')
+					.append(node.getStartingOffset()).append('-').append(node.getEndingOffset());
+			builder.append(toString(node.getChildren())).append(')');
+		}
+		return builder.toString();
+	}
+}
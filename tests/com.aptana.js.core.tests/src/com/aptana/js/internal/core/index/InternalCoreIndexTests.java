@@ -5,7 +5,8 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ JSIndexTest.class, JSMetadataIndexWriterTest.class, MetadataTest.class, JSCAParserTest.class })
+@SuiteClasses({ JSElementCodecTest.class, JSIndexTest.class, JSMetadataIndexWriterTest.class, MetadataTest.class, JSCAParserTest.class,
+		JSTypeGraphTest.class })
 public class InternalCoreIndexTests
 {
 }
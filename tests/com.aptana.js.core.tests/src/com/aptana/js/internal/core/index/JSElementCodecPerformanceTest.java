@@ -0,0 +1,164 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.experimental.categories.Category;
+
+import com.aptana.core.tests.GlobalTimePerformanceTestCase;
+import com.aptana.jetty.util.epl.ajax.JSON;
+import com.aptana.js.core.model.FunctionElement;
+import com.aptana.js.core.model.ParameterElement;
+import com.aptana.js.core.model.ReturnTypeElement;
+import com.aptana.js.core.model.UserAgentElement;
+import com.aptana.testing.categories.PerformanceTests;
+
+/**
+ * Compares reading and writing index payloads for functions as JSON text and in the binary encoding of
+ * {@link JSElementCodec}
+ */
+@SuppressWarnings("nls")
+@Category({ PerformanceTests.class })
+public class JSElementCodecPerformanceTest extends GlobalTimePerformanceTestCase
+{
+	private static final int NUMBER_OF_ELEMENTS = 5000;
+	private static final String[] TYPES = new String[] { "String", "Number", "Boolean", "Object", "Array", "Window",
+			"Document", "HTMLElement" };
+	private static final String[] PLATFORMS = new String[] { "IE", "Firefox", "Safari", "Chrome", "Opera" };
+
+	private List<FunctionElement> functions;
+
+	@Override
+	public void setUp() throws Exception
+	{
+		super.setUp();
+
+		functions = new ArrayList<FunctionElement>(NUMBER_OF_ELEMENTS);
+
+		for (int i = 0; i < NUMBER_OF_ELEMENTS; i++)
+		{
+			FunctionElement function = new FunctionElement();
+			function.setName("function" + i);
+			function.setOwningType(TYPES[i % TYPES.length]);
+			function.setDescription("Description of function" + i + " which does something useful");
+			function.setIsMethod(true);
+
+			for (int p = 0; p < 3; p++)
+			{
+				ParameterElement parameter = new ParameterElement();
+				parameter.setName("param" + p);
+				parameter.addType(TYPES[(i + p) % TYPES.length]);
+				parameter.setUsage("required");
+				function.addParameter(parameter);
+			}
+
+			ReturnTypeElement returnType = new ReturnTypeElement();
+			returnType.setType(TYPES[(i + 3) % TYPES.length]);
+			function.addReturnType(returnType);
+
+			for (String platform : PLATFORMS)
+			{
+				UserAgentElement userAgent = new UserAgentElement();
+				userAgent.setPlatform(platform);
+				function.addUserAgent(userAgent);
+			}
+
+			functions.add(function);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		functions = null;
+
+		super.tearDown();
+	}
+
+	public void testJSONWrite() throws Exception
+	{
+		for (int i = 0; i < 20; i++)
+		{
+			startMeasuring();
+			for (FunctionElement function : functions)
+			{
+				JSON.toString(function);
+			}
+			stopMeasuring();
+		}
+
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testBinaryWrite() throws Exception
+	{
+		for (int i = 0; i < 20; i++)
+		{
+			startMeasuring();
+			for (FunctionElement function : functions)
+			{
+				JSElementCodec.encode(function);
+			}
+			stopMeasuring();
+		}
+
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	@SuppressWarnings("rawtypes")
+	public void testJSONRead() throws Exception
+	{
+		List<String> payloads = new ArrayList<String>(functions.size());
+
+		for (FunctionElement function : functions)
+		{
+			payloads.add(JSON.toString(function));
+		}
+
+		for (int i = 0; i < 20; i++)
+		{
+			startMeasuring();
+			for (String payload : payloads)
+			{
+				new FunctionElement().fromJSON((Map) JSON.parse(payload));
+			}
+			stopMeasuring();
+		}
+
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testBinaryRead() throws Exception
+	{
+		List<String> payloads = new ArrayList<String>(functions.size());
+
+		for (FunctionElement function : functions)
+		{
+			payloads.add(JSElementCodec.encode(function));
+		}
+
+		for (int i = 0; i < 20; i++)
+		{
+			startMeasuring();
+			for (String payload : payloads)
+			{
+				new FunctionElement().fromJSON(JSElementCodec.decode(payload));
+			}
+			stopMeasuring();
+		}
+
+		commitMeasurements();
+		assertPerformance();
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.aptana.jetty.util.epl.ajax.JSON;
+import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
+import com.aptana.jetty.util.epl.ajax.JSON.Output;
+import com.aptana.js.core.index.IJSIndexConstants;
+import com.aptana.js.core.model.FunctionElement;
+import com.aptana.js.core.model.ParameterElement;
+import com.aptana.js.core.model.PropertyElement;
+import com.aptana.js.core.model.ReturnTypeElement;
+import com.aptana.js.core.model.SinceElement;
+import com.aptana.js.core.model.UserAgentElement;
+
+@SuppressWarnings("nls")
+public class JSElementCodecTest
+{
+	/**
+	 * createFunction
+	 * 
+	 * @return
+	 */
+	private FunctionElement createFunction()
+	{
+		FunctionElement function = new FunctionElement();
+		function.setName("indexOf");
+		function.setOwningType("String");
+		function.setDescription("Returns the index of the first occurrence of \"value\", or -1 if not found.");
+		function.setIsMethod(true);
+		function.setIsDeprecated(true);
+		function.addExample("'abc'.indexOf('b');");
+		function.addReference("lastIndexOf");
+
+		ParameterElement parameter = new ParameterElement();
+		parameter.setName("searchValue");
+		parameter.addType("String");
+		parameter.setUsage("required");
+		function.addParameter(parameter);
+
+		parameter = new ParameterElement();
+		parameter.setName("fromIndex");
+		parameter.addType("Number");
+		parameter.setUsage("optional");
+		function.addParameter(parameter);
+
+		ReturnTypeElement returnType = new ReturnTypeElement();
+		returnType.setType("Number");
+		returnType.setDescription("élément 日本");
+		function.addReturnType(returnType);
+
+		SinceElement since = new SinceElement();
+		since.setName("JavaScript");
+		since.setVersion("1.0");
+		function.addSince(since);
+
+		UserAgentElement userAgent = new UserAgentElement();
+		userAgent.setPlatform("IE");
+		userAgent.setVersion("5.5");
+		function.addUserAgent(userAgent);
+
+		return function;
+	}
+
+	@Test
+	public void testFunctionRoundTrip()
+	{
+		FunctionElement function = createFunction();
+		String payload = JSElementCodec.encode(function);
+
+		assertTrue(JSElementCodec.isEncoded(payload));
+
+		FunctionElement decoded = new FunctionElement();
+		decoded.fromJSON(JSElementCodec.decode(payload));
+
+		assertEquals(JSON.toString(function), JSON.toString(decoded));
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void testDecodesLikeJSON()
+	{
+		FunctionElement function = createFunction();
+		Map json = (Map) JSON.parse(JSON.toString(function));
+		Map binary = JSElementCodec.decode(JSElementCodec.encode(function));
+
+		assertEquals(json.keySet(), binary.keySet());
+
+		FunctionElement fromJSON = new FunctionElement();
+		fromJSON.fromJSON(json);
+		FunctionElement fromBinary = new FunctionElement();
+		fromBinary.fromJSON(binary);
+
+		assertEquals(JSON.toString(fromJSON), JSON.toString(fromBinary));
+	}
+
+	@Test
+	public void testAllUserAgentsIsPreserved()
+	{
+		PropertyElement property = new PropertyElement();
+		property.setName("length");
+		property.setOwningType("Array");
+		property.addType("Number");
+		property.setHasAllUserAgents();
+
+		PropertyElement decoded = new PropertyElement();
+		decoded.fromJSON(JSElementCodec.decode(JSElementCodec.encode(property)));
+
+		assertTrue(decoded.hasAllUserAgents());
+		assertEquals("length", decoded.getName());
+		assertEquals("Array", decoded.getOwningType());
+		assertEquals("Number", decoded.getTypeNames().get(0));
+	}
+
+	@Test
+	public void testEncodedPayloadIsSmallerThanJSON()
+	{
+		FunctionElement function = createFunction();
+
+		assertTrue(JSElementCodec.encode(function).length() < JSON.toString(function).length());
+	}
+
+	@Test
+	public void testJSONIsNotEncoded()
+	{
+		assertFalse(JSElementCodec.isEncoded(JSON.toString(createFunction())));
+		assertFalse(JSElementCodec.isEncoded(""));
+		assertFalse(JSElementCodec.isEncoded(null));
+	}
+
+	@Test
+	public void testPayloadHasNoDelimiter()
+	{
+		FunctionElement function = createFunction();
+		function.setDescription("null \0 character and escape \u0002 character");
+
+		String payload = JSElementCodec.encode(function);
+		assertEquals(-1, payload.indexOf(IJSIndexConstants.DELIMITER));
+
+		FunctionElement decoded = new FunctionElement();
+		decoded.fromJSON(JSElementCodec.decode(payload));
+		assertEquals(JSON.toString(function), JSON.toString(decoded));
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void testNumbersHaveNoDelimiter()
+	{
+		final long[] values = new long[] { 0, 1, -1, 63, 64, 1024, Long.MAX_VALUE, Long.MIN_VALUE };
+		Convertible numbers = new Convertible()
+		{
+			public void toJSON(Output out)
+			{
+				for (int i = 0; i < values.length; i++)
+				{
+					out.add("long" + i, values[i]);
+				}
+				out.add("double", 0.0);
+				out.add("negativeDouble", -Double.MAX_VALUE);
+			}
+
+			public void fromJSON(Map object)
+			{
+			}
+		};
+
+		String payload = JSElementCodec.encode(numbers);
+		assertEquals(-1, payload.indexOf(IJSIndexConstants.DELIMITER));
+
+		Map decoded = JSElementCodec.decode(payload);
+		for (int i = 0; i < values.length; i++)
+		{
+			assertEquals(Long.valueOf(values[i]), decoded.get("long" + i));
+		}
+		assertEquals(new Double(0.0), decoded.get("double"));
+		assertEquals(new Double(-Double.MAX_VALUE), decoded.get("negativeDouble"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTruncatedPayload()
+	{
+		String payload = JSElementCodec.encode(createFunction());
+
+		JSElementCodec.decode(payload.substring(0, payload.length() / 2));
+	}
+}
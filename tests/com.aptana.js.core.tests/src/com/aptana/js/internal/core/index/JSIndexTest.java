@@ -10,6 +10,7 @@ package com.aptana.js.internal.core.index;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -749,4 +750,95 @@ public class JSIndexTest
 		assertEquals(1, types.size());
 		assertTrue(types.get(0).isInternal());
 	}
+
+	@Test
+	public void testMembersReflectIndexChanges()
+	{
+		JSIndexReader reader = new JSIndexReader();
+		JSIndexWriter writer = new JSIndexWriter();
+
+		TypeElement type = new TypeElement();
+		type.setName("Testing");
+		PropertyElement property = new PropertyElement();
+		property.setName("first");
+		type.addProperty(property);
+		writer.writeType(getIndex(), type);
+
+		assertEquals(1, reader.getProperties(getIndex(), "Testing").size());
+
+		// add a second property after the members have been looked up once
+		type = new TypeElement();
+		type.setName("Testing");
+		property = new PropertyElement();
+		property.setName("second");
+		type.addProperty(property);
+		FunctionElement function = new FunctionElement();
+		function.setName("method");
+		type.addProperty(function);
+		writer.writeType(getIndex(), type);
+
+		assertEquals(2, reader.getProperties(getIndex(), "Testing").size());
+		assertEquals(1, reader.getProperties(getIndex(), "Testing", "second").size());
+		assertTrue(reader.getProperties(getIndex(), "Testing", "method").isEmpty());
+		assertEquals(1, reader.getFunctions(getIndex(), "Testing", "method").size());
+		assertTrue(reader.getProperties(getIndex(), "Unknown").isEmpty());
+	}
+
+	@Test
+	public void testGenericArrayMembersAreNotDuplicated()
+	{
+		TypeElement type = new TypeElement();
+		type.setName("Array");
+		PropertyElement property = new PropertyElement();
+		property.setName("length");
+		type.addProperty(property);
+		new JSIndexWriter().writeType(getIndex(), type);
+
+		List<PropertyElement> properties = new JSIndexReader().getProperties(getIndex(),
+				CollectionsUtil.newList("Array<String>", "Array"));
+
+		assertEquals(1, properties.size());
+		assertEquals("length", properties.get(0).getName());
+	}
+
+	@Test
+	public void testMemberTableFollowsIndexChanges()
+	{
+		Index index = getIndex();
+		JSIndexReader reader = new JSIndexReader();
+		JSIndexWriter writer = new JSIndexWriter();
+		URI document = URI.create("file:/members.js");
+
+		TypeElement type = new TypeElement();
+		type.setName("Testing");
+		PropertyElement property = new PropertyElement();
+		property.setName("first");
+		type.addProperty(property);
+		writer.writeType(index, type);
+
+		assertEquals(1, reader.getProperties(index, "Testing").size());
+		JSMemberTable table = JSMemberTable.getTable(index, IJSIndexConstants.PROPERTY);
+
+		// entries written through a delta, as builds do, show up once it's committed
+		index.beginDelta();
+		try
+		{
+			index.addEntry(IJSIndexConstants.PROPERTY,
+					JSMemberTable.createKey("Testing", "second", "{\"name\":\"second\"}"), document);
+		}
+		finally
+		{
+			index.commitDelta();
+		}
+
+		assertEquals(2, reader.getProperties(index, "Testing").size());
+		assertEquals(1, reader.getProperties(index, "Testing", "second").size());
+
+		index.remove(document);
+		assertEquals(1, reader.getProperties(index, "Testing").size());
+		assertTrue(reader.getProperties(index, "Testing", "second").isEmpty());
+
+		// the table was updated rather than read again
+		assertSame(table, JSMemberTable.getTable(index, IJSIndexConstants.PROPERTY));
+	}
 }
@@ -0,0 +1,177 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.core.util.FileUtil;
+import com.aptana.index.core.Index;
+import com.aptana.index.core.IndexManager;
+import com.aptana.index.core.IndexPlugin;
+import com.aptana.js.core.model.TypeElement;
+
+@SuppressWarnings("nls")
+public class JSTypeGraphTest
+{
+	private URI projectURI;
+	private URI libraryURI;
+	private Index project;
+	private Index library;
+	private JSIndexWriter writer;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		File tmpDir = FileUtil.getTempDirectory().toFile();
+		projectURI = new File(tmpDir, "typeGraphProject_" + System.currentTimeMillis()).toURI();
+		libraryURI = new File(tmpDir, "typeGraphLibrary_" + System.currentTimeMillis()).toURI();
+		project = getIndexManager().getIndex(projectURI);
+		library = getIndexManager().getIndex(libraryURI);
+		writer = new JSIndexWriter();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		getIndexManager().removeIndex(projectURI);
+		getIndexManager().removeIndex(libraryURI);
+		project = null;
+		library = null;
+		writer = null;
+	}
+
+	protected IndexManager getIndexManager()
+	{
+		return IndexPlugin.getDefault().getIndexManager();
+	}
+
+	private void writeType(Index index, String name, String... parentTypes)
+	{
+		TypeElement type = new TypeElement();
+		type.setName(name);
+		for (String parentType : parentTypes)
+		{
+			type.addParentType(parentType);
+		}
+		writer.writeType(index, type);
+	}
+
+	@Test
+	public void testAncestorNames()
+	{
+		writeType(library, "Object", "Base");
+		writeType(library, "Node", "EventTarget");
+		writeType(library, "Element", "Node");
+		writeType(library, "EventTarget");
+
+		JSTypeGraph graph = JSTypeGraph.getGraph(Collections.singletonList(library));
+		assertEquals(Arrays.asList("Node", "EventTarget", "Object"), graph.getAncestorNames("Element"));
+		// the parents of Object are only followed from Object itself
+		assertEquals(Arrays.asList("Base"), graph.getAncestorNames("Object"));
+		assertEquals(Collections.emptyList(), graph.getAncestorNames("Unknown"));
+		assertEquals(Collections.emptyList(), graph.getAncestorNames(null));
+	}
+
+	@Test
+	public void testGenericArrays()
+	{
+		writeType(library, "Array", "Iterable");
+		writeType(library, "Iterable");
+		writeType(library, "Strings", "Array<String>");
+
+		JSTypeGraph graph = JSTypeGraph.getGraph(Collections.singletonList(library));
+		assertEquals(Arrays.asList("Array<String>", "Iterable", "Object"), graph.getAncestorNames("Strings"));
+		assertEquals(graph.getAncestorNames("Array"), graph.getAncestorNames("Array<Number>"));
+	}
+
+	@Test
+	public void testCycle()
+	{
+		writeType(library, "A", "B");
+		writeType(library, "B", "A");
+
+		JSTypeGraph graph = JSTypeGraph.getGraph(Collections.singletonList(library));
+		assertEquals(Arrays.asList("B", "A"), graph.getAncestorNames("A"));
+	}
+
+	@Test
+	public void testMergedIndices()
+	{
+		writeType(library, "Widget", "EventTarget");
+		writeType(project, "Button", "Widget");
+		writeType(project, "Widget", "Observable");
+
+		List<Index> indices = Arrays.asList(project, library);
+		JSTypeGraph graph = JSTypeGraph.getGraph(indices);
+		assertEquals(Arrays.asList("Widget", "Observable", "EventTarget"), graph.getAncestorNames("Button"));
+		assertSame(graph, JSTypeGraph.getGraph(indices));
+
+		// reindexing the project updates the graph in place
+		writeType(project, "Toggle", "Button");
+		assertSame(graph, JSTypeGraph.getGraph(indices));
+		assertEquals(Arrays.asList("Button", "Widget", "Observable", "EventTarget"), graph.getAncestorNames("Toggle"));
+	}
+
+	@Test
+	public void testChangeOnlyDropsAncestorsOfDescendants()
+	{
+		writeType(library, "Node", "EventTarget");
+		writeType(library, "Element", "Node");
+		writeType(library, "Widget", "Observable");
+
+		JSTypeGraph graph = JSTypeGraph.getGraph(Collections.singletonList(library));
+		graph.getAncestorNames("Element");
+		graph.getAncestorNames("Node");
+		graph.getAncestorNames("Widget");
+		assertTrue(graph.isCached("Element"));
+
+		writeType(library, "EventTarget", "Base");
+		assertFalse(graph.isCached("Element"));
+		assertFalse(graph.isCached("Node"));
+		assertTrue(graph.isCached("Widget"));
+		assertTrue(graph.getAncestorNames("Element").contains("Base"));
+
+		// a type that doesn't change the parents of the others
+		writeType(library, "Unrelated", "Thing");
+		assertTrue(graph.isCached("Element"));
+		assertTrue(graph.isCached("Widget"));
+	}
+
+	@Test
+	public void testRemovedDocument() throws Exception
+	{
+		URI document = new URI("file:/types.js");
+		TypeElement type = new TypeElement();
+		type.setName("Widget");
+		type.addParentType("Observable");
+		writer.writeType(library, type, document);
+		writeType(library, "Widget", "EventTarget");
+
+		JSTypeGraph graph = JSTypeGraph.getGraph(Collections.singletonList(library));
+		assertEquals(new HashSet<String>(Arrays.asList("Observable", "EventTarget")),
+				new HashSet<String>(graph.getAncestorNames("Widget")));
+
+		library.remove(document);
+		assertSame(graph, JSTypeGraph.getGraph(Collections.singletonList(library)));
+		assertEquals(Arrays.asList("EventTarget"), graph.getAncestorNames("Widget"));
+	}
+}
@@ -12,7 +12,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ NodeModuleResolverTest.class, })
+@SuiteClasses({ JSTypeInferenceCacheTest.class, NodeModuleResolverTest.class, })
 public class InternalCoreInferencingTests
 {
 
@@ -0,0 +1,162 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.inferencing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import beaver.Symbol;
+
+import com.aptana.js.core.inferencing.JSScope;
+import com.aptana.js.core.parsing.ast.JSNode;
+import com.aptana.js.core.parsing.ast.JSParseRootNode;
+import com.aptana.js.core.parsing.ast.JSStringNode;
+
+@SuppressWarnings("nls")
+public class JSTypeInferenceCacheTest
+{
+	private static final URI LOCATION = URI.create("file:/test.js");
+
+	private JSParseRootNode root;
+	private JSNode a;
+	private JSNode b;
+	private JSNode c;
+	private JSScope scope;
+	private JSTypeInferenceCache cache;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		a = new JSStringNode("'a'");
+		b = new JSStringNode("'b'");
+		c = new JSStringNode("'c'");
+		root = new JSParseRootNode(new Symbol[] { a, b, c });
+		scope = new JSScope();
+		cache = JSTypeInferenceCache.getCache(a, null, LOCATION, scope);
+	}
+
+	@Test
+	public void testCacheIsAttachedToRoot()
+	{
+		assertNotNull(cache);
+		assertSame(cache, root.getInferenceCache());
+		assertSame(cache, JSTypeInferenceCache.getCache(b, null, LOCATION, scope));
+		assertNull(JSTypeInferenceCache.getCache(new JSStringNode("'d'"), null, LOCATION, scope));
+
+		// a different file or global scope needs a new cache
+		assertNotSame(cache, JSTypeInferenceCache.getCache(a, null, URI.create("file:/other.js"), scope));
+		assertNotSame(cache, JSTypeInferenceCache.getCache(a, null, LOCATION, new JSScope()));
+
+		// as does a change to the tree
+		root.invalidateIndex();
+		assertNull(root.getInferenceCache());
+	}
+
+	@Test
+	public void testResultsAreKept()
+	{
+		assertNull(cache.get(a, scope));
+		assertTrue(cache.enter(a, scope));
+		List<String> types = cache.exit(Arrays.asList("String"));
+
+		assertEquals(Arrays.asList("String"), types);
+		assertEquals(types, cache.get(a, scope));
+		assertNull(cache.get(a, new JSScope()));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testFailedInferenceIsNotKept()
+	{
+		assertTrue(cache.enter(a, scope));
+		assertNull(cache.exit(null));
+		assertNull(cache.get(a, scope));
+	}
+
+	@Test
+	public void testCycle()
+	{
+		assertTrue(cache.enter(a, scope));
+		assertTrue(cache.enter(b, scope));
+		assertTrue(cache.enter(c, scope));
+		assertFalse(cache.enter(a, scope));
+		cache.exit(Arrays.asList("Number"));
+		cache.exit(Arrays.asList("Number"));
+		cache.exit(Arrays.asList("Number"));
+
+		// b and c were inferred while a wasn't known yet
+		assertNull(cache.get(c, scope));
+		assertNull(cache.get(b, scope));
+		assertEquals(Arrays.asList("Number"), cache.get(a, scope));
+	}
+
+	@Test
+	public void testIncompleteResultsAreNotKept()
+	{
+		assertTrue(cache.enter(a, scope));
+		assertTrue(cache.enter(b, scope));
+		JSTypeInferenceCache.markIncomplete();
+		cache.exit(Arrays.asList("Number"));
+		assertTrue(cache.enter(c, scope));
+		cache.exit(Arrays.asList("Number"));
+		cache.exit(Arrays.asList("Number"));
+
+		assertNull(cache.get(a, scope));
+		assertNull(cache.get(b, scope));
+		assertEquals(Arrays.asList("Number"), cache.get(c, scope));
+	}
+
+	@Test
+	public void testDependencies()
+	{
+		assertTrue(cache.enter(a, scope));
+		JSTypeInferenceCache.addDependency("Foo");
+		cache.exit(Arrays.asList("Bar"));
+
+		// b uses the result of a, c doesn't
+		assertTrue(cache.enter(b, scope));
+		cache.get(a, scope);
+		cache.exit(Arrays.asList("Bar"));
+		assertTrue(cache.enter(c, scope));
+		JSTypeInferenceCache.addDependency("Baz");
+		cache.exit(Arrays.asList("Bar"));
+		assertEquals(3, cache.size());
+
+		cache.invalidate("Foo");
+		assertNull(cache.get(a, scope));
+		assertNull(cache.get(b, scope));
+		assertEquals(Arrays.asList("Bar"), cache.get(c, scope));
+	}
+
+	@Test
+	public void testTypeChangedDuringInference()
+	{
+		assertTrue(cache.enter(a, scope));
+		JSTypeInferenceCache.addDependency("Foo");
+		cache.exit(Arrays.asList("Bar"));
+
+		assertTrue(cache.enter(b, scope));
+		JSTypeInferenceCache.typeChanged("Foo");
+		cache.exit(Arrays.asList("Foo"));
+
+		assertNull(cache.get(a, scope));
+		assertEquals(Arrays.asList("Foo"), cache.get(b, scope));
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.parsing.IParseState;
+import com.aptana.parsing.IParser;
+import com.aptana.parsing.ParseResult;
+
+public class ParserPoolTest
+{
+	private static class TestParser implements IParser
+	{
+		int parses;
+
+		public ParseResult parse(IParseState parseState) throws Exception
+		{
+			parses++;
+			return ParseResult.EMPTY;
+		}
+	}
+
+	private static class TestParserPool extends ParserPool
+	{
+		TestParserPool(int minSize)
+		{
+			// expire the parsers as soon as they're idle
+			super(minSize, 0);
+		}
+
+		@Override
+		protected IParser createParser()
+		{
+			return new TestParser();
+		}
+	}
+
+	private TestParserPool pool;
+	private ExecutorService otherThread;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		pool = new TestParserPool(2);
+		otherThread = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		otherThread.shutdownNow();
+		pool.dispose();
+	}
+
+	@Test
+	public void testThreadGetsBackItsParser() throws Exception
+	{
+		IParser mine = pool.checkOut();
+		IParser other = otherThread.submit(new Callable<IParser>()
+		{
+			public IParser call() throws Exception
+			{
+				IParser parser = pool.checkOut();
+				pool.checkIn(parser);
+				return parser;
+			}
+		}).get();
+		assertNotSame(mine, other);
+		pool.checkIn(mine);
+
+		for (int i = 0; i < 5; i++)
+		{
+			IParser parser = pool.checkOut();
+			assertSame(mine, parser);
+			pool.checkIn(parser);
+		}
+		assertSame(other, otherThread.submit(new Callable<IParser>()
+		{
+			public IParser call() throws Exception
+			{
+				return pool.checkOut();
+			}
+		}).get());
+		assertEquals(2, pool.getCreatedCount());
+		assertEquals(6, pool.getReusedCount());
+	}
+
+	@Test
+	public void testKeepsMinimumIdleParsers() throws Exception
+	{
+		List<IParser> parsers = new ArrayList<IParser>();
+		for (int i = 0; i < 5; i++)
+		{
+			parsers.add(pool.checkOut());
+		}
+		for (IParser parser : parsers)
+		{
+			pool.checkIn(parser);
+		}
+		Thread.sleep(10);
+		pool.reap();
+
+		assertEquals(5, pool.getCreatedCount());
+		assertEquals(3, pool.getReapedCount());
+
+		// the remaining ones are reused
+		IParser first = pool.checkOut();
+		IParser second = pool.checkOut();
+		pool.checkOut();
+		assertEquals(2, pool.getReusedCount());
+		assertEquals(6, pool.getCreatedCount());
+		assertNotSame(first, second);
+	}
+
+	@Test
+	public void testWarmUp() throws Exception
+	{
+		pool.warmUp();
+
+		assertEquals(2, pool.getCreatedCount());
+		TestParser first = (TestParser) pool.checkOut();
+		TestParser second = (TestParser) pool.checkOut();
+		assertEquals(1, first.parses);
+		assertEquals(1, second.parses);
+		assertEquals(2, pool.getCreatedCount());
+	}
+}
@@ -0,0 +1,308 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import beaver.Symbol;
+
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseError;
+import com.aptana.parsing.ast.ParseNode;
+import com.aptana.parsing.ast.ParseRootNode;
+
+@SuppressWarnings("nls")
+public class PersistentParseCacheTest
+{
+	private static final String LANG = "text/simple";
+	private static final String PARSER = "SimpleParser@1.0.0";
+
+	static class TestNode extends ParseNode
+	{
+		public TestNode(int start, int end)
+		{
+			super();
+			setLocation(start, end);
+		}
+
+		public String getLanguage()
+		{
+			return LANG;
+		}
+	}
+
+	static class TestRootNode extends ParseRootNode
+	{
+		public TestRootNode(int start, int end)
+		{
+			super(new Symbol[0], start, end);
+		}
+
+		public String getLanguage()
+		{
+			return LANG;
+		}
+	}
+
+	/**
+	 * A node which can't be serialized (holds a thread).
+	 */
+	static class UnserializableNode extends TestNode
+	{
+		Object thread = Thread.currentThread();
+
+		public UnserializableNode(int start, int end)
+		{
+			super(start, end);
+		}
+	}
+
+	/**
+	 * A node referring to another node and to a symbol besides its children.
+	 */
+	static class LinkedNode extends TestNode
+	{
+		IParseNode target;
+		Symbol operator;
+
+		public LinkedNode(int start, int end)
+		{
+			super(start, end);
+		}
+	}
+
+	/**
+	 * A node which fails to serialize (like a lazy node whose conversion throws).
+	 */
+	static class FailingNode extends TestNode
+	{
+		public FailingNode(int start, int end)
+		{
+			super(start, end);
+		}
+
+		private Object writeReplace()
+		{
+			throw new IllegalStateException("conversion failed");
+		}
+	}
+
+	private File directory;
+	private PersistentParseCache cache;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		directory = File.createTempFile("parseCache", "");
+		directory.delete();
+		cache = new PersistentParseCache(directory, 1024 * 1024);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		cache.clear();
+		directory.delete();
+	}
+
+	@Test
+	public void testStoredResultIsReadBack() throws Exception
+	{
+		String source = "abc def";
+		cache.put(LANG, PARSER, source, createResult(source));
+
+		ParseResult result = get(source);
+		assertNotNull(result);
+		assertEquals(toString(createResult(source).getRootNode()), toString(result.getRootNode()));
+		assertEquals(1, result.getErrors().size());
+		assertEquals("error at 4", result.getErrors().get(0).getMessage());
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testNodeReferencesAreReadBack() throws Exception
+	{
+		TestRootNode root = new TestRootNode(0, 4);
+		LinkedNode first = new LinkedNode(0, 0);
+		TestNode second = new TestNode(2, 4);
+		first.target = second;
+		first.operator = new Symbol((short) 3, 1, 1, "+");
+		root.addChild(first);
+		root.addChild(second);
+		cache.put(LANG, PARSER, "a + b", new ParseResult(root, Collections.<IParseError> emptyList()));
+
+		IParseRootNode result = get("a + b").getRootNode();
+		LinkedNode firstResult = (LinkedNode) result.getChild(0);
+		assertSame(result.getChild(1), firstResult.target);
+		assertSame(result, firstResult.getParent());
+		assertEquals(3, firstResult.operator.getId());
+		assertEquals(1, firstResult.operator.getStart());
+		assertEquals("+", firstResult.operator.value);
+	}
+
+	@Test
+	public void testDeepTreeIsReadBack() throws Exception
+	{
+		int depth = 10000;
+		StringBuilder source = new StringBuilder();
+		TestRootNode root = new TestRootNode(0, depth);
+		IParseNode parent = root;
+		for (int i = 0; i < depth; i++)
+		{
+			TestNode node = new TestNode(i, depth);
+			parent.addChild(node);
+			parent = node;
+			source.append('(');
+		}
+		cache.put(LANG, PARSER, source.toString(), new ParseResult(root, Collections.<IParseError> emptyList()));
+
+		IParseNode node = get(source.toString()).getRootNode();
+		for (int i = 0; i < depth; i++)
+		{
+			assertEquals(1, node.getChildCount());
+			node = node.getChild(0);
+			assertEquals(i, node.getStartingOffset());
+		}
+		assertEquals(0, node.getChildCount());
+	}
+
+	@Test
+	public void testDifferentSourceOrContentTypeIsMiss() throws Exception
+	{
+		cache.put(LANG, PARSER, "abc def", createResult("abc def"));
+
+		assertNull(get("abc deg"));
+		assertNull(cache.get("text/other", PARSER, "abc def", getClass().getClassLoader()));
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testOtherParserVersionIsMiss() throws Exception
+	{
+		String source = "abc def";
+		cache.put(LANG, PARSER, source, createResult(source));
+
+		assertNull(cache.get(LANG, "SimpleParser@1.0.1", source, getClass().getClassLoader()));
+		assertNotNull(get(source));
+	}
+
+	@Test
+	public void testEntriesSurviveRestart() throws Exception
+	{
+		String source = "abc def ghi";
+		cache.put(LANG, PARSER, source, createResult(source));
+
+		PersistentParseCache reopened = new PersistentParseCache(directory, 1024 * 1024);
+		assertEquals(cache.getTotalBytes(), reopened.getTotalBytes());
+		assertNotNull(reopened.get(LANG, PARSER, source, getClass().getClassLoader()));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception
+	{
+		cache.put(LANG, PARSER, "a", createResult("a"));
+		long entrySize = cache.getTotalBytes();
+		cache = new PersistentParseCache(directory, entrySize * 2 + entrySize / 2);
+
+		cache.put(LANG, PARSER, "b", createResult("b"));
+		assertNotNull(get("a"));
+		cache.put(LANG, PARSER, "c", createResult("c"));
+
+		assertNull(get("b"));
+		assertNotNull(get("a"));
+		assertNotNull(get("c"));
+		assertTrue(cache.getTotalBytes() <= entrySize * 2 + entrySize / 2);
+	}
+
+	@Test
+	public void testUnserializableResultIsNotStored() throws Exception
+	{
+		TestRootNode root = new TestRootNode(0, 2);
+		root.addChild(new UnserializableNode(0, 2));
+		cache.put(LANG, PARSER, "abc", new ParseResult(root, Collections.<IParseError> emptyList()));
+
+		assertEquals(0, cache.getTotalBytes());
+		assertNull(get("abc"));
+	}
+
+	@Test
+	public void testFailingWriteIsNotStored() throws Exception
+	{
+		TestRootNode root = new TestRootNode(0, 2);
+		root.addChild(new FailingNode(0, 2));
+		cache.put(LANG, PARSER, "abc", new ParseResult(root, Collections.<IParseError> emptyList()));
+
+		assertEquals(0, cache.getTotalBytes());
+		assertNull(get("abc"));
+	}
+
+	@Test
+	public void testCorruptEntryIsDropped() throws Exception
+	{
+		String source = "abc def";
+		cache.put(LANG, PARSER, source, createResult(source));
+		for (File file : directory.listFiles())
+		{
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(new byte[] { 0, 0, 0, 1, 0, 1, 'x' });
+			out.close();
+		}
+
+		assertNull(get(source));
+		assertEquals(0, cache.getTotalBytes());
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	private ParseResult get(String source)
+	{
+		return cache.get(LANG, PARSER, source, getClass().getClassLoader());
+	}
+
+	/**
+	 * A node for each word of the source.
+	 */
+	private ParseResult createResult(String source)
+	{
+		TestRootNode root = new TestRootNode(0, source.length() - 1);
+		int start = 0;
+		for (String word : source.split(" "))
+		{
+			root.addChild(new TestNode(start, start + word.length() - 1));
+			start += word.length() + 1;
+		}
+		IParseError error = new ParseError(LANG, source.lastIndexOf(' ') + 1, 1, "error at "
+				+ (source.lastIndexOf(' ') + 1), IParseError.Severity.ERROR);
+		return new ParseResult(root, Collections.singletonList(error));
+	}
+
+	private String toString(IParseNode node)
+	{
+		StringBuilder builder = new StringBuilder();
+		builder.append('(').append(node.getStartingOffset()).append('-').append(node.getEndingOffset());
+		for (IParseNode child : node)
+		{
+			builder.append(toString(child));
+		}
+		return builder.append(')').toString();
+	}
+}
@@ -12,7 +12,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ParseNodeTests.class, })
+@SuiteClasses({ ParseNodeTests.class, ParseRootNodeTests.class, })
 public class AllTests
 {
 
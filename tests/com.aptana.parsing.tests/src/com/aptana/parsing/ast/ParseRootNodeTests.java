@@ -0,0 +1,176 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import beaver.Symbol;
+
+@SuppressWarnings("nls")
+public class ParseRootNodeTests
+{
+	static class TestNode extends ParseNode
+	{
+		public TestNode(int start, int end)
+		{
+			super();
+			setLocation(start, end);
+		}
+
+		public String getLanguage()
+		{
+			return LANG;
+		}
+	}
+
+	static class TestRootNode extends ParseRootNode
+	{
+		public TestRootNode(int start, int end)
+		{
+			super(new Symbol[0], start, end);
+		}
+
+		public String getLanguage()
+		{
+			return LANG;
+		}
+	}
+
+	private static final String LANG = "text/simple";
+
+	private TestRootNode root;
+
+	/**
+	 * Builds 50 statements of 10 chars each (separated by a space), each one holding 2 nodes of 3 chars.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		root = new TestRootNode(0, 549);
+		for (int i = 0; i < 50; i++)
+		{
+			int start = i * 11;
+			TestNode statement = new TestNode(start, start + 9);
+			statement.addChild(new TestNode(start, start + 2));
+			statement.addChild(new TestNode(start + 5, start + 7));
+			root.addChild(statement);
+		}
+	}
+
+	@Test
+	public void testNodeAtOffsetMatchesLinearLookup()
+	{
+		for (int offset = -1; offset <= 551; offset++)
+		{
+			assertSame("offset " + offset, getNodeAtOffset(root, offset), root.getNodeAtOffset(offset));
+		}
+	}
+
+	@Test
+	public void testNodeAtOffsetWithOverlappingChildren()
+	{
+		// takes the first match, as the linear lookup does
+		TestNode overlapping = new TestNode(100, 120);
+		root.addChild(overlapping);
+
+		assertSame(root.getChild(9), root.getNodeAtOffset(100).getParent());
+		assertSame(overlapping, root.getNodeAtOffset(109));
+	}
+
+	@Test
+	public void testNodeAtOffsetIgnoresEmptyNodes()
+	{
+		List<IParseNode> children = new ArrayList<IParseNode>(Arrays.asList(root.getChildren()));
+		children.add(5, new TestNode(55, 54));
+		root.setChildren(children.toArray(new IParseNode[children.size()]));
+
+		assertSame(root.getChild(6), root.getNodeAtOffset(55).getParent());
+		assertSame(root.getChild(4), root.getNodeAtOffset(53));
+	}
+
+	@Test
+	public void testIndexFollowsChangesToTheTree()
+	{
+		assertSame(root, root.getNodeAtOffset(10));
+
+		// changing the root drops the whole index
+		TestNode last = new TestNode(549, 549);
+		root.addChild(last);
+		assertSame(last, root.getNodeAtOffset(549));
+
+		// deeper nodes are looked at again when their number of children changes
+		IParseNode statement = root.getChild(3);
+		for (int i = 0; i < 10; i++)
+		{
+			statement.addChild(new TestNode(33 + i, 33 + i));
+		}
+		assertSame(statement.getChild(11), root.getNodeAtOffset(42));
+		statement.addChild(new TestNode(36, 36));
+		assertSame(statement.getChild(1), root.getNodeAtOffset(38));
+		assertSame(statement.getChild(5), root.getNodeAtOffset(36));
+	}
+
+	@Test
+	public void testOffsetOutsideRoot()
+	{
+		assertNull(root.getNodeAtOffset(550));
+		assertNull(root.getNodeAtOffset(-1));
+	}
+
+	@Test
+	public void testNodesOverlapping()
+	{
+		List<IParseNode> nodes = root.getNodesOverlapping(17, 23);
+
+		assertEquals(5, nodes.size());
+		assertSame(root, nodes.get(0));
+		assertSame(root.getChild(1), nodes.get(1));
+		assertSame(root.getChild(1).getChild(1), nodes.get(2));
+		assertSame(root.getChild(2), nodes.get(3));
+		assertSame(root.getChild(2).getChild(0), nodes.get(4));
+	}
+
+	@Test
+	public void testNodesOverlappingGap()
+	{
+		List<IParseNode> nodes = root.getNodesOverlapping(10, 10);
+
+		assertEquals(1, nodes.size());
+		assertSame(root, nodes.get(0));
+		assertEquals(0, root.getNodesOverlapping(600, 700).size());
+	}
+
+	/**
+	 * The lookup as done by {@link ParseNode#getNodeAtOffset(int)}.
+	 */
+	private IParseNode getNodeAtOffset(IParseNode node, int offset)
+	{
+		if (!node.contains(offset))
+		{
+			return null;
+		}
+		for (IParseNode child : node)
+		{
+			IParseNode result = getNodeAtOffset(child, offset);
+			if (result != null)
+			{
+				return result;
+			}
+		}
+		return node;
+	}
+}
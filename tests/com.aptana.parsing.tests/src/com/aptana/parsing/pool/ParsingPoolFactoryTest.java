@@ -8,6 +8,8 @@
 package com.aptana.parsing.pool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.lang.reflect.Constructor;
@@ -16,7 +18,11 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -25,6 +31,7 @@ import beaver.Symbol;
 import com.aptana.core.epl.util.LRUCacheWithSoftPrunedValues;
 import com.aptana.parsing.AbstractParser;
 import com.aptana.parsing.IParseState;
+import com.aptana.parsing.ParseResult;
 import com.aptana.parsing.IParseStateCacheKey;
 import com.aptana.parsing.IParser;
 import com.aptana.parsing.IParserPool;
@@ -351,6 +358,156 @@ public class ParsingPoolFactoryTest
 		assertEquals(3, parser.parses);
 	}
 
+	@Test
+	public void testParseAsyncSharesInFlightParse() throws Exception
+	{
+		parser.parseTimeout = PARSE_TIMEOUT * 5;
+		queue.add(parseRootNode);
+
+		Future<ParseResult> first = parsingEngine.parseAsync("test", new ParseState("", 0));
+		Future<ParseResult> second = parsingEngine.parseAsync("test", new ParseState("", 0));
+
+		assertEquals(parseRootNode, first.get(5, TimeUnit.SECONDS).getRootNode());
+		assertEquals(parseRootNode, second.get(5, TimeUnit.SECONDS).getRootNode());
+		assertEquals(1, parser.parses);
+	}
+
+	@Test
+	public void testParseAsyncCancelOnlyAffectsCaller() throws Exception
+	{
+		parser.parseTimeout = PARSE_TIMEOUT * 5;
+		queue.add(parseRootNode);
+
+		Future<ParseResult> first = parsingEngine.parseAsync("test", new ParseState("", 0));
+		Future<ParseResult> second = parsingEngine.parseAsync("test", new ParseState("", 0));
+
+		assertTrue(first.cancel(true));
+		assertTrue(first.isCancelled());
+		assertEquals(parseRootNode, second.get(5, TimeUnit.SECONDS).getRootNode());
+		assertFalse(second.isCancelled());
+		assertEquals(1, parser.parses);
+	}
+
+	/**
+	 * Parser which doesn't finish until its progress monitor is cancelled (unless told not to block).
+	 */
+	private class CancellableParser extends AbstractParser
+	{
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch cancelled = new CountDownLatch(1);
+		private volatile boolean block = true;
+		private volatile int parses;
+
+		protected void parse(IParseState parseState, WorkingParseResult working) throws Exception
+		{
+			parses += 1;
+			started.countDown();
+			long end = System.currentTimeMillis() + 5000;
+			while (block && System.currentTimeMillis() < end)
+			{
+				if (parseState.getProgressMonitor().isCanceled())
+				{
+					cancelled.countDown();
+					return;
+				}
+				Thread.sleep(5);
+			}
+			working.setParseResult(parseRootNode);
+		}
+	}
+
+	@Test
+	public void testParseAsyncCancelledByAllCallers() throws Exception
+	{
+		CancellableParser cancellableParser = new CancellableParser();
+		parsingEngine = new ParsingEngine(new ParserPoolProvider(new ParserPool(cancellableParser)), 200, 0)
+		{
+			// Empty body just to access protected constructor.
+		};
+
+		Future<ParseResult> first = parsingEngine.parseAsync("test", new ParseState("", 0));
+		Future<ParseResult> second = parsingEngine.parseAsync("test", new ParseState("", 0));
+		assertTrue(cancellableParser.started.await(5, TimeUnit.SECONDS));
+
+		first.cancel(true);
+		assertEquals(1, cancellableParser.cancelled.getCount());
+		second.cancel(true);
+		assertTrue(cancellableParser.cancelled.await(5, TimeUnit.SECONDS));
+
+		// The cancelled parse must not be served from the cache.
+		cancellableParser.block = false;
+		Future<ParseResult> third = parsingEngine.parseAsync("test", new ParseState("", 0));
+		assertEquals(parseRootNode, third.get(5, TimeUnit.SECONDS).getRootNode());
+		assertEquals(2, cancellableParser.parses);
+		parsingEngine.dispose();
+	}
+
+	@Test
+	public void testSyncParseWaitingOnCancelledParseReparses() throws Exception
+	{
+		final CancellableParser cancellableParser = new CancellableParser();
+		parsingEngine = new ParsingEngine(new ParserPoolProvider(new ParserPool(cancellableParser)), 200, 0)
+		{
+			// Empty body just to access protected constructor.
+		};
+
+		final NullProgressMonitor firstMonitor = new NullProgressMonitor();
+		final ParseResult[] results = new ParseResult[2];
+		Thread first = new Thread()
+		{
+			public void run()
+			{
+				ParseState parseState = new ParseState("", 0);
+				parseState.setProgressMonitor(firstMonitor);
+				try
+				{
+					results[0] = parsingEngine.parse("test", parseState);
+				}
+				catch (Exception e)
+				{
+					// checked below through the missing result
+				}
+			}
+		};
+		first.start();
+		assertTrue(cancellableParser.started.await(5, TimeUnit.SECONDS));
+
+		Thread second = new Thread()
+		{
+			public void run()
+			{
+				try
+				{
+					results[1] = parsingEngine.parse("test", new ParseState("", 0));
+				}
+				catch (Exception e)
+				{
+					// checked below through the missing result
+				}
+			}
+		};
+		second.start();
+
+		// wait for the second caller to block on the first parse's result
+		long end = System.currentTimeMillis() + 5000;
+		while (second.getState() != Thread.State.WAITING && System.currentTimeMillis() < end)
+		{
+			Thread.sleep(5);
+		}
+		assertEquals(Thread.State.WAITING, second.getState());
+
+		firstMonitor.setCanceled(true);
+		assertTrue(cancellableParser.cancelled.await(5, TimeUnit.SECONDS));
+		cancellableParser.block = false;
+		first.join(5000);
+		second.join(5000);
+
+		// The second caller must not get the partial result of the cancelled parse.
+		assertEquals(parseRootNode, results[1].getRootNode());
+		assertEquals(2, cancellableParser.parses);
+		parsingEngine.dispose();
+	}
+
 	private class ParserWithSubParse extends AbstractParser
 	{
 
@@ -15,12 +15,15 @@ import com.aptana.parsing.ParseStateCacheKeyWithCommentsTest;
 @RunWith(Suite.class)
 // @formatter:off
 @Suite.SuiteClasses({
+	com.aptana.internal.parsing.ParserPoolTest.class,
+	com.aptana.internal.parsing.PersistentParseCacheTest.class,
 	ParseStateCacheKeyWithCommentsTest.class,
 	ParseStateTest.class,
 	com.aptana.json.AllTests.class,
 	com.aptana.parsing.ast.AllTests.class,
 	com.aptana.parsing.lexer.LexerTests.class,
 	com.aptana.parsing.pool.AllTests.class,
+	com.aptana.parsing.xpath.ParseNodeQueryTest.class,
 	com.aptana.sax.AllTests.class
 })
 // @formatter:on
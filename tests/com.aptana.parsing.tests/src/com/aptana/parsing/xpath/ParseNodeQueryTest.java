@@ -0,0 +1,229 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.ParseNode;
+
+@SuppressWarnings("nls")
+public class ParseNodeQueryTest
+{
+	static class TestNode extends ParseNode
+	{
+		private final String name;
+
+		public TestNode(String name, TestNode... children)
+		{
+			super();
+			this.name = name;
+			for (TestNode child : children)
+			{
+				addChild(child);
+			}
+		}
+
+		public String getLanguage()
+		{
+			return "text/simple";
+		}
+
+		@Override
+		public String getElementName()
+		{
+			return name;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+
+		// Jaxen drops nodes equal to others from unions, and ParseNode considers siblings of the same type equal
+		@Override
+		public boolean equals(Object obj)
+		{
+			return this == obj;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return System.identityHashCode(this);
+		}
+	}
+
+	static class OtherNode extends TestNode
+	{
+		public OtherNode(String name, TestNode... children)
+		{
+			super(name, children);
+		}
+	}
+
+	private static final String[] NAMES = { "invoke", "group", "function", "Body" };
+
+	private static final String[] EXPRESSIONS = { "invoke[position() = 1]/group/function|invoke[position() = 1]/function",
+			"*", "group", "*/*[2]", "invoke//function", "//function[1]", "/invoke/group", "/*/*|group/*",
+			"function | invoke/function | function/*", "//body", "/invoke/function|//group//invoke[3]" };
+
+	private TestNode root;
+	private TestNode invoke;
+	private TestNode group;
+	private TestNode function;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		function = new TestNode("function");
+		group = new TestNode("group", function, new TestNode("function"));
+		invoke = new TestNode("invoke", new TestNode("function"), group);
+		root = new TestNode("statements", new TestNode("var"), invoke, new TestNode("invoke", new TestNode(
+				"function")));
+	}
+
+	@Test
+	public void testSelect()
+	{
+		ParseNodeQuery query = ParseNodeQuery.compile("invoke[1]/group/function|invoke[1]/function");
+
+		List<IParseNode> nodes = query.select(root);
+		assertEquals(Arrays.asList(invoke.getChild(0), function, group.getChild(1)), nodes);
+		assertEquals("invoke[1]/group/function|invoke[1]/function", query.toString());
+	}
+
+	@Test
+	public void testSelectByType()
+	{
+		OtherNode other = new OtherNode("function");
+		group.addChild(other);
+
+		assertEquals(Collections.singletonList(other),
+				ParseNodeQuery.compile("invoke/group/function").select(root, OtherNode.class));
+	}
+
+	@Test
+	public void testAbsolutePathFromDescendant()
+	{
+		assertEquals(Collections.singletonList(group), ParseNodeQuery.compile("/invoke/group").select(function));
+		assertEquals(Collections.emptyList(), ParseNodeQuery.compile("/invoke/group").select(null));
+	}
+
+	@Test
+	public void testCaseInsensitive()
+	{
+		TestNode body = new TestNode("BODY");
+		TestNode html = new TestNode("Html", body);
+		TestNode document = new TestNode("document", html);
+
+		assertEquals(Collections.singletonList(body), ParseNodeQuery.compile("/html/body", true).select(document));
+		assertEquals(Collections.emptyList(), ParseNodeQuery.compile("/html/body").select(document));
+	}
+
+	@Test
+	public void testInvalidExpressions()
+	{
+		for (String expression : new String[] { "", "a/", "a[", "a[0]", "a[last()]", "a|", "a/@b", "a[b]", "..",
+				"a b" })
+		{
+			try
+			{
+				ParseNodeQuery.compile(expression);
+				fail(expression);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testSelectsLikeXPath() throws Exception
+	{
+		Random random = new Random(3);
+		for (int i = 0; i < 200; i++)
+		{
+			TestNode tree = createTree(random, 4);
+			List<IParseNode> contexts = new ArrayList<IParseNode>();
+			contexts.add(tree);
+			contexts.addAll(ParseNodeQuery.compile("//*").select(tree));
+			for (String expression : EXPRESSIONS)
+			{
+				for (boolean caseInsensitive : new boolean[] { false, true })
+				{
+					ParseNodeQuery query = ParseNodeQuery.compile(expression, caseInsensitive);
+					ParseNodeXPath xpath = new ParseNodeXPath(expression, new ParseNodeNavigator(caseInsensitive));
+					for (IParseNode context : contexts)
+					{
+						// Jaxen doesn't always return the nodes in document order when descendants are involved
+						List<IParseNode> expected = inDocumentOrder(contexts, xpath.selectNodes(context));
+						assertSameNodes(expression, expected, query.select(context));
+					}
+				}
+			}
+		}
+	}
+
+	private static List<IParseNode> inDocumentOrder(List<IParseNode> allNodes, List<?> nodes)
+	{
+		Map<Object, Boolean> selected = new IdentityHashMap<Object, Boolean>();
+		for (Object node : nodes)
+		{
+			selected.put(node, Boolean.TRUE);
+		}
+		List<IParseNode> result = new ArrayList<IParseNode>();
+		for (IParseNode node : allNodes)
+		{
+			if (selected.containsKey(node))
+			{
+				result.add(node);
+			}
+		}
+		assertEquals(nodes.size(), result.size());
+		return result;
+	}
+
+	private static void assertSameNodes(String message, List<IParseNode> expected, List<IParseNode> actual)
+	{
+		assertEquals(message, expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertSame(message, expected.get(i), actual.get(i));
+		}
+	}
+
+	private static TestNode createTree(Random random, int depth)
+	{
+		TestNode node = new TestNode(NAMES[random.nextInt(NAMES.length)]);
+		if (depth > 0)
+		{
+			int children = random.nextInt(4);
+			for (int i = 0; i < children; i++)
+			{
+				node.addChild(createTree(random, depth - 1));
+			}
+		}
+		return node;
+	}
+}
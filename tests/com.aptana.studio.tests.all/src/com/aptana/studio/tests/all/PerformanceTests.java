@@ -15,6 +15,7 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
 	com.aptana.studio.tests.startup.AllTests.class,
 	com.aptana.git.core.tests.PerformanceTests.class,
+	com.aptana.index.core.tests.PerformanceTests.class,
 	com.aptana.js.core.tests.PerformanceTests.class,
 	com.aptana.scripting.tests.PerformanceTests.class,
 	com.aptana.editor.common.tests.PerformanceTests.class,